@@ -4,4 +4,6 @@
  * @author bostjan.slivnik@fri.uni-lj.si
  */
 module pins24 {
+	requires jdk.management;
+	requires jdk.jfr;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package pins24.common;
 
+import java.io.*;
 import java.util.*;
 import java.util.function.*;
 
@@ -530,16 +531,50 @@ public class AST {
 		/** Vrednost. */
 		public final String value;
 
+		/**
+		 * Vrednost celostevilske konstante ali koda znakovne konstante (ali
+		 * {@code null}, ce atomarni izraz ni taksna konstanta oziroma ce vrednost ni
+		 * predstavljiva).
+		 */
+		public final Integer intValue;
+
+		/** Kode znakov niza (ali {@code null}, ce atomarni izraz ni niz). */
+		public final int[] strValue;
+
 		/**
 		 * Ustvari nov atomarni izraz.
 		 *
-		 * @param type  Tip atomarnega izraza.
-		 * @param value Vrednost.
+		 * @param type     Tip atomarnega izraza.
+		 * @param value    Vrednost.
+		 * @param intValue Vrednost celostevilske konstante ali koda znakovne
+		 *                 konstante (ali {@code null}).
+		 * @param strValue Kode znakov niza (ali {@code null}).
 		 */
-		public AtomExpr(final Type type, final String value) {
+		public AtomExpr(final Type type, final String value, final Integer intValue, final int[] strValue) {
 			super();
 			this.type = type;
 			this.value = value;
+			this.intValue = intValue;
+			this.strValue = strValue;
+		}
+
+		/**
+		 * Ustvari nov atomarni izraz iz leksikalnega simbola konstante.
+		 *
+		 * @param type  Tip atomarnega izraza.
+		 * @param token Leksikalni simbol konstante.
+		 */
+		public AtomExpr(final Type type, final Token token) {
+			this(type, token.lexeme(), token.intValue(), token.strValue());
+		}
+
+		/**
+		 * Ustvari nov atomarni izraz, ki je celostevilska konstanta.
+		 *
+		 * @param value Vrednost celostevilske konstante (nenegativna).
+		 */
+		public AtomExpr(final int value) {
+			this(Type.INTCONST, Integer.toString(value), value, null);
 		}
 
 		@Override
@@ -755,7 +790,23 @@ public class AST {
 		 * @return Vrne kratek izpis atributov.
 		 */
 		public String head(final AST.Node node, final boolean highlighted) {
-			return "";
+			final StringBuilder head = new StringBuilder();
+			head(node, highlighted, head);
+			return head.toString();
+		}
+
+		/**
+		 * Kratek izpis atributov, ki se doda na konec danega niza.
+		 *
+		 * Podrazredi dopolnijo ta izpis (in ne izpisa, ki vrne niz), da se pri
+		 * izpisu celotnega drevesa isti niz uporabi za vsa vozlisca.
+		 *
+		 * @param node        Vozlisce abstraktnega sintaksnega drevesa.
+		 * @param highlighted Ali mora biti izpis poudarjen.
+		 * @param head        Niz, ki se mu doda kratek izpis atributov.
+		 */
+		public void head(final AST.Node node, final boolean highlighted, final StringBuilder head) {
+			return;
 		}
 
 		/**
@@ -766,6 +817,20 @@ public class AST {
 		 * @param node        Vozlisce abstraktnega sintaksnega drevesa.
 		 */
 		public void desc(final int indent, final AST.Node node, final boolean highlighted) {
+			final StringBuilder desc = new StringBuilder();
+			desc(indent, node, highlighted, desc);
+			Report.out().print(desc);
+		}
+
+		/**
+		 * Dolg izpis atributov, ki se doda na konec danega niza.
+		 *
+		 * @param indent      Zamik (sorazmeren z globino vozlisca).
+		 * @param node        Vozlisce abstraktnega sintaksnega drevesa.
+		 * @param highlighted Ali mora biti izpis poudarjen.
+		 * @param desc        Niz, ki se mu doda dolg izpis atributov.
+		 */
+		public void desc(final int indent, final AST.Node node, final boolean highlighted, final StringBuilder desc) {
 			return;
 		}
 
@@ -1051,40 +1116,153 @@ public class AST {
 
 	/**
 	 * Izpis abstraktnega sintaksnega drevesa.
+	 *
+	 * Izpis vseh vozlisc se zbira v enem nizu (tudi kratki izpisi atributov se
+	 * dodajajo vanj), ki se v izhodni tok prepise, ko preseze velikost medpomnilnika,
+	 * in na koncu izpisa.
 	 */
 	public static class Logger {
 
+		/** Velikost medpomnilnika izpisa. */
+		private static final int BUFFER_SIZE = 1 << 16;
+
 		/** Abstraktno sintaksno drevo opremljeno z atributi. */
 		private final AttrAST attrAST;
 
+		/** Ali je izpis brez ubeznih zaporedij ANSI za poudarjanje. */
+		private final boolean plain;
+
+		/** Izpis, ki se se ni prepisal v izhodni tok. */
+		private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 256);
+
+		/** Znaki izpisa za prepis v izhodni tok. */
+		private char[] chars = new char[BUFFER_SIZE + 256];
+
+		/** Presledki za zamik izpisa (vnaprej pripravljeni). */
+		private String spaces = " ".repeat(64);
+
+		/** Izhodni tok (med izpisom). */
+		private Writer out = null;
+
 		/**
 		 * Ustvari nov objekt za izpis abstraktnega sintaksnega drevesa.
 		 *
 		 * @param attrAST Abstraktno sintaksno drevo opremljeno z atributi.
 		 */
 		public Logger(final AttrAST attrAST) {
+			this(attrAST, false);
+		}
+
+		/**
+		 * Ustvari nov objekt za izpis abstraktnega sintaksnega drevesa.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo opremljeno z atributi.
+		 * @param plain   Ali naj bo izpis brez ubeznih zaporedij ANSI za
+		 *                poudarjanje.
+		 */
+		public Logger(final AttrAST attrAST, final boolean plain) {
 			this.attrAST = attrAST;
+			this.plain = plain;
 		}
 
 		/**
 		 * Sprozi izpis abstraktnega sintaksnega drevesa opremljenega z atributi.
 		 */
 		public void log() {
-			attrAST.ast.accept(new LoggerVisitor(), new LoggerVisitor.Log(0, "Program:"));
+			log(attrAST.ast, new LoggerVisitor.Log(0, "Program:"));
+		}
+
+		/**
+		 * Izpise glavo izpisa programa, ki ji sledijo izpisi posameznih definicij na
+		 * najvisjem nivoju (glej {@link #log(AST.Node, int)}) z zamikom 2.
+		 *
+		 * @param plain Ali naj bo izpis brez ubeznih zaporedij ANSI za poudarjanje.
+		 */
+		public static void logProgram(final boolean plain) {
+			Report.out().println(plain ? "Program:" : "\033[1mProgram:\033[0m");
 		}
 
 		/**
-		 * Izpise opis vozlisca abstraktnega sintaksnega drevesa in njegove atribute.
+		 * Sprozi izpis dela abstraktnega sintaksnega drevesa opremljenega z atributi
+		 * (npr. ene definicije na najvisjem nivoju) z danim zamikom.
+		 *
+		 * @param node   Koren dela abstraktnega sintaksnega drevesa.
+		 * @param indent Zamik (sorazmeren z globino vozlisca).
+		 */
+		public void log(final AST.Node node, final int indent) {
+			log(node, new LoggerVisitor.Log(indent, ""));
+		}
+
+		/**
+		 * Izpise del abstraktnega sintaksnega drevesa v izhodni tok
+		 * {@link Report#out()}.
+		 *
+		 * @param node Koren dela abstraktnega sintaksnega drevesa.
+		 * @param log  Nacin izpisa korena.
+		 */
+		private void log(final AST.Node node, final LoggerVisitor.Log log) {
+			final PrintStream stream = Report.out();
+			out = new OutputStreamWriter(stream, stream.charset());
+			try {
+				node.accept(new LoggerVisitor(), log);
+				flush();
+				out.flush();
+			} catch (IOException __) {
+				throw new Report.InternalError();
+			} finally {
+				buffer.setLength(0);
+				out = null;
+			}
+		}
+
+		/**
+		 * Prepise zbrani izpis v izhodni tok.
+		 *
+		 * @throws IOException Ce pisanje ni mogoce.
+		 */
+		private void flush() throws IOException {
+			final int length = buffer.length();
+			if (chars.length < length)
+				chars = new char[length];
+			buffer.getChars(0, length, chars, 0);
+			out.write(chars, 0, length);
+			buffer.setLength(0);
+		}
+
+		/**
+		 * Zacne izpis vozlisca abstraktnega sintaksnega drevesa.
+		 *
+		 * @param indent Zamik (sorazmeren z globino vozlisca).
+		 * @return Niz, ki se mu doda opis strukture vozlisca.
+		 */
+		private StringBuilder begin(final int indent) {
+			if (spaces.length() < indent)
+				spaces = " ".repeat(2 * indent);
+			buffer.append(spaces, 0, indent);
+			if (!plain)
+				buffer.append("\033[1m");
+			return buffer;
+		}
+
+		/**
+		 * Konca izpis vozlisca abstraktnega sintaksnega drevesa z izpisom njegovih
+		 * atributov.
 		 *
 		 * @param indent Zamik (sorazmeren z globino vozlisca).
 		 * @param node   Vozlisce.
-		 * @param text   Opis strukture vozlisca.
 		 */
-		private void print(final int indent, final AST.Node node, final String text) {
-			if (indent > 0)
-				System.out.printf("%" + indent + "c", ' ');
-			System.out.printf("%s%s\n", text, attrAST.head(node, true));
-			attrAST.desc(indent + 4, node, true);
+		private void end(final int indent, final AST.Node node) {
+			if (!plain)
+				buffer.append("\033[0m");
+			attrAST.head(node, !plain, buffer);
+			buffer.append('\n');
+			attrAST.desc(indent + 4, node, !plain, buffer);
+			if (buffer.length() >= BUFFER_SIZE)
+				try {
+					flush();
+				} catch (IOException __) {
+					throw new Report.InternalError();
+				}
 		}
 
 		/**
@@ -1127,7 +1305,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.Nodes<? extends AST.Node> nodes, final Log log) {
-				print(log.indent, nodes, "\033[1m" + log.groupName + "\033[0m");
+				begin(log.indent).append(log.groupName);
+				end(log.indent, nodes);
 				{
 					for (final AST.Node node : nodes)
 						node.accept(this, log.advance());
@@ -1137,7 +1316,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.FunDef funDef, final Log log) {
-				print(log.indent, funDef, "\033[1m" + "FunDef " + funDef.name + "\033[0m");
+				begin(log.indent).append("FunDef ").append(funDef.name);
+				end(log.indent, funDef);
 				{
 					funDef.pars.accept(this, log.advance("Pars:"));
 					funDef.stmts.accept(this, log.advance("Stmts:"));
@@ -1147,7 +1327,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.ParDef parDef, final Log log) {
-				print(log.indent, parDef, "\033[1m" + "ParDef " + parDef.name + "\033[0m");
+				begin(log.indent).append("ParDef ").append(parDef.name);
+				end(log.indent, parDef);
 				{
 				}
 				return null;
@@ -1155,7 +1336,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.VarDef varDef, final Log log) {
-				print(log.indent, varDef, "\033[1m" + "VarDef " + varDef.name + "\033[0m");
+				begin(log.indent).append("VarDef ").append(varDef.name);
+				end(log.indent, varDef);
 				{
 					varDef.inits.accept(this, log.advance("Inits:"));
 				}
@@ -1164,7 +1346,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.Init init, final Log log) {
-				print(log.indent, init, "\033[1m" + "Init " + init.num.value + "*" + "\033[0m");
+				begin(log.indent).append("Init ").append(init.num.value).append('*');
+				end(log.indent, init);
 				{
 					init.value.accept(this, log.advance());
 				}
@@ -1173,7 +1356,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.ExprStmt exprStmt, final Log log) {
-				print(log.indent, exprStmt, "\033[1m" + "ExprStmt" + "\033[0m");
+				begin(log.indent).append("ExprStmt");
+				end(log.indent, exprStmt);
 				{
 					exprStmt.expr.accept(this, log.advance());
 				}
@@ -1182,7 +1366,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.AssignStmt assignStmt, final Log log) {
-				print(log.indent, assignStmt, "\033[1m" + "AssignStmt" + "\033[0m");
+				begin(log.indent).append("AssignStmt");
+				end(log.indent, assignStmt);
 				{
 					assignStmt.dstExpr.accept(this, log.advance());
 					assignStmt.srcExpr.accept(this, log.advance());
@@ -1192,7 +1377,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.IfStmt ifStmt, final Log log) {
-				print(log.indent, ifStmt, "\033[1m" + "IfStmt" + "\033[0m");
+				begin(log.indent).append("IfStmt");
+				end(log.indent, ifStmt);
 				{
 					ifStmt.cond.accept(this, log.advance());
 					ifStmt.thenStmts.accept(this, log.advance("IfThenStmts:"));
@@ -1203,7 +1389,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.WhileStmt whileStmt, final Log log) {
-				print(log.indent, whileStmt, "\033[1m" + "WhileStmt" + "\033[0m");
+				begin(log.indent).append("WhileStmt");
+				end(log.indent, whileStmt);
 				{
 					whileStmt.cond.accept(this, log.advance());
 					whileStmt.stmts.accept(this, log.advance("WhileStmts:"));
@@ -1213,7 +1400,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.LetStmt letStmt, final Log log) {
-				print(log.indent, letStmt, "\033[1m" + "LetStmt" + "\033[0m");
+				begin(log.indent).append("LetStmt");
+				end(log.indent, letStmt);
 				{
 					letStmt.defs.accept(this, log.advance("LetDefs:"));
 					letStmt.stmts.accept(this, log.advance("LetStmts:"));
@@ -1223,8 +1411,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.AtomExpr atomExpr, final Log log) {
-				print(log.indent, atomExpr,
-						"\033[1m" + "AtomExpr " + atomExpr.type + "(" + atomExpr.value + ")" + "\033[0m");
+				begin(log.indent).append("AtomExpr ").append(atomExpr.type).append('(').append(atomExpr.value).append(')');
+				end(log.indent, atomExpr);
 				{
 				}
 				return null;
@@ -1232,7 +1420,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.UnExpr unExpr, final Log log) {
-				print(log.indent, unExpr, "\033[1m" + "UnExpr " + unExpr.oper + "\033[0m");
+				begin(log.indent).append("UnExpr ").append(unExpr.oper);
+				end(log.indent, unExpr);
 				{
 					unExpr.expr.accept(this, log.advance());
 				}
@@ -1241,7 +1430,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.BinExpr binExpr, final Log log) {
-				print(log.indent, binExpr, "\033[1m" + "BinExpr " + binExpr.oper + "\033[0m");
+				begin(log.indent).append("BinExpr ").append(binExpr.oper);
+				end(log.indent, binExpr);
 				{
 					binExpr.fstExpr.accept(this, log.advance());
 					binExpr.sndExpr.accept(this, log.advance());
@@ -1251,7 +1441,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.VarExpr varExpr, final Log log) {
-				print(log.indent, varExpr, "\033[1m" + "NameExpr " + varExpr.name + "\033[0m");
+				begin(log.indent).append("NameExpr ").append(varExpr.name);
+				end(log.indent, varExpr);
 				{
 				}
 				return null;
@@ -1259,7 +1450,8 @@ public class AST {
 
 			@Override
 			public Object visit(final AST.CallExpr callExpr, final Log log) {
-				print(log.indent, callExpr, "\033[1m" + "CallExpr " + callExpr.name + "\033[0m");
+				begin(log.indent).append("CallExpr ").append(callExpr.name);
+				end(log.indent, callExpr);
 				{
 					callExpr.args.accept(this, log.advance("Args:"));
 				}
@@ -0,0 +1,226 @@
+package pins24.common;
+
+import jdk.jfr.*;
+
+/**
+ * Dogodki za Java Flight Recorder (JFR).
+ *
+ * Faze prevajalnika porocajo o svojem delu z dogodki, ki vsebujejo ime izvorne
+ * datoteke, lokacijo dela izvorne datoteke in stevila, tako da je mogoce
+ * porabo casa in pomnilnika povezati z deli izvornega programa. Dogodke je
+ * treba omogociti v nastavitvah snemanja (kategorija {@code PINS'24}).
+ */
+public class Events {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Events() {
+		throw new Report.InternalError();
+	}
+
+	/** Ime izvorne datoteke, ki jo prevaja trenutna nit. */
+	private static final ThreadLocal<String> threadSrcFileName = new ThreadLocal<String>();
+
+	/**
+	 * Vrne ime izvorne datoteke, ki jo prevaja trenutna nit.
+	 *
+	 * @return Ime izvorne datoteke (ali {@code null}).
+	 */
+	public static String srcFileName() {
+		return threadSrcFileName.get();
+	}
+
+	/**
+	 * Nastavi ime izvorne datoteke, ki jo prevaja trenutna nit.
+	 *
+	 * @param srcFileName Ime izvorne datoteke (ali {@code null}, ko je prevajanje
+	 *                    koncano).
+	 */
+	public static void setSrcFileName(final String srcFileName) {
+		if (srcFileName == null)
+			threadSrcFileName.remove();
+		else
+			threadSrcFileName.set(srcFileName);
+	}
+
+	/**
+	 * Dogodek, vezan na del izvorne datoteke.
+	 */
+	@Category({ "PINS'24" })
+	@StackTrace(false)
+	public static abstract class LocatedEvent extends Event {
+
+		/** Ime izvorne datoteke. */
+		@Label("Source File")
+		public String srcFile = srcFileName();
+
+		/** Zacetna vrstica. */
+		@Label("Begin Line")
+		public int begLine;
+
+		/** Zacetni stolpec. */
+		@Label("Begin Column")
+		public int begColumn;
+
+		/** Koncna vrstica. */
+		@Label("End Line")
+		public int endLine;
+
+		/** Koncni stolpec. */
+		@Label("End Column")
+		public int endColumn;
+
+		@SuppressWarnings({ "doclint:missing" })
+		protected LocatedEvent() {
+		}
+
+		/**
+		 * Nastavi zacetek dela izvorne datoteke.
+		 *
+		 * @param location Del izvorne datoteke.
+		 */
+		public void locateBeg(final Report.Locatable location) {
+			if (location == null)
+				return;
+			begLine = location.location().begLine();
+			begColumn = location.location().begColumn();
+		}
+
+		/**
+		 * Nastavi konec dela izvorne datoteke.
+		 *
+		 * @param location Del izvorne datoteke.
+		 */
+		public void locateEnd(final Report.Locatable location) {
+			if (location == null)
+				return;
+			endLine = location.location().endLine();
+			endColumn = location.location().endColumn();
+		}
+
+		/**
+		 * Nastavi del izvorne datoteke.
+		 *
+		 * @param location Del izvorne datoteke.
+		 */
+		public void locate(final Report.Locatable location) {
+			locateBeg(location);
+			locateEnd(location);
+		}
+
+	}
+
+	/**
+	 * Leksikalna analiza zaporedja leksikalnih simbolov.
+	 */
+	@Name("pins24.TokenBatch")
+	@Label("Token Batch")
+	@Category({ "PINS'24", "LexAn" })
+	@Description("Lexical analysis of a batch of consecutive tokens.")
+	public static class TokenBatch extends LocatedEvent {
+
+		/** Najvecje stevilo leksikalnih simbolov v enem dogodku. */
+		public static final int SIZE = 1024;
+
+		/** Tip dogodka. */
+		private static final EventType type = EventType.getEventType(TokenBatch.class);
+
+		/**
+		 * Vrne, ali se dogodki tega tipa trenutno snemajo (brez ustvarjanja
+		 * dogodka).
+		 *
+		 * @return Ali se dogodki tega tipa snemajo.
+		 */
+		public static boolean enabled() {
+			return type.isEnabled();
+		}
+
+		/** Stevilo leksikalnih simbolov. */
+		@Label("Tokens")
+		public int tokens;
+
+		@SuppressWarnings({ "doclint:missing" })
+		public TokenBatch() {
+		}
+
+	}
+
+	/**
+	 * Sintaksna analiza definicije.
+	 */
+	@Name("pins24.Definition")
+	@Label("Definition Parsed")
+	@Category({ "PINS'24", "SynAn" })
+	@Description("Syntax analysis of a function or variable definition.")
+	public static class Definition extends LocatedEvent {
+
+		/** Vrsta definicije ({@code fun} ali {@code var}). */
+		@Label("Kind")
+		public String kind;
+
+		/** Ime definicije. */
+		@Label("Name")
+		public String name;
+
+		@SuppressWarnings({ "doclint:missing" })
+		public Definition() {
+		}
+
+	}
+
+	/**
+	 * Prehod razresevalnika semanticne analize.
+	 */
+	@Name("pins24.ResolverPass")
+	@Label("Resolver Pass")
+	@Category({ "PINS'24", "SemAn" })
+	@Description("One pass of a semantic analysis resolver over the whole program.")
+	public static class ResolverPass extends LocatedEvent {
+
+		/** Ime razresevalnika. */
+		@Label("Resolver")
+		public String resolver;
+
+		/** Stevilo vozlisc z atributi razresevalnika. */
+		@Label("Attributes")
+		public int attributes;
+
+		@SuppressWarnings({ "doclint:missing" })
+		public ResolverPass() {
+		}
+
+	}
+
+	/**
+	 * Izracun klicnega zapisa funkcije.
+	 */
+	@Name("pins24.Frame")
+	@Label("Frame Computed")
+	@Category({ "PINS'24", "Memory" })
+	@Description("Layout of the stack frame of one function.")
+	public static class Frame extends LocatedEvent {
+
+		/** Ime funkcije. */
+		@Label("Function")
+		public String function;
+
+		/** Staticna globina funkcije. */
+		@Label("Depth")
+		public int depth;
+
+		/** Velikost parametrov. */
+		@Label("Parameters Size")
+		@DataAmount
+		public long parsSize;
+
+		/** Velikost lokalnih spremenljivk. */
+		@Label("Variables Size")
+		@DataAmount
+		public long varsSize;
+
+		@SuppressWarnings({ "doclint:missing" })
+		public Frame() {
+		}
+
+	}
+
+}
@@ -30,7 +30,7 @@ public class Mem {
         /** Staticna globina funkcije. */
         public final Integer depth;
 
-        /** Skupna velikost parametrov (skupaj s staticno povezavo). */
+        /** Skupna velikost parametrov (skupaj s staticno povezavo, ce ta obstaja). */
         public final Integer parsSize;
 
         /**
@@ -45,8 +45,21 @@ public class Mem {
         /** Dostopi do lokalnih spremenljivk. */
         public final List<RelAccess> debugVars;
 
+        /** Ali klicni zapis vsebuje staticno povezavo. */
+        public final Boolean staticLink;
+
         /**
-         * Ustvari nov klicni zapis.
+         * Odmik mesta, kamor funkcija ob vstopu shrani prejsnjo vrednost svojega
+         * elementa prikazovalnika (ali {@code null}, ce do spremenljivk te funkcije ne
+         * dostopa nobena gnezdena funkcija).
+         */
+        public final Integer displayOffset;
+
+        /** Stevilo registrov za lokalne spremenljivke, ki ne pobegnejo. */
+        public final Integer numRegs;
+
+        /**
+         * Ustvari nov klicni zapis (s staticno povezavo in brez prikazovalnika).
          *
          * @param name      Ime oznake, torej polno ime funkcije.
          * @param depth     Staticna globina funkcije.
@@ -58,12 +71,38 @@ public class Mem {
          */
         public Frame(final String name, final Integer depth, final Integer parsSize, final Integer varsSize,
                      List<RelAccess> debugPars, final List<RelAccess> debugVars) {
+            this(name, depth, parsSize, varsSize, debugPars, debugVars, true, null, 0);
+        }
+
+        /**
+         * Ustvari nov klicni zapis.
+         *
+         * @param name          Ime oznake, torej polno ime funkcije.
+         * @param depth         Staticna globina funkcije.
+         * @param parsSize      Skupna velikost parametrov (skupaj s staticno
+         *                      povezavo, ce ta obstaja).
+         * @param varsSize      Skupna velikost lokalnih spremenljivk (skupaj s
+         *                      shranjenim klicnim kazalcem in povratnim naslovom.
+         * @param debugPars     Dostopi do parametrov.
+         * @param debugVars     Dostopi do lokalnih spremenljivk.
+         * @param staticLink    Ali klicni zapis vsebuje staticno povezavo.
+         * @param displayOffset Odmik shranjene vrednosti elementa prikazovalnika (ali
+         *                      {@code null}).
+         * @param numRegs       Stevilo registrov za lokalne spremenljivke, ki ne
+         *                      pobegnejo.
+         */
+        public Frame(final String name, final Integer depth, final Integer parsSize, final Integer varsSize,
+                     List<RelAccess> debugPars, final List<RelAccess> debugVars, final Boolean staticLink,
+                     final Integer displayOffset, final Integer numRegs) {
             this.name = name;
             this.depth = depth;
             this.parsSize = parsSize;
             this.varsSize = varsSize;
             this.debugPars = Collections.unmodifiableList(debugPars);
             this.debugVars = Collections.unmodifiableList(debugVars);
+            this.staticLink = staticLink;
+            this.displayOffset = displayOffset;
+            this.numRegs = numRegs;
         }
 
     }
@@ -150,4 +189,37 @@ public class Mem {
 
     }
 
+    /**
+     * Dostop do lokalne spremenljivke, ki ne pobegne iz funkcije in zato nima
+     * mesta v klicnem zapisu, temvec je shranjena v registru.
+     */
+    public static class RegAccess extends Access {
+
+        /** Indeks registra znotraj funkcije. */
+        public final Integer index;
+
+        /** Staticna globina spremenljivke. */
+        public final Integer depth;
+
+        /** Ime spremenljivke. */
+        public final String debugName;
+
+        /**
+         * Ustvari nov dostop do spremenljivke v registru.
+         *
+         * @param index     Indeks registra znotraj funkcije.
+         * @param depth     Staticna globina spremenljivke.
+         * @param inits     Zacetna vrednost spremenljivke.
+         * @param debugName Ime spremenljivke.
+         */
+        public RegAccess(final Integer index, final Integer depth, final Vector<Integer> inits,
+                         final String debugName) {
+            super(4, inits);
+            this.index = index;
+            this.depth = depth;
+            this.debugName = debugName;
+        }
+
+    }
+
 }
@@ -0,0 +1,228 @@
+package pins24.common;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Meritve prevajanja.
+ *
+ * Faze prevajalnika zapisujejo meritve (cas, stevilo dodeljenih bajtov in
+ * razlicna stevila) v zbiralnik meritev trenutne niti. Ce zbiralnik ni
+ * nastavljen, se meritve ne izvajajo.
+ */
+public class Metrics {
+
+	/** Zbiralnik meritev trenutne niti. */
+	private static final ThreadLocal<Metrics> threadMetrics = new ThreadLocal<Metrics>();
+
+	/** Podatki o nitih za merjenje dodeljenih bajtov (ce je to mogoce). */
+	private static final com.sun.management.ThreadMXBean threadBean = ManagementFactory
+			.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()
+					? bean
+					: null;
+
+	/**
+	 * Meritve enega dela prevajanja.
+	 */
+	public static class Record {
+
+		/** Ime dela prevajanja. */
+		public final String name;
+
+		/** Cas izvajanja v nanosekundah. */
+		private long wallNanos = 0;
+
+		/** Stevilo dodeljenih bajtov (ali -1, ce ni znano). */
+		private long allocatedBytes = -1;
+
+		/** Stevila (stevilo simbolov, vozlisc, velikosti atributov ...). */
+		private final LinkedHashMap<String, Long> counts = new LinkedHashMap<String, Long>();
+
+		/**
+		 * Ustvari nove meritve enega dela prevajanja.
+		 *
+		 * @param name Ime dela prevajanja.
+		 */
+		private Record(final String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Pristeje cas izvajanja.
+		 *
+		 * @param nanos Cas v nanosekundah.
+		 */
+		public void addTime(final long nanos) {
+			wallNanos += nanos;
+		}
+
+		/**
+		 * Pristeje stevilo dodeljenih bajtov.
+		 *
+		 * @param bytes Stevilo dodeljenih bajtov (ali -1, ce ni znano).
+		 */
+		public void addAllocatedBytes(final long bytes) {
+			if (bytes >= 0)
+				allocatedBytes = (allocatedBytes < 0 ? 0 : allocatedBytes) + bytes;
+		}
+
+		/**
+		 * Pristeje stevilo.
+		 *
+		 * @param key   Ime stevila.
+		 * @param value Vrednost, ki se pristeje.
+		 */
+		public void count(final String key, final long value) {
+			counts.merge(key, value, Long::sum);
+		}
+
+	}
+
+	/** Ime izvorne datoteke. */
+	public final String srcFileName;
+
+	/** Meritve posameznih delov prevajanja (v vrstnem redu zacetka). */
+	private final LinkedHashMap<String, Record> records = new LinkedHashMap<String, Record>();
+
+	/**
+	 * Ustvari nov zbiralnik meritev.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 */
+	public Metrics(final String srcFileName) {
+		this.srcFileName = srcFileName;
+	}
+
+	/**
+	 * Vrne zbiralnik meritev trenutne niti.
+	 *
+	 * @return Zbiralnik meritev (ali {@code null}, ce ni nastavljen).
+	 */
+	public static Metrics current() {
+		return threadMetrics.get();
+	}
+
+	/**
+	 * Nastavi zbiralnik meritev trenutne niti.
+	 *
+	 * @param metrics Zbiralnik meritev (ali {@code null}).
+	 */
+	public static void setCurrent(final Metrics metrics) {
+		if (metrics == null)
+			threadMetrics.remove();
+		else
+			threadMetrics.set(metrics);
+	}
+
+	/**
+	 * Vrne meritve dela prevajanja (in jih ustvari, ce se ne obstajajo).
+	 *
+	 * @param name Ime dela prevajanja.
+	 * @return Meritve dela prevajanja.
+	 */
+	public Record record(final String name) {
+		return records.computeIfAbsent(name, Record::new);
+	}
+
+	/**
+	 * Izvede del prevajanja in izmeri cas izvajanja ter stevilo dodeljenih bajtov,
+	 * ce je zbiralnik meritev trenutne niti nastavljen.
+	 *
+	 * @param <Result> Tip rezultata.
+	 * @param name     Ime dela prevajanja.
+	 * @param work     Del prevajanja.
+	 * @return Rezultat dela prevajanja.
+	 */
+	public static <Result> Result measure(final String name, final Supplier<Result> work) {
+		final Metrics metrics = threadMetrics.get();
+		if (metrics == null)
+			return work.get();
+		final Record record = metrics.record(name);
+		final long begBytes = allocatedBytes();
+		final long begNanos = System.nanoTime();
+		try {
+			return work.get();
+		} finally {
+			record.addTime(System.nanoTime() - begNanos);
+			final long endBytes = allocatedBytes();
+			record.addAllocatedBytes(begBytes < 0 || endBytes < 0 ? -1 : endBytes - begBytes);
+		}
+	}
+
+	/**
+	 * Pristeje stevilo k meritvam dela prevajanja, ce je zbiralnik meritev
+	 * trenutne niti nastavljen.
+	 *
+	 * @param name  Ime dela prevajanja.
+	 * @param key   Ime stevila.
+	 * @param value Vrednost, ki se pristeje.
+	 */
+	public static void count(final String name, final String key, final long value) {
+		final Metrics metrics = threadMetrics.get();
+		if (metrics != null)
+			metrics.record(name).count(key, value);
+	}
+
+	/**
+	 * Vrne stevilo bajtov, ki jih je dodelila trenutna nit.
+	 *
+	 * @return Stevilo dodeljenih bajtov (ali -1, ce ni znano, npr. za navidezne
+	 *         niti).
+	 */
+	private static long allocatedBytes() {
+		return threadBean == null || Thread.currentThread().isVirtual() ? -1
+				: threadBean.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Vrne meritve v obliki JSON.
+	 *
+	 * @return Meritve v obliki JSON.
+	 */
+	public String toJson() {
+		final StringBuilder json = new StringBuilder();
+		json.append("{\"file\":").append(quote(srcFileName)).append(",\"phases\":[");
+		boolean first = true;
+		for (final Record record : records.values()) {
+			json.append(first ? "" : ",");
+			first = false;
+			json.append("{\"name\":").append(quote(record.name));
+			json.append(",\"wallNanos\":").append(record.wallNanos);
+			json.append(",\"allocatedBytes\":").append(record.allocatedBytes < 0 ? "null" : record.allocatedBytes);
+			for (final Map.Entry<String, Long> count : record.counts.entrySet())
+				json.append(",").append(quote(count.getKey())).append(":").append(count.getValue());
+			json.append("}");
+		}
+		json.append("]}");
+		return json.toString();
+	}
+
+	/**
+	 * Zapise niz kot niz v obliki JSON.
+	 *
+	 * @param string Niz.
+	 * @return Niz v obliki JSON.
+	 */
+	public static String quote(final String string) {
+		final StringBuilder quoted = new StringBuilder("\"");
+		for (final char c : string.toCharArray()) {
+			switch (c) {
+			case '"':
+				quoted.append("\\\"");
+				break;
+			case '\\':
+				quoted.append("\\\\");
+				break;
+			default:
+				if (c < 0x20)
+					quoted.append(String.format("\\u%04x", (int) c));
+				else
+					quoted.append(c);
+				break;
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+}
@@ -1,5 +1,8 @@
 package pins24.common;
 
+import java.io.*;
+import java.util.*;
+
 /**
  * Izpis obvestil, opozoril in napak.
  */
@@ -67,13 +70,40 @@ public class Report {
 
 	}
 
+	/** Izhodni tok za obvestila, opozorila in izpise faz trenutne niti. */
+	private static final ThreadLocal<PrintStream> threadOut = new ThreadLocal<PrintStream>();
+
+	/**
+	 * Vrne izhodni tok, v katerega trenutna nit izpisuje obvestila, opozorila in
+	 * izpise faz (privzeto {@code System.out}).
+	 *
+	 * @return Izhodni tok.
+	 */
+	public static PrintStream out() {
+		final PrintStream out = threadOut.get();
+		return out == null ? System.out : out;
+	}
+
+	/**
+	 * Nastavi izhodni tok, v katerega trenutna nit izpisuje obvestila, opozorila in
+	 * izpise faz.
+	 *
+	 * @param out Izhodni tok (ali {@code null} za {@code System.out}).
+	 */
+	public static void setOut(final PrintStream out) {
+		if (out == null)
+			threadOut.remove();
+		else
+			threadOut.set(out);
+	}
+
 	/**
 	 * Izpis splosnega obvestila.
 	 *
 	 * @param message Obvestilo.
 	 */
 	public static void info(final String message) {
-		System.out.println(":-) " + message);
+		out().println(":-) " + message);
 	}
 
 	/**
@@ -83,7 +113,7 @@ public class Report {
 	 * @param message  Obvestilo.
 	 */
 	public static void info(final Locatable location, final String message) {
-		System.out.println(":-) " + location + " " + message);
+		out().println(":-) " + location + " " + message);
 	}
 
 	/**
@@ -92,7 +122,7 @@ public class Report {
 	 * @param message Opozorilo.
 	 */
 	public static void warning(final String message) {
-		System.out.println(":-o " + message);
+		out().println(":-o " + message);
 	}
 
 	/**
@@ -102,25 +132,30 @@ public class Report {
 	 * @param message  Opozorilo.
 	 */
 	public static void warning(final Locatable location, final String message) {
-		System.out.println(":-o " + location + " " + message);
+		out().println(":-o " + location + " " + message);
 	}
 
 	/**
 	 * Napaka.
 	 *
 	 * Objekt tega razreda se vrze v primeru, ko je program odkril napako v izvorni
-	 * datoteki, zaradi katere ni vec mozno nadaljevati z izvajanjem.
+	 * datoteki, zaradi katere ni vec mozno nadaljevati z izvajanjem. Ker napaka
+	 * opisuje izvorni program in ne prevajalnika, je brez sklada klicev, zato je
+	 * njeno ustvarjanje poceni (glej tudi {@link Diagnostics}).
 	 */
 	@SuppressWarnings("serial")
 	public static class Error extends java.lang.Error {
 
+		/** Lokacija napake v izvorni datoteki (ali {@code null}). */
+		public final Location location;
+
 		/**
 		 * Ustvari novo napako.
 		 *
 		 * @param message Opis napake.
 		 */
 		public Error(final String message) {
-			super(":-( " + message);
+			this(message, false);
 		}
 
 		/**
@@ -130,7 +165,29 @@ public class Report {
 		 * @param message  Opis napake.
 		 */
 		public Error(final Locatable location, final String message) {
-			super(":-( " + "[" + location.location() + "] " + message);
+			this(location.location(), "[" + location.location() + "] " + message, false);
+		}
+
+		/**
+		 * Ustvari novo napako.
+		 *
+		 * @param message    Opis napake.
+		 * @param stackTrace Ali naj napaka hrani sklad klicev.
+		 */
+		protected Error(final String message, final boolean stackTrace) {
+			this(null, message, stackTrace);
+		}
+
+		/**
+		 * Ustvari novo napako.
+		 *
+		 * @param location   Lokacija napake v izvorni datoteki (ali {@code null}).
+		 * @param message    Opis napake.
+		 * @param stackTrace Ali naj napaka hrani sklad klicev.
+		 */
+		private Error(final Location location, final String message, final boolean stackTrace) {
+			super(":-( " + message, null, false, stackTrace);
+			this.location = location;
 		}
 
 	}
@@ -147,10 +204,95 @@ public class Report {
 		 * Ustvari novo notranjo napako.
 		 */
 		public InternalError() {
-			super("Internal error.");
+			super("Internal error.", true);
 			this.printStackTrace();
 		}
 
 	}
 
+	/**
+	 * Zbiralnik napak.
+	 *
+	 * Ce je zbiralnik napak trenutne niti nastavljen, faze napak v izvornem
+	 * programu ne mecejo, ampak jih s {@link Report#error} zabelezijo v zbiralnik
+	 * in z analizo nadaljujejo, tako da en zagon prevajalnika odkrije vse napake.
+	 * Enake napake (z enakim opisom) se zabelezijo le enkrat.
+	 */
+	public static class Diagnostics {
+
+		/** Zabelezene napake (v vrstnem redu odkritja). */
+		private final LinkedHashMap<String, Error> errors = new LinkedHashMap<String, Error>();
+
+		/**
+		 * Ustvari nov prazen zbiralnik napak.
+		 */
+		public Diagnostics() {
+		}
+
+		/**
+		 * Zabelezi napako.
+		 *
+		 * @param error Napaka.
+		 * @return Ali napaka se ni bila zabelezena.
+		 */
+		public boolean add(final Error error) {
+			return errors.putIfAbsent(error.getMessage(), error) == null;
+		}
+
+		/**
+		 * Vrne vse zabelezene napake.
+		 *
+		 * @return Zabelezene napake (v vrstnem redu odkritja).
+		 */
+		public List<Error> errors() {
+			return List.copyOf(errors.values());
+		}
+
+		/**
+		 * Vrze prvo zabelezeno napako, ce kaksna obstaja.
+		 */
+		public void check() {
+			if (!errors.isEmpty())
+				throw errors.values().iterator().next();
+		}
+
+	}
+
+	/** Zbiralnik napak trenutne niti. */
+	private static final ThreadLocal<Diagnostics> threadDiagnostics = new ThreadLocal<Diagnostics>();
+
+	/**
+	 * Vrne zbiralnik napak trenutne niti.
+	 *
+	 * @return Zbiralnik napak (ali {@code null}, ce ni nastavljen).
+	 */
+	public static Diagnostics diagnostics() {
+		return threadDiagnostics.get();
+	}
+
+	/**
+	 * Nastavi zbiralnik napak trenutne niti.
+	 *
+	 * @param diagnostics Zbiralnik napak (ali {@code null}).
+	 */
+	public static void setDiagnostics(final Diagnostics diagnostics) {
+		if (diagnostics == null)
+			threadDiagnostics.remove();
+		else
+			threadDiagnostics.set(diagnostics);
+	}
+
+	/**
+	 * Sporoci napako v izvornem programu: ce je zbiralnik napak trenutne niti
+	 * nastavljen, napako zabelezi in vrne, sicer napako vrze.
+	 *
+	 * @param error Napaka.
+	 */
+	public static void error(final Error error) {
+		final Diagnostics diagnostics = threadDiagnostics.get();
+		if (diagnostics == null)
+			throw error;
+		diagnostics.add(error);
+	}
+
 }
@@ -3,11 +3,29 @@ package pins24.common;
 /**
  * Leksikalni simbol.
  * 
+ * Vrednosti konstant izracuna ze leksikalni analizator, zato jih kasnejse faze
+ * ne razclenjujejo ponovno.
+ * 
  * @param location Lokacija simbola v izvornem programu.
  * @param symbol   Vrsta simbola.
  * @param lexeme   Znakovna predstavitev simbola.
+ * @param intValue Vrednost stevila ali koda znaka (ali {@code null}, ce simbol
+ *                 ni stevilo ali znak oziroma ce stevilo ni predstavljivo).
+ * @param strValue Kode znakov niza (ali {@code null}, ce simbol ni niz).
  */
-public record Token(Report.Location location, Symbol symbol, String lexeme) implements Report.Locatable {
+public record Token(Report.Location location, Symbol symbol, String lexeme, Integer intValue, int[] strValue)
+		implements Report.Locatable {
+
+	/**
+	 * Ustvari nov leksikalni simbol, ki ni konstanta.
+	 * 
+	 * @param location Lokacija simbola v izvornem programu.
+	 * @param symbol   Vrsta simbola.
+	 * @param lexeme   Znakovna predstavitev simbola.
+	 */
+	public Token(Report.Location location, Symbol symbol, String lexeme) {
+		this(location, symbol, lexeme, null, null);
+	}
 
 	/**
 	 * Vrste leksikalnih simbolov.
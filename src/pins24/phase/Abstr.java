@@ -20,12 +20,18 @@ public class Abstr {
 	 * <ol>
 	 * <li>({@link Abstr}) lokacija kode, ki pripada posameznemu vozliscu.</li>
 	 * </ol>
+	 * 
+	 * Iz lokacij vozlisc je zgrajen indeks, ki za dano mesto v izvorni datoteki
+	 * vrne najbolj notranje vozlisce na tem mestu.
 	 */
 	public static class AttrAST extends AST.AttrAST {
 
 		/** Atribut: lokacija kode, ki priprada posameznemu vozliscu. */
 		public final Map<AST.Node, Report.Locatable> attrLoc;
 
+		/** Indeks vozlisc po lokacijah. */
+		public final SpanIndex spans;
+
 		/**
 		 * Ustvari novo abstraktno sintaksno drevo z dodanimi atributi abstraktne
 		 * sintakse.
@@ -34,8 +40,22 @@ public class Abstr {
 		 * @param attrLoc Atribut: lokacija kode, ki priprada posameznemu vozliscu.
 		 */
 		public AttrAST(final AST.AttrAST attrAST, final Map<AST.Node, Report.Locatable> attrLoc) {
+			this(attrAST, attrLoc, Metrics.measure("Abstr.spans", () -> new SpanIndex(attrAST.ast, attrLoc)));
+		}
+
+		/**
+		 * Ustvari novo abstraktno sintaksno drevo z dodanimi atributi abstraktne
+		 * sintakse in z ze zgrajenim indeksom vozlisc po lokacijah.
+		 * 
+		 * @param attrAST Abstraktno sintaksno drevo.
+		 * @param attrLoc Atribut: lokacija kode, ki priprada posameznemu vozliscu.
+		 * @param spans   Indeks vozlisc po lokacijah.
+		 */
+		public AttrAST(final AST.AttrAST attrAST, final Map<AST.Node, Report.Locatable> attrLoc,
+				final SpanIndex spans) {
 			super(attrAST.ast);
 			this.attrLoc = attrLoc;
+			this.spans = spans;
 		}
 
 		/**
@@ -48,17 +68,392 @@ public class Abstr {
 		public AttrAST(final AttrAST attrAST) {
 			super(attrAST.ast);
 			this.attrLoc = attrAST.attrLoc;
+			this.spans = attrAST.spans;
 		}
 
 		@Override
-		public String head(final AST.Node node, final boolean highlighted) {
+		public void head(final AST.Node node, final boolean highlighted, final StringBuilder head) {
 			switch (node) {
 			case AST.Nodes<?> nodes:
-				return "";
+				return;
 			default:
 				final Report.Locatable loc = attrLoc.get(node);
-				return (" ") + (loc == null ? "???" : loc.location().toString());
+				head.append(' ').append(loc == null ? "???" : loc.location().toString());
+			}
+		}
+
+	}
+
+	/**
+	 * Indeks vozlisc po lokacijah.
+	 * 
+	 * Lokacije vozlisc so gnezdene (lokacija vozlisca je znotraj lokacije
+	 * starsa), zato je izvorna datoteka razdeljena na odseke, na katerih je
+	 * najbolj notranje vozlisce vedno isto. Najbolj notranje vozlisce na danem
+	 * mestu se poisce z dvojiskim iskanjem med zacetki odsekov v casu O(log n),
+	 * najbolj notranje vozlisce, ki vsebuje dani del izvorne datoteke, pa od tam
+	 * navzgor po starsih. Vozlisca, ki jih ustvari sintaksni analizator sam in
+	 * nimajo prave lokacije, v indeksu niso zajeta.
+	 * 
+	 * Indeks je lahko sestavljen iz indeksov posameznih definicij na najvisjem
+	 * nivoju, ki so lahko premaknjeni za nekaj vrstic (glej
+	 * {@code pins24.tools.Incremental}), tako da se pri spremembi ene definicije ne
+	 * gradi znova.
+	 */
+	public static class SpanIndex {
+
+		/** Deli sestavljenega indeksa (ali {@code null}, ce indeks ni sestavljen). */
+		private final SpanIndex[] parts;
+
+		/** Premiki delov sestavljenega indeksa (v vrsticah). */
+		private final int[] partShifts;
+
+		/** Zacetki premaknjenih delov sestavljenega indeksa. */
+		private final long[] partBegs;
+
+		/** Zacetek prvega vozlisca v indeksu (ali {@link Long#MAX_VALUE}). */
+		private final long extentBeg;
+
+		/** Konec zadnjega vozlisca v indeksu (ali {@link Long#MIN_VALUE}). */
+		private final long extentEnd;
+
+		/** Vozlisca (urejena po zacetkih in nato po koncih lokacij od zadaj). */
+		private final AST.Node[] nodes;
+
+		/** Zacetki lokacij vozlisc. */
+		private final long[] begs;
+
+		/** Konci lokacij vozlisc. */
+		private final long[] ends;
+
+		/** Indeksi starsev vozlisc (ali -1). */
+		private final int[] parents;
+
+		/** Zacetki odsekov. */
+		private final long[] segBegs;
+
+		/** Indeksi najbolj notranjih vozlisc na odsekih (ali -1). */
+		private final int[] segNodes;
+
+		/** Stevilo odsekov. */
+		private final int numSegs;
+
+		/**
+		 * Zgradi indeks vozlisc po lokacijah.
+		 * 
+		 * @param ast     Abstraktno sintaksno drevo.
+		 * @param attrLoc Atribut: lokacija kode, ki priprada posameznemu vozliscu.
+		 */
+		public SpanIndex(final AST.Node ast, final Map<AST.Node, Report.Locatable> attrLoc) {
+			parts = null;
+			partShifts = null;
+			partBegs = null;
+			// Vozlisca v premem vrstnem redu (ob enakih lokacijah je notranje kasneje).
+			final List<AST.Node> preorder = new ArrayList<AST.Node>();
+			ast.accept(new Preorder(), preorder);
+			final List<AST.Node> located = new ArrayList<AST.Node>(preorder.size());
+			for (final AST.Node node : preorder) {
+				final Report.Locatable loc = attrLoc.get(node);
+				if (loc != null && loc.location().begLine() > 0)
+					located.add(node);
+			}
+			final int size = located.size();
+			final Integer[] order = new Integer[size];
+			final long[] nodeBegs = new long[size];
+			final long[] nodeEnds = new long[size];
+			for (int index = 0; index < size; index++) {
+				final Report.Location location = attrLoc.get(located.get(index)).location();
+				order[index] = index;
+				nodeBegs[index] = position(location.begLine(), location.begColumn());
+				nodeEnds[index] = position(location.endLine(), location.endColumn());
+			}
+			Arrays.sort(order, (index1, index2) -> nodeBegs[index1] != nodeBegs[index2]
+					? Long.compare(nodeBegs[index1], nodeBegs[index2])
+					: nodeEnds[index1] != nodeEnds[index2] ? Long.compare(nodeEnds[index2], nodeEnds[index1])
+							: Integer.compare(index1, index2));
+
+			nodes = new AST.Node[size];
+			begs = new long[size];
+			ends = new long[size];
+			parents = new int[size];
+			segBegs = new long[2 * size + 1];
+			segNodes = new int[2 * size + 1];
+			final int[] stack = new int[size];
+			int top = 0;
+			int segs = 0;
+			for (int index = 0; index < size; index++) {
+				nodes[index] = located.get(order[index]);
+				begs[index] = nodeBegs[order[index]];
+				ends[index] = nodeEnds[order[index]];
+				while (top > 0 && ends[stack[top - 1]] < begs[index]) {
+					top--;
+					segs = segment(segs, ends[stack[top]] + 1, top > 0 ? stack[top - 1] : -1);
+				}
+				parents[index] = top > 0 ? stack[top - 1] : -1;
+				// Lokacija, ki sega cez lokacijo starsa, se odreze.
+				if (parents[index] >= 0 && ends[index] > ends[parents[index]])
+					ends[index] = ends[parents[index]];
+				stack[top++] = index;
+				segs = segment(segs, begs[index], index);
+			}
+			while (top > 0) {
+				top--;
+				segs = segment(segs, ends[stack[top]] + 1, top > 0 ? stack[top - 1] : -1);
+			}
+			numSegs = segs;
+			extentBeg = size == 0 ? Long.MAX_VALUE : segBegs[0];
+			extentEnd = size == 0 ? Long.MIN_VALUE : segBegs[segs - 1] - 1;
+		}
+
+		/**
+		 * Sestavi indeks iz indeksov posameznih delov izvorne datoteke.
+		 * 
+		 * @param parts  Indeksi delov (urejeni po lokacijah, lokacije delov se ne
+		 *               prekrivajo).
+		 * @param shifts Premiki delov (v vrsticah).
+		 */
+		public SpanIndex(final List<SpanIndex> parts, final List<Integer> shifts) {
+			final List<SpanIndex> nonEmpty = new ArrayList<SpanIndex>(parts.size());
+			final List<Integer> nonEmptyShifts = new ArrayList<Integer>(parts.size());
+			for (int index = 0; index < parts.size(); index++)
+				if (parts.get(index).extentBeg <= parts.get(index).extentEnd) {
+					nonEmpty.add(parts.get(index));
+					nonEmptyShifts.add(shifts.get(index));
+				}
+			this.parts = nonEmpty.toArray(new SpanIndex[0]);
+			this.partShifts = new int[this.parts.length];
+			this.partBegs = new long[this.parts.length];
+			for (int index = 0; index < this.parts.length; index++) {
+				partShifts[index] = nonEmptyShifts.get(index);
+				partBegs[index] = this.parts[index].extentBeg + ((long) partShifts[index] << 32);
+			}
+			nodes = new AST.Node[0];
+			begs = new long[0];
+			ends = new long[0];
+			parents = new int[0];
+			segBegs = new long[0];
+			segNodes = new int[0];
+			numSegs = 0;
+			extentBeg = this.parts.length == 0 ? Long.MAX_VALUE : partBegs[0];
+			extentEnd = this.parts.length == 0 ? Long.MIN_VALUE
+					: this.parts[this.parts.length - 1].extentEnd + ((long) partShifts[this.parts.length - 1] << 32);
+		}
+
+		/**
+		 * Poisce del sestavljenega indeksa, ki vsebuje dano mesto.
+		 * 
+		 * @param position Zakodirano mesto.
+		 * @return Indeks dela (ali -1, ce takega dela ni).
+		 */
+		private int findPart(final long position) {
+			int lo = 0;
+			int hi = parts.length;
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (partBegs[mid] <= position)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			if (lo == 0)
+				return -1;
+			final SpanIndex part = parts[lo - 1];
+			return position <= part.extentEnd + ((long) partShifts[lo - 1] << 32) ? lo - 1 : -1;
+		}
+
+		/**
+		 * Doda odsek (oziroma popravi zadnji odsek, ce se zacne na istem mestu).
+		 * 
+		 * @param segs Stevilo odsekov.
+		 * @param beg  Zacetek odseka.
+		 * @param node Indeks najbolj notranjega vozlisca na odseku (ali -1).
+		 * @return Novo stevilo odsekov.
+		 */
+		private int segment(final int segs, final long beg, final int node) {
+			if (segs > 0 && segBegs[segs - 1] == beg) {
+				segNodes[segs - 1] = node;
+				return segs;
+			}
+			segBegs[segs] = beg;
+			segNodes[segs] = node;
+			return segs + 1;
+		}
+
+		/**
+		 * Zakodira mesto v izvorni datoteki.
+		 * 
+		 * @param line   Vrstica.
+		 * @param column Stolpec.
+		 * @return Zakodirano mesto (mesta so urejena enako kot koda).
+		 */
+		private static long position(final int line, final int column) {
+			return ((long) line << 32) | (column & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Vrne indeks najbolj notranjega vozlisca na danem mestu.
+		 * 
+		 * @param position Zakodirano mesto.
+		 * @return Indeks vozlisca (ali -1, ce na tem mestu ni nobenega vozlisca).
+		 */
+		private int find(final long position) {
+			int lo = 0;
+			int hi = numSegs;
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (segBegs[mid] <= position)
+					lo = mid + 1;
+				else
+					hi = mid;
 			}
+			return lo == 0 ? -1 : segNodes[lo - 1];
+		}
+
+		/**
+		 * Vrne najbolj notranje vozlisce na danem mestu.
+		 * 
+		 * @param line   Vrstica.
+		 * @param column Stolpec.
+		 * @return Vozlisce (ali {@code null}, ce na tem mestu ni nobenega vozlisca).
+		 */
+		public AST.Node at(final int line, final int column) {
+			if (parts != null) {
+				final int part = findPart(position(line, column));
+				return part < 0 ? null : parts[part].at(line - partShifts[part], column);
+			}
+			final int index = find(position(line, column));
+			return index < 0 ? null : nodes[index];
+		}
+
+		/**
+		 * Vrne najbolj notranje vozlisce, ki vsebuje dani del izvorne datoteke.
+		 * 
+		 * @param location Del izvorne datoteke.
+		 * @return Vozlisce (ali {@code null}, ce takega vozlisca ni).
+		 */
+		public AST.Node at(final Report.Locatable location) {
+			final long beg = position(location.location().begLine(), location.location().begColumn());
+			final long end = position(location.location().endLine(), location.location().endColumn());
+			if (parts != null) {
+				final int part = findPart(beg);
+				if (part < 0 || findPart(end) != part)
+					return null;
+				final Report.Location loc = location.location();
+				return parts[part].at(new Report.Location(loc.begLine() - partShifts[part], loc.begColumn(),
+						loc.endLine() - partShifts[part], loc.endColumn()));
+			}
+			int index = find(beg);
+			while (index >= 0 && ends[index] < end)
+				index = parents[index];
+			return index < 0 ? null : nodes[index];
+		}
+
+		/**
+		 * Vrne stevilo vozlisc v indeksu.
+		 * 
+		 * @return Stevilo vozlisc.
+		 */
+		public int size() {
+			int size = nodes.length;
+			if (parts != null)
+				for (final SpanIndex part : parts)
+					size += part.size();
+			return size;
+		}
+
+	}
+
+	/**
+	 * Zbiranje vozlisc v premem vrstnem redu.
+	 */
+	private static class Preorder implements AST.FullVisitor<Object, List<AST.Node>> {
+
+		@SuppressWarnings({ "doclint:missing" })
+		public Preorder() {
+		}
+
+		@Override
+		public Object visit(final AST.FunDef funDef, final List<AST.Node> nodes) {
+			nodes.add(funDef);
+			return AST.FullVisitor.super.visit(funDef, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.ParDef parDef, final List<AST.Node> nodes) {
+			nodes.add(parDef);
+			return AST.FullVisitor.super.visit(parDef, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.VarDef varDef, final List<AST.Node> nodes) {
+			nodes.add(varDef);
+			return AST.FullVisitor.super.visit(varDef, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.Init init, final List<AST.Node> nodes) {
+			nodes.add(init);
+			return AST.FullVisitor.super.visit(init, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.ExprStmt exprStmt, final List<AST.Node> nodes) {
+			nodes.add(exprStmt);
+			return AST.FullVisitor.super.visit(exprStmt, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.AssignStmt assignStmt, final List<AST.Node> nodes) {
+			nodes.add(assignStmt);
+			return AST.FullVisitor.super.visit(assignStmt, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.IfStmt ifStmt, final List<AST.Node> nodes) {
+			nodes.add(ifStmt);
+			return AST.FullVisitor.super.visit(ifStmt, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.WhileStmt whileStmt, final List<AST.Node> nodes) {
+			nodes.add(whileStmt);
+			return AST.FullVisitor.super.visit(whileStmt, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.LetStmt letStmt, final List<AST.Node> nodes) {
+			nodes.add(letStmt);
+			return AST.FullVisitor.super.visit(letStmt, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.AtomExpr atomExpr, final List<AST.Node> nodes) {
+			nodes.add(atomExpr);
+			return AST.FullVisitor.super.visit(atomExpr, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.UnExpr unExpr, final List<AST.Node> nodes) {
+			nodes.add(unExpr);
+			return AST.FullVisitor.super.visit(unExpr, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.BinExpr binExpr, final List<AST.Node> nodes) {
+			nodes.add(binExpr);
+			return AST.FullVisitor.super.visit(binExpr, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.VarExpr varExpr, final List<AST.Node> nodes) {
+			nodes.add(varExpr);
+			return AST.FullVisitor.super.visit(varExpr, nodes);
+		}
+
+		@Override
+		public Object visit(final AST.CallExpr callExpr, final List<AST.Node> nodes) {
+			nodes.add(callExpr);
+			return AST.FullVisitor.super.visit(callExpr, nodes);
 		}
 
 	}
@@ -71,7 +466,9 @@ public class Abstr {
 	 */
 	public static AttrAST constructAST(SynAn synAn) {
 		final HashMap<AST.Node, Report.Locatable> attrLoc = new HashMap<AST.Node, Report.Locatable>();
-		final AST.Node ast = synAn.parse(attrLoc);
+		final AST.Node ast = Metrics.measure("SynAn.parse", () -> synAn.parse(attrLoc));
+		// Lokacijo ima vsako vozlisce razen zaporedij vozlisc.
+		Metrics.count("SynAn.parse", "nodes", attrLoc.size());
 		return new AttrAST(new AST.AttrAST(ast), Collections.unmodifiableMap(attrLoc));
 	}
 
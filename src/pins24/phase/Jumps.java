@@ -0,0 +1,335 @@
+package pins24.phase;
+
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Prevajanje pogojev v verige pogojnih skokov.
+ *
+ * Pogoj stavka {@code if} ali {@code while} se ne izracuna v vrednost 0 ali 1,
+ * ki bi jo bilo treba nato preveriti, temvec v zaporedje skokov: operatorji
+ * {@code and}, {@code or} in {@code !} dolocajo le cilje skokov, pogojni skok
+ * pa preverja posamezno primerjavo ali drug atomarni pogoj. Izracun pogoja se
+ * zato konca pri prvem operandu, ki doloca njegovo vrednost.
+ */
+public class Jumps {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public Jumps() {
+		throw new Report.InternalError();
+	}
+
+	/** Cilj skoka, ko je pogoj izpolnjen. */
+	public static final int TRUE = -1;
+
+	/** Cilj skoka, ko pogoj ni izpolnjen. */
+	public static final int FALSE = -2;
+
+	/**
+	 * Pogojni skok v verigi pogojnih skokov.
+	 */
+	public static class Branch {
+
+		/**
+		 * Izraz, ki se preveri (primerjava ali drug izraz brez logicnih operatorjev),
+		 * ali {@code null}, ce je skok brezpogojen.
+		 */
+		public final AST.Expr test;
+
+		/**
+		 * Cilj skoka, ce je vrednost izraza razlicna od 0: indeks naslednjega skoka v
+		 * verigi, {@link Jumps#TRUE} ali {@link Jumps#FALSE}.
+		 */
+		public final int onTrue;
+
+		/**
+		 * Cilj skoka, ce je vrednost izraza enaka 0: indeks naslednjega skoka v verigi,
+		 * {@link Jumps#TRUE} ali {@link Jumps#FALSE}.
+		 */
+		public final int onFalse;
+
+		/**
+		 * Ustvari nov pogojni skok.
+		 *
+		 * @param test    Izraz, ki se preveri (ali {@code null}).
+		 * @param onTrue  Cilj skoka, ce je vrednost izraza razlicna od 0.
+		 * @param onFalse Cilj skoka, ce je vrednost izraza enaka 0.
+		 */
+		public Branch(final AST.Expr test, final int onTrue, final int onFalse) {
+			this.test = test;
+			this.onTrue = onTrue;
+			this.onFalse = onFalse;
+		}
+
+	}
+
+	/**
+	 * Abstraktno sintaksno drevo z dodanimi atributi prevajanja pogojev.
+	 *
+	 * Atributi:
+	 * <ol>
+	 * <li>({@link Abstr}) lokacija kode, ki pripada posameznemu vozliscu;</li>
+	 * <li>({@link SemAn}) definicija uporabljenega imena;</li>
+	 * <li>({@link SemAn}) ali je dani izraz levi izraz;</li>
+	 * <li>({@link Memory}) klicni zapis funkcije;</li>
+	 * <li>({@link Memory}) dostop do parametra;</li>
+	 * <li>({@link Memory}) dostop do spremenljivke;</li>
+	 * <li>({@link Memory}) ali parameter ali spremenljivka pobegne;</li>
+	 * <li>({@link Jumps}) veriga pogojnih skokov pogoja.</li>
+	 * </ol>
+	 */
+	public static class AttrAST extends Memory.AttrAST {
+
+		/** Atribut: veriga pogojnih skokov pogoja stavka {@code if} ali {@code while}. */
+		public final Map<AST.Expr, List<Branch>> attrJumps;
+
+		/**
+		 * Ustvari novo abstraktno sintaksno drevo z dodanimi atributi prevajanja
+		 * pogojev.
+		 *
+		 * @param attrAST   Abstraktno sintaksno drevo z dodanimi atributi izracuna
+		 *                  pomnilniske predstavitve.
+		 * @param attrJumps Atribut: veriga pogojnih skokov pogoja.
+		 */
+		public AttrAST(final Memory.AttrAST attrAST, final Map<AST.Expr, List<Branch>> attrJumps) {
+			super(attrAST);
+			this.attrJumps = attrJumps;
+		}
+
+		/**
+		 * Ustvari novo abstraktno sintaksno drevo z dodanimi atributi prevajanja
+		 * pogojev.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi prevajanja
+		 *                pogojev.
+		 */
+		public AttrAST(final AttrAST attrAST) {
+			super(attrAST);
+			this.attrJumps = attrAST.attrJumps;
+		}
+
+		@Override
+		public void head(final AST.Node node, final boolean highlighted, final StringBuilder head) {
+			super.head(node, false, head);
+			head.append(highlighted ? "\033[31m" : "");
+			final AST.Expr cond = switch (node) {
+				case final AST.IfStmt ifStmt -> ifStmt.cond;
+				case final AST.WhileStmt whileStmt -> whileStmt.cond;
+				default -> null;
+			};
+			if (cond != null) {
+				head.append(" jumps=");
+				final List<Branch> branches = attrJumps.get(cond);
+				for (int index = 0; index < branches.size(); index++) {
+					final Branch branch = branches.get(index);
+					head.append(index > 0 ? "," : "");
+					head.append(index).append(':');
+					if (branch.test == null)
+						head.append(targetToString(branch.onTrue));
+					else {
+						head.append(attrLoc.get(branch.test).location().toString());
+						head.append('?').append(targetToString(branch.onTrue));
+						head.append(':').append(targetToString(branch.onFalse));
+					}
+				}
+			}
+			head.append(highlighted ? "\033[30m" : "");
+		}
+
+		/**
+		 * Pripravi znakovno predstavitev cilja skoka.
+		 *
+		 * @param target Cilj skoka.
+		 * @return Znakovna predstavitev cilja skoka.
+		 */
+		private static String targetToString(final int target) {
+			return switch (target) {
+				case TRUE -> "T";
+				case FALSE -> "F";
+				default -> Integer.toString(target);
+			};
+		}
+
+	}
+
+	/**
+	 * Prevede pogoje stavkov {@code if} in {@code while} v verige pogojnih skokov.
+	 *
+	 * @param memoryAttrAST Abstraktno sintaksno drevo z dodanimi atributi izracuna
+	 *                      pomnilniske predstavitve.
+	 * @return Abstraktno sintaksno drevo z dodanimi atributi prevajanja pogojev.
+	 */
+	public static AttrAST lower(final Memory.AttrAST memoryAttrAST) {
+		final HashMap<AST.Expr, List<Branch>> attrJumps = new HashMap<AST.Expr, List<Branch>>();
+		Metrics.measure("Jumps.lower", () -> memoryAttrAST.ast.accept(new AST.FullVisitor<Object, Object>() {
+
+			@Override
+			public Object visit(final AST.IfStmt ifStmt, final Object arg) {
+				attrJumps.put(ifStmt.cond, new CondLowering(ifStmt.cond).branches());
+				return AST.FullVisitor.super.visit(ifStmt, arg);
+			}
+
+			@Override
+			public Object visit(final AST.WhileStmt whileStmt, final Object arg) {
+				attrJumps.put(whileStmt.cond, new CondLowering(whileStmt.cond).branches());
+				return AST.FullVisitor.super.visit(whileStmt, arg);
+			}
+
+		}, null));
+		Metrics.count("Jumps.lower", "attrJumps", attrJumps.size());
+		return new AttrAST(memoryAttrAST, Collections.unmodifiableMap(attrJumps));
+	}
+
+	/**
+	 * Prevajalnik enega pogoja v verigo pogojnih skokov.
+	 */
+	private static class CondLowering {
+
+		/**
+		 * Cilj skoka, ki je lahko znan sele, ko je prevedeno vse, kar je v verigi pred
+		 * njim.
+		 */
+		private static class Label {
+
+			/** Indeks skoka v verigi ali {@link Jumps#TRUE} ali {@link Jumps#FALSE}. */
+			int index;
+
+			/**
+			 * Ustvari nov cilj skoka.
+			 *
+			 * @param index Indeks skoka v verigi ali {@link Jumps#TRUE} ali
+			 *              {@link Jumps#FALSE}.
+			 */
+			Label(final int index) {
+				this.index = index;
+			}
+
+		}
+
+		/** Preverjeni izrazi skokov. */
+		private final List<AST.Expr> tests = new ArrayList<AST.Expr>();
+
+		/** Cilji skokov, ce je izraz razlicen od 0. */
+		private final List<Label> onTrues = new ArrayList<Label>();
+
+		/** Cilji skokov, ce je izraz enak 0. */
+		private final List<Label> onFalses = new ArrayList<Label>();
+
+		/**
+		 * Prevede pogoj.
+		 *
+		 * @param cond Pogoj.
+		 */
+		public CondLowering(final AST.Expr cond) {
+			lower(cond, new Label(TRUE), new Label(FALSE));
+		}
+
+		/**
+		 * Vrne verigo pogojnih skokov.
+		 *
+		 * @return Veriga pogojnih skokov.
+		 */
+		public List<Branch> branches() {
+			final List<Branch> branches = new ArrayList<Branch>();
+			for (int index = 0; index < tests.size(); index++)
+				branches.add(new Branch(tests.get(index), onTrues.get(index).index, onFalses.get(index).index));
+			return Collections.unmodifiableList(branches);
+		}
+
+		/**
+		 * Prevede (del) pogoja.
+		 *
+		 * @param cond    Pogoj.
+		 * @param onTrue  Cilj skoka, ce je pogoj izpolnjen.
+		 * @param onFalse Cilj skoka, ce pogoj ni izpolnjen.
+		 */
+		private void lower(final AST.Expr cond, final Label onTrue, final Label onFalse) {
+			switch (cond) {
+				case final AST.BinExpr binExpr when binExpr.oper == AST.BinExpr.Oper.AND: {
+					final Label snd = new Label(0);
+					lower(binExpr.fstExpr, snd, onFalse);
+					snd.index = tests.size();
+					lower(binExpr.sndExpr, onTrue, onFalse);
+					break;
+				}
+				case final AST.BinExpr binExpr when binExpr.oper == AST.BinExpr.Oper.OR: {
+					final Label snd = new Label(0);
+					lower(binExpr.fstExpr, onTrue, snd);
+					snd.index = tests.size();
+					lower(binExpr.sndExpr, onTrue, onFalse);
+					break;
+				}
+				case final AST.UnExpr unExpr when unExpr.oper == AST.UnExpr.Oper.NOT:
+					lower(unExpr.expr, onFalse, onTrue);
+					break;
+				case final AST.AtomExpr atomExpr when atomExpr.type == AST.AtomExpr.Type.INTCONST: {
+					// nepredstavljiva konstanta je gotovo razlicna od 0:
+					final Label target = atomExpr.intValue != null && atomExpr.intValue == 0 ? onFalse : onTrue;
+					emit(null, target, target);
+					break;
+				}
+				default:
+					emit(cond, onTrue, onFalse);
+					break;
+			}
+		}
+
+		/**
+		 * Doda pogojni skok na konec verige.
+		 *
+		 * @param test    Izraz, ki se preveri (ali {@code null}).
+		 * @param onTrue  Cilj skoka, ce je vrednost izraza razlicna od 0.
+		 * @param onFalse Cilj skoka, ce je vrednost izraza enaka 0.
+		 */
+		private void emit(final AST.Expr test, final Label onTrue, final Label onFalse) {
+			tests.add(test);
+			onTrues.add(onTrue);
+			onFalses.add(onFalse);
+		}
+
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon prevajanja pogojev kot samostojnega programa.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (conditions):");
+
+		try {
+			if (cmdLineArgs.length == 0)
+				throw new Report.Error("No source file specified in the command line.");
+			if (cmdLineArgs.length > 1)
+				Report.warning("Unused arguments in the command line.");
+
+			try (SynAn synAn = new SynAn(cmdLineArgs[0])) {
+				// abstraktna sintaksa:
+				final Abstr.AttrAST abstrAttrAST = Abstr.constructAST(synAn);
+				// semanticna analiza:
+				final SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+				// optimizacija:
+				final SemAn.AttrAST optimAttrAST = Optim.optimize(semanAttrAST);
+				// pomnilniska predstavitev:
+				final Memory.AttrAST memoryAttrAST = Memory.organize(optimAttrAST);
+				// prevajanje pogojev:
+				final AttrAST jumpsAttrAST = Jumps.lower(memoryAttrAST);
+
+				(new AST.Logger(jumpsAttrAST)).log();
+			}
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			// A zavedajmo se sledecega:
+			// 1. Prevod je zaradi napak v programu lahko napacen :-o
+			// 2. Izvorni program se zdalec ni tisto, kar je programer hotel, da bi bil ;-)
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package pins24.phase;
 
 import java.io.*;
+import java.util.*;
 import pins24.common.*;
 
 /**
@@ -11,12 +12,27 @@ public class LexAn implements AutoCloseable {
 	/** Izvorna datoteka. */
 	private final Reader srcFile;
 
+	/** Meritve leksikalne analize (ali {@code null}, ce se ne merijo). */
+	private final Metrics.Record metrics;
+
+	/**
+	 * Ze prebrani leksikalni simboli, ki jih leksikalni analizator vraca namesto
+	 * branja izvorne datoteke (ali {@code null}, ce bere izvorno datoteko).
+	 */
+	private final List<Token> replay;
+
+	/** Indeks naslednjega ze prebranega leksikalnega simbola. */
+	private int replayIndex = 0;
+
 	/**
 	 * Ustvari nov leksikalni analizator.
 	 * 
 	 * @param srcFileName Ime izvorne datoteke.
 	 */
 	public LexAn(final String srcFileName) {
+		metrics = Metrics.current() == null ? null : Metrics.current().record("LexAn");
+		replay = null;
+		Events.setSrcFileName(srcFileName);
 		try {
 			srcFile = new BufferedReader(new InputStreamReader(new FileInputStream(new File(srcFileName))));
 			nextChar(); // Pripravi prvi znak izvorne datoteke (glej {@link nextChar}).
@@ -25,8 +41,38 @@ public class LexAn implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Ustvari nov leksikalni analizator, ki ne bere izvorne datoteke, ampak vraca
+	 * dane, ze prebrane leksikalne simbole.
+	 * 
+	 * @param tokens Leksikalni simboli; zadnji mora biti simbol za konec datoteke,
+	 *               ki se nato vraca ves cas.
+	 */
+	public LexAn(final List<Token> tokens) {
+		metrics = null;
+		replay = tokens;
+		srcFile = null;
+	}
+
+	/**
+	 * Ustvari nov leksikalni analizator, ki bere dano besedilo kot del izvorne
+	 * datoteke.
+	 * 
+	 * @param text    Besedilo (zaporedje celih vrstic izvorne datoteke).
+	 * @param begLine Vrstica izvorne datoteke, v kateri se besedilo zacne.
+	 */
+	private LexAn(final String text, final int begLine) {
+		metrics = Metrics.current() == null ? null : Metrics.current().record("LexAn");
+		replay = null;
+		srcFile = new StringReader(text);
+		buffCharLine = begLine - 1;
+		nextChar();
+	}
+
 	@Override
 	public void close() {
+		if (srcFile == null)
+			return;
 		try {
 			srcFile.close();
 		} catch (IOException __) {
@@ -106,6 +152,42 @@ public class LexAn implements AutoCloseable {
 	 */
 	private Token buffToken = null;
 
+	/** Dogodek JFR za zaporedje trenutno prebranih leksikalnih simbolov. */
+	private Events.TokenBatch tokenBatch = null;
+
+	/**
+	 * Prebere naslednji leksikalni simbol (glej {@link nextToken}), po potrebi
+	 * izmeri cas branja in ga zabelezi v dogodek JFR.
+	 */
+	private void readToken() {
+		if (replay != null) {
+			buffToken = replay.get(Math.min(replayIndex++, replay.size() - 1));
+			return;
+		}
+		// Dogodek se ustvari le, ce se dogodki snemajo.
+		if (tokenBatch == null && Events.TokenBatch.enabled()) {
+			tokenBatch = new Events.TokenBatch();
+			tokenBatch.begin();
+		}
+		if (metrics == null)
+			nextToken();
+		else {
+			final long begNanos = System.nanoTime();
+			nextToken();
+			metrics.addTime(System.nanoTime() - begNanos);
+			metrics.count("tokens", 1);
+		}
+		if (tokenBatch == null)
+			return;
+		if (tokenBatch.tokens++ == 0)
+			tokenBatch.locateBeg(buffToken);
+		if (tokenBatch.tokens == Events.TokenBatch.SIZE || buffToken.symbol() == Token.Symbol.EOF) {
+			tokenBatch.locateEnd(buffToken);
+			tokenBatch.commit();
+			tokenBatch = null;
+		}
+	}
+
 	/**
 	 * Prebere naslednji leksikalni simbol, ki je nato dostopen preko metod
 	 * {@link peekToken} in {@link takeToken}.
@@ -118,11 +200,15 @@ public class LexAn implements AutoCloseable {
 			// Števila
 			if (buffChar >= '0' && buffChar <= '9') {
 				final StringBuilder num = new StringBuilder();
+				long value = 0;
 				while (buffChar >= '0' && buffChar <= '9') {
 					num.append((char) buffChar);
+					if (value <= Integer.MAX_VALUE)
+						value = 10 * value + (buffChar - '0');
 					nextChar();
 				}
-				buffToken = new Token(new Report.Location(line, column, buffCharLine, buffCharColumn - 1), Token.Symbol.INTCONST, num.toString());
+				buffToken = new Token(new Report.Location(line, column, buffCharLine, buffCharColumn - 1), Token.Symbol.INTCONST, num.toString(),
+						value <= Integer.MAX_VALUE ? (int) value : null, null);
 				return;
 			}
 
@@ -183,16 +269,23 @@ public class LexAn implements AutoCloseable {
 				// Nizi
 				case '"':
 					final StringBuilder str = new StringBuilder();
+					int[] chars = new int[16];
+					int numChars = 0;
 					str.append((char) buffChar);
 					while (true) {
 						nextChar();
+						if (numChars == chars.length)
+							chars = Arrays.copyOf(chars, 2 * chars.length);
 						if (buffChar == '\\') {
-							str.append(parseEscape(true));
+							final String escape = parseEscape(true);
+							str.append(escape);
+							chars[numChars++] = escapeValue(escape);
 							continue;
 						}
 						if (buffChar == '"') {
 							str.append((char) buffChar);
-							buffToken = new Token(new Report.Location(line, column, buffCharLine, buffCharColumn), Token.Symbol.STRINGCONST, str.toString());
+							buffToken = new Token(new Report.Location(line, column, buffCharLine, buffCharColumn), Token.Symbol.STRINGCONST, str.toString(),
+									null, Arrays.copyOf(chars, numChars));
 							nextChar();
 							break;
 						}
@@ -200,12 +293,14 @@ public class LexAn implements AutoCloseable {
 							throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "Nedokončan niz.");
 						}
 						str.append((char) buffChar);
+						chars[numChars++] = buffChar;
 					}
 					return;
 
 				// Znaki
 				case '\'':
 					final StringBuilder ch = new StringBuilder();
+					final int code;
 					ch.append((char)buffChar);
 					nextChar();
 					if (buffChar == -1 || buffChar == '\n') {
@@ -215,18 +310,22 @@ public class LexAn implements AutoCloseable {
 						throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "Neveljaven znak.");
 					}
 					if (buffChar == '\\') {
-						ch.append(parseEscape(false));
+						final String escape = parseEscape(false);
+						ch.append(escape);
+						code = escapeValue(escape);
 					} else if (buffChar == '\'') {
 						throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "Prazen znak.");
 					} else {
 						ch.append((char) buffChar);
+						code = buffChar;
 					}
 					nextChar();
 					if (buffChar != '\'') {
 						throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "Nedokončan znak.");
 					}
 					ch.append((char) buffChar);
-					buffToken = new Token(new Report.Location(line, column, buffCharLine, buffCharColumn), Token.Symbol.CHARCONST, ch.toString());
+					buffToken = new Token(new Report.Location(line, column, buffCharLine, buffCharColumn), Token.Symbol.CHARCONST, ch.toString(),
+							code, null);
 					nextChar();
 					return;
 
@@ -344,6 +443,18 @@ public class LexAn implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Izracuna kodo znaka, ki ga predstavlja ubezno zaporedje.
+	 *
+	 * @param escape Ubezno zaporedje (kot ga vrne {@link parseEscape}).
+	 * @return Koda znaka.
+	 */
+	private static int escapeValue(final String escape) {
+		if (escape.length() == 3)
+			return 16 * Character.digit(escape.charAt(1), 16) + Character.digit(escape.charAt(2), 16);
+		return escape.charAt(1) == 'n' ? '\n' : escape.charAt(1);
+	}
+
 	private String parseEscape(boolean isString) {
 		nextChar();
 		final StringBuilder ch = new StringBuilder();
@@ -384,6 +495,166 @@ public class LexAn implements AutoCloseable {
 		return ch.toString();
 	}
 
+	// --- INKREMENTALNA LEKSIKALNA ANALIZA ---
+
+	/**
+	 * Sprememba zaporedja leksikalnih simbolov izvorne datoteke zaradi spremembe
+	 * izvorne datoteke.
+	 * 
+	 * Leksikalni simboli z indeksi od {@code begIndex} (vkljucno) do
+	 * {@code endIndex} (izkljucno) se zamenjajo z leksikalnimi simboli
+	 * {@code tokens}, vsi leksikalni simboli za njimi pa se premaknejo za
+	 * {@code lineShift} vrstic.
+	 * 
+	 * @param begIndex  Indeks prvega zamenjanega leksikalnega simbola.
+	 * @param endIndex  Indeks prvega nezamenjanega leksikalnega simbola za
+	 *                  zamenjanimi.
+	 * @param tokens    Novi leksikalni simboli.
+	 * @param lineShift Premik leksikalnih simbolov za zamenjanimi (v vrsticah).
+	 */
+	public record Delta(int begIndex, int endIndex, List<Token> tokens, int lineShift) {
+
+		/**
+		 * Uporabi spremembo na zaporedju leksikalnih simbolov.
+		 * 
+		 * Rezultat je mogoce podati sintaksnemu analizatorju preko leksikalnega
+		 * analizatorja, ustvarjenega s {@link LexAn#LexAn(List)}.
+		 * 
+		 * @param oldTokens Prejsnji leksikalni simboli izvorne datoteke.
+		 * @return Novi leksikalni simboli izvorne datoteke.
+		 */
+		public List<Token> apply(final List<Token> oldTokens) {
+			final ArrayList<Token> newTokens = new ArrayList<Token>(
+					oldTokens.size() - (endIndex - begIndex) + tokens.size());
+			newTokens.addAll(oldTokens.subList(0, begIndex));
+			newTokens.addAll(tokens);
+			for (final Token token : oldTokens.subList(endIndex, oldTokens.size()))
+				newTokens.add(shift(token, lineShift));
+			return newTokens;
+		}
+
+	}
+
+	/**
+	 * Izracuna spremembo zaporedja leksikalnih simbolov izvorne datoteke, ce se
+	 * vrstice od {@code begLine} (vkljucno) do {@code endLine} (izkljucno)
+	 * zamenjajo z besedilom {@code text}.
+	 * 
+	 * Ker se noben leksikalni simbol ne razteza cez vec vrstic (in tudi komentar
+	 * se konca s koncem vrstice), je dovolj znova leksikalno analizirati le novo
+	 * besedilo, leksikalne simbole za njim pa le premakniti. Ce se spremenijo
+	 * vrstice do konca izvorne datoteke, mora besedilo vsebovati vse vrstice do
+	 * konca izvorne datoteke, saj se na njegovem koncu doloci nov simbol za konec
+	 * datoteke. Ce so bile zadnje vrstice le izbrisane, je stolpec simbola za konec
+	 * datoteke le priblizen.
+	 * 
+	 * @param oldTokens Prejsnji leksikalni simboli izvorne datoteke (zadnji je
+	 *                  simbol za konec datoteke).
+	 * @param begLine   Prva zamenjana vrstica.
+	 * @param endLine   Prva nezamenjana vrstica za zamenjanimi (enaka
+	 *                  {@code begLine}, ce se besedilo le vstavi).
+	 * @param text      Nove vrstice (vsaka se konca z znakom {@code '\n'}, razen
+	 *                  morda zadnja).
+	 * @return Sprememba zaporedja leksikalnih simbolov.
+	 */
+	public static Delta relex(final List<Token> oldTokens, final int begLine, final int endLine, final String text) {
+		if (begLine < 1 || endLine < begLine)
+			throw new Report.Error("Illegal line range " + begLine + ".." + endLine + ".");
+		final Token oldEOF = oldTokens.getLast();
+		final boolean tail = endLine > oldEOF.location().endLine();
+
+		final int begIndex = firstTokenAt(oldTokens, begLine);
+		final int endIndex = tail ? oldTokens.size() : firstTokenAt(oldTokens, endLine);
+
+		// Nove vrstice.
+		final ArrayList<Token> tokens = new ArrayList<Token>();
+		try (final LexAn lexAn = new LexAn(text, begLine)) {
+			while (lexAn.peekToken().symbol() != Token.Symbol.EOF)
+				tokens.add(lexAn.takeToken());
+			if (tail) {
+				final Token newEOF = lexAn.takeToken();
+				if (newEOF.location().begLine() >= begLine)
+					tokens.add(newEOF);
+				else if (oldEOF.location().begLine() < begLine)
+					tokens.add(oldEOF);
+				else {
+					// Brez novih znakov je simbol za konec datoteke na koncu prejsnje
+					// vrstice, katere dolzina ni znana; uporabi se konec zadnjega
+					// leksikalnega simbola v njej.
+					final Token last = begIndex == 0 ? null : oldTokens.get(begIndex - 1);
+					final int column = last != null && last.location().endLine() == begLine - 1
+							? last.location().endColumn() + 1
+							: 1;
+					tokens.add(new Token(new Report.Location(begLine - 1, begLine == 1 ? 0 : column),
+							Token.Symbol.EOF, oldEOF.lexeme()));
+				}
+			}
+		}
+
+		// Premik leksikalnih simbolov za spremembo.
+		int newLines = 0;
+		for (int index = 0; index < text.length(); index++)
+			if (text.charAt(index) == '\n')
+				newLines++;
+		if (!text.isEmpty() && !text.endsWith("\n"))
+			newLines++;
+		return new Delta(begIndex, endIndex, tokens, newLines - (endLine - begLine));
+	}
+
+	/**
+	 * Izvede leksikalno analizo besedila izvorne datoteke.
+	 * 
+	 * @param text Besedilo izvorne datoteke.
+	 * @return Leksikalni simboli (zadnji je simbol za konec datoteke).
+	 */
+	public static List<Token> lex(final String text) {
+		final ArrayList<Token> tokens = new ArrayList<Token>();
+		try (final LexAn lexAn = new LexAn(text, 1)) {
+			while (lexAn.peekToken().symbol() != Token.Symbol.EOF)
+				tokens.add(lexAn.takeToken());
+			tokens.add(lexAn.takeToken());
+		}
+		return tokens;
+	}
+
+	/**
+	 * Poisce prvi leksikalni simbol, ki se ne zacne pred dano vrstico.
+	 * 
+	 * @param tokens Leksikalni simboli (urejeni po lokacijah, zadnji je simbol za
+	 *               konec datoteke).
+	 * @param line   Vrstica.
+	 * @return Indeks leksikalnega simbola (ali indeks simbola za konec datoteke,
+	 *         ce takega simbola ni).
+	 */
+	private static int firstTokenAt(final List<Token> tokens, final int line) {
+		int lo = 0;
+		int hi = tokens.size() - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (tokens.get(mid).location().begLine() < line)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Premakne leksikalni simbol za dano stevilo vrstic.
+	 * 
+	 * @param token Leksikalni simbol.
+	 * @param lines Stevilo vrstic.
+	 * @return Premaknjeni leksikalni simbol.
+	 */
+	private static Token shift(final Token token, final int lines) {
+		if (lines == 0)
+			return token;
+		final Report.Location location = token.location();
+		return new Token(new Report.Location(location.begLine() + lines, location.begColumn(),
+				location.endLine() + lines, location.endColumn()), token.symbol(), token.lexeme(), token.intValue(),
+				token.strValue());
+	}
+
 	/**
 	 * Vrne trenutni leksikalni simbol, ki ostane v lastnistvu leksikalnega
 	 * analizatorja.
@@ -392,7 +663,7 @@ public class LexAn implements AutoCloseable {
 	 */
 	public Token peekToken() {
 		if (buffToken == null)
-			nextToken();
+			readToken();
 		return buffToken;
 	}
 
@@ -403,12 +674,26 @@ public class LexAn implements AutoCloseable {
 	 */
 	public Token takeToken() {
 		if (buffToken == null)
-			nextToken();
+			readToken();
 		final Token thisToken = buffToken;
 		buffToken = null;
 		return thisToken;
 	}
 
+	/**
+	 * Izpise vse preostale leksikalne simbole do vkljucno konca datoteke (glej
+	 * {@link Report#out()}).
+	 */
+	public void log() {
+		while (true) {
+			if (peekToken().symbol() == Token.Symbol.EOF) {
+				Report.out().println(takeToken());
+				break;
+			}
+			Report.out().println(takeToken());
+		}
+	}
+
 	// --- ZAGON ---
 
 	/**
@@ -426,13 +711,7 @@ public class LexAn implements AutoCloseable {
 				Report.warning("Unused arguments in the command line.");
 
 			try (LexAn lexAn = new LexAn(cmdLineArgs[0])) {
-				while (true) {
-					if (lexAn.peekToken().symbol() == Token.Symbol.EOF) {
-						System.out.println(lexAn.takeToken());
-						break;
-					}
-					System.out.println(lexAn.takeToken());
-				}
+				lexAn.log();
 			}
 
 			// Upajmo, da kdaj pridemo to te tocke.
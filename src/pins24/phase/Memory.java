@@ -24,7 +24,8 @@ public class Memory {
 	 * <li>({@link SemAn}) ali je dani izraz levi izraz;</li>
 	 * <li>({@link Memory}) klicni zapis funkcije;</li>
 	 * <li>({@link Memory}) dostop do parametra;</li>
-	 * <li>({@link Memory}) dostop do spremenljivke.</li>
+	 * <li>({@link Memory}) dostop do spremenljivke;</li>
+	 * <li>({@link Memory}) ali parameter ali spremenljivka pobegne.</li>
 	 * </ol>
 	 */
 	public static class AttrAST extends SemAn.AttrAST {
@@ -38,6 +39,20 @@ public class Memory {
 		/** Atribut: dostop do spremenljivke. */
 		public final Map<AST.VarDef, Mem.Access> attrVarAccess;
 
+		/**
+		 * Atribut: ali parameter ali spremenljivka pobegne (je globalna, sestavljena,
+		 * se ji vzame naslov ali do nje dostopa gnezdena funkcija).
+		 */
+		public final Map<AST.Def, Boolean> attrEscape;
+
+		/**
+		 * Prikazovalnik (display), tj. staticna tabela klicnih kazalcev po staticnih
+		 * globinah, ali {@code null}, ce do nelokalnih spremenljivk ne dostopa nobena
+		 * funkcija. Element za staticno globino {@code d} je na odmiku
+		 * {@code 4 * (d - 1)}.
+		 */
+		public final Mem.AbsAccess display;
+
 		/**
 		 * Ustvari novo abstraktno sintaksno drevo z dodanimi atributi izracuna
 		 * pomnilniske predstavitve.
@@ -50,10 +65,30 @@ public class Memory {
 		 */
 		public AttrAST(final SemAn.AttrAST attrAST, final Map<AST.FunDef, Mem.Frame> attrFrame,
 					   final Map<AST.ParDef, Mem.RelAccess> attrParAccess, final Map<AST.VarDef, Mem.Access> attrVarAccess) {
+			this(attrAST, attrFrame, attrParAccess, attrVarAccess, new HashMap<AST.Def, Boolean>(), null);
+		}
+
+		/**
+		 * Ustvari novo abstraktno sintaksno drevo z dodanimi atributi izracuna
+		 * pomnilniske predstavitve.
+		 *
+		 * @param attrAST       Abstraktno sintaksno drevo z dodanimi atributi
+		 *                      semanticne analize.
+		 * @param attrFrame     Attribut: klicni zapis funkcije.
+		 * @param attrParAccess Attribut: dostop do parametra.
+		 * @param attrVarAccess Attribut: dostop do spremenljivke.
+		 * @param attrEscape    Attribut: ali parameter ali spremenljivka pobegne.
+		 * @param display       Prikazovalnik (ali {@code null}).
+		 */
+		public AttrAST(final SemAn.AttrAST attrAST, final Map<AST.FunDef, Mem.Frame> attrFrame,
+					   final Map<AST.ParDef, Mem.RelAccess> attrParAccess, final Map<AST.VarDef, Mem.Access> attrVarAccess,
+					   final Map<AST.Def, Boolean> attrEscape, final Mem.AbsAccess display) {
 			super(attrAST);
 			this.attrFrame = attrFrame;
 			this.attrParAccess = attrParAccess;
 			this.attrVarAccess = attrVarAccess;
+			this.attrEscape = attrEscape;
+			this.display = display;
 		}
 
 		/**
@@ -68,25 +103,30 @@ public class Memory {
 			this.attrFrame = attrAST.attrFrame;
 			this.attrParAccess = attrAST.attrParAccess;
 			this.attrVarAccess = attrAST.attrVarAccess;
+			this.attrEscape = attrAST.attrEscape;
+			this.display = attrAST.display;
 		}
 
 		@Override
-		public String head(final AST.Node node, final boolean highlighted) {
-			final StringBuffer head = new StringBuffer();
-			head.append(super.head(node, false));
+		public void head(final AST.Node node, final boolean highlighted, final StringBuilder head) {
+			super.head(node, false, head);
 			head.append(highlighted ? "\033[31m" : "");
 			switch (node) {
 				case final AST.FunDef funDef:
 					Mem.Frame frame = attrFrame.get(funDef);
-					head.append(" depth=" + frame.depth);
-					head.append(" parsSize=" + frame.parsSize);
-					head.append(" varsSize=" + frame.varsSize);
+					head.append(" depth=").append(frame.depth);
+					head.append(" parsSize=").append(frame.parsSize);
+					head.append(" varsSize=").append(frame.varsSize);
+					if (frame.displayOffset != null)
+						head.append(" display=").append(frame.displayOffset);
+					if (frame.numRegs > 0)
+						head.append(" regs=").append(frame.numRegs);
 					break;
 				case final AST.ParDef parDef: {
 					Mem.RelAccess relAccess = attrParAccess.get(parDef);
-					head.append(" offset=" + relAccess.offset);
-					head.append(" size=" + relAccess.size);
-					head.append(" depth=" + relAccess.depth);
+					head.append(" offset=").append(relAccess.offset);
+					head.append(" size=").append(relAccess.size);
+					head.append(" depth=").append(relAccess.depth);
 					if (relAccess.inits != null)
 						initsToString(relAccess.inits, head);
 					break;
@@ -96,17 +136,24 @@ public class Memory {
 					if (access != null)
 						switch (access) {
 							case final Mem.AbsAccess absAccess:
-								head.append(" size=" + absAccess.size);
+								head.append(" size=").append(absAccess.size);
 								if (absAccess.inits != null)
 									initsToString(absAccess.inits, head);
 								break;
 							case final Mem.RelAccess relAccess:
-								head.append(" offset=" + relAccess.offset);
-								head.append(" size=" + relAccess.size);
-								head.append(" depth=" + relAccess.depth);
+								head.append(" offset=").append(relAccess.offset);
+								head.append(" size=").append(relAccess.size);
+								head.append(" depth=").append(relAccess.depth);
 								if (relAccess.inits != null)
 									initsToString(relAccess.inits, head);
 								break;
+							case final Mem.RegAccess regAccess:
+								head.append(" reg=").append(regAccess.index);
+								head.append(" size=").append(regAccess.size);
+								head.append(" depth=").append(regAccess.depth);
+								if (regAccess.inits != null)
+									initsToString(regAccess.inits, head);
+								break;
 							default:
 								throw new Report.InternalError();
 						}
@@ -116,7 +163,6 @@ public class Memory {
 					break;
 			}
 			head.append(highlighted ? "\033[30m" : "");
-			return head.toString();
 		}
 
 		/**
@@ -125,7 +171,7 @@ public class Memory {
 		 * @param inits Zacetna vrednost spremenljivke.
 		 * @param head  Znakovno predstavitev zacetne vrednosti spremenmljivke.
 		 */
-		private void initsToString(final List<Integer> inits, final StringBuffer head) {
+		private void initsToString(final List<Integer> inits, final StringBuilder head) {
 			head.append(" inits=");
 			int numPrintedVals = 0;
 			int valPtr = 1;
@@ -140,7 +186,7 @@ public class Memory {
 							head.append("...");
 							return;
 						}
-						head.append((numPrintedVals > 0 ? "," : "") + inits.get(valPtr++));
+						head.append(numPrintedVals > 0 ? "," : "").append(inits.get(valPtr++).intValue());
 						numPrintedVals++;
 					}
 				}
@@ -158,12 +204,494 @@ public class Memory {
 	 *         predstavitve.
 	 */
 	public static AttrAST organize(SemAn.AttrAST semanAttrAST) {
-		AttrAST attrAST = new AttrAST(semanAttrAST, new HashMap<AST.FunDef, Mem.Frame>(),
-				new HashMap<AST.ParDef, Mem.RelAccess>(), new HashMap<AST.VarDef, Mem.Access>());
-		(new MemoryOrganizer(attrAST)).organize();
+		return organize(semanAttrAST, null, Set.of());
+	}
+
+	/**
+	 * Opravi izracun pomnilniske predstavitve, pri cemer za dane definicije na
+	 * najvisjem nivoju uporabi pomnilnisko predstavitev iz prejsnjega izracuna.
+	 *
+	 * Prejsnja pomnilniska predstavitev definicije se uporabi le, ce imajo vse
+	 * funkcije v definiciji enako staticno povezavo in enak vpis v prikazovalnik
+	 * kot v prejsnjem izracunu (to je odvisno tudi od drugih definicij), sicer se
+	 * izracuna znova.
+	 *
+	 * @param semanAttrAST Abstraktno sintaksno drevo z dodanimi atributi izracuna
+	 *                     pomnilniske predstavitve.
+	 * @param previous     Prejsnji izracun pomnilniske predstavitve (ali
+	 *                     {@code null}).
+	 * @param reused       Nespremenjene definicije na najvisjem nivoju (ista
+	 *                     vozlisca kot v prejsnjem izracunu).
+	 * @return Abstraktno sintaksno drevo z atributi po fazi pomnilniske
+	 *         predstavitve.
+	 */
+	public static AttrAST organize(final SemAn.AttrAST semanAttrAST, final AttrAST previous,
+			final Set<AST.MainDef> reused) {
+		return organize(semanAttrAST, previous, reused, false);
+	}
+
+	/**
+	 * Opravi izracun pomnilniske predstavitve, pri cemer za dane definicije na
+	 * najvisjem nivoju uporabi pomnilnisko predstavitev iz prejsnjega izracuna.
+	 *
+	 * Pri locenem prevajanju (glej {@code pins24.tools.Units}) se funkcije na
+	 * najvisjem nivoju lahko klicejo iz drugih enot, zato tako kot zunanje
+	 * funkcije ohranijo obicajni klicni dogovor (s staticno povezavo).
+	 *
+	 * @param semanAttrAST Abstraktno sintaksno drevo z dodanimi atributi izracuna
+	 *                     pomnilniske predstavitve.
+	 * @param previous     Prejsnji izracun pomnilniske predstavitve (ali
+	 *                     {@code null}).
+	 * @param reused       Nespremenjene definicije na najvisjem nivoju (ista
+	 *                     vozlisca kot v prejsnjem izracunu).
+	 * @param separate     Ali gre za loceno prevajanje enote.
+	 * @return Abstraktno sintaksno drevo z atributi po fazi pomnilniske
+	 *         predstavitve.
+	 */
+	public static AttrAST organize(final SemAn.AttrAST semanAttrAST, final AttrAST previous,
+			final Set<AST.MainDef> reused, final boolean separate) {
+		final AttrAST attrAST = Metrics.measure("Memory.organize",
+				() -> organizeMemory(semanAttrAST, previous, reused, separate));
+		Metrics.count("Memory.organize", "attrFrame", attrAST.attrFrame.size());
+		Metrics.count("Memory.organize", "attrParAccess", attrAST.attrParAccess.size());
+		Metrics.count("Memory.organize", "attrVarAccess", attrAST.attrVarAccess.size());
 		return attrAST;
 	}
 
+	/**
+	 * Izracuna pomnilnisko predstavitev.
+	 *
+	 * @param semanAttrAST Abstraktno sintaksno drevo z dodanimi atributi
+	 *                     semanticne analize.
+	 * @param previous     Prejsnji izracun pomnilniske predstavitve (ali
+	 *                     {@code null}).
+	 * @param reused       Nespremenjene definicije na najvisjem nivoju.
+	 * @param separate     Ali gre za loceno prevajanje enote.
+	 * @return Abstraktno sintaksno drevo z dodanimi atributi izracuna pomnilniske
+	 *         predstavitve.
+	 */
+	private static AttrAST organizeMemory(final SemAn.AttrAST semanAttrAST, final AttrAST previous,
+			final Set<AST.MainDef> reused, final boolean separate) {
+		final NonLocalResolver nonLocals = new NonLocalResolver(semanAttrAST, separate);
+		nonLocals.resolve();
+		AttrAST attrAST = new AttrAST(semanAttrAST, new HashMap<AST.FunDef, Mem.Frame>(),
+				new HashMap<AST.ParDef, Mem.RelAccess>(), new HashMap<AST.VarDef, Mem.Access>(),
+				new HashMap<AST.Def, Boolean>(), nonLocals.display());
+		final HashSet<AST.MainDef> skipped = new HashSet<AST.MainDef>();
+		for (final AST.MainDef def : reused)
+			if (previous != null && reuse(def, previous, attrAST, nonLocals))
+				skipped.add(def);
+		(new EscapeResolver(attrAST, nonLocals, skipped)).resolve();
+		return (new MemoryOrganizer(attrAST, nonLocals, skipped)).organize();
+	}
+
+	/**
+	 * Prepise pomnilnisko predstavitev definicije na najvisjem nivoju iz
+	 * prejsnjega izracuna, ce je ta se veljavna.
+	 *
+	 * @param mainDef   Definicija na najvisjem nivoju.
+	 * @param previous  Prejsnji izracun pomnilniske predstavitve.
+	 * @param attrAST   Abstraktno sintaksno drevo z dodanimi atributi izracuna
+	 *                  pomnilniske predstavitve.
+	 * @param nonLocals Analiza dostopov do nelokalnih spremenljivk.
+	 * @return Ali je bila pomnilniska predstavitev prepisana.
+	 */
+	private static boolean reuse(final AST.MainDef mainDef, final AttrAST previous, final AttrAST attrAST,
+			final NonLocalResolver nonLocals) {
+		final List<AST.Def> defs = new LinkedList<AST.Def>();
+		mainDef.accept(new AST.FullVisitor<Object, Object>() {
+			@Override
+			public Object visit(final AST.FunDef funDef, final Object arg) {
+				defs.add(funDef);
+				return AST.FullVisitor.super.visit(funDef, arg);
+			}
+
+			@Override
+			public Object visit(final AST.ParDef parDef, final Object arg) {
+				defs.add(parDef);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.VarDef varDef, final Object arg) {
+				defs.add(varDef);
+				return null;
+			}
+		}, null);
+		for (final AST.Def def : defs)
+			if (def instanceof AST.FunDef funDef) {
+				final Mem.Frame frame = previous.attrFrame.get(funDef);
+				if (frame == null || frame.staticLink != nonLocals.hasStaticLink(funDef)
+						|| (frame.displayOffset != null) != nonLocals.isDisplayed(funDef))
+					return false;
+			}
+		for (final AST.Def def : defs)
+			switch (def) {
+			case final AST.FunDef funDef:
+				attrAST.attrFrame.put(funDef, previous.attrFrame.get(funDef));
+				break;
+			case final AST.ParDef parDef:
+				attrAST.attrParAccess.put(parDef, previous.attrParAccess.get(parDef));
+				attrAST.attrEscape.put(parDef, previous.attrEscape.get(parDef));
+				break;
+			case final AST.VarDef varDef:
+				attrAST.attrVarAccess.put(varDef, previous.attrVarAccess.get(varDef));
+				attrAST.attrEscape.put(varDef, previous.attrEscape.get(varDef));
+				break;
+			default:
+				throw new Report.InternalError();
+			}
+		return true;
+	}
+
+	/**
+	 * Analiza dostopov do nelokalnih spremenljivk.
+	 *
+	 * Doloci, katere funkcije potrebujejo staticno povezavo in do spremenljivk
+	 * katerih funkcij dostopajo gnezdene funkcije (in morajo zato svoj klicni
+	 * kazalec vpisati v prikazovalnik). Funkcija potrebuje staticno povezavo, ce
+	 * se preko njenega klicnega zapisa sprehaja veriga staticnih povezav, bodisi
+	 * zaradi dostopa do nelokalne spremenljivke bodisi zaradi izracuna staticne
+	 * povezave za klic funkcije, ki staticno povezavo potrebuje. Zunanje funkcije
+	 * (in pri locenem prevajanju vse funkcije na najvisjem nivoju) staticno
+	 * povezavo vedno obdrzijo.
+	 */
+	private static class NonLocalResolver {
+
+		/** Abstraktno sintaksno drevo z dodanimi atributi semanticne analize. */
+		private final SemAn.AttrAST attrAST;
+
+		/** Funkcija, v kateri je definiran parameter ali lokalna spremenljivka. */
+		private final HashMap<AST.Def, AST.FunDef> owners = new HashMap<AST.Def, AST.FunDef>();
+
+		/** Staticno obsegajoca funkcija. */
+		private final HashMap<AST.FunDef, AST.FunDef> parents = new HashMap<AST.FunDef, AST.FunDef>();
+
+		/** Staticna globina funkcije. */
+		private final HashMap<AST.FunDef, Integer> depths = new HashMap<AST.FunDef, Integer>();
+
+		/** Staticne globine klicnih zapisov, do katerih mora priti funkcija. */
+		private final HashMap<AST.FunDef, Integer> reaches = new HashMap<AST.FunDef, Integer>();
+
+		/** Klici funkcij (klicoca funkcija, klicana funkcija). */
+		private final LinkedList<AST.FunDef[]> calls = new LinkedList<AST.FunDef[]>();
+
+		/** Ali gre za loceno prevajanje enote. */
+		private final boolean separate;
+
+		/** Funkcije, katerih klicni zapis vsebuje staticno povezavo. */
+		private final HashSet<AST.FunDef> staticLinks = new HashSet<AST.FunDef>();
+
+		/** Funkcije, do spremenljivk katerih dostopajo gnezdene funkcije. */
+		private final HashSet<AST.FunDef> displayed = new HashSet<AST.FunDef>();
+
+		/**
+		 * Ustvari novo analizo dostopov do nelokalnih spremenljivk.
+		 *
+		 * @param attrAST  Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                 analize.
+		 * @param separate Ali gre za loceno prevajanje enote.
+		 */
+		public NonLocalResolver(final SemAn.AttrAST attrAST, final boolean separate) {
+			this.attrAST = attrAST;
+			this.separate = separate;
+		}
+
+		/**
+		 * Sprozi analizo dostopov do nelokalnih spremenljivk.
+		 */
+		public void resolve() {
+			// Lastniki definicij se dolocijo vnaprej, saj se lahko gnezdena funkcija
+			// sklicuje na spremenljivko, ki je v stavku let definirana za njo.
+			attrAST.ast.accept(new OwnerVisitor(), null);
+			attrAST.ast.accept(new NonLocalVisitor(), null);
+			// Zunanje funkcije (brez telesa) ohranijo obicajni klicni dogovor, pri
+			// locenem prevajanju pa tudi vse funkcije na najvisjem nivoju.
+			for (final AST.FunDef funDef : depths.keySet())
+				if (funDef.stmts.size() == 0 || (separate && depths.get(funDef) == 1))
+					staticLinks.add(funDef);
+			for (final Map.Entry<AST.FunDef, Integer> reach : reaches.entrySet())
+				walk(reach.getKey(), reach.getValue());
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (final AST.FunDef[] call : calls)
+					if (staticLinks.contains(call[1]))
+						changed |= walk(call[0], depths.get(call[1]) - 1);
+			}
+		}
+
+		/**
+		 * Oznaci klicne zapise, preko katerih gre veriga staticnih povezav od funkcije
+		 * do klicnega zapisa na dani staticni globini.
+		 *
+		 * @param funDef Funkcija, v kateri se veriga zacne.
+		 * @param depth  Staticna globina klicnega zapisa, kjer se veriga konca.
+		 * @return Ali je bila oznacena vsaj ena nova funkcija.
+		 */
+		private boolean walk(AST.FunDef funDef, final int depth) {
+			boolean changed = false;
+			while (funDef != null && depths.get(funDef) > depth) {
+				changed |= staticLinks.add(funDef);
+				funDef = parents.get(funDef);
+			}
+			return changed;
+		}
+
+		/**
+		 * Vrne funkcijo, v kateri je definiran parameter ali lokalna spremenljivka.
+		 *
+		 * @param def Definicija parametra ali spremenljivke.
+		 * @return Funkcija ali {@code null}, ce je spremenljivka globalna.
+		 */
+		public AST.FunDef owner(final AST.Def def) {
+			return owners.get(def);
+		}
+
+		/**
+		 * Vrne, ali klicni zapis funkcije vsebuje staticno povezavo.
+		 *
+		 * @param funDef Funkcija.
+		 * @return Ali klicni zapis funkcije vsebuje staticno povezavo.
+		 */
+		public boolean hasStaticLink(final AST.FunDef funDef) {
+			return staticLinks.contains(funDef);
+		}
+
+		/**
+		 * Vrne, ali mora funkcija svoj klicni kazalec vpisati v prikazovalnik.
+		 *
+		 * @param funDef Funkcija.
+		 * @return Ali mora funkcija svoj klicni kazalec vpisati v prikazovalnik.
+		 */
+		public boolean isDisplayed(final AST.FunDef funDef) {
+			return displayed.contains(funDef);
+		}
+
+		/**
+		 * Vrne prikazovalnik.
+		 *
+		 * @return Prikazovalnik ali {@code null}, ce ga ne potrebuje nobena funkcija.
+		 */
+		public Mem.AbsAccess display() {
+			int maxDepth = 0;
+			for (final AST.FunDef funDef : displayed)
+				maxDepth = Math.max(maxDepth, depths.get(funDef));
+			if (maxDepth == 0)
+				return null;
+			final Vector<Integer> inits = new Vector<Integer>(List.of(1, maxDepth, 1, 0));
+			return new Mem.AbsAccess("display", maxDepth * 4, inits);
+		}
+
+		/**
+		 * Obiskovalec, ki zbere funkcije, v katerih so definirani parametri in
+		 * lokalne spremenljivke.
+		 */
+		private class OwnerVisitor implements AST.FullVisitor<Object, AST.FunDef> {
+
+			@SuppressWarnings({ "doclint:missing" })
+			public OwnerVisitor() {
+			}
+
+			@Override
+			public Object visit(final AST.FunDef funDef, final AST.FunDef parent) {
+				if (parent != null)
+					parents.put(funDef, parent);
+				depths.put(funDef, parent == null ? 1 : depths.get(parent) + 1);
+				funDef.pars.accept(this, funDef);
+				funDef.stmts.accept(this, funDef);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.ParDef parDef, final AST.FunDef funDef) {
+				owners.put(parDef, funDef);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.VarDef varDef, final AST.FunDef funDef) {
+				if (funDef != null)
+					owners.put(varDef, funDef);
+				return null;
+			}
+
+		}
+
+		/**
+		 * Obiskovalec, ki zbere uporabe imen in klice funkcij.
+		 */
+		private class NonLocalVisitor implements AST.FullVisitor<Object, AST.FunDef> {
+
+			@SuppressWarnings({ "doclint:missing" })
+			public NonLocalVisitor() {
+			}
+
+			@Override
+			public Object visit(final AST.FunDef funDef, final AST.FunDef parent) {
+				funDef.pars.accept(this, funDef);
+				funDef.stmts.accept(this, funDef);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.VarExpr varExpr, final AST.FunDef funDef) {
+				final AST.FunDef owner = owners.get(attrAST.attrDef.get(varExpr));
+				if (owner == null || owner == funDef)
+					return null;
+				displayed.add(owner);
+				reaches.merge(funDef, depths.get(owner), Math::min);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.CallExpr callExpr, final AST.FunDef funDef) {
+				if (funDef != null && attrAST.attrDef.get(callExpr) instanceof AST.FunDef callee)
+					calls.add(new AST.FunDef[] { funDef, callee });
+				callExpr.args.accept(this, funDef);
+				return null;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Analiza pobega parametrov in spremenljivk.
+	 *
+	 * Parameter ali spremenljivka pobegne, ce je globalna, ce ni skalar, ce se ji
+	 * vzame naslov (prefiksni {@code ^}) ali ce do nje dostopa gnezdena funkcija.
+	 * Lokalne spremenljivke, ki ne pobegnejo, lahko zivijo v registrih.
+	 */
+	private static class EscapeResolver {
+
+		/**
+		 * Abstraktno sintaksno drevo z dodanimi atributi izracuna pomnilniske
+		 * predstavitve.
+		 */
+		private final AttrAST attrAST;
+
+		/** Analiza dostopov do nelokalnih spremenljivk. */
+		private final NonLocalResolver nonLocals;
+
+		/** Definicije na najvisjem nivoju s prepisano pomnilnisko predstavitvijo. */
+		private final Set<AST.MainDef> skipped;
+
+		/**
+		 * Ustvari novo analizo pobega.
+		 *
+		 * @param attrAST   Abstraktno sintaksno drevo z dodanimi atributi izracuna
+		 *                  pomnilniske predstavitve.
+		 * @param nonLocals Analiza dostopov do nelokalnih spremenljivk.
+		 * @param skipped   Definicije na najvisjem nivoju s prepisano pomnilnisko
+		 *                  predstavitvijo.
+		 */
+		public EscapeResolver(final AttrAST attrAST, final NonLocalResolver nonLocals,
+				final Set<AST.MainDef> skipped) {
+			this.attrAST = attrAST;
+			this.nonLocals = nonLocals;
+			this.skipped = skipped;
+		}
+
+		/**
+		 * Sprozi analizo pobega ({@link AttrAST#attrEscape}).
+		 */
+		public void resolve() {
+			// Vse definicije se zabelezijo vnaprej, saj se lahko gnezdena funkcija
+			// sklicuje na spremenljivko, ki je v stavku let definirana za njo.
+			attrAST.ast.accept(new DefVisitor(), null);
+			attrAST.ast.accept(new EscapeVisitor(), null);
+		}
+
+		/**
+		 * Oznaci, da parameter ali spremenljivka pobegne.
+		 *
+		 * @param def Definicija parametra ali spremenljivke.
+		 */
+		private void escape(final AST.Def def) {
+			if (attrAST.attrEscape.containsKey(def))
+				attrAST.attrEscape.put(def, true);
+		}
+
+		/**
+		 * Obiskovalec, ki zabelezi parametre in spremenljivke ter oznaci tiste, ki
+		 * pobegnejo ze zaradi svoje definicije.
+		 */
+		private class DefVisitor implements AST.FullVisitor<Object, AST.FunDef> {
+
+			@SuppressWarnings({ "doclint:missing" })
+			public DefVisitor() {
+			}
+
+			@Override
+			public Object visit(final AST.FunDef funDef, final AST.FunDef parent) {
+				if (skipped.contains(funDef))
+					return null;
+				funDef.pars.accept(this, funDef);
+				funDef.stmts.accept(this, funDef);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.ParDef parDef, final AST.FunDef funDef) {
+				attrAST.attrEscape.putIfAbsent(parDef, false);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.VarDef varDef, final AST.FunDef funDef) {
+				if (skipped.contains(varDef))
+					return null;
+				boolean scalar = varDef.inits.size() == 1;
+				for (final AST.Init init : varDef.inits)
+					scalar &= init.num.intValue != null && init.num.intValue == 1
+							&& init.value.type != AST.AtomExpr.Type.STRCONST;
+				attrAST.attrEscape.merge(varDef, funDef == null || !scalar, Boolean::logicalOr);
+				return null;
+			}
+
+		}
+
+		/**
+		 * Obiskovalec, ki doloci, kateri parametri in spremenljivke pobegnejo zaradi
+		 * svojih uporab.
+		 */
+		private class EscapeVisitor implements AST.FullVisitor<Object, AST.FunDef> {
+
+			@SuppressWarnings({ "doclint:missing" })
+			public EscapeVisitor() {
+			}
+
+			@Override
+			public Object visit(final AST.FunDef funDef, final AST.FunDef parent) {
+				if (skipped.contains(funDef))
+					return null;
+				funDef.pars.accept(this, funDef);
+				funDef.stmts.accept(this, funDef);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.VarExpr varExpr, final AST.FunDef funDef) {
+				final AST.Def def = attrAST.attrDef.get(varExpr);
+				final AST.FunDef owner = nonLocals.owner(def);
+				if (owner != null && owner != funDef)
+					escape(def);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.UnExpr unExpr, final AST.FunDef funDef) {
+				if (unExpr.oper == AST.UnExpr.Oper.MEMADDR && unExpr.expr instanceof AST.VarExpr varExpr)
+					escape(attrAST.attrDef.get(varExpr));
+				unExpr.expr.accept(this, funDef);
+				return null;
+			}
+
+		}
+
+	}
+
 	/**
 	 * Organizator pomnilniske predstavitve.
 	 */
@@ -175,14 +703,26 @@ public class Memory {
 		 */
 		private final AttrAST attrAST;
 
+		/** Analiza dostopov do nelokalnih spremenljivk. */
+		private final NonLocalResolver nonLocals;
+
+		/** Definicije na najvisjem nivoju s prepisano pomnilnisko predstavitvijo. */
+		private final Set<AST.MainDef> skipped;
+
 		/**
 		 * Ustvari nov organizator pomnilniske predstavitve.
 		 *
-		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi izracuna
-		 *                pomnilniske predstavitve.
+		 * @param attrAST   Abstraktno sintaksno drevo z dodanimi atributi izracuna
+		 *                  pomnilniske predstavitve.
+		 * @param nonLocals Analiza dostopov do nelokalnih spremenljivk.
+		 * @param skipped   Definicije na najvisjem nivoju s prepisano pomnilnisko
+		 *                  predstavitvijo.
 		 */
-		public MemoryOrganizer(final AttrAST attrAST) {
+		public MemoryOrganizer(final AttrAST attrAST, final NonLocalResolver nonLocals,
+				final Set<AST.MainDef> skipped) {
 			this.attrAST = attrAST;
+			this.nonLocals = nonLocals;
+			this.skipped = skipped;
 		}
 
 		/**
@@ -195,7 +735,8 @@ public class Memory {
 			attrAST.ast.accept(new MemoryVisitor(), null);
 			return new AttrAST(attrAST, Collections.unmodifiableMap(attrAST.attrFrame),
 					Collections.unmodifiableMap(attrAST.attrParAccess),
-					Collections.unmodifiableMap(attrAST.attrVarAccess));
+					Collections.unmodifiableMap(attrAST.attrVarAccess),
+					Collections.unmodifiableMap(attrAST.attrEscape), attrAST.display);
 		}
 
 		/**
@@ -207,23 +748,47 @@ public class Memory {
 			Stack<Integer> varOffset = new Stack<>();
 			Stack<Integer> parOffset = new Stack<>();
 
+			/**
+			 * Najnizji odmik, ki ga zasede katerakoli lokalna spremenljivka funkcije.
+			 * Sestavljeni stavki, ki se ne prekrivajo, si prostor v klicnem zapisu delijo,
+			 * zato je velikost lokalnih spremenljivk dolocena z najglobljim gnezdenjem
+			 * in ne z vsoto vseh spremenljivk.
+			 */
+			Stack<Integer> minVarOffset = new Stack<>();
+
+			/** Lokalne spremenljivke funkcije. */
+			Stack<List<Mem.RelAccess>> frameVars = new Stack<>();
+
+			/** Indeks naslednjega prostega registra (registri se delijo kot odmiki). */
+			Stack<Integer> regIndex = new Stack<>();
+
+			/** Najvecje stevilo hkrati zasedenih registrov funkcije. */
+			Stack<Integer> maxRegs = new Stack<>();
+
 			@SuppressWarnings({"doclint:missing"})
 			public MemoryVisitor() {
 			}
 
 			@Override
 			public Object visit(final AST.FunDef funDef, final Object arg) {
+				if (skipped.contains(funDef))
+					return null;
 				depth++;
-				varOffset.push(-8);
-				parOffset.push(4);
+				varOffset.push(nonLocals.isDisplayed(funDef) ? -12 : -8);
+				parOffset.push(nonLocals.hasStaticLink(funDef) ? 4 : 0);
+				minVarOffset.push(varOffset.peek());
+				frameVars.push(new LinkedList<>());
+				regIndex.push(0);
+				maxRegs.push(0);
 
 				funDef.pars.accept(this, arg);
 				funDef.stmts.accept(this, arg);
 
 				varOffset.pop();
 				parOffset.pop();
+				regIndex.pop();
 
-				defineFun(funDef);
+				defineFun(funDef, -minVarOffset.pop(), frameVars.pop(), maxRegs.pop());
 				depth--;
 				return null;
 			}
@@ -241,12 +806,15 @@ public class Memory {
 						parDef.name
 					)
 				);
+				parOffset.pop();
 				parOffset.push(offset + 4);
 				return null;
 			}
 
 			@Override
 			public Object visit(final AST.VarDef varDef, final Object arg) {
+				if (skipped.contains(varDef))
+					return null;
 				varDef.inits.accept(this, arg);
 				String name = varDef.name;
 				Vector<Integer> inits = getInits(varDef);
@@ -263,6 +831,10 @@ public class Memory {
 			public Object visit(final AST.LetStmt letStmt, final Object arg) {
 				letStmt.defs.accept(this, arg);
 
+				// Po koncu sestavljenega stavka se njegov prostor sprosti za naslednje.
+				int scopeOffset = varOffset.peek();
+				int scopeReg = regIndex.peek();
+
 				List<AST.MainDef> defs = letStmt.defs.getAll();
 				for (AST.MainDef def : defs) {
 					if (def instanceof AST.VarDef) {
@@ -270,178 +842,162 @@ public class Memory {
 						Vector<Integer> inits = getInits((AST.VarDef) def);
 						int size = getSize(inits);
 
+						if (!attrAST.attrEscape.get(def)) {
+							int index = regIndex.pop();
+							regIndex.push(index + 1);
+							attrAST.attrVarAccess.put((AST.VarDef) def, new Mem.RegAccess(index, depth, inits, name));
+							continue;
+						}
+
 						int offset = varOffset.pop() - size;
 						varOffset.push(offset);
 
-						attrAST.attrVarAccess.put(
-								(AST.VarDef) def,
-								new Mem.RelAccess(offset, depth, size, inits, name)
-						);
-					} else {
-						depth++;
-						varOffset.push(-8);
-						parOffset.push(4);
-
-						defineFun((AST.FunDef) def);
-
-						parOffset.pop();
-						varOffset.pop();
-						depth--;
+						Mem.RelAccess access = new Mem.RelAccess(offset, depth, size, inits, name);
+						attrAST.attrVarAccess.put((AST.VarDef) def, access);
+						frameVars.peek().add(access);
 					}
 				}
+				minVarOffset.push(Math.min(minVarOffset.pop(), varOffset.peek()));
+				maxRegs.push(Math.max(maxRegs.pop(), regIndex.peek()));
 
-				depth++;
 				letStmt.stmts.accept(this, arg);
-				depth--;
+
+				varOffset.pop();
+				varOffset.push(scopeOffset);
+				regIndex.pop();
+				regIndex.push(scopeReg);
 				return null;
 			}
 
-			private void defineFun(AST.FunDef funDef) {
+			private void defineFun(AST.FunDef funDef, int varsSize, List<Mem.RelAccess> vars, int numRegs) {
 				List<Mem.RelAccess> pars = new LinkedList<>();
-				List<Mem.RelAccess> vars = new LinkedList<>();
 
 				for (AST.ParDef parDef : funDef.pars.getAll())
 					pars.add(attrAST.attrParAccess.get(parDef));
 
-				for (AST.Stmt stmt : funDef.stmts.getAll()) {
-					if (stmt instanceof AST.LetStmt letStmt) {
-						for (AST.MainDef def : letStmt.defs.getAll())
-							if (def instanceof AST.VarDef varDef)
-								vars.add((Mem.RelAccess) attrAST.attrVarAccess.get(varDef));
-					}
-				}
-
-				int varsSize = 8;
-				for (Mem.RelAccess varDef : vars)
-					varsSize += varDef.size;
+				boolean staticLink = nonLocals.hasStaticLink(funDef);
+				boolean displayed = nonLocals.isDisplayed(funDef);
 
 				attrAST.attrFrame.put(
 					funDef,
 					new Mem.Frame(
 						funDef.name,
 						depth,
-						pars.size() * 4 + 4,
+						pars.size() * 4 + (staticLink ? 4 : 0),
 						varsSize,
 						pars,
-						vars
+						vars,
+						staticLink,
+						displayed ? -12 : null,
+						numRegs
 					)
 				);
+
+				final Events.Frame event = new Events.Frame();
+				event.function = funDef.name;
+				event.depth = depth;
+				event.parsSize = attrAST.attrFrame.get(funDef).parsSize;
+				event.varsSize = varsSize;
+				event.locate(attrAST.attrLoc.get(funDef));
+				event.commit();
 			}
 
 			private int getSize(Vector<Integer> inits) {
-				int size = 0;
-				// velikost spremenljivke = število vseh znakov vseh initov
-				for (int i = 1; i < inits.size(); i += inits.get(i + 1) + 2)
-					size += inits.get(i) * inits.get(i + 1) * 4;
-				return size;
+				return Memory.getSize(inits);
 			}
 
 			private Vector<Integer> getInits(AST.VarDef varDef) {
-				List<AST.Init> varDefInits = varDef.inits.getAll();
-				Vector<Integer> inits = new Vector<>();
-				inits.addLast(varDefInits.size());                                // število vseh initov
-				for (AST.Init init : varDefInits) {
-					inits.addLast(Integer.valueOf(init.num.value));               // število ponovitev enega inita
-					switch (init.value.type) {                                    // vrednost enega inita
-						case INTCONST -> {
-							inits.addLast(1);                                  // dolžina enega inita (INT)
-							inits.addLast(decodeIntConst(init.value, attrAST.attrLoc.get(init)));
-						}
-						case CHRCONST -> {
-							inits.addLast(1);                                  // dolžina enega inita (CHAR)
-							inits.addLast(decodeChrConst(init.value, attrAST.attrLoc.get(init)));
-						}
-						case STRCONST -> {
-							Vector<Integer> temp = decodeStrConst(init.value, attrAST.attrLoc.get(init));
-							inits.addLast(temp.size());                           // dolžina enega inita (STRING)
-							inits.addAll(temp);
-						}
-					}
+				return Memory.getInits(varDef, attrAST.attrLoc);
+			}
+		}
+	}
+
+	/**
+	 * Izracuna absolutni dostop do globalne spremenljivke brez izracuna
+	 * pomnilniske predstavitve celotnega programa (npr. za vmesnik enote pri
+	 * locenem prevajanju).
+	 * 
+	 * @param varDef  Definicija globalne spremenljivke.
+	 * @param attrLoc Atribut: lokacija vozlisca.
+	 * @return Absolutni dostop do spremenljivke.
+	 */
+	public static Mem.AbsAccess globalAccess(final AST.VarDef varDef,
+			final Map<AST.Node, Report.Locatable> attrLoc) {
+		final Vector<Integer> inits = getInits(varDef, attrLoc);
+		return new Mem.AbsAccess(varDef.name, getSize(inits), inits);
+	}
+
+	private static int getSize(Vector<Integer> inits) {
+		int size = 0;
+		// velikost spremenljivke = število vseh znakov vseh initov
+		for (int i = 1; i < inits.size(); i += inits.get(i + 1) + 2)
+			size += inits.get(i) * inits.get(i + 1) * 4;
+		return size;
+	}
+
+	private static Vector<Integer> getInits(final AST.VarDef varDef, final Map<AST.Node, Report.Locatable> attrLoc) {
+		List<AST.Init> varDefInits = varDef.inits.getAll();
+		Vector<Integer> inits = new Vector<>();
+		inits.addLast(varDefInits.size());                                // število vseh initov
+		for (AST.Init init : varDefInits) {
+			inits.addLast(decodeIntConst(init.num, attrLoc.get(init)));  // število ponovitev enega inita
+			switch (init.value.type) {                                    // vrednost enega inita
+				case INTCONST -> {
+					inits.addLast(1);                                  // dolžina enega inita (INT)
+					inits.addLast(decodeIntConst(init.value, attrLoc.get(init)));
+				}
+				case CHRCONST -> {
+					inits.addLast(1);                                  // dolžina enega inita (CHAR)
+					inits.addLast(decodeChrConst(init.value, attrLoc.get(init)));
+				}
+				case STRCONST -> {
+					final int[] chars = decodeStrConst(init.value, attrLoc.get(init));
+					inits.addLast(chars.length);                          // dolžina enega inita (STRING)
+					for (final int c : chars)
+						inits.addLast(c);
 				}
-				return inits;
 			}
 		}
+		return inits;
 	}
 
 	/**
-	 * Izracuna vrednost celostevilske konstante.
+	 * Vrne vrednost celostevilske konstante.
 	 *
 	 * @param intAtomExpr Celostevilska konstanta.
 	 * @param loc         Lokacija celostevilske konstante.
 	 * @return Vrednost celostevilske konstante.
 	 */
 	public static Integer decodeIntConst(final AST.AtomExpr intAtomExpr, final Report.Locatable loc) {
-		try {
-			return Integer.decode(intAtomExpr.value);
-		} catch (NumberFormatException __) {
+		if (intAtomExpr.intValue == null)
 			throw new Report.Error(loc, "Illegal integer value.");
-		}
+		return intAtomExpr.intValue;
 	}
 
 	/**
-	 * Izracuna vrednost znakovna konstante.
+	 * Vrne vrednost znakovna konstante.
 	 *
 	 * @param chrAtomExpr Znakovna konstanta.
 	 * @param loc         Lokacija znakovne konstante.
 	 * @return Vrednost znakovne konstante.
 	 */
 	public static Integer decodeChrConst(final AST.AtomExpr chrAtomExpr, final Report.Locatable loc) {
-		switch (chrAtomExpr.value.charAt(1)) {
-			case '\\':
-				switch (chrAtomExpr.value.charAt(2)) {
-					case 'n':
-						return 10;
-					case '\'':
-						return ((int) '\'');
-					case '\\':
-						return ((int) '\\');
-					default:
-						return 16 * (((int) chrAtomExpr.value.charAt(2)) - ((int) '0'))
-								+ (((int) chrAtomExpr.value.charAt(3)) - ((int) '0'));
-				}
-			default:
-				return ((int) chrAtomExpr.value.charAt(1));
-		}
+		if (chrAtomExpr.intValue == null)
+			throw new Report.Error(loc, "Illegal character value.");
+		return chrAtomExpr.intValue;
 	}
 
 	/**
-	 * Izracuna vrednost konstantnega niza.
+	 * Vrne vrednost konstantnega niza.
 	 *
 	 * @param strAtomExpr Konstantni niz.
 	 * @param loc         Lokacija konstantnega niza.
 	 * @return Vrendnost konstantega niza.
 	 */
-	public static Vector<Integer> decodeStrConst(final AST.AtomExpr strAtomExpr, final Report.Locatable loc) {
-		final Vector<Integer> value = new Vector<Integer>();
-		for (int c = 1; c < strAtomExpr.value.length() - 1; c++) {
-			switch (strAtomExpr.value.charAt(c)) {
-				case '\\':
-					switch (strAtomExpr.value.charAt(c + 1)) {
-						case 'n':
-							value.addLast(10);
-							c += 1;
-							break;
-						case '\"':
-							value.addLast((int) '\"');
-							c += 1;
-							break;
-						case '\\':
-							value.addLast((int) '\\');
-							c += 1;
-							break;
-						default:
-							value.addLast(16 * (((int) strAtomExpr.value.charAt(c + 1)) - ((int) '0'))
-									+ (((int) strAtomExpr.value.charAt(c + 2)) - ((int) '0')));
-							c += 2;
-							break;
-					}
-					break;
-				default:
-					value.addLast((int) strAtomExpr.value.charAt(c));
-					break;
-			}
-		}
-		return value;
+	public static int[] decodeStrConst(final AST.AtomExpr strAtomExpr, final Report.Locatable loc) {
+		if (strAtomExpr.strValue == null)
+			throw new Report.Error(loc, "Illegal string value.");
+		return strAtomExpr.strValue;
 	}
 
 	// --- ZAGON ---
@@ -0,0 +1,1544 @@
+package pins24.phase;
+
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Optimizacija abstraktnega sintaksnega drevesa.
+ *
+ * Optimizacije delujejo nad abstraktnim sintaksnim drevesom z dodanimi
+ * atributi semanticne analize in vrnejo novo drevo z enakimi atributi, ki ga
+ * nato obdela izracun pomnilniske predstavitve. Vozlisca drevesa so
+ * nespremenljiva, zato se spremenjeni deli drevesa zgradijo na novo, ostali pa
+ * se ohranijo.
+ */
+public class Optim {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public Optim() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Opravi optimizacijo.
+	 *
+	 * @param semanAttrAST Abstraktno sintaksno drevo z dodanimi atributi
+	 *                     semanticne analize.
+	 * @return Optimizirano abstraktno sintaksno drevo z dodanimi atributi
+	 *         semanticne analize.
+	 */
+	public static SemAn.AttrAST optimize(SemAn.AttrAST semanAttrAST) {
+		return Metrics.measure("Optim.optimize", () -> {
+			SemAn.AttrAST attrAST = semanAttrAST;
+			attrAST = new DeadDefEliminator(attrAST).rewrite();
+			attrAST = new LoopOptimizer(attrAST).rewrite();
+			attrAST = new CommonSubexprEliminator(attrAST).rewrite();
+			return attrAST;
+		});
+	}
+
+	// --- PREPISOVANJE DREVESA ---
+
+	/**
+	 * Prepisovalnik abstraktnega sintaksnega drevesa.
+	 *
+	 * Vsak obisk vrne vozlisce, ki nadomesti obiskano vozlisce: isto vozlisce, ce
+	 * se ni nic spremenilo, sicer pa novo vozlisce z atributi starega. Vrednost
+	 * {@code null} v zaporedju vozlisc pomeni, da se vozlisce odstrani.
+	 */
+	private static class Rewriter implements AST.Visitor<AST.Node, Object> {
+
+		/** Abstraktno sintaksno drevo z dodanimi atributi semanticne analize. */
+		protected final SemAn.AttrAST attrAST;
+
+		/** Atribut: lokacija kode, ki priprada posameznemu vozliscu. */
+		protected final HashMap<AST.Node, Report.Locatable> attrLoc;
+
+		/** Atribut: definicija uporabljenega imena. */
+		protected final HashMap<AST.NameExpr, AST.Def> attrDef;
+
+		/** Atribut: ali je dani izraz levi izraz. */
+		protected final HashMap<AST.Expr, Boolean> attrLVal;
+
+		/** Preslikava zamenjanih definicij v nove definicije. */
+		protected final HashMap<AST.Def, AST.Def> newDefs;
+
+		/** Stevec, iz katerega se tvorijo imena zacasnih spremenljivk. */
+		protected final int[] tempCount;
+
+		/** Funkcija, katere telo se trenutno prepisuje. */
+		protected AST.FunDef funDef = null;
+
+		/**
+		 * Ustvari nov prepisovalnik.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                analize.
+		 */
+		public Rewriter(final SemAn.AttrAST attrAST) {
+			this.attrAST = attrAST;
+			this.attrLoc = new HashMap<AST.Node, Report.Locatable>(attrAST.attrLoc);
+			this.attrDef = new HashMap<AST.NameExpr, AST.Def>(attrAST.attrDef);
+			this.attrLVal = new HashMap<AST.Expr, Boolean>(attrAST.attrLVal);
+			this.newDefs = new HashMap<AST.Def, AST.Def>();
+			this.tempCount = new int[] { 0 };
+		}
+
+		/**
+		 * Ustvari nov prepisovalnik, ki si atribute deli z obstojecim.
+		 *
+		 * @param rewriter Obstojeci prepisovalnik.
+		 */
+		public Rewriter(final Rewriter rewriter) {
+			this.attrAST = rewriter.attrAST;
+			this.attrLoc = rewriter.attrLoc;
+			this.attrDef = rewriter.attrDef;
+			this.attrLVal = rewriter.attrLVal;
+			this.newDefs = rewriter.newDefs;
+			this.tempCount = rewriter.tempCount;
+			this.funDef = rewriter.funDef;
+		}
+
+		/**
+		 * Sprozi prepisovanje celega drevesa.
+		 *
+		 * @return Prepisano abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *         analize.
+		 */
+		public SemAn.AttrAST rewrite() {
+			final AST.Node ast = attrAST.ast.accept(this, null);
+			if (ast == attrAST.ast)
+				return attrAST;
+			for (final Map.Entry<AST.NameExpr, AST.Def> entry : attrDef.entrySet()) {
+				final AST.Def newDef = newDefs.get(entry.getValue());
+				if (newDef != null)
+					entry.setValue(newDef);
+			}
+			return new SemAn.AttrAST(new Abstr.AttrAST(new AST.AttrAST(ast), Collections.unmodifiableMap(attrLoc)),
+					Collections.unmodifiableMap(attrDef), Collections.unmodifiableMap(attrLVal),
+					SemAn.uses(ast, attrDef, attrLVal));
+		}
+
+		/**
+		 * Novemu vozliscu, ki nadomesti staro, priredi atribute starega vozlisca.
+		 *
+		 * @param <ANode>  Tip novega vozlisca.
+		 * @param oldNode  Staro vozlisce.
+		 * @param newNode  Novo vozlisce.
+		 * @return Novo vozlisce.
+		 */
+		protected <ANode extends AST.Node> ANode replaced(final AST.Node oldNode, final ANode newNode) {
+			final Report.Locatable loc = attrLoc.get(oldNode);
+			if (loc != null)
+				attrLoc.put(newNode, loc);
+			if (oldNode instanceof AST.Expr oldExpr && newNode instanceof AST.Expr newExpr
+					&& attrLVal.containsKey(oldExpr))
+				attrLVal.put(newExpr, attrLVal.get(oldExpr));
+			if (oldNode instanceof AST.NameExpr oldName && newNode instanceof AST.NameExpr newName)
+				attrDef.put(newName, attrDef.get(oldName));
+			if (oldNode instanceof AST.Def oldDef && newNode instanceof AST.Def newDef)
+				newDefs.put(oldDef, newDef);
+			return newNode;
+		}
+
+		/**
+		 * Novemu (sintetiziranemu) vozliscu priredi lokacijo in atribut levega izraza.
+		 *
+		 * @param <ANode> Tip vozlisca.
+		 * @param node    Novo vozlisce.
+		 * @param loc     Lokacija vozlisca.
+		 * @return Novo vozlisce.
+		 */
+		protected <ANode extends AST.Node> ANode located(final ANode node, final Report.Locatable loc) {
+			attrLoc.put(node, loc);
+			if (node instanceof AST.Expr expr)
+				attrLVal.put(expr, node instanceof AST.VarExpr);
+			return node;
+		}
+
+		/**
+		 * Ustvari novo zacasno spremenljivko z zacetno vrednostjo 0.
+		 *
+		 * @param loc Lokacija, ki se pripise zacasni spremenljivki.
+		 * @return Definicija zacasne spremenljivke.
+		 */
+		protected AST.VarDef newTemp(final Report.Locatable loc) {
+			final AST.Init init = located(new AST.Init(located(new AST.AtomExpr(1), loc),
+					located(new AST.AtomExpr(0), loc)), loc);
+			return located(new AST.VarDef("$t" + (++tempCount[0]), List.of(init)), loc);
+		}
+
+		/**
+		 * Ustvari nov dostop do spremenljivke.
+		 *
+		 * @param def Definicija spremenljivke ali parametra.
+		 * @param loc Lokacija dostopa.
+		 * @return Dostop do spremenljivke.
+		 */
+		protected AST.VarExpr newVarExpr(final AST.Def def, final Report.Locatable loc) {
+			final AST.VarExpr varExpr = located(new AST.VarExpr(def.name), loc);
+			attrDef.put(varExpr, def);
+			return varExpr;
+		}
+
+		/**
+		 * Ustvari novo celostevilsko konstanto.
+		 *
+		 * @param value Vrednost konstante (nenegativna).
+		 * @param loc   Lokacija konstante.
+		 * @return Celostevilska konstanta.
+		 */
+		protected AST.AtomExpr newIntConst(final int value, final Report.Locatable loc) {
+			return located(new AST.AtomExpr(value), loc);
+		}
+
+		/**
+		 * Ustvari nov prireditveni stavek.
+		 *
+		 * @param dst Definicija spremenljivke, ki se ji prireja vrednost.
+		 * @param src Vrednost, ki se prireja.
+		 * @param loc Lokacija stavka.
+		 * @return Prireditveni stavek.
+		 */
+		protected AST.AssignStmt newAssign(final AST.Def dst, final AST.Expr src, final Report.Locatable loc) {
+			return located(new AST.AssignStmt(newVarExpr(dst, loc), src), loc);
+		}
+
+		/**
+		 * Prepise zaporedje vozlisc.
+		 *
+		 * @param <ANode> Tip vozlisc.
+		 * @param nodes   Zaporedje vozlisc.
+		 * @return Prepisano zaporedje vozlisc.
+		 */
+		@SuppressWarnings("unchecked")
+		protected <ANode extends AST.Node> AST.Nodes<ANode> rewrite(final AST.Nodes<ANode> nodes) {
+			return (AST.Nodes<ANode>) nodes.accept(this, null);
+		}
+
+		/**
+		 * Doda prepisano vozlisce v prepisano zaporedje vozlisc.
+		 *
+		 * @param nodes   Prepisano zaporedje vozlisc.
+		 * @param oldNode Staro vozlisce.
+		 * @param newNode Prepisano vozlisce (ali {@code null}, ce se odstrani).
+		 */
+		protected void append(final List<AST.Node> nodes, final AST.Node oldNode, final AST.Node newNode) {
+			if (newNode != null)
+				nodes.add(newNode);
+		}
+
+		@Override
+		public AST.Node visit(final AST.Nodes<? extends AST.Node> nodes, final Object arg) {
+			final List<AST.Node> newNodes = new ArrayList<AST.Node>();
+			for (final AST.Node node : nodes)
+				append(newNodes, node, node.accept(this, arg));
+			boolean changed = newNodes.size() != nodes.size();
+			for (int index = 0; !changed && index < newNodes.size(); index++)
+				changed = newNodes.get(index) != nodes.get(index);
+			return changed ? new AST.Nodes<AST.Node>(newNodes) : nodes;
+		}
+
+		@Override
+		public AST.Node visit(final AST.FunDef funDef, final Object arg) {
+			final AST.FunDef outerFunDef = this.funDef;
+			this.funDef = funDef;
+			final AST.Nodes<AST.Stmt> stmts = rewrite(funDef.stmts);
+			this.funDef = outerFunDef;
+			if (stmts == funDef.stmts)
+				return funDef;
+			return replaced(funDef, new AST.FunDef(funDef.name, funDef.pars.getAll(), stmts.getAll()));
+		}
+
+		@Override
+		public AST.Node visit(final AST.ParDef parDef, final Object arg) {
+			return parDef;
+		}
+
+		@Override
+		public AST.Node visit(final AST.VarDef varDef, final Object arg) {
+			return varDef;
+		}
+
+		@Override
+		public AST.Node visit(final AST.Init init, final Object arg) {
+			return init;
+		}
+
+		@Override
+		public AST.Node visit(final AST.ExprStmt exprStmt, final Object arg) {
+			final AST.Expr expr = (AST.Expr) exprStmt.expr.accept(this, arg);
+			if (expr == exprStmt.expr)
+				return exprStmt;
+			return replaced(exprStmt, new AST.ExprStmt(expr));
+		}
+
+		@Override
+		public AST.Node visit(final AST.AssignStmt assignStmt, final Object arg) {
+			final AST.Expr dstExpr = (AST.Expr) assignStmt.dstExpr.accept(this, arg);
+			final AST.Expr srcExpr = (AST.Expr) assignStmt.srcExpr.accept(this, arg);
+			if (dstExpr == assignStmt.dstExpr && srcExpr == assignStmt.srcExpr)
+				return assignStmt;
+			return replaced(assignStmt, new AST.AssignStmt(dstExpr, srcExpr));
+		}
+
+		@Override
+		public AST.Node visit(final AST.IfStmt ifStmt, final Object arg) {
+			final AST.Expr cond = (AST.Expr) ifStmt.cond.accept(this, arg);
+			final AST.Nodes<AST.Stmt> thenStmts = rewrite(ifStmt.thenStmts);
+			final AST.Nodes<AST.Stmt> elseStmts = rewrite(ifStmt.elseStmts);
+			if (cond == ifStmt.cond && thenStmts == ifStmt.thenStmts && elseStmts == ifStmt.elseStmts)
+				return ifStmt;
+			return replaced(ifStmt, new AST.IfStmt(cond, thenStmts.getAll(), elseStmts.getAll()));
+		}
+
+		@Override
+		public AST.Node visit(final AST.WhileStmt whileStmt, final Object arg) {
+			final AST.Expr cond = (AST.Expr) whileStmt.cond.accept(this, arg);
+			final AST.Nodes<AST.Stmt> stmts = rewrite(whileStmt.stmts);
+			if (cond == whileStmt.cond && stmts == whileStmt.stmts)
+				return whileStmt;
+			return replaced(whileStmt, new AST.WhileStmt(cond, stmts.getAll()));
+		}
+
+		@Override
+		public AST.Node visit(final AST.LetStmt letStmt, final Object arg) {
+			final AST.Nodes<AST.MainDef> defs = rewrite(letStmt.defs);
+			final AST.Nodes<AST.Stmt> stmts = rewrite(letStmt.stmts);
+			if (defs == letStmt.defs && stmts == letStmt.stmts)
+				return letStmt;
+			return replaced(letStmt, new AST.LetStmt(defs.getAll(), stmts.getAll()));
+		}
+
+		@Override
+		public AST.Node visit(final AST.AtomExpr atomExpr, final Object arg) {
+			return atomExpr;
+		}
+
+		@Override
+		public AST.Node visit(final AST.UnExpr unExpr, final Object arg) {
+			final AST.Expr expr = (AST.Expr) unExpr.expr.accept(this, arg);
+			if (expr == unExpr.expr)
+				return unExpr;
+			return replaced(unExpr, new AST.UnExpr(unExpr.oper, expr));
+		}
+
+		@Override
+		public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+			final AST.Expr fstExpr = (AST.Expr) binExpr.fstExpr.accept(this, arg);
+			final AST.Expr sndExpr = (AST.Expr) binExpr.sndExpr.accept(this, arg);
+			if (fstExpr == binExpr.fstExpr && sndExpr == binExpr.sndExpr)
+				return binExpr;
+			return replaced(binExpr, new AST.BinExpr(binExpr.oper, fstExpr, sndExpr));
+		}
+
+		@Override
+		public AST.Node visit(final AST.VarExpr varExpr, final Object arg) {
+			return varExpr;
+		}
+
+		@Override
+		public AST.Node visit(final AST.CallExpr callExpr, final Object arg) {
+			final AST.Nodes<AST.Expr> args = rewrite(callExpr.args);
+			if (args == callExpr.args)
+				return callExpr;
+			return replaced(callExpr, new AST.CallExpr(callExpr.name, args.getAll()));
+		}
+
+	}
+
+	// --- LASTNOSTI DEFINICIJ ---
+
+	/**
+	 * Lastnosti definicij spremenljivk in parametrov, ki dolocajo, ali se lahko
+	 * njihova vrednost spremeni brez prireditve v sami funkciji.
+	 */
+	private static class DefFacts {
+
+		/** Funkcija, v kateri je definiran parameter ali lokalna spremenljivka. */
+		private final HashMap<AST.Def, AST.FunDef> owners = new HashMap<AST.Def, AST.FunDef>();
+
+		/**
+		 * Parametri in spremenljivke, ki se jim vzame naslov ali do katerih dostopa
+		 * druga funkcija.
+		 */
+		private final HashSet<AST.Def> shared = new HashSet<AST.Def>();
+
+		/** Oznake definicij (in drugih vozlisc) za kljuce izrazov. */
+		private final IdentityHashMap<AST.Node, Integer> ids = new IdentityHashMap<AST.Node, Integer>();
+
+		/**
+		 * Zbere lastnosti definicij.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                analize.
+		 */
+		public DefFacts(final SemAn.AttrAST attrAST) {
+			attrAST.ast.accept(new AST.FullVisitor<Object, AST.FunDef>() {
+
+				@Override
+				public Object visit(final AST.FunDef funDef, final AST.FunDef outerFunDef) {
+					funDef.pars.accept(this, funDef);
+					funDef.stmts.accept(this, funDef);
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.ParDef parDef, final AST.FunDef funDef) {
+					owners.put(parDef, funDef);
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.VarDef varDef, final AST.FunDef funDef) {
+					if (funDef != null)
+						owners.put(varDef, funDef);
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.VarExpr varExpr, final AST.FunDef funDef) {
+					final AST.Def def = attrAST.attrDef.get(varExpr);
+					if (owners.get(def) != funDef)
+						shared.add(def);
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.UnExpr unExpr, final AST.FunDef funDef) {
+					if (unExpr.oper == AST.UnExpr.Oper.MEMADDR && unExpr.expr instanceof AST.VarExpr varExpr)
+						shared.add(attrAST.attrDef.get(varExpr));
+					unExpr.expr.accept(this, funDef);
+					return null;
+				}
+
+			}, null);
+		}
+
+		/**
+		 * Vrne, ali je parameter ali spremenljivka lokalna dani funkciji in je zato
+		 * lahko spremenjena le s prireditvijo v tej funkciji.
+		 *
+		 * @param def    Definicija parametra ali spremenljivke.
+		 * @param funDef Funkcija.
+		 * @return Ali je parameter ali spremenljivka lokalna dani funkciji.
+		 */
+		public boolean isPrivate(final AST.Def def, final AST.FunDef funDef) {
+			return funDef != null && owners.get(def) == funDef && !shared.contains(def);
+		}
+
+		/**
+		 * Vrne oznako vozlisca, ki je razlicna za razlicna vozlisca in se ne
+		 * spreminja (doloci se ob prvi zahtevi).
+		 *
+		 * @param node Vozlisce (obicajno definicija).
+		 * @return Oznaka vozlisca.
+		 */
+		public int id(final AST.Node node) {
+			return ids.computeIfAbsent(node, __ -> ids.size());
+		}
+
+	}
+
+	// --- NEDOSEGLJIVE DEFINICIJE ---
+
+	/**
+	 * Odstranitev definicij funkcij in spremenljivk, ki niso dosegljive iz funkcije
+	 * {@code main}.
+	 *
+	 * Dosegljive so funkcija {@code main} in vse definicije, katerih imena se
+	 * uporabljajo v telesih dosegljivih funkcij. Ce program nima funkcije
+	 * {@code main}, se ne odstrani nobena definicija. Stavek {@code let}, v
+	 * katerem ne ostane nobena definicija, se nadomesti s svojimi stavki.
+	 */
+	private static class DeadDefEliminator extends Rewriter {
+
+		/** Dosegljive definicije. */
+		private final HashSet<AST.Def> reachable = new HashSet<AST.Def>();
+
+		/**
+		 * Ustvari nov odstranjevalnik nedosegljivih definicij.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                analize.
+		 */
+		public DeadDefEliminator(final SemAn.AttrAST attrAST) {
+			super(attrAST);
+			AST.FunDef mainDef = null;
+			for (final AST.Node def : (AST.Nodes<?>) attrAST.ast)
+				if (def instanceof AST.FunDef funDef && funDef.name.equals("main"))
+					mainDef = funDef;
+			if (mainDef == null)
+				return;
+
+			final LinkedList<AST.FunDef> pending = new LinkedList<AST.FunDef>();
+			reachable.add(mainDef);
+			pending.add(mainDef);
+			final AST.FullVisitor<Object, Object> collector = new AST.FullVisitor<Object, Object>() {
+
+				@Override
+				public Object visit(final AST.FunDef funDef, final Object arg) {
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.VarDef varDef, final Object arg) {
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.VarExpr varExpr, final Object arg) {
+					reachable.add(attrAST.attrDef.get(varExpr));
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.CallExpr callExpr, final Object arg) {
+					final AST.Def def = attrAST.attrDef.get(callExpr);
+					if (reachable.add(def))
+						pending.add((AST.FunDef) def);
+					return AST.FullVisitor.super.visit(callExpr, arg);
+				}
+
+			};
+			while (!pending.isEmpty())
+				pending.removeFirst().stmts.accept(collector, null);
+		}
+
+		@Override
+		public SemAn.AttrAST rewrite() {
+			return reachable.isEmpty() ? attrAST : super.rewrite();
+		}
+
+		@Override
+		public AST.Node visit(final AST.FunDef funDef, final Object arg) {
+			return reachable.contains(funDef) ? super.visit(funDef, arg) : null;
+		}
+
+		@Override
+		public AST.Node visit(final AST.VarDef varDef, final Object arg) {
+			return reachable.contains(varDef) ? varDef : null;
+		}
+
+		@Override
+		protected void append(final List<AST.Node> nodes, final AST.Node oldNode, final AST.Node newNode) {
+			// stavek let brez definicij se nadomesti s svojimi stavki:
+			if (newNode instanceof AST.LetStmt letStmt && letStmt.defs.size() == 0)
+				nodes.addAll(letStmt.stmts.getAll());
+			else
+				super.append(nodes, oldNode, newNode);
+		}
+
+	}
+
+	// --- ZANKE ---
+
+	/**
+	 * Optimizacija zank: premik invariantnih izrazov iz zanke in zmanjsanje moci
+	 * operacij.
+	 *
+	 * Iz zanke se premaknejo najvecji invariantni dvomestni izrazi, ki ne vsebujejo
+	 * klicev, dereferenciranja ali deljenja s spremenljivko (njihov izracun pred
+	 * zanko, ki se morda sploh ne izvede, zato ne more povzrociti napake). Mnozenje
+	 * indukcijske spremenljivke s konstanto se nadomesti z zacasno spremenljivko,
+	 * ki se ob vsakem povecanju indukcijske spremenljivke ustrezno poveca.
+	 * Mnozenje, deljenje in ostanek pri deljenju z 0, 1 in 2 se poenostavijo.
+	 */
+	private static class LoopOptimizer extends Rewriter {
+
+		/** Lastnosti definicij spremenljivk in parametrov. */
+		private final DefFacts defFacts;
+
+		/**
+		 * Ustvari nov optimizator zank.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                analize.
+		 */
+		public LoopOptimizer(final SemAn.AttrAST attrAST) {
+			super(attrAST);
+			this.defFacts = new DefFacts(attrAST);
+		}
+
+		@Override
+		public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+			final AST.Node node = super.visit(binExpr, arg);
+			return node instanceof AST.BinExpr newBinExpr ? simplify(binExpr, newBinExpr) : node;
+		}
+
+		/**
+		 * Poenostavi mnozenje, deljenje in ostanek pri deljenju s konstantami 0, 1 in
+		 * 2 (PINS'24 nima operatorjev pomika, zato je to edina cenejsa oblika, ki jo
+		 * je mogoce izraziti v abstraktnem sintaksnem drevesu).
+		 *
+		 * @param oldExpr Prvotni izraz.
+		 * @param binExpr Prepisani izraz.
+		 * @return Poenostavljeni izraz.
+		 */
+		private AST.Expr simplify(final AST.BinExpr oldExpr, final AST.BinExpr binExpr) {
+			final Integer fst = intValue(binExpr.fstExpr);
+			final Integer snd = intValue(binExpr.sndExpr);
+			final Report.Locatable loc = attrLoc.get(oldExpr);
+			switch (binExpr.oper) {
+			case MUL:
+				if (snd != null && snd == 1)
+					return binExpr.fstExpr;
+				if (fst != null && fst == 1)
+					return binExpr.sndExpr;
+				if ((snd != null && snd == 0 && isPure(binExpr.fstExpr))
+						|| (fst != null && fst == 0 && isPure(binExpr.sndExpr)))
+					return newIntConst(0, loc);
+				if (snd != null && snd == 2 && binExpr.fstExpr instanceof AST.VarExpr varExpr)
+					return located(new AST.BinExpr(AST.BinExpr.Oper.ADD, varExpr,
+							newVarExpr(attrDef.get(varExpr), loc)), loc);
+				if (fst != null && fst == 2 && binExpr.sndExpr instanceof AST.VarExpr varExpr)
+					return located(new AST.BinExpr(AST.BinExpr.Oper.ADD, varExpr,
+							newVarExpr(attrDef.get(varExpr), loc)), loc);
+				break;
+			case DIV:
+				if (snd != null && snd == 1)
+					return binExpr.fstExpr;
+				break;
+			case MOD:
+				if (snd != null && snd == 1 && isPure(binExpr.fstExpr))
+					return newIntConst(0, loc);
+				break;
+			default:
+				break;
+			}
+			return binExpr == oldExpr ? oldExpr : binExpr;
+		}
+
+		@Override
+		public AST.Node visit(final AST.WhileStmt whileStmt, final Object arg) {
+			// Najprej se optimizirajo notranje zanke.
+			final AST.WhileStmt loop = (AST.WhileStmt) super.visit(whileStmt, arg);
+			final Report.Locatable loc = attrLoc.get(whileStmt);
+			final LoopFacts loopFacts = new LoopFacts(loop);
+
+			final List<AST.MainDef> temps = new ArrayList<AST.MainDef>();
+			final List<AST.Stmt> preheader = new ArrayList<AST.Stmt>();
+
+			// Premik invariantnih izrazov.
+			final Hoister hoister = new Hoister(loopFacts, temps, preheader, loc);
+			AST.WhileStmt newLoop = (AST.WhileStmt) hoister.visitLoop(loop);
+
+			// Zmanjsanje moci mnozenja indukcijskih spremenljivk.
+			for (final Map.Entry<AST.Def, Integer> induction : loopFacts.inductions().entrySet()) {
+				final AST.Def def = induction.getKey();
+				for (final int factor : loopFacts.factors(newLoop, def)) {
+					final AST.VarDef temp = newTemp(loc);
+					temps.add(temp);
+					preheader.add(newAssign(temp, located(new AST.BinExpr(AST.BinExpr.Oper.MUL, newVarExpr(def, loc),
+							newIntConst(factor, loc)), loc), loc));
+					newLoop = (AST.WhileStmt) new Reducer(def, factor, temp, loc).visitLoop(newLoop);
+				}
+			}
+
+			if (temps.isEmpty())
+				return loop;
+			final List<AST.Stmt> stmts = new ArrayList<AST.Stmt>(preheader);
+			stmts.add(newLoop);
+			return replaced(whileStmt, new AST.LetStmt(temps, stmts));
+		}
+
+		/**
+		 * Vrne vrednost celostevilske konstante.
+		 *
+		 * @param expr Izraz.
+		 * @return Vrednost konstante ali {@code null}, ce izraz ni celostevilska
+		 *         konstanta.
+		 */
+		private static Integer intValue(final AST.Expr expr) {
+			if (!(expr instanceof AST.AtomExpr atomExpr) || atomExpr.type != AST.AtomExpr.Type.INTCONST)
+				return null;
+			return atomExpr.intValue;
+		}
+
+		/**
+		 * Vrne, ali izraz ne vsebuje klicev funkcij (in ga je zato mogoce izpustiti).
+		 *
+		 * @param expr Izraz.
+		 * @return Ali izraz ne vsebuje klicev funkcij.
+		 */
+		private static boolean isPure(final AST.Expr expr) {
+			return switch (expr) {
+			case AST.CallExpr callExpr -> false;
+			case AST.UnExpr unExpr -> isPure(unExpr.expr);
+			case AST.BinExpr binExpr -> isPure(binExpr.fstExpr) && isPure(binExpr.sndExpr);
+			default -> true;
+			};
+		}
+
+		/**
+		 * Vrne povecanje indukcijske spremenljivke v prireditvi
+		 * {@code i = i + c}, {@code i = c + i} ali {@code i = i - c}.
+		 *
+		 * @param def     Spremenljivka, ki se ji prireja vrednost.
+		 * @param srcExpr Vrednost, ki se prireja.
+		 * @return Povecanje ali {@code null}, ce prireditev ni take oblike.
+		 */
+		private Integer step(final AST.Def def, final AST.Expr srcExpr) {
+			if (!(srcExpr instanceof AST.BinExpr binExpr))
+				return null;
+			final boolean fstIsVar = binExpr.fstExpr instanceof AST.VarExpr fstVar && attrDef.get(fstVar) == def;
+			final boolean sndIsVar = binExpr.sndExpr instanceof AST.VarExpr sndVar && attrDef.get(sndVar) == def;
+			final Integer fst = intValue(binExpr.fstExpr);
+			final Integer snd = intValue(binExpr.sndExpr);
+			if (binExpr.oper == AST.BinExpr.Oper.ADD && fstIsVar && snd != null)
+				return snd;
+			if (binExpr.oper == AST.BinExpr.Oper.ADD && sndIsVar && fst != null)
+				return fst;
+			if (binExpr.oper == AST.BinExpr.Oper.SUB && fstIsVar && snd != null)
+				return -snd;
+			return null;
+		}
+
+		/**
+		 * Lastnosti zanke.
+		 */
+		private class LoopFacts {
+
+			/** Spremenljivke, ki se jim v zanki prireja vrednost. */
+			private final HashSet<AST.Def> assigned = new HashSet<AST.Def>();
+
+			/** Definicije znotraj zanke. */
+			private final HashSet<AST.Def> declared = new HashSet<AST.Def>();
+
+			/** Povecanja indukcijskih spremenljivk (oziroma {@code null}, ce to niso). */
+			private final HashMap<AST.Def, Integer> steps = new HashMap<AST.Def, Integer>();
+
+			/** Ali zanka vsebuje klic funkcije ali prireditev preko kazalca. */
+			private boolean sideEffects = false;
+
+			/**
+			 * Zbere lastnosti zanke.
+			 *
+			 * @param loop Zanka.
+			 */
+			public LoopFacts(final AST.WhileStmt loop) {
+				loop.accept(new AST.FullVisitor<Object, Object>() {
+
+					@Override
+					public Object visit(final AST.FunDef funDef, final Object arg) {
+						declared.add(funDef);
+						return null;
+					}
+
+					@Override
+					public Object visit(final AST.VarDef varDef, final Object arg) {
+						declared.add(varDef);
+						return null;
+					}
+
+					@Override
+					public Object visit(final AST.AssignStmt assignStmt, final Object arg) {
+						if (assignStmt.dstExpr instanceof AST.VarExpr varExpr) {
+							final AST.Def def = attrDef.get(varExpr);
+							assigned.add(def);
+							final Integer step = step(def, assignStmt.srcExpr);
+							if (step == null || steps.containsKey(def) && steps.get(def) == null)
+								steps.put(def, null);
+							else
+								steps.put(def, step);
+						} else
+							sideEffects = true;
+						return AST.FullVisitor.super.visit(assignStmt, arg);
+					}
+
+					@Override
+					public Object visit(final AST.CallExpr callExpr, final Object arg) {
+						sideEffects = true;
+						return AST.FullVisitor.super.visit(callExpr, arg);
+					}
+
+				}, null);
+			}
+
+			/**
+			 * Vrne, ali se vrednost spremenljivke ali parametra v zanki lahko spremeni.
+			 *
+			 * @param def Definicija spremenljivke ali parametra.
+			 * @return Ali se vrednost v zanki lahko spremeni.
+			 */
+			public boolean isVariant(final AST.Def def) {
+				return assigned.contains(def) || declared.contains(def)
+						|| (sideEffects && !defFacts.isPrivate(def, funDef));
+			}
+
+			/**
+			 * Vrne, ali je izraz v zanki invarianten in ga je varno izracunati pred
+			 * zanko.
+			 *
+			 * @param expr Izraz.
+			 * @return Ali je izraz invarianten.
+			 */
+			public boolean isInvariant(final AST.Expr expr) {
+				return switch (expr) {
+				case AST.AtomExpr atomExpr -> true;
+				case AST.VarExpr varExpr -> !isVariant(attrDef.get(varExpr));
+				case AST.UnExpr unExpr -> switch (unExpr.oper) {
+					case MEMADDR -> true;
+					case VALUEAT -> false;
+					default -> isInvariant(unExpr.expr);
+					};
+				case AST.BinExpr binExpr -> switch (binExpr.oper) {
+					case DIV, MOD -> intValue(binExpr.sndExpr) != null && intValue(binExpr.sndExpr) != 0
+							&& isInvariant(binExpr.fstExpr);
+					default -> isInvariant(binExpr.fstExpr) && isInvariant(binExpr.sndExpr);
+					};
+				default -> false;
+				};
+			}
+
+			/**
+			 * Vrne indukcijske spremenljivke zanke in njihova povecanja.
+			 *
+			 * @return Indukcijske spremenljivke zanke in njihova povecanja.
+			 */
+			public Map<AST.Def, Integer> inductions() {
+				final LinkedHashMap<AST.Def, Integer> inductions = new LinkedHashMap<AST.Def, Integer>();
+				for (final Map.Entry<AST.Def, Integer> step : steps.entrySet())
+					if (step.getValue() != null && !declared.contains(step.getKey())
+							&& defFacts.isPrivate(step.getKey(), funDef))
+						inductions.put(step.getKey(), step.getValue());
+				return inductions;
+			}
+
+			/**
+			 * Vrne konstante, s katerimi se indukcijska spremenljivka v zanki mnozi.
+			 *
+			 * @param loop Zanka.
+			 * @param def  Indukcijska spremenljivka.
+			 * @return Konstante, s katerimi se indukcijska spremenljivka mnozi.
+			 */
+			public Set<Integer> factors(final AST.WhileStmt loop, final AST.Def def) {
+				final TreeSet<Integer> factors = new TreeSet<Integer>();
+				loop.accept(new AST.FullVisitor<Object, Object>() {
+
+					@Override
+					public Object visit(final AST.FunDef funDef, final Object arg) {
+						return null;
+					}
+
+					@Override
+					public Object visit(final AST.BinExpr binExpr, final Object arg) {
+						final Integer factor = factor(binExpr, def);
+						if (factor != null && factor > 2)
+							factors.add(factor);
+						return AST.FullVisitor.super.visit(binExpr, arg);
+					}
+
+				}, null);
+				return factors;
+			}
+
+		}
+
+		/**
+		 * Vrne konstanto, s katero izraz {@code i * c} ali {@code c * i} mnozi dano
+		 * spremenljivko.
+		 *
+		 * @param binExpr Izraz.
+		 * @param def     Spremenljivka.
+		 * @return Konstanta ali {@code null}, ce izraz ni take oblike.
+		 */
+		private Integer factor(final AST.BinExpr binExpr, final AST.Def def) {
+			if (binExpr.oper != AST.BinExpr.Oper.MUL)
+				return null;
+			if (binExpr.fstExpr instanceof AST.VarExpr varExpr && attrDef.get(varExpr) == def)
+				return intValue(binExpr.sndExpr);
+			if (binExpr.sndExpr instanceof AST.VarExpr varExpr && attrDef.get(varExpr) == def)
+				return intValue(binExpr.fstExpr);
+			return null;
+		}
+
+		/**
+		 * Prepisovalnik, ki invariantne izraze zanke nadomesti z zacasnimi
+		 * spremenljivkami.
+		 */
+		private class Hoister extends Rewriter {
+
+			/** Lastnosti zanke. */
+			private final LoopFacts loopFacts;
+
+			/** Zacasne spremenljivke. */
+			private final List<AST.MainDef> temps;
+
+			/** Izracuni invariantnih izrazov pred zanko. */
+			private final List<AST.Stmt> preheader;
+
+			/** Lokacija zanke. */
+			private final Report.Locatable loc;
+
+			/** Ze premaknjeni izrazi. */
+			private final HashMap<String, AST.VarDef> hoisted = new HashMap<String, AST.VarDef>();
+
+			/**
+			 * Ustvari nov prepisovalnik invariantnih izrazov.
+			 *
+			 * @param loopFacts Lastnosti zanke.
+			 * @param temps     Zacasne spremenljivke.
+			 * @param preheader Izracuni invariantnih izrazov pred zanko.
+			 * @param loc       Lokacija zanke.
+			 */
+			public Hoister(final LoopFacts loopFacts, final List<AST.MainDef> temps, final List<AST.Stmt> preheader,
+					final Report.Locatable loc) {
+				super(LoopOptimizer.this);
+				this.loopFacts = loopFacts;
+				this.temps = temps;
+				this.preheader = preheader;
+				this.loc = loc;
+			}
+
+			/**
+			 * Prepise zanko (ne pa tudi zank, ki jo obdajajo).
+			 *
+			 * @param loop Zanka.
+			 * @return Prepisana zanka.
+			 */
+			public AST.Node visitLoop(final AST.WhileStmt loop) {
+				return super.visit(loop, null);
+			}
+
+			@Override
+			public AST.Node visit(final AST.FunDef funDef, final Object arg) {
+				return funDef;
+			}
+
+			@Override
+			public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+				if (!loopFacts.isInvariant(binExpr) || !isWorthHoisting(binExpr))
+					return super.visit(binExpr, arg);
+				final String key = Keys.key(binExpr, attrDef, defFacts);
+				AST.VarDef temp = hoisted.get(key);
+				if (temp == null) {
+					temp = newTemp(loc);
+					hoisted.put(key, temp);
+					temps.add(temp);
+					preheader.add(newAssign(temp, binExpr, loc));
+				}
+				return newVarExpr(temp, attrLoc.get(binExpr));
+			}
+
+			/**
+			 * Vrne, ali izraz vsebuje dostop do spremenljivke (izrazi iz samih konstant se
+			 * ne premikajo).
+			 *
+			 * @param expr Izraz.
+			 * @return Ali se izraz splaca premakniti iz zanke.
+			 */
+			private boolean isWorthHoisting(final AST.Expr expr) {
+				return switch (expr) {
+				case AST.VarExpr varExpr -> true;
+				case AST.UnExpr unExpr -> unExpr.oper == AST.UnExpr.Oper.MEMADDR || isWorthHoisting(unExpr.expr);
+				case AST.BinExpr binExpr -> isWorthHoisting(binExpr.fstExpr) || isWorthHoisting(binExpr.sndExpr);
+				default -> false;
+				};
+			}
+
+		}
+
+		/**
+		 * Prepisovalnik, ki mnozenje indukcijske spremenljivke s konstanto nadomesti z
+		 * zacasno spremenljivko in to spremenljivko povecuje hkrati z indukcijsko
+		 * spremenljivko.
+		 */
+		private class Reducer extends Rewriter {
+
+			/** Indukcijska spremenljivka. */
+			private final AST.Def def;
+
+			/** Konstanta, s katero se indukcijska spremenljivka mnozi. */
+			private final int factor;
+
+			/** Zacasna spremenljivka z vrednostjo produkta. */
+			private final AST.VarDef temp;
+
+			/** Lokacija zanke. */
+			private final Report.Locatable loc;
+
+			/**
+			 * Ustvari nov prepisovalnik indukcijske spremenljivke.
+			 *
+			 * @param def    Indukcijska spremenljivka.
+			 * @param factor Konstanta, s katero se indukcijska spremenljivka mnozi.
+			 * @param temp   Zacasna spremenljivka z vrednostjo produkta.
+			 * @param loc    Lokacija zanke.
+			 */
+			public Reducer(final AST.Def def, final int factor, final AST.VarDef temp, final Report.Locatable loc) {
+				super(LoopOptimizer.this);
+				this.def = def;
+				this.factor = factor;
+				this.temp = temp;
+				this.loc = loc;
+			}
+
+			/**
+			 * Prepise zanko (ne pa tudi zank, ki jo obdajajo).
+			 *
+			 * @param loop Zanka.
+			 * @return Prepisana zanka.
+			 */
+			public AST.Node visitLoop(final AST.WhileStmt loop) {
+				return super.visit(loop, null);
+			}
+
+			@Override
+			public AST.Node visit(final AST.FunDef funDef, final Object arg) {
+				return funDef;
+			}
+
+			@Override
+			public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+				final Integer factor = factor(binExpr, def);
+				if (factor != null && factor == this.factor)
+					return newVarExpr(temp, attrLoc.get(binExpr));
+				return super.visit(binExpr, arg);
+			}
+
+			@Override
+			protected void append(final List<AST.Node> nodes, final AST.Node oldNode, final AST.Node newNode) {
+				super.append(nodes, oldNode, newNode);
+				if (!(newNode instanceof AST.AssignStmt assignStmt)
+						|| !(assignStmt.dstExpr instanceof AST.VarExpr varExpr) || attrDef.get(varExpr) != def)
+					return;
+				final Integer step = step(def, assignStmt.srcExpr);
+				final long delta = (long) step * factor;
+				final AST.BinExpr update = located(new AST.BinExpr(delta < 0 ? AST.BinExpr.Oper.SUB : AST.BinExpr.Oper.ADD,
+						newVarExpr(temp, loc), newIntConst((int) Math.abs(delta), loc)), loc);
+				nodes.add(newAssign(temp, update, loc));
+			}
+
+		}
+
+	}
+
+	// --- SKUPNI PODIZRAZI ---
+
+	/**
+	 * Odstranitev skupnih podizrazov v zaporedjih stavkov.
+	 *
+	 * Zaporedje stavkov se razdeli na odseke zaporednih izraznih in prireditvenih
+	 * stavkov brez klicev funkcij. Enaki izrazi v istem odseku, med katerimi se ne
+	 * spremeni nobena uporabljena spremenljivka (oziroma pomnilnik, ce izraz bere
+	 * preko kazalca), se izracunajo le enkrat v zacasno spremenljivko. Zacasne
+	 * spremenljivke se dodajo med definicije najbolj notranjega obdajajocega
+	 * stavka {@code let}, ce ga ni, pa jih definira nov stavek {@code let} le
+	 * okoli stavkov, ki jih uporabljajo. Drugi operand operatorjev
+	 * {@code and} in {@code or} se morda ne izracuna, zato se njegovi podizrazi ne
+	 * upostevajo.
+	 */
+	private static class CommonSubexprEliminator extends Rewriter {
+
+		/** Lastnosti definicij spremenljivk in parametrov. */
+		private final DefFacts defFacts;
+
+		/** Razlicice vrednosti spremenljivk in parametrov. */
+		private final HashMap<AST.Def, Integer> defVersions = new HashMap<AST.Def, Integer>();
+
+		/** Razlicica vsebine pomnilnika. */
+		private int memVersion = 0;
+
+		/** Kljuci izrazov, ki so kandidati za odstranitev. */
+		private final IdentityHashMap<AST.Expr, String> keys = new IdentityHashMap<AST.Expr, String>();
+
+		/**
+		 * Zacasne spremenljivke, ki se dodajo med definicije najbolj notranjega
+		 * obdajajocega stavka let v trenutni funkciji (ali {@code null}, ce ga ni).
+		 */
+		private List<AST.MainDef> letTemps = null;
+
+		/**
+		 * Ustvari nov odstranjevalnik skupnih podizrazov.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                analize.
+		 */
+		public CommonSubexprEliminator(final SemAn.AttrAST attrAST) {
+			super(attrAST);
+			this.defFacts = new DefFacts(attrAST);
+		}
+
+		@Override
+		public AST.Node visit(final AST.Nodes<? extends AST.Node> nodes, final Object arg) {
+			// Najprej se obdelajo gnezdena zaporedja stavkov.
+			final AST.Nodes<?> newNodes = (AST.Nodes<?>) super.visit(nodes, arg);
+			if (newNodes.size() == 0 || !(newNodes.get(0) instanceof AST.Stmt))
+				return newNodes;
+
+			final List<AST.MainDef> temps = new ArrayList<AST.MainDef>();
+			final List<AST.Stmt> stmts = new ArrayList<AST.Stmt>();
+			final List<AST.Stmt> block = new ArrayList<AST.Stmt>();
+			for (final AST.Node node : newNodes) {
+				final AST.Stmt stmt = (AST.Stmt) node;
+				if ((stmt instanceof AST.ExprStmt || stmt instanceof AST.AssignStmt) && !hasCalls(stmt))
+					block.add(stmt);
+				else {
+					eliminate(block, temps, stmts);
+					stmts.add(stmt);
+				}
+			}
+			eliminate(block, temps, stmts);
+
+			if (temps.isEmpty())
+				return newNodes;
+			if (letTemps != null) {
+				letTemps.addAll(temps);
+				return new AST.Nodes<AST.Stmt>(stmts);
+			}
+
+			// Zaporedje brez obdajajocega stavka let: v nov stavek let se zavijejo le
+			// stavki od prvega do zadnjega, ki uporablja zacasne spremenljivke.
+			final HashSet<AST.Def> tempDefs = new HashSet<AST.Def>(temps);
+			int fstIndex = stmts.size();
+			int lstIndex = -1;
+			for (int index = 0; index < stmts.size(); index++)
+				if (usesAny(stmts.get(index), tempDefs)) {
+					fstIndex = Math.min(fstIndex, index);
+					lstIndex = index;
+				}
+			final List<AST.Stmt> letStmts = stmts.subList(fstIndex, lstIndex + 1);
+			final Report.Location loc = new Report.Location(attrLoc.get(letStmts.get(0)),
+					attrLoc.get(letStmts.get(letStmts.size() - 1)));
+			final List<AST.Stmt> newStmts = new ArrayList<AST.Stmt>(stmts.subList(0, fstIndex));
+			newStmts.add(located(new AST.LetStmt(temps, new ArrayList<AST.Stmt>(letStmts)), loc));
+			newStmts.addAll(stmts.subList(lstIndex + 1, stmts.size()));
+			return new AST.Nodes<AST.Stmt>(newStmts);
+		}
+
+		@Override
+		public AST.Node visit(final AST.FunDef funDef, final Object arg) {
+			final List<AST.MainDef> outerLetTemps = letTemps;
+			letTemps = null;
+			final AST.Node newFunDef = super.visit(funDef, arg);
+			letTemps = outerLetTemps;
+			return newFunDef;
+		}
+
+		@Override
+		public AST.Node visit(final AST.LetStmt letStmt, final Object arg) {
+			final List<AST.MainDef> outerLetTemps = letTemps;
+			letTemps = new ArrayList<AST.MainDef>();
+			final AST.Nodes<AST.MainDef> defs = rewrite(letStmt.defs);
+			final AST.Nodes<AST.Stmt> stmts = rewrite(letStmt.stmts);
+			final List<AST.MainDef> temps = letTemps;
+			letTemps = outerLetTemps;
+			if (defs == letStmt.defs && stmts == letStmt.stmts && temps.isEmpty())
+				return letStmt;
+			final List<AST.MainDef> newDefs = new ArrayList<AST.MainDef>(defs.getAll());
+			newDefs.addAll(temps);
+			return replaced(letStmt, new AST.LetStmt(newDefs, stmts.getAll()));
+		}
+
+		/**
+		 * Vrne, ali stavek uporablja katero od danih spremenljivk.
+		 *
+		 * @param stmt Stavek.
+		 * @param defs Definicije spremenljivk.
+		 * @return Ali stavek uporablja katero od danih spremenljivk.
+		 */
+		private boolean usesAny(final AST.Stmt stmt, final Set<AST.Def> defs) {
+			final boolean[] uses = new boolean[] { false };
+			stmt.accept(new AST.FullVisitor<Object, Object>() {
+
+				@Override
+				public Object visit(final AST.VarExpr varExpr, final Object arg) {
+					uses[0] |= defs.contains(attrDef.get(varExpr));
+					return null;
+				}
+
+			}, null);
+			return uses[0];
+		}
+
+		/**
+		 * Odstrani skupne podizraze v odseku stavkov.
+		 *
+		 * @param block Odsek stavkov (po obdelavi je prazen).
+		 * @param temps Zacasne spremenljivke.
+		 * @param stmts Prepisano zaporedje stavkov.
+		 */
+		private void eliminate(final List<AST.Stmt> block, final List<AST.MainDef> temps,
+				final List<AST.Stmt> stmts) {
+			// Kljuci izrazov z upostevanimi razlicicami spremenljivk in pomnilnika.
+			keys.clear();
+			for (final AST.Stmt stmt : block) {
+				switch (stmt) {
+				case AST.ExprStmt exprStmt:
+					key(exprStmt.expr, true);
+					break;
+				case AST.AssignStmt assignStmt:
+					key(assignStmt.srcExpr, true);
+					if (assignStmt.dstExpr instanceof AST.UnExpr unExpr) {
+						key(unExpr.expr, true);
+						memVersion++;
+					} else {
+						final AST.Def def = attrDef.get((AST.VarExpr) assignStmt.dstExpr);
+						defVersions.merge(def, 1, Integer::sum);
+						if (!defFacts.isPrivate(def, funDef))
+							memVersion++;
+					}
+					break;
+				default:
+					throw new Report.InternalError();
+				}
+			}
+
+			// Izrazi, ki se izracunajo vsaj dvakrat (a ne kot del drugega takega izraza).
+			final HashMap<String, Integer> counts = new HashMap<String, Integer>();
+			for (final String key : keys.values())
+				counts.merge(key, 1, Integer::sum);
+			final HashSet<String> selected = new HashSet<String>();
+			for (final Map.Entry<String, Integer> count : counts.entrySet())
+				if (count.getValue() >= 2)
+					selected.add(count.getKey());
+			final LinkedHashMap<String, AST.Expr> firsts = new LinkedHashMap<String, AST.Expr>();
+			final HashMap<String, Integer> firstStmts = new HashMap<String, Integer>();
+			while (true) {
+				counts.clear();
+				firsts.clear();
+				for (int index = 0; index < block.size(); index++) {
+					final int stmtIndex = index;
+					block.get(index).accept(new AST.FullVisitor<Object, Object>() {
+
+						@Override
+						public Object visit(final AST.AssignStmt assignStmt, final Object arg) {
+							if (assignStmt.dstExpr instanceof AST.UnExpr unExpr)
+								unExpr.expr.accept(this, arg);
+							return assignStmt.srcExpr.accept(this, arg);
+						}
+
+						@Override
+						public Object visit(final AST.UnExpr unExpr, final Object arg) {
+							return count(unExpr) ? null : AST.FullVisitor.super.visit(unExpr, arg);
+						}
+
+						@Override
+						public Object visit(final AST.BinExpr binExpr, final Object arg) {
+							return count(binExpr) ? null : AST.FullVisitor.super.visit(binExpr, arg);
+						}
+
+						private boolean count(final AST.Expr expr) {
+							final String key = keys.get(expr);
+							if (key == null || !selected.contains(key))
+								return false;
+							counts.merge(key, 1, Integer::sum);
+							if (firsts.putIfAbsent(key, expr) == null)
+								firstStmts.put(key, stmtIndex);
+							return true;
+						}
+
+					}, null);
+				}
+				if (!selected.removeIf(key -> counts.getOrDefault(key, 0) < 2))
+					break;
+			}
+
+			// Izracuni v zacasne spremenljivke in zamenjava izrazov.
+			final HashMap<String, AST.VarDef> selectedTemps = new HashMap<String, AST.VarDef>();
+			final HashMap<Integer, List<AST.Stmt>> preheaders = new HashMap<Integer, List<AST.Stmt>>();
+			for (final Map.Entry<String, AST.Expr> first : firsts.entrySet()) {
+				final Report.Locatable loc = attrLoc.get(first.getValue());
+				final AST.VarDef temp = newTemp(loc);
+				temps.add(temp);
+				selectedTemps.put(first.getKey(), temp);
+				preheaders.computeIfAbsent(firstStmts.get(first.getKey()), index -> new ArrayList<AST.Stmt>())
+						.add(newAssign(temp, first.getValue(), loc));
+			}
+			final Rewriter replacer = new Rewriter(this) {
+
+				@Override
+				public AST.Node visit(final AST.UnExpr unExpr, final Object arg) {
+					final AST.VarDef temp = selectedTemps.get(keys.get(unExpr));
+					return temp == null ? super.visit(unExpr, arg) : newVarExpr(temp, attrLoc.get(unExpr));
+				}
+
+				@Override
+				public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+					final AST.VarDef temp = selectedTemps.get(keys.get(binExpr));
+					return temp == null ? super.visit(binExpr, arg) : newVarExpr(temp, attrLoc.get(binExpr));
+				}
+
+			};
+			for (int index = 0; index < block.size(); index++) {
+				stmts.addAll(preheaders.getOrDefault(index, List.of()));
+				stmts.add((AST.Stmt) block.get(index).accept(replacer, null));
+			}
+			block.clear();
+		}
+
+		/**
+		 * Izracuna kljuc izraza, ki uposteva trenutne razlicice spremenljivk in
+		 * pomnilnika.
+		 *
+		 * @param expr   Izraz.
+		 * @param record Ali se kljuci izraza in njegovih podizrazov zabelezijo.
+		 * @return Kljuc izraza.
+		 */
+		private String key(final AST.Expr expr, final boolean record) {
+			final String key = switch (expr) {
+			case AST.AtomExpr atomExpr -> atomExpr.type + "(" + atomExpr.value + ")";
+			case AST.VarExpr varExpr -> {
+				final AST.Def def = attrDef.get(varExpr);
+				yield "$" + defFacts.id(def) + "." + defVersions.getOrDefault(def, 0)
+						+ (defFacts.isPrivate(def, funDef) ? "" : "." + memVersion);
+			}
+			case AST.UnExpr unExpr -> switch (unExpr.oper) {
+				case MEMADDR -> "MEMADDR($" + defFacts.id(attrDef.get((AST.VarExpr) unExpr.expr)) + ")";
+				case VALUEAT -> "VALUEAT(" + key(unExpr.expr, record) + ")." + memVersion;
+				default -> unExpr.oper + "(" + key(unExpr.expr, record) + ")";
+				};
+			case AST.BinExpr binExpr -> binExpr.oper + "(" + key(binExpr.fstExpr, record) + ","
+					+ key(binExpr.sndExpr, record && binExpr.oper != AST.BinExpr.Oper.AND
+							&& binExpr.oper != AST.BinExpr.Oper.OR)
+					+ ")";
+			default -> throw new Report.InternalError();
+			};
+			if (record && isCandidate(expr))
+				keys.put(expr, key);
+			return key;
+		}
+
+		/**
+		 * Vrne, ali je izraz kandidat za odstranitev: dvomestni ali enomestni izraz
+		 * (razen naslova spremenljivke), ki bere spremenljivko ali pomnilnik.
+		 *
+		 * @param expr Izraz.
+		 * @return Ali je izraz kandidat za odstranitev.
+		 */
+		private static boolean isCandidate(final AST.Expr expr) {
+			return switch (expr) {
+			case AST.UnExpr unExpr -> unExpr.oper != AST.UnExpr.Oper.MEMADDR && readsVars(unExpr);
+			case AST.BinExpr binExpr -> readsVars(binExpr);
+			default -> false;
+			};
+		}
+
+		/**
+		 * Vrne, ali izraz bere spremenljivko ali pomnilnik.
+		 *
+		 * @param expr Izraz.
+		 * @return Ali izraz bere spremenljivko ali pomnilnik.
+		 */
+		private static boolean readsVars(final AST.Expr expr) {
+			return switch (expr) {
+			case AST.VarExpr varExpr -> true;
+			case AST.UnExpr unExpr -> unExpr.oper == AST.UnExpr.Oper.VALUEAT || readsVars(unExpr.expr);
+			case AST.BinExpr binExpr -> readsVars(binExpr.fstExpr) || readsVars(binExpr.sndExpr);
+			default -> false;
+			};
+		}
+
+		/**
+		 * Vrne, ali stavek vsebuje klic funkcije.
+		 *
+		 * @param stmt Stavek.
+		 * @return Ali stavek vsebuje klic funkcije.
+		 */
+		private static boolean hasCalls(final AST.Stmt stmt) {
+			final boolean[] hasCalls = new boolean[] { false };
+			stmt.accept(new AST.FullVisitor<Object, Object>() {
+
+				@Override
+				public Object visit(final AST.CallExpr callExpr, final Object arg) {
+					hasCalls[0] = true;
+					return null;
+				}
+
+			}, null);
+			return hasCalls[0];
+		}
+
+	}
+
+	// --- KLJUCI IZRAZOV ---
+
+	/**
+	 * Strukturni kljuci izrazov, po katerih se prepoznajo enaki izrazi.
+	 */
+	private static class Keys {
+
+		@SuppressWarnings({ "doclint:missing" })
+		private Keys() {
+			throw new Report.InternalError();
+		}
+
+		/**
+		 * Vrne strukturni kljuc izraza; enaka izraza imata enak kljuc.
+		 *
+		 * @param expr     Izraz.
+		 * @param attrDef  Atribut: definicija uporabljenega imena.
+		 * @param defFacts Lastnosti definicij (z oznakami definicij).
+		 * @return Strukturni kljuc izraza.
+		 */
+		public static String key(final AST.Expr expr, final Map<AST.NameExpr, AST.Def> attrDef,
+				final DefFacts defFacts) {
+			final StringBuilder key = new StringBuilder();
+			key(expr, attrDef, defFacts, key);
+			return key.toString();
+		}
+
+		/**
+		 * Doda strukturni kljuc izraza.
+		 *
+		 * @param expr     Izraz.
+		 * @param attrDef  Atribut: definicija uporabljenega imena.
+		 * @param defFacts Lastnosti definicij (z oznakami definicij).
+		 * @param key      Strukturni kljuc.
+		 */
+		private static void key(final AST.Expr expr, final Map<AST.NameExpr, AST.Def> attrDef,
+				final DefFacts defFacts, final StringBuilder key) {
+			switch (expr) {
+			case AST.AtomExpr atomExpr:
+				key.append(atomExpr.type).append('(').append(atomExpr.value).append(')');
+				break;
+			case AST.VarExpr varExpr:
+				key.append(varExpr.name).append('$').append(defFacts.id(attrDef.get(varExpr)));
+				break;
+			case AST.UnExpr unExpr:
+				key.append(unExpr.oper).append('(');
+				key(unExpr.expr, attrDef, defFacts, key);
+				key.append(')');
+				break;
+			case AST.BinExpr binExpr:
+				key.append(binExpr.oper).append('(');
+				key(binExpr.fstExpr, attrDef, defFacts, key);
+				key.append(',');
+				key(binExpr.sndExpr, attrDef, defFacts, key);
+				key.append(')');
+				break;
+			default:
+				key.append(expr.getClass().getSimpleName()).append('#').append(defFacts.id(expr));
+				break;
+			}
+		}
+
+	}
+
+	// --- OCENA STEVILA OPERACIJ ---
+
+	/**
+	 * Oceni stevilo izvedenih operacij abstraktnega skladovnega stroja: vsak izraz
+	 * in vsaka prireditev stejeta kot ena operacija (mnozenje, deljenje in ostanek
+	 * pri deljenju kot stiri), vsaka gnezdena zanka pa
+	 * stevilo operacij v svojem pogoju in telesu pomnozi z 10.
+	 *
+	 * @param ast Abstraktno sintaksno drevo.
+	 * @return Ocena stevila izvedenih operacij.
+	 */
+	public static long estimateOps(final AST.Node ast) {
+		final long[] ops = new long[] { 0 };
+		ast.accept(new AST.FullVisitor<Object, Long>() {
+
+			@Override
+			public Object visit(final AST.VarDef varDef, final Long weight) {
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.AssignStmt assignStmt, final Long weight) {
+				ops[0] += weight;
+				return AST.FullVisitor.super.visit(assignStmt, weight);
+			}
+
+			@Override
+			public Object visit(final AST.WhileStmt whileStmt, final Long weight) {
+				return AST.FullVisitor.super.visit(whileStmt, weight * 10);
+			}
+
+			@Override
+			public Object visit(final AST.AtomExpr atomExpr, final Long weight) {
+				ops[0] += weight;
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.UnExpr unExpr, final Long weight) {
+				ops[0] += weight;
+				return AST.FullVisitor.super.visit(unExpr, weight);
+			}
+
+			@Override
+			public Object visit(final AST.BinExpr binExpr, final Long weight) {
+				ops[0] += switch (binExpr.oper) {
+				case MUL, DIV, MOD -> 4 * weight;
+				default -> weight;
+				};
+				return AST.FullVisitor.super.visit(binExpr, weight);
+			}
+
+			@Override
+			public Object visit(final AST.VarExpr varExpr, final Long weight) {
+				ops[0] += weight;
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.CallExpr callExpr, final Long weight) {
+				ops[0] += weight;
+				return AST.FullVisitor.super.visit(callExpr, weight);
+			}
+
+		}, 1L);
+		return ops[0];
+	}
+
+	/**
+	 * Izpise optimizirano abstraktno sintaksno drevo z dodanimi atributi
+	 * pomnilniske predstavitve in oceno stevila izvedenih operacij pred
+	 * optimizacijo in po njej.
+	 *
+	 * @param semanAttrAST  Abstraktno sintaksno drevo z dodanimi atributi
+	 *                      semanticne analize.
+	 * @param memoryAttrAST Optimizirano abstraktno sintaksno drevo z dodanimi
+	 *                      atributi pomnilniske predstavitve.
+	 */
+	public static void log(final SemAn.AttrAST semanAttrAST, final Memory.AttrAST memoryAttrAST) {
+		(new AST.Logger(memoryAttrAST)).log();
+		Report.info("Estimated operations: " + estimateOps(semanAttrAST.ast) + " -> "
+				+ estimateOps(memoryAttrAST.ast) + ".");
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon optimizacije kot samostojnega programa.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (optimization):");
+
+		try {
+			if (cmdLineArgs.length == 0)
+				throw new Report.Error("No source file specified in the command line.");
+			if (cmdLineArgs.length > 1)
+				Report.warning("Unused arguments in the command line.");
+
+			try (SynAn synAn = new SynAn(cmdLineArgs[0])) {
+				// abstraktna sintaksa:
+				final Abstr.AttrAST abstrAttrAST = Abstr.constructAST(synAn);
+				// semanticna analiza:
+				final SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+				// optimizacija:
+				final SemAn.AttrAST optimAttrAST = Optim.optimize(semanAttrAST);
+				// pomnilniska predstavitev:
+				final Memory.AttrAST memoryAttrAST = Memory.organize(optimAttrAST);
+
+				log(semanAttrAST, memoryAttrAST);
+			}
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			// A zavedajmo se sledecega:
+			// 1. Prevod je zaradi napak v programu lahko napacen :-o
+			// 2. Izvorni program se zdalec ni tisto, kar je programer hotel, da bi bil ;-)
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
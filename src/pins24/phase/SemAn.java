@@ -1,6 +1,7 @@
 package pins24.phase;
 
 import java.util.*;
+import java.util.function.*;
 import pins24.common.*;
 
 /**
@@ -20,7 +21,9 @@ public class SemAn {
      * <ol>
      * <li>({@link Abstr}) lokacija kode, ki pripada posameznemu vozliscu;</li>
      * <li>({@link SemAn}) definicija uporabljenega imena;</li>
-     * <li>({@link SemAn}) ali je dani izraz levi izraz.</li>
+     * <li>({@link SemAn}) ali je dani izraz levi izraz;</li>
+     * <li>({@link SemAn}) uporabe definicije (obratno od definicije
+     * uporabljenega imena).</li>
      * </ol>
      */
     public static class AttrAST extends Abstr.AttrAST {
@@ -31,9 +34,12 @@ public class SemAn {
         /** Atribut: ali je dani izraz levi izraz. */
         public final Map<AST.Expr, Boolean> attrLVal;
 
+        /** Atribut: uporabe definicije (le definicije, ki so uporabljene). */
+        public final Map<AST.Def, Uses> attrUses;
+
         /**
          * Ustvari novo abstraktno sintaksno drevo z dodanim atributi semanticne
-         * analize.
+         * analize (brez uporab definicij).
          *
          * @param attrAST  Abstraktno sintaksno drevo z dodanimi atributi abstraktne
          *                 sintakse.
@@ -42,9 +48,25 @@ public class SemAn {
          */
         public AttrAST(final Abstr.AttrAST attrAST, final Map<AST.NameExpr, AST.Def> attrDef,
                        final Map<AST.Expr, Boolean> attrLVal) {
+            this(attrAST, attrDef, attrLVal, Map.of());
+        }
+
+        /**
+         * Ustvari novo abstraktno sintaksno drevo z dodanim atributi semanticne
+         * analize.
+         *
+         * @param attrAST  Abstraktno sintaksno drevo z dodanimi atributi abstraktne
+         *                 sintakse.
+         * @param attrDef  Atribut: definicija uporabljenega imena.
+         * @param attrLVal Atribut: ali je dani izraz levi izraz.
+         * @param attrUses Atribut: uporabe definicije.
+         */
+        public AttrAST(final Abstr.AttrAST attrAST, final Map<AST.NameExpr, AST.Def> attrDef,
+                       final Map<AST.Expr, Boolean> attrLVal, final Map<AST.Def, Uses> attrUses) {
             super(attrAST);
             this.attrDef = attrDef;
             this.attrLVal = attrLVal;
+            this.attrUses = attrUses;
         }
 
         /**
@@ -58,12 +80,12 @@ public class SemAn {
             super(attrAST);
             this.attrDef = attrAST.attrDef;
             this.attrLVal = attrAST.attrLVal;
+            this.attrUses = attrAST.attrUses;
         }
 
         @Override
-        public String head(final AST.Node node, final boolean highlighted) {
-            final StringBuffer head = new StringBuffer();
-            head.append(super.head(node, false));
+        public void head(final AST.Node node, final boolean highlighted, final StringBuilder head) {
+            super.head(node, false, head);
             switch (node) {
                 case final AST.NameExpr nameExpr:
                     final AST.Def def = attrDef.get(nameExpr);
@@ -72,8 +94,8 @@ public class SemAn {
                     final Report.Locatable loc = attrLoc.get(def);
                     if (loc == null)
                         break;
-                    head.append((" ") + (highlighted ? "\033[31m" : "") + "def@" + loc.location().toString()
-                            + (highlighted ? "\033[30m" : ""));
+                    head.append(' ').append(highlighted ? "\033[31m" : "").append("def@").append(loc.location().toString())
+                            .append(highlighted ? "\033[30m" : "");
                     break;
                 default:
                     break;
@@ -84,12 +106,114 @@ public class SemAn {
                     if (lval == null)
                         break;
                     if (lval)
-                        head.append((" ") + (highlighted ? "\033[31m" : "") + "lval" + (highlighted ? "\033[30m" : ""));
+                        head.append(' ').append(highlighted ? "\033[31m" : "").append("lval")
+                                .append(highlighted ? "\033[30m" : "");
                     break;
                 default:
                     break;
             }
-            return head.toString();
+        }
+
+    }
+
+    /**
+     * Uporabe ene definicije v vrstnem redu izvorne datoteke.
+     */
+    public static class Uses {
+
+        /** Vrsta uporabe definicije. */
+        public enum Kind {
+            /** Klic funkcije. */
+            CALL,
+            /** Branje vrednosti. */
+            READ,
+            /** Prirejanje vrednosti (ime je levi izraz prireditve). */
+            WRITE,
+            /** Izracun naslova (operator MEMADDR). */
+            ADDR,
+        }
+
+        /** Imena, ki se nanasajo na definicijo. */
+        private final AST.NameExpr[] exprs;
+
+        /** Vrste uporab (indeksi v {@link Kind}). */
+        private final byte[] kinds;
+
+        /**
+         * Ustvari nove uporabe definicije.
+         *
+         * @param exprs Imena, ki se nanasajo na definicijo.
+         * @param kinds Vrste uporab.
+         */
+        private Uses(final AST.NameExpr[] exprs, final byte[] kinds) {
+            this.exprs = exprs;
+            this.kinds = kinds;
+        }
+
+        /**
+         * Vrne stevilo uporab definicije.
+         *
+         * @return Stevilo uporab.
+         */
+        public int size() {
+            return exprs.length;
+        }
+
+        /**
+         * Vrne ime, ki se nanasa na definicijo.
+         *
+         * @param index Indeks uporabe.
+         * @return Ime.
+         */
+        public AST.NameExpr expr(final int index) {
+            return exprs[index];
+        }
+
+        /**
+         * Vrne vrsto uporabe definicije.
+         *
+         * @param index Indeks uporabe.
+         * @return Vrsta uporabe.
+         */
+        public Kind kind(final int index) {
+            return Kind.values()[kinds[index]];
+        }
+
+        /**
+         * Zdruzi uporabe definicije v zaporednih delih izvorne datoteke.
+         *
+         * @param parts Uporabe definicije po delih v vrstnem redu izvorne datoteke.
+         * @return Uporabe definicije.
+         */
+        public static Uses concat(final List<Uses> parts) {
+            if (parts.size() == 1)
+                return parts.get(0);
+            int size = 0;
+            for (final Uses part : parts)
+                size += part.size();
+            final AST.NameExpr[] exprs = new AST.NameExpr[size];
+            final byte[] kinds = new byte[size];
+            int index = 0;
+            for (final Uses part : parts) {
+                System.arraycopy(part.exprs, 0, exprs, index, part.size());
+                System.arraycopy(part.kinds, 0, kinds, index, part.size());
+                index += part.size();
+            }
+            return new Uses(exprs, kinds);
+        }
+
+        /**
+         * Vrne vsa imena z dano vrsto uporabe definicije.
+         *
+         * @param kind Vrsta uporabe.
+         * @return Imena.
+         */
+        public List<AST.NameExpr> exprs(final Kind kind) {
+            final List<AST.NameExpr> exprs = new ArrayList<AST.NameExpr>();
+            for (int index = 0; index < this.exprs.length; index++)
+                if (kinds[index] == kind.ordinal())
+                    exprs.add(this.exprs[index]);
+            return exprs;
         }
 
     }
@@ -97,16 +221,121 @@ public class SemAn {
     /**
      * Opravi semanticno analizo.
      *
+     * Ce je nastavljen zbiralnik napak (glej {@link Report.Diagnostics}), se
+     * analiza po napaki nadaljuje, vozlisca z nedefiniranimi imeni pa ostanejo
+     * brez atributa {@link AttrAST#attrDef}.
+     *
      * @param abstrAttrAST Abstraktno sintaksno drevo z dodanimi atributi abstraktne
      *                     sintakse.
      * @return Abstraktno sintaksno drevo z dodanimi atributi semanticne analize.
      */
     public static AttrAST analyze(Abstr.AttrAST abstrAttrAST) {
-        AttrAST attrAST = new AttrAST(abstrAttrAST, new HashMap<AST.NameExpr, AST.Def>(),
-                new HashMap<AST.Expr, Boolean>());
-        attrAST = new NameResolver(attrAST).resolve();
-        attrAST = new TypeResolver(attrAST).resolve();
-        attrAST = new LValResolver(attrAST).resolve();
+        return analyze(abstrAttrAST, new HashMap<AST.NameExpr, AST.Def>(), new HashMap<AST.Expr, Boolean>(),
+                Set.of(), attrAST -> uses(attrAST.ast, attrAST.attrDef, attrAST.attrLVal));
+    }
+
+    /**
+     * Opravi semanticno analizo, pri cemer ponovno ne analizira danih definicij
+     * na najvisjem nivoju, ampak zanje uporabi ze izracunane atribute.
+     *
+     * Definicije, ki se ne analizirajo ponovno, se uporabijo le pri preverjanju,
+     * ali so imena na najvisjem nivoju definirana enkrat. Atributa
+     * {@code attrDef} in {@code attrLVal} se ne prepiseta, ampak dopolnita z
+     * atributi ostalih definicij, zato ju klicoci po analizi ne sme vec
+     * spreminjati.
+     *
+     * @param abstrAttrAST Abstraktno sintaksno drevo z dodanimi atributi abstraktne
+     *                     sintakse.
+     * @param attrDef      Atribut: definicija uporabljenega imena (v definicijah,
+     *                     ki se ne analizirajo ponovno).
+     * @param attrLVal     Atribut: ali je dani izraz levi izraz (v definicijah,
+     *                     ki se ne analizirajo ponovno).
+     * @param reused       Definicije na najvisjem nivoju, ki se ne analizirajo
+     *                     ponovno.
+     * @param uses         Izracun uporab definicij iz drevesa z ostalimi
+     *                     atributi semanticne analize.
+     * @return Abstraktno sintaksno drevo z dodanimi atributi semanticne analize.
+     */
+    public static AttrAST analyze(final Abstr.AttrAST abstrAttrAST, final Map<AST.NameExpr, AST.Def> attrDef,
+                                  final Map<AST.Expr, Boolean> attrLVal, final Set<AST.MainDef> reused,
+                                  final Function<AttrAST, Map<AST.Def, Uses>> uses) {
+        final AttrAST attrAST = Metrics.measure("SemAn.analyze",
+                () -> resolve(abstrAttrAST, attrDef, attrLVal, reused, uses));
+        Metrics.count("SemAn.analyze", "attrDef", attrAST.attrDef.size());
+        Metrics.count("SemAn.analyze", "attrLVal", attrAST.attrLVal.size());
+        return attrAST;
+    }
+
+    /**
+     * Opravi razresevanje imen, preverjanje tipov in dolocanje levih izrazov.
+     *
+     * @param abstrAttrAST Abstraktno sintaksno drevo z dodanimi atributi
+     *                     abstraktne sintakse.
+     * @param attrDef      Atribut: definicija uporabljenega imena (v definicijah,
+     *                     ki se ne analizirajo ponovno).
+     * @param attrLVal     Atribut: ali je dani izraz levi izraz (v definicijah,
+     *                     ki se ne analizirajo ponovno).
+     * @param reused       Definicije na najvisjem nivoju, ki se ne analizirajo
+     *                     ponovno.
+     * @param uses         Izracun uporab definicij.
+     * @return Abstraktno sintaksno drevo z dodanimi atributi semanticne analize.
+     */
+    private static AttrAST resolve(final Abstr.AttrAST abstrAttrAST, final Map<AST.NameExpr, AST.Def> attrDef,
+                                   final Map<AST.Expr, Boolean> attrLVal, final Set<AST.MainDef> reused,
+                                   final Function<AttrAST, Map<AST.Def, Uses>> uses) {
+        final AttrAST attrAST = new AttrAST(abstrAttrAST, attrDef, attrLVal);
+        final AttrAST nameAttrAST = pass("NameResolver", () -> new NameResolver(attrAST, reused).resolve());
+        final AttrAST typeAttrAST = pass("TypeResolver", () -> new TypeResolver(nameAttrAST, reused).resolve());
+        final AttrAST lvalAttrAST = pass("LValResolver", () -> new LValResolver(typeAttrAST, reused).resolve());
+        return pass("UseResolver", () -> new AttrAST(lvalAttrAST, lvalAttrAST.attrDef, lvalAttrAST.attrLVal,
+                uses.apply(lvalAttrAST)));
+    }
+
+    /**
+     * Izracuna uporabe definicij (obratni atribut definicije uporabljenega
+     * imena).
+     *
+     * Uporabe se zberejo z enim obhodom celega drevesa (tudi definicij, ki se ne
+     * analizirajo ponovno), zato so v vrstnem redu izvorne datoteke.
+     *
+     * @param ast      Abstraktno sintaksno drevo.
+     * @param attrDef  Atribut: definicija uporabljenega imena.
+     * @param attrLVal Atribut: ali je dani izraz levi izraz.
+     * @return Atribut: uporabe definicije (nespremenljiv).
+     */
+    public static Map<AST.Def, Uses> uses(final AST.Node ast, final Map<AST.NameExpr, AST.Def> attrDef,
+                                          final Map<AST.Expr, Boolean> attrLVal) {
+        final UseResolver resolver = new UseResolver(attrDef, attrLVal);
+        ast.accept(resolver, null);
+        final HashMap<AST.Def, Uses> attrUses = new HashMap<AST.Def, Uses>(2 * resolver.uses.size());
+        for (final Map.Entry<AST.Def, UseResolver.Builder> entry : resolver.uses.entrySet()) {
+            final UseResolver.Builder builder = entry.getValue();
+            attrUses.put(entry.getKey(), new Uses(Arrays.copyOf(builder.exprs, builder.size),
+                    Arrays.copyOf(builder.kinds, builder.size)));
+        }
+        return Collections.unmodifiableMap(attrUses);
+    }
+
+    /**
+     * Izvede prehod razresevalnika, ga izmeri in o njem sporoci dogodek JFR.
+     *
+     * @param resolver Ime razresevalnika.
+     * @param pass     Prehod razresevalnika.
+     * @return Abstraktno sintaksno drevo z dodanimi atributi semanticne analize.
+     */
+    private static AttrAST pass(final String resolver, final Supplier<AttrAST> pass) {
+        final Events.ResolverPass event = new Events.ResolverPass();
+        event.begin();
+        final AttrAST attrAST = Metrics.measure("SemAn." + resolver, pass);
+        event.resolver = resolver;
+        event.attributes = switch (resolver) {
+            case "NameResolver" -> attrAST.attrDef.size();
+            case "LValResolver" -> attrAST.attrLVal.size();
+            case "UseResolver" -> attrAST.attrUses.size();
+            default -> 0;
+        };
+        event.locate(attrAST.attrLoc.get(attrAST.ast));
+        event.commit();
         return attrAST;
     }
 
@@ -118,14 +347,20 @@ public class SemAn {
         /** Abstraktno sintaksno drevo z dodanimi atributi semanticne analize. */
         private final AttrAST attrAST;
 
+        /** Definicije na najvisjem nivoju, ki se ne analizirajo ponovno. */
+        private final Set<AST.MainDef> reused;
+
         /**
          * Ustvari nov razresevalnik imen.
          *
          * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
          *                analize.
+         * @param reused  Definicije na najvisjem nivoju, ki se ne analizirajo
+         *                ponovno.
          */
-        public NameResolver(final AttrAST attrAST) {
+        public NameResolver(final AttrAST attrAST, final Set<AST.MainDef> reused) {
             this.attrAST = attrAST;
+            this.reused = reused;
         }
 
         /**
@@ -293,11 +528,13 @@ public class SemAn {
                 switch (pass) {
                     case Defs: {
                         if (!symbolTable.ins(funDef))
-                            throw new Report.Error(attrAST.attrLoc.get(funDef),
-                                    "Illegal definition of function '" + funDef.name + "'.");
+                            Report.error(new Report.Error(attrAST.attrLoc.get(funDef),
+                                    "Illegal definition of function '" + funDef.name + "'."));
                         break;
                     }
                     case Rest: {
+                        if (reused.contains(funDef))
+                            break;
                         symbolTable.newScope();
                         funDef.pars.accept(this, null);
                         funDef.stmts.accept(this, null);
@@ -313,8 +550,8 @@ public class SemAn {
             @Override
             public Object visit(final AST.ParDef parDef, final Pass pass) {
                 if (!symbolTable.ins(parDef))
-                    throw new Report.Error(attrAST.attrLoc.get(parDef),
-                            "Illegal definition of parameter '" + parDef.name + "'.");
+                    Report.error(new Report.Error(attrAST.attrLoc.get(parDef),
+                            "Illegal definition of parameter '" + parDef.name + "'."));
                 return null;
             }
 
@@ -323,8 +560,8 @@ public class SemAn {
                 switch (pass) {
                     case Defs: {
                         if (!symbolTable.ins(varDef))
-                            throw new Report.Error(attrAST.attrLoc.get(varDef),
-                                    "Illegal definition of variable '" + varDef.name + "'.");
+                            Report.error(new Report.Error(attrAST.attrLoc.get(varDef),
+                                    "Illegal definition of variable '" + varDef.name + "'."));
                         varDef.inits.accept(this, null);
                         break;
                     }
@@ -350,8 +587,9 @@ public class SemAn {
             public Object visit(final AST.VarExpr varExpr, final Pass pass) {
                 final AST.Def def = symbolTable.fnd(varExpr.name);
                 if (def == null)
-                    throw new Report.Error(attrAST.attrLoc.get(varExpr), "Undefined name '" + varExpr.name + "'.");
-                attrAST.attrDef.put(varExpr, def);
+                    Report.error(new Report.Error(attrAST.attrLoc.get(varExpr), "Undefined name '" + varExpr.name + "'."));
+                else
+                    attrAST.attrDef.put(varExpr, def);
                 return null;
             }
 
@@ -359,8 +597,9 @@ public class SemAn {
             public Object visit(final AST.CallExpr callExpr, final Pass pass) {
                 final AST.Def def = symbolTable.fnd(callExpr.name);
                 if (def == null)
-                    throw new Report.Error(attrAST.attrLoc.get(callExpr), "Undefined name '" + callExpr.name + "'.");
-                attrAST.attrDef.put(callExpr, def);
+                    Report.error(new Report.Error(attrAST.attrLoc.get(callExpr), "Undefined name '" + callExpr.name + "'."));
+                else
+                    attrAST.attrDef.put(callExpr, def);
                 callExpr.args.accept(this, null);
                 return null;
             }
@@ -377,14 +616,20 @@ public class SemAn {
         /** Abstraktno sintaksno drevo z dodanimi atributi semanticne analize. */
         private final AttrAST attrAST;
 
+        /** Definicije na najvisjem nivoju, ki se ne analizirajo ponovno. */
+        private final Set<AST.MainDef> reused;
+
         /**
          * Ustvari nov razresevalnik imen.
          *
          * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
          *                analize
+         * @param reused  Definicije na najvisjem nivoju, ki se ne analizirajo
+         *                ponovno.
          */
-        public TypeResolver(final AttrAST attrAST) {
+        public TypeResolver(final AttrAST attrAST, final Set<AST.MainDef> reused) {
             this.attrAST = attrAST;
+            this.reused = reused;
         }
 
         /**
@@ -423,6 +668,8 @@ public class SemAn {
 
             @Override
             public Object visit(final AST.FunDef funDef, final Pass pass) {
+                if (reused.contains(funDef))
+                    return null;
                 funDef.pars.accept(this, pass);
                 funDef.stmts.accept(this, pass);
                 if (funDef.stmts.size() != 0) {
@@ -434,13 +681,16 @@ public class SemAn {
                             case AST.LetStmt letStmt:
                                 if (letStmt.stmts.size() != 0) {
                                     lastStmt = letStmt.stmts.getAll().getLast();
-                                } else
-                                    throw new Report.Error(attrAST.attrLoc.get(funDef),
-                                            "Function '" + funDef.name + "' does not return any value.");
+                                } else {
+                                    Report.error(new Report.Error(attrAST.attrLoc.get(funDef),
+                                            "Function '" + funDef.name + "' does not return any value."));
+                                    break loop;
+                                }
                                 break;
                             default:
-                                throw new Report.Error(attrAST.attrLoc.get(funDef),
-                                        "Function '" + funDef.name + "' does not return any value.");
+                                Report.error(new Report.Error(attrAST.attrLoc.get(funDef),
+                                        "Function '" + funDef.name + "' does not return any value."));
+                                break loop;
                         }
                     }
                 }
@@ -454,9 +704,12 @@ public class SemAn {
                         break;
                     case final AST.ParDef parDef:
                         break;
+                    case null:
+                        // Nedefinirano ime je ze sporoceno.
+                        break;
                     default:
-                        throw new Report.Error(attrAST.attrLoc.get(varExpr),
-                                "'" + varExpr.name + "' is not a variable or a parameter.");
+                        Report.error(new Report.Error(attrAST.attrLoc.get(varExpr),
+                                "'" + varExpr.name + "' is not a variable or a parameter."));
                 }
                 return null;
             }
@@ -466,12 +719,15 @@ public class SemAn {
                 switch (attrAST.attrDef.get(callExpr)) {
                     case final AST.FunDef funDef: {
                         if (funDef.pars.size() != callExpr.args.size())
-                            throw new Report.Error(attrAST.attrLoc.get(callExpr),
-                                    "Illegal number of arguments in a call of function '" + callExpr.name + "'.");
+                            Report.error(new Report.Error(attrAST.attrLoc.get(callExpr),
+                                    "Illegal number of arguments in a call of function '" + callExpr.name + "'."));
                         break;
                     }
+                    case null:
+                        // Nedefinirano ime je ze sporoceno.
+                        break;
                     default:
-                        throw new Report.Error(attrAST.attrLoc.get(callExpr), "'" + callExpr.name + "' is not a function.");
+                        Report.error(new Report.Error(attrAST.attrLoc.get(callExpr), "'" + callExpr.name + "' is not a function."));
                 }
                 callExpr.args.accept(this, null);
                 return null;
@@ -489,14 +745,20 @@ public class SemAn {
         /** Abstraktno sintaksno drevo z dodanimi atributi semanticne analize. */
         private final AttrAST attrAST;
 
+        /** Definicije na najvisjem nivoju, ki se ne analizirajo ponovno. */
+        private final Set<AST.MainDef> reused;
+
         /**
          * Ustvari nov razresevalnik levih vrednosti.
          *
          * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
          *                analize.
+         * @param reused  Definicije na najvisjem nivoju, ki se ne analizirajo
+         *                ponovno.
          */
-        public LValResolver(final AttrAST attrAST) {
+        public LValResolver(final AttrAST attrAST, final Set<AST.MainDef> reused) {
             this.attrAST = attrAST;
+            this.reused = reused;
         }
 
         /**
@@ -526,15 +788,22 @@ public class SemAn {
                 Rest,
             }
 
+            @Override
+            public Object visit(final AST.FunDef funDef, final Object arg) {
+                if (reused.contains(funDef))
+                    return null;
+                return AST.FullVisitor.super.visit(funDef, arg);
+            }
+
             @Override
             public Object visit(final AST.AssignStmt assignStmt, final Object arg) {
                 assignStmt.dstExpr.accept(this, arg);
                 assignStmt.srcExpr.accept(this, arg);
                 if (!attrAST.attrLVal.get(assignStmt.dstExpr))
-                    throw new Report.Error(
+                    Report.error(new Report.Error(
                         attrAST.attrLoc.get(assignStmt.dstExpr),
                         "Left-hand side of an assignment must be a variable or expression with VALUEAT operator (postfix ^)."
-                    );
+                    ));
 
                 return null;
             }
@@ -549,10 +818,10 @@ public class SemAn {
             public Object visit(final AST.UnExpr unExpr, final Object arg) {
                 unExpr.expr.accept(this, arg);
                 if (unExpr.oper == AST.UnExpr.Oper.MEMADDR && !(unExpr.expr instanceof AST.VarExpr))
-                    throw new Report.Error(
+                    Report.error(new Report.Error(
                         attrAST.attrLoc.get(unExpr),
                         "Operand of the MEMADDR operator (prefix ^) must be a variable."
-                    );
+                    ));
                 if (unExpr.oper == AST.UnExpr.Oper.VALUEAT)
                     attrAST.attrLVal.put(unExpr, true);
                 else
@@ -584,6 +853,103 @@ public class SemAn {
 
     }
 
+    /**
+     * Zbiranje uporab definicij.
+     */
+    private static class UseResolver implements AST.FullVisitor<Object, Object> {
+
+        /** Uporabe ene definicije med zbiranjem. */
+        private static class Builder {
+
+            /** Imena, ki se nanasajo na definicijo. */
+            AST.NameExpr[] exprs = new AST.NameExpr[4];
+
+            /** Vrste uporab. */
+            byte[] kinds = new byte[4];
+
+            /** Stevilo uporab. */
+            int size = 0;
+
+            @SuppressWarnings({ "doclint:missing" })
+            Builder() {
+            }
+
+        }
+
+        /** Atribut: definicija uporabljenega imena. */
+        private final Map<AST.NameExpr, AST.Def> attrDef;
+
+        /** Atribut: ali je dani izraz levi izraz. */
+        private final Map<AST.Expr, Boolean> attrLVal;
+
+        /** Uporabe definicij med zbiranjem. */
+        private final HashMap<AST.Def, Builder> uses = new HashMap<AST.Def, Builder>();
+
+        /**
+         * Ustvari nov zbiralnik uporab definicij.
+         *
+         * @param attrDef  Atribut: definicija uporabljenega imena.
+         * @param attrLVal Atribut: ali je dani izraz levi izraz.
+         */
+        public UseResolver(final Map<AST.NameExpr, AST.Def> attrDef, final Map<AST.Expr, Boolean> attrLVal) {
+            this.attrDef = attrDef;
+            this.attrLVal = attrLVal;
+        }
+
+        /**
+         * Zabelezi uporabo definicije.
+         *
+         * @param nameExpr Ime.
+         * @param kind     Vrsta uporabe.
+         */
+        private void use(final AST.NameExpr nameExpr, final Uses.Kind kind) {
+            final AST.Def def = attrDef.get(nameExpr);
+            if (def == null)
+                return;
+            final Builder builder = uses.computeIfAbsent(def, __ -> new Builder());
+            if (builder.size == builder.exprs.length) {
+                builder.exprs = Arrays.copyOf(builder.exprs, 2 * builder.size);
+                builder.kinds = Arrays.copyOf(builder.kinds, 2 * builder.size);
+            }
+            builder.exprs[builder.size] = nameExpr;
+            builder.kinds[builder.size] = (byte) kind.ordinal();
+            builder.size++;
+        }
+
+        @Override
+        public Object visit(final AST.AssignStmt assignStmt, final Object arg) {
+            if (assignStmt.dstExpr instanceof AST.VarExpr varExpr && Boolean.TRUE.equals(attrLVal.get(varExpr)))
+                use(varExpr, Uses.Kind.WRITE);
+            else
+                assignStmt.dstExpr.accept(this, arg);
+            assignStmt.srcExpr.accept(this, arg);
+            return null;
+        }
+
+        @Override
+        public Object visit(final AST.UnExpr unExpr, final Object arg) {
+            if (unExpr.oper == AST.UnExpr.Oper.MEMADDR && unExpr.expr instanceof AST.VarExpr varExpr)
+                use(varExpr, Uses.Kind.ADDR);
+            else
+                unExpr.expr.accept(this, arg);
+            return null;
+        }
+
+        @Override
+        public Object visit(final AST.VarExpr varExpr, final Object arg) {
+            use(varExpr, Uses.Kind.READ);
+            return null;
+        }
+
+        @Override
+        public Object visit(final AST.CallExpr callExpr, final Object arg) {
+            use(callExpr, Uses.Kind.CALL);
+            callExpr.args.accept(this, arg);
+            return null;
+        }
+
+    }
+
     // --- ZAGON ---
 
     /**
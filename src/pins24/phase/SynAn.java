@@ -3,6 +3,7 @@ package pins24.phase;
 import pins24.common.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -25,6 +26,16 @@ public class SynAn implements AutoCloseable {
         this.lexAn = new LexAn(srcFileName);
     }
 
+    /**
+     * Ustvari nov sintaksni analizator, ki bere leksikalne simbole iz danega
+     * leksikalnega analizatorja.
+     *
+     * @param lexAn Leksikalni analizator.
+     */
+    public SynAn(final LexAn lexAn) {
+        this.lexAn = lexAn;
+    }
+
     @Override
     public void close() {
         lexAn.close();
@@ -38,21 +49,67 @@ public class SynAn implements AutoCloseable {
      * @return Prevzeti leksikalni simbol.
      */
     public Token check(Token.Symbol symbol) {
-        final Token token = lexAn.takeToken();
+        final Token token = lexAn.peekToken();
         if (token.symbol() != symbol)
             throw new Report.Error(token, "Unexpected symbol '" + token.lexeme() + "'.");
-        return token;
+        return lexAn.takeToken();
     }
 
     /**
      * Opravi sintaksno analizo.
+     *
+     * Ce je nastavljen zbiralnik napak (glej {@link Report.Diagnostics}), se
+     * analiza po napaki nadaljuje: napacni stavek oziroma definicija se izpusti,
+     * leksikalni simboli pa se preskocijo do prvega simbola, na katerem je
+     * mogoce nadaljevati ({@code ,}, {@code end}, {@code fun} ali {@code var}).
      */
     public AST.Node parse(HashMap<AST.Node, Report.Locatable> attrLoc) {
         this.attrLoc = attrLoc;
-        final AST.Nodes<AST.MainDef> defs = parseProgram();
-        if (lexAn.peekToken().symbol() != Token.Symbol.EOF)
-            throw new Report.Error(lexAn.peekToken(), "Unexpected text '" + lexAn.peekToken().lexeme() + "...'.");
-        return defs;
+        final List<AST.MainDef> defs = new ArrayList<>();
+        while (true) {
+            try {
+                defs.addAll(parseProgram().getAll());
+                if (lexAn.peekToken().symbol() != Token.Symbol.EOF)
+                    throw new Report.Error(lexAn.peekToken(), "Unexpected text '" + lexAn.peekToken().lexeme() + "...'.");
+                break;
+            } catch (final Report.Error error) {
+                Report.error(error);
+                try {
+                    if (!recover(Token.Symbol.FUN, Token.Symbol.VAR))
+                        break;
+                } catch (final Report.Error lexError) {
+                    // Po leksikalni napaki ni mogoce nadaljevati.
+                    Report.error(lexError);
+                    break;
+                }
+            }
+        }
+        return new AST.Nodes<>(defs);
+    }
+
+    /**
+     * Preskoci leksikalne simbole do prvega simbola dane vrste, ki ni znotraj
+     * gnezdenega stavka {@code if}, {@code while} ali {@code let}, ali do konca
+     * datoteke.
+     *
+     * @param symbols Vrste leksikalnih simbolov, na katerih se analiza nadaljuje.
+     * @return Ali je bil najden simbol dane vrste (in ne konec datoteke).
+     */
+    private boolean recover(final Token.Symbol... symbols) {
+        int depth = 0;
+        while (true) {
+            final Token.Symbol symbol = lexAn.peekToken().symbol();
+            if (symbol == Token.Symbol.EOF)
+                return false;
+            if (depth == 0 && Arrays.asList(symbols).contains(symbol))
+                return true;
+            switch (symbol) {
+                case IF, WHILE, LET -> depth++;
+                case END -> depth = Math.max(depth - 1, 0);
+                default -> { }
+            }
+            lexAn.takeToken();
+        }
     }
 
 
@@ -66,7 +123,9 @@ public class SynAn implements AutoCloseable {
         switch (lexAn.peekToken().symbol()) {
             case FUN, VAR -> {
                 List<AST.MainDef> defs = new ArrayList<>();
-                defs.add(parseDefinition());
+                AST.MainDef def = parseDefinition();
+                if (def != null)
+                    defs.add(def);
                 defs.addAll(parseProgram2());
                 return new AST.Nodes<>(defs);
             }
@@ -83,6 +142,25 @@ public class SynAn implements AutoCloseable {
     }
 
     private AST.MainDef parseDefinition() {
+        final Events.Definition event = new Events.Definition();
+        event.begin();
+        final AST.MainDef def;
+        try {
+            def = parseDefinition1();
+        } catch (final Report.Error error) {
+            // Napacna definicija se izpusti.
+            Report.error(error);
+            recover(Token.Symbol.FUN, Token.Symbol.VAR, Token.Symbol.IN);
+            return null;
+        }
+        event.kind = def instanceof AST.FunDef ? "fun" : "var";
+        event.name = def.name;
+        event.locate(attrLoc.get(def));
+        event.commit();
+        return def;
+    }
+
+    private AST.MainDef parseDefinition1() {
         switch (lexAn.peekToken().symbol()) {
             case FUN -> {
                 Token fun = check(Token.Symbol.FUN);
@@ -125,9 +203,9 @@ public class SynAn implements AutoCloseable {
                 if (!inits.isEmpty())
                     endLocation = attrLoc.get(inits.getLast()).location();
                 else {
-                    AST.AtomExpr atomExpr = new AST.AtomExpr(AST.AtomExpr.Type.INTCONST, "0");
+                    AST.AtomExpr atomExpr = new AST.AtomExpr(0);
                     attrLoc.put(atomExpr, new Report.Location(0, 0));
-                    AST.Init init = new AST.Init(new AST.AtomExpr(AST.AtomExpr.Type.INTCONST, "1"), atomExpr);
+                    AST.Init init = new AST.Init(new AST.AtomExpr(1), atomExpr);
                     attrLoc.put(init, new Report.Location(0, 0));
                     inits.add(init);
                 }
@@ -199,17 +277,24 @@ public class SynAn implements AutoCloseable {
     }
 
     private List<AST.Stmt> parseStatements() {
-        switch (lexAn.peekToken().symbol()) {
-            //  | statement     | expression                                          | expression prefix: [!, +, -, ^]
-            case IF, WHILE, LET, IDENTIFIER, INTCONST, CHARCONST, STRINGCONST, LPAREN, NOT, ADD, SUB, PTR -> {
-                List<AST.Stmt> stmts = new ArrayList<>();
-                stmts.add(parseStatement());
-                List<AST.Stmt> moreStmts = parseStatements2();
-                stmts.addAll(moreStmts);
-                return stmts;
+        List<AST.Stmt> stmts = new ArrayList<>();
+        try {
+            switch (lexAn.peekToken().symbol()) {
+                //  | statement     | expression                                          | expression prefix: [!, +, -, ^]
+                case IF, WHILE, LET, IDENTIFIER, INTCONST, CHARCONST, STRINGCONST, LPAREN, NOT, ADD, SUB, PTR -> {
+                    stmts.add(parseStatement());
+                }
+                default -> throw new Report.Error(lexAn.peekToken(), "Statement expected.");
             }
-            default -> throw new Report.Error(lexAn.peekToken(), "Statement expected.");
+        } catch (final Report.Error error) {
+            // Napacen stavek se izpusti.
+            Report.error(error);
+            recover(Token.Symbol.COMMA, Token.Symbol.END, Token.Symbol.ELSE, Token.Symbol.IN,
+                    Token.Symbol.FUN, Token.Symbol.VAR);
         }
+        List<AST.Stmt> moreStmts = parseStatements2();
+        stmts.addAll(moreStmts);
+        return stmts;
     }
 
     private List<AST.Stmt> parseStatements2() {
@@ -332,7 +417,9 @@ public class SynAn implements AutoCloseable {
         switch (lexAn.peekToken().symbol()) {
             case FUN, VAR -> {
                 List<AST.MainDef> defs = new ArrayList<>();
-                defs.add(parseDefinition());
+                AST.MainDef def = parseDefinition();
+                if (def != null)
+                    defs.add(def);
                 defs.addAll(parseStatementDef2());
                 return defs;
             }
@@ -544,7 +631,7 @@ public class SynAn implements AutoCloseable {
             case INTCONST, CHARCONST, STRINGCONST -> {
                 Token constToken = check(lexAn.peekToken().symbol());
                 AST.AtomExpr.Type type = getExpressionType(constToken);
-                AST.AtomExpr atomExpr = new AST.AtomExpr(type, constToken.lexeme());
+                AST.AtomExpr atomExpr = new AST.AtomExpr(type, constToken);
                 attrLoc.put(atomExpr, constToken.location());
                 return atomExpr;
             }
@@ -651,8 +738,8 @@ public class SynAn implements AutoCloseable {
                     if (init1.symbol() != Token.Symbol.INTCONST)
                         throw new Report.Error(init1, "An integer constant expected.");
                     AST.AtomExpr.Type type2 = getExpressionType(init2);
-                    AST.AtomExpr initializer = new AST.AtomExpr(type2, init2.lexeme());
-                    AST.Init res = new AST.Init(new AST.AtomExpr(AST.AtomExpr.Type.INTCONST, init1.lexeme()), initializer);
+                    AST.AtomExpr initializer = new AST.AtomExpr(type2, init2);
+                    AST.Init res = new AST.Init(new AST.AtomExpr(AST.AtomExpr.Type.INTCONST, init1), initializer);
                     attrLoc.put(initializer, init2.location());
                     attrLoc.put(
                         res,
@@ -667,8 +754,8 @@ public class SynAn implements AutoCloseable {
                 } else {
                     // "hello world"
                     AST.AtomExpr.Type type1 = getExpressionType(init1);
-                    AST.AtomExpr initializer = new AST.AtomExpr(type1, init1.lexeme());
-                    AST.Init res = new AST.Init(new AST.AtomExpr(AST.AtomExpr.Type.INTCONST, "1"), initializer);
+                    AST.AtomExpr initializer = new AST.AtomExpr(type1, init1);
+                    AST.Init res = new AST.Init(new AST.AtomExpr(1), initializer);
                     attrLoc.put(initializer, init1.location());
                     attrLoc.put(res, init1.location());
                     return res;
@@ -0,0 +1,534 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.zip.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Predpomnilnik abstraktnih sintaksnih dreves.
+ *
+ * Abstraktno sintaksno drevo z dodanimi atributi abstraktne sintakse se po
+ * uspesni gradnji zapise v binarni obliki v datoteko s koncnico {@code .ast}
+ * poleg izvorne datoteke. Datoteka vsebuje izvlecek (SHA-256) vsebine izvorne
+ * datoteke, zato se ob naslednjem prevajanju nespremenjene izvorne datoteke
+ * drevo prebere iz predpomnilnika (datoteka se preslika v pomnilnik s
+ * {@link FileChannel#map}), leksikalna in sintaksna analiza pa se ne izvedeta.
+ *
+ * Zapis (vsa stevila so 32-bitna, najprej najpomembnejsi bajt):
+ * <ol>
+ * <li>glava: {@code MAGIC}, {@code VERSION}, 32 bajtov izvlecka izvorne
+ * datoteke in kontrolna vsota (CRC-32) preostanka datoteke;</li>
+ * <li>tabela nizov: stevilo nizov, nato za vsak niz dolzina in bajti v
+ * kodiranju UTF-8;</li>
+ * <li>vozlisca v premem vrstnem redu: vrsta vozlisca (en bajt), lokacija (stiri
+ * stevila, razen pri zaporedjih vozlisc), lastnosti vozlisca (imena in nizi kot
+ * indeksi v tabelo nizov) in nato podvozlisca.</li>
+ * </ol>
+ */
+public class ASTCache {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private ASTCache() {
+		throw new Report.InternalError();
+	}
+
+	/** Oznaka zacetka datoteke predpomnilnika ({@code PAST}). */
+	private static final int MAGIC = 0x50415354;
+
+	/** Razlicica zapisa. */
+	private static final int VERSION = 2;
+
+	/** Dolzina izvlecka izvorne datoteke. */
+	private static final int HASH_SIZE = 32;
+
+	/** Vrste vozlisc v zapisu. */
+	private enum Kind {
+		NODES, FUNDEF, PARDEF, VARDEF, INIT, EXPRSTMT, ASSIGNSTMT, IFSTMT, WHILESTMT, LETSTMT, ATOMEXPR, UNEXPR,
+		BINEXPR, VAREXPR, CALLEXPR,
+	}
+
+	/**
+	 * Vrne ime datoteke predpomnilnika za izvorno datoteko.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Ime datoteke predpomnilnika.
+	 */
+	public static String cacheFileName(final String srcFileName) {
+		return srcFileName + ".ast";
+	}
+
+	/**
+	 * Zgradi abstraktno sintaksno drevo izvorne datoteke: ce predpomnilnik vsebuje
+	 * drevo trenutne vsebine izvorne datoteke, ga prebere iz predpomnilnika, sicer
+	 * ga zgradi s sintaksnim analizatorjem in zapise v predpomnilnik.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Abstraktno sintaksno drevo z dodanimi atributi abstraktne sintakse.
+	 */
+	public static Abstr.AttrAST constructAST(final String srcFileName) {
+		final byte[] hash = hash(srcFileName);
+		final Abstr.AttrAST cached = hash == null ? null : Metrics.measure("ASTCache.load", () -> load(srcFileName, hash));
+		if (cached != null) {
+			Metrics.count("ASTCache.load", "hits", 1);
+			return cached;
+		}
+		final Abstr.AttrAST attrAST;
+		try (final SynAn synAn = new SynAn(srcFileName)) {
+			attrAST = Abstr.constructAST(synAn);
+		}
+		final Report.Diagnostics diagnostics = Report.diagnostics();
+		if (hash != null && (diagnostics == null || diagnostics.errors().isEmpty()))
+			Metrics.measure("ASTCache.store", () -> store(srcFileName, hash, attrAST));
+		return attrAST;
+	}
+
+	/**
+	 * Izracuna izvlecek vsebine izvorne datoteke.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Izvlecek (ali {@code null}, ce izvorne datoteke ni mogoce prebrati).
+	 */
+	private static byte[] hash(final String srcFileName) {
+		try (final FileChannel channel = FileChannel.open(Path.of(srcFileName), StandardOpenOption.READ)) {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			return digest.digest();
+		} catch (IOException | InvalidPathException | NoSuchAlgorithmException __) {
+			return null;
+		}
+	}
+
+	// --- BRANJE ---
+
+	/**
+	 * Prebere abstraktno sintaksno drevo iz predpomnilnika.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param hash        Izvlecek trenutne vsebine izvorne datoteke.
+	 * @return Abstraktno sintaksno drevo z dodanimi atributi abstraktne sintakse
+	 *         (ali {@code null}, ce ga v predpomnilniku ni, je zastarelo ali
+	 *         poskodovano).
+	 */
+	private static Abstr.AttrAST load(final String srcFileName, final byte[] hash) {
+		final Path cachePath = Path.of(cacheFileName(srcFileName));
+		if (!Files.isRegularFile(cachePath))
+			return null;
+		try (final FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				return null;
+			final byte[] cachedHash = new byte[HASH_SIZE];
+			buffer.get(cachedHash);
+			if (!Arrays.equals(hash, cachedHash))
+				return null;
+			final int checksum = buffer.getInt();
+			final CRC32 crc = new CRC32();
+			crc.update(buffer.duplicate());
+			if ((int) crc.getValue() != checksum)
+				return null;
+			return new Loader(buffer).load();
+		} catch (IOException | RuntimeException __) {
+			// Poskodovan predpomnilnik je enak praznemu.
+			return null;
+		}
+	}
+
+	/**
+	 * Branje vozlisc iz preslikane datoteke predpomnilnika.
+	 */
+	private static class Loader {
+
+		/** Vsebina datoteke predpomnilnika za glavo. */
+		private final ByteBuffer buffer;
+
+		/** Tabela nizov. */
+		private final String[] strings;
+
+		/** Atribut: lokacija kode, ki pripada posameznemu vozliscu. */
+		private final HashMap<AST.Node, Report.Locatable> attrLoc = new HashMap<AST.Node, Report.Locatable>();
+
+		/**
+		 * Ustvari novo branje vozlisc in prebere tabelo nizov.
+		 *
+		 * @param buffer Vsebina datoteke predpomnilnika za glavo.
+		 */
+		Loader(final ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.strings = new String[buffer.getInt()];
+			for (int index = 0; index < strings.length; index++) {
+				final byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				strings[index] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+
+		/**
+		 * Prebere celo abstraktno sintaksno drevo.
+		 *
+		 * @return Abstraktno sintaksno drevo z dodanimi atributi abstraktne sintakse.
+		 */
+		Abstr.AttrAST load() {
+			final AST.Node ast = node();
+			if (buffer.hasRemaining())
+				throw new IllegalStateException();
+			return new Abstr.AttrAST(new AST.AttrAST(ast), Collections.unmodifiableMap(attrLoc));
+		}
+
+		/**
+		 * Prebere niz.
+		 *
+		 * @return Niz.
+		 */
+		private String string() {
+			return strings[buffer.getInt()];
+		}
+
+		/**
+		 * Prebere zaporedje vozlisc.
+		 *
+		 * @param <ANode> Tip vozlisc.
+		 * @return Seznam vozlisc.
+		 */
+		@SuppressWarnings("unchecked")
+		private <ANode extends AST.Node> List<ANode> nodes() {
+			if (buffer.get() != Kind.NODES.ordinal())
+				throw new IllegalStateException();
+			final int size = buffer.getInt();
+			final List<ANode> nodes = new ArrayList<ANode>(size);
+			for (int index = 0; index < size; index++)
+				nodes.add((ANode) node());
+			return nodes;
+		}
+
+		/**
+		 * Prebere vozlisce in vsa njegova podvozlisca.
+		 *
+		 * @return Vozlisce.
+		 */
+		private AST.Node node() {
+			final Kind kind = Kind.values()[buffer.get()];
+			if (kind == Kind.NODES) {
+				buffer.position(buffer.position() - 1);
+				return new AST.Nodes<AST.Node>(nodes());
+			}
+			final Report.Location loc = new Report.Location(buffer.getInt(), buffer.getInt(), buffer.getInt(),
+					buffer.getInt());
+			final AST.Node node = switch (kind) {
+			case FUNDEF -> new AST.FunDef(string(), nodes(), nodes());
+			case PARDEF -> new AST.ParDef(string());
+			case VARDEF -> new AST.VarDef(string(), nodes());
+			case INIT -> new AST.Init((AST.AtomExpr) node(), (AST.AtomExpr) node());
+			case EXPRSTMT -> new AST.ExprStmt((AST.Expr) node());
+			case ASSIGNSTMT -> new AST.AssignStmt((AST.Expr) node(), (AST.Expr) node());
+			case IFSTMT -> new AST.IfStmt((AST.Expr) node(), nodes(), nodes());
+			case WHILESTMT -> new AST.WhileStmt((AST.Expr) node(), nodes());
+			case LETSTMT -> new AST.LetStmt(nodes(), nodes());
+			case ATOMEXPR -> atomExpr();
+			case UNEXPR -> new AST.UnExpr(AST.UnExpr.Oper.values()[buffer.get()], (AST.Expr) node());
+			case BINEXPR -> new AST.BinExpr(AST.BinExpr.Oper.values()[buffer.get()], (AST.Expr) node(),
+					(AST.Expr) node());
+			case VAREXPR -> new AST.VarExpr(string());
+			case CALLEXPR -> new AST.CallExpr(string(), nodes());
+			default -> throw new IllegalStateException();
+			};
+			attrLoc.put(node, loc);
+			return node;
+		}
+
+		/**
+		 * Prebere atomarni izraz.
+		 *
+		 * @return Atomarni izraz.
+		 */
+		private AST.AtomExpr atomExpr() {
+			final AST.AtomExpr.Type type = AST.AtomExpr.Type.values()[buffer.get()];
+			final String value = string();
+			final Integer intValue = buffer.get() == 0 ? null : buffer.getInt();
+			int[] strValue = null;
+			if (buffer.get() != 0) {
+				strValue = new int[buffer.getInt()];
+				buffer.asIntBuffer().get(strValue);
+				buffer.position(buffer.position() + 4 * strValue.length);
+			}
+			return new AST.AtomExpr(type, value, intValue, strValue);
+		}
+
+	}
+
+	// --- ZAPISOVANJE ---
+
+	/**
+	 * Zapise abstraktno sintaksno drevo v predpomnilnik. Napake pri zapisovanju
+	 * se prezrejo (predpomnilnik ostane nespremenjen).
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param hash        Izvlecek vsebine izvorne datoteke.
+	 * @param attrAST     Abstraktno sintaksno drevo z dodanimi atributi abstraktne
+	 *                    sintakse.
+	 * @return Ali je bilo drevo zapisano.
+	 */
+	private static boolean store(final String srcFileName, final byte[] hash, final Abstr.AttrAST attrAST) {
+		final Storer storer = new Storer(attrAST.attrLoc);
+		attrAST.ast.accept(storer, null);
+		final Path cachePath = Path.of(cacheFileName(srcFileName));
+		Path tmpPath = null;
+		try {
+			// tabela nizov in vozlisca (s kontrolno vsoto):
+			final CRC32 crc = new CRC32();
+			final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			final DataOutputStream payloadStream = new DataOutputStream(new CheckedOutputStream(payload, crc));
+			payloadStream.writeInt(storer.strings.size());
+			for (final String string : storer.strings.keySet()) {
+				final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				payloadStream.writeInt(bytes.length);
+				payloadStream.write(bytes);
+			}
+			storer.nodes.writeTo(payloadStream);
+			payloadStream.flush();
+
+			tmpPath = Files.createTempFile(cachePath.toAbsolutePath().getParent(), ".ast", ".tmp");
+			try (final DataOutputStream stream = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+				stream.writeInt(MAGIC);
+				stream.writeInt(VERSION);
+				stream.write(hash);
+				stream.writeInt((int) crc.getValue());
+				payload.writeTo(stream);
+			}
+			Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException | UnsupportedOperationException __) {
+			try {
+				if (tmpPath != null)
+					Files.deleteIfExists(tmpPath);
+			} catch (IOException ___) {
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Zapisovanje vozlisc v premem vrstnem redu.
+	 */
+	private static class Storer implements AST.FullVisitor<Object, Object> {
+
+		/** Atribut: lokacija kode, ki pripada posameznemu vozliscu. */
+		private final Map<AST.Node, Report.Locatable> attrLoc;
+
+		/** Tabela nizov (niz in njegov indeks). */
+		private final LinkedHashMap<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+		/** Zapisana vozlisca. */
+		private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+
+		/** Izhodni tok za zapisovanje vozlisc. */
+		private final DataOutputStream stream = new DataOutputStream(nodes);
+
+		/**
+		 * Ustvari novo zapisovanje vozlisc.
+		 *
+		 * @param attrLoc Atribut: lokacija kode, ki pripada posameznemu vozliscu.
+		 */
+		Storer(final Map<AST.Node, Report.Locatable> attrLoc) {
+			this.attrLoc = attrLoc;
+		}
+
+		/**
+		 * Zapise glavo vozlisca: vrsto vozlisca in njegovo lokacijo.
+		 *
+		 * @param kind Vrsta vozlisca.
+		 * @param node Vozlisce.
+		 */
+		private void head(final Kind kind, final AST.Node node) {
+			try {
+				stream.writeByte(kind.ordinal());
+				final Report.Locatable loc = attrLoc.get(node);
+				final Report.Location location = loc == null ? new Report.Location(0, 0) : loc.location();
+				stream.writeInt(location.begLine());
+				stream.writeInt(location.begColumn());
+				stream.writeInt(location.endLine());
+				stream.writeInt(location.endColumn());
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		/**
+		 * Zapise niz kot indeks v tabelo nizov.
+		 *
+		 * @param string Niz.
+		 */
+		private void string(final String string) {
+			try {
+				stream.writeInt(strings.computeIfAbsent(string, __ -> strings.size()));
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		/**
+		 * Zapise bajt.
+		 *
+		 * @param value Bajt.
+		 */
+		private void write(final int value) {
+			try {
+				stream.writeByte(value);
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		/**
+		 * Zapise stevilo.
+		 *
+		 * @param value Stevilo.
+		 */
+		private void writeInt(final int value) {
+			try {
+				stream.writeInt(value);
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		@Override
+		public Object visit(final AST.Nodes<? extends AST.Node> nodes, final Object arg) {
+			write(Kind.NODES.ordinal());
+			writeInt(nodes.size());
+			for (final AST.Node node : nodes)
+				node.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.FunDef funDef, final Object arg) {
+			head(Kind.FUNDEF, funDef);
+			string(funDef.name);
+			funDef.pars.accept(this, arg);
+			funDef.stmts.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.ParDef parDef, final Object arg) {
+			head(Kind.PARDEF, parDef);
+			string(parDef.name);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.VarDef varDef, final Object arg) {
+			head(Kind.VARDEF, varDef);
+			string(varDef.name);
+			varDef.inits.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.Init init, final Object arg) {
+			head(Kind.INIT, init);
+			init.num.accept(this, arg);
+			init.value.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.ExprStmt exprStmt, final Object arg) {
+			head(Kind.EXPRSTMT, exprStmt);
+			exprStmt.expr.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.AssignStmt assignStmt, final Object arg) {
+			head(Kind.ASSIGNSTMT, assignStmt);
+			assignStmt.dstExpr.accept(this, arg);
+			assignStmt.srcExpr.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.IfStmt ifStmt, final Object arg) {
+			head(Kind.IFSTMT, ifStmt);
+			ifStmt.cond.accept(this, arg);
+			ifStmt.thenStmts.accept(this, arg);
+			ifStmt.elseStmts.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.WhileStmt whileStmt, final Object arg) {
+			head(Kind.WHILESTMT, whileStmt);
+			whileStmt.cond.accept(this, arg);
+			whileStmt.stmts.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.LetStmt letStmt, final Object arg) {
+			head(Kind.LETSTMT, letStmt);
+			letStmt.defs.accept(this, arg);
+			letStmt.stmts.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.AtomExpr atomExpr, final Object arg) {
+			head(Kind.ATOMEXPR, atomExpr);
+			write(atomExpr.type.ordinal());
+			string(atomExpr.value);
+			write(atomExpr.intValue == null ? 0 : 1);
+			if (atomExpr.intValue != null)
+				writeInt(atomExpr.intValue);
+			write(atomExpr.strValue == null ? 0 : 1);
+			if (atomExpr.strValue != null) {
+				writeInt(atomExpr.strValue.length);
+				for (final int c : atomExpr.strValue)
+					writeInt(c);
+			}
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.UnExpr unExpr, final Object arg) {
+			head(Kind.UNEXPR, unExpr);
+			write(unExpr.oper.ordinal());
+			unExpr.expr.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.BinExpr binExpr, final Object arg) {
+			head(Kind.BINEXPR, binExpr);
+			write(binExpr.oper.ordinal());
+			binExpr.fstExpr.accept(this, arg);
+			binExpr.sndExpr.accept(this, arg);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.VarExpr varExpr, final Object arg) {
+			head(Kind.VAREXPR, varExpr);
+			string(varExpr.name);
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.CallExpr callExpr, final Object arg) {
+			head(Kind.CALLEXPR, callExpr);
+			string(callExpr.name);
+			callExpr.args.accept(this, arg);
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,226 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import pins24.common.*;
+
+/**
+ * Hkratno prevajanje vec izvornih datotek.
+ *
+ * Vsaka izvorna datoteka se prevede v svoji navidezni niti (faze prevajalnika
+ * med prevajanjem razlicnih datotek nimajo skupnega spremenljivega stanja,
+ * izpis pa gre v izhodni tok niti, glej {@link Report#setOut}). Izpisi in opisi
+ * napak se zberejo za vsako datoteko posebej in izpisejo v vrstnem redu
+ * datotek.
+ *
+ * Z zastavico {@code --metrics datoteka} se meritve prevajanja (glej
+ * {@link Metrics}) vseh izvornih datotek zapisejo v dano datoteko v obliki
+ * JSON. Stevila dodeljenih bajtov ni mogoce izmeriti za navidezne niti, zato se
+ * ob merjenju datoteke prevajajo v toliko platformnih nitih, kolikor je jeder.
+ *
+ * Z zastavico {@code --all-errors} se za vsako izvorno datoteko izpisejo vse
+ * odkrite napake in ne le prva (glej {@link Pipeline}), z zastavico
+ * {@code --cache} pa se uporablja predpomnilnik abstraktnih sintaksnih dreves
+ * (glej {@link ASTCache}).
+ */
+public class Batch {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Batch() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Rezultat prevajanja ene izvorne datoteke.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param exitCode    Izhodna koda prevajanja.
+	 * @param out         Izpis faze.
+	 * @param err         Opis napake.
+	 * @param metrics     Meritve prevajanja (ali {@code null}).
+	 */
+	public record Result(String srcFileName, int exitCode, String out, String err, Metrics metrics) {
+	}
+
+	/**
+	 * Hkrati prevede izvorne datoteke do vkljucno dane faze.
+	 *
+	 * @param phase        Ime faze.
+	 * @param srcFileNames Imena izvornih datotek.
+	 * @param measure      Ali naj se prevajanje meri.
+	 * @param options      Nastavitve prevajanja.
+	 * @return Rezultati prevajanja v vrstnem redu izvornih datotek.
+	 */
+	public static List<Result> compile(final String phase, final List<String> srcFileNames, final boolean measure,
+			final Pipeline.Options options) {
+		try (final ExecutorService executor = measure
+				? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+				: Executors.newVirtualThreadPerTaskExecutor()) {
+			final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final String srcFileName : srcFileNames)
+				futures.add(executor.submit(() -> compile(phase, srcFileName, measure, options)));
+			final List<Result> results = new ArrayList<Result>();
+			for (int index = 0; index < futures.size(); index++) {
+				try {
+					results.add(futures.get(index).get());
+				} catch (ExecutionException | InterruptedException exception) {
+					results.add(new Result(srcFileNames.get(index), 1, "", ":-( Internal error.\n", null));
+				}
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * Prevede eno izvorno datoteko do vkljucno dane faze.
+	 *
+	 * @param phase       Ime faze.
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param measure     Ali naj se prevajanje meri.
+	 * @param options     Nastavitve prevajanja.
+	 * @return Rezultat prevajanja.
+	 */
+	private static Result compile(final String phase, final String srcFileName, final boolean measure,
+			final Pipeline.Options options) {
+		final Metrics metrics = measure ? new Metrics(srcFileName) : null;
+		Metrics.setCurrent(metrics);
+		final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+		final ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+		int exitCode;
+		try (final PrintStream out = new PrintStream(outBytes, false, StandardCharsets.UTF_8);
+				final PrintStream err = new PrintStream(errBytes, false, StandardCharsets.UTF_8)) {
+			exitCode = Pipeline.compile(phase, srcFileName, out, err, options);
+		} catch (Report.InternalError error) {
+			exitCode = 1;
+		} finally {
+			Metrics.setCurrent(null);
+		}
+		return new Result(srcFileName, exitCode, outBytes.toString(StandardCharsets.UTF_8),
+				errBytes.toString(StandardCharsets.UTF_8), metrics);
+	}
+
+	/**
+	 * Poisce izvorne datoteke: datoteka je izvorna datoteka, imenik pa vsebuje vse
+	 * datoteke s koncnico {@code .pins24} (razen datotek s pricakovanimi izpisi s
+	 * koncnico {@code _out.pins24}).
+	 *
+	 * @param names Imena datotek in imenikov.
+	 * @return Imena izvornih datotek.
+	 */
+	static List<String> sources(final List<String> names) {
+		final List<String> srcFileNames = new ArrayList<String>();
+		for (final String name : names) {
+			final Path path = Path.of(name);
+			if (!Files.isDirectory(path)) {
+				srcFileNames.add(name);
+				continue;
+			}
+			try (final Stream<Path> paths = Files.walk(path)) {
+				paths.map(Path::toString)
+						.filter(fileName -> fileName.endsWith(".pins24") && !fileName.endsWith("_out.pins24"))
+						.sorted().forEach(srcFileNames::add);
+			} catch (IOException | UncheckedIOException __) {
+				throw new Report.Error("Cannot read directory '" + name + "'.");
+			}
+		}
+		return srcFileNames;
+	}
+
+	/**
+	 * Zapise meritve prevajanja vseh izvornih datotek v obliki JSON.
+	 *
+	 * @param metricsFileName Ime datoteke z meritvami.
+	 * @param results         Rezultati prevajanja.
+	 */
+	private static void writeMetrics(final String metricsFileName, final List<Result> results) {
+		try (final PrintWriter metrics = new PrintWriter(metricsFileName, StandardCharsets.UTF_8)) {
+			metrics.println("[");
+			for (int index = 0; index < results.size(); index++)
+				metrics.println(results.get(index).metrics().toJson() + (index + 1 < results.size() ? "," : ""));
+			metrics.println("]");
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write metrics file '" + metricsFileName + "'.");
+		}
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon hkratnega prevajanja.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--phase faza] [--metrics datoteka] [--all-errors] [--cache] datoteka-ali-imenik ...}
+	 *                    (izbire so lahko tudi za imeni datotek in imenikov).
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (batch):");
+
+		try {
+			String phase = "Memory";
+			String metricsFileName = null;
+			boolean allErrors = false;
+			boolean cache = false;
+			final List<String> names = new ArrayList<String>();
+			for (int arg = 0; arg < cmdLineArgs.length; arg++) {
+				// izbire so lahko tudi za imeni datotek in imenikov:
+				if (!cmdLineArgs[arg].startsWith("--")) {
+					names.add(cmdLineArgs[arg]);
+					continue;
+				}
+				if ((cmdLineArgs[arg].equals("--phase") || cmdLineArgs[arg].equals("--metrics"))
+						&& arg + 1 == cmdLineArgs.length)
+					throw new Report.Error("Missing value of option '" + cmdLineArgs[arg] + "'.");
+				switch (cmdLineArgs[arg]) {
+				case "--phase":
+					phase = cmdLineArgs[++arg];
+					break;
+				case "--metrics":
+					metricsFileName = cmdLineArgs[++arg];
+					break;
+				case "--all-errors":
+					allErrors = true;
+					break;
+				case "--cache":
+					cache = true;
+					break;
+				default:
+					throw new Report.Error("Unknown option '" + cmdLineArgs[arg] + "'.");
+				}
+			}
+			if (!Pipeline.phases.containsKey(phase))
+				throw new Report.Error("Unknown phase '" + phase + "'.");
+			final List<String> srcFileNames = sources(names);
+			if (srcFileNames.isEmpty())
+				throw new Report.Error("No source file specified in the command line.");
+
+			final List<Result> results = compile(phase, srcFileNames, metricsFileName != null,
+					new Pipeline.Options(allErrors, cache, null));
+			int numFailed = 0;
+			for (final Result result : results) {
+				System.out.println("==> " + result.srcFileName() + " <==");
+				System.out.print(result.out());
+				System.out.flush();
+				System.err.print(result.err());
+				System.err.flush();
+				if (result.exitCode() != 0)
+					numFailed++;
+			}
+
+			if (metricsFileName != null)
+				writeMetrics(metricsFileName, results);
+
+			Report.info("Compiled " + results.size() + " file(s), " + numFailed + " failed.");
+			if (numFailed > 0)
+				System.exit(1);
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package pins24.tools;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import pins24.common.*;
+
+/**
+ * Odjemalec prevajalnega streznika.
+ *
+ * Odjemalec poslje zahtevo za prevajanje prevajalnemu strezniku (glej
+ * {@link Server}) in izpise njegov odgovor, kot da bi fazo zagnal sam. Ce
+ * streznik ne tece, izvorno datoteko prevede sam.
+ */
+public class Client {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Client() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Poslje zahtevo strezniku in izpise odgovor.
+	 *
+	 * @param port        Vrata streznika.
+	 * @param phase       Ime faze.
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Izhodna koda prevajanja.
+	 * @throws IOException Ce streznik ni dosegljiv ali prekine povezavo.
+	 */
+	private static int request(final int port, final String phase, final String srcFileName) throws IOException {
+		try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				final BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				final PrintWriter out = new PrintWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+			out.println(phase + "\t" + new File(srcFileName).getAbsolutePath());
+			out.flush();
+			String line;
+			while ((line = in.readLine()) != null) {
+				switch (line.charAt(0)) {
+				case 'O':
+					System.out.println(Server.unescape(line.substring(2)));
+					break;
+				case 'E':
+					System.err.println(Server.unescape(line.substring(2)));
+					break;
+				case 'X':
+					return Integer.parseInt(line.substring(2));
+				default:
+					throw new IOException("Malformed reply.");
+				}
+			}
+			throw new IOException("Connection closed.");
+		}
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon odjemalca prevajalnega streznika.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici: {@code [--port N] faza datoteka}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		int port = Server.DEFAULT_PORT;
+		int arg = 0;
+		if (cmdLineArgs.length >= 2 && cmdLineArgs[0].equals("--port")) {
+			try {
+				port = Integer.parseInt(cmdLineArgs[1]);
+			} catch (NumberFormatException __) {
+				System.err.println(":-( Illegal port '" + cmdLineArgs[1] + "'.");
+				System.exit(1);
+			}
+			arg = 2;
+		}
+		if (cmdLineArgs.length - arg < 2) {
+			System.err.println(":-( Usage: Client [--port N] phase file.");
+			System.exit(1);
+		}
+		final String phase = cmdLineArgs[arg];
+		final String srcFileName = cmdLineArgs[arg + 1];
+
+		int exitCode;
+		try {
+			exitCode = request(port, phase, srcFileName);
+		} catch (ConnectException __) {
+			// Streznik ne tece.
+			exitCode = Pipeline.compile(phase, srcFileName, System.out, System.err);
+		} catch (IOException exception) {
+			System.err.println(":-( Compiler server failed: " + exception.getMessage());
+			exitCode = 1;
+		}
+		System.exit(exitCode);
+	}
+
+}
@@ -0,0 +1,767 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Izvoz abstraktnega sintaksnega drevesa z atributi v strojno berljivi obliki.
+ *
+ * Vsako vozlisce se izvozi kot en zapis, zapisi si sledijo v premem vrstnem
+ * redu obhoda drevesa in se sproti pisejo v izhodni tok (drevo se v celoti ne
+ * pretvori v nobeno vmesno predstavitev). Zapis vsebuje oznako vozlisca,
+ * oznako starsa (razen pri korenu), vrsto vozlisca (ime razreda) in polja
+ * (glej {@link Field}), ki jih doloca vrsta vozlisca in faza, do katere je
+ * drevo opremljeno z atributi: lokacija vozlisca, definicija imena,
+ * l-vrednost ter klicni zapis funkcije in dostop do parametra oziroma
+ * spremenljivke. Oznaka definicije se doloci ob prvi omembi, zato se lahko
+ * definicija imena pojavi tudi sele za uporabo.
+ *
+ * Zapisi so lahko v obliki JSON, po en objekt v vsaki vrstici:
+ *
+ * <pre>
+ * {"id":4,"parent":3,"kind":"ParDef","name":"a","loc":[1,10,1,10],"offset":0,"size":4,"depth":1}
+ * </pre>
+ *
+ * ali v dvojiski obliki: glava {@code PINS'24 AST} z znakom za novo vrstico in
+ * verzijo (en bajt), nato pa za vsak zapis oznaka vozlisca, oznaka starsa
+ * povecana za 1 (0 pri korenu), vrsta vozlisca in polja, vsako kot koda polja
+ * (en bajt, {@code ordinal() + 1}) in vrednost, ter bajt 0 na koncu zapisa.
+ * Nenegativna cela stevila so zapisana kot LEB128, vrednosti polj tipa
+ * {@link Type#INT} pa pred tem z zig-zag kodiranjem; logicna vrednost je en
+ * bajt; tabela celih stevil je dolzina in elementi; niz je 0, dolzina in znaki
+ * v UTF-8, ko se pojavi prvic, sicer pa {@code k > 0} za {@code k}-ti
+ * razlicni niz.
+ */
+public class Exporter {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Exporter() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Oblika izvoza.
+	 */
+	public enum Format {
+		/** Objekti JSON, po eden v vrstici. */
+		JSON,
+		/** Dvojiska oblika. */
+		BINARY,
+	}
+
+	/**
+	 * Tip vrednosti polja.
+	 */
+	public enum Type {
+		/** Niz. */
+		STRING,
+		/** Celo stevilo. */
+		INT,
+		/** Logicna vrednost. */
+		BOOL,
+		/** Tabela celih stevil. */
+		INTS,
+	}
+
+	/**
+	 * Polje zapisa vozlisca.
+	 */
+	public enum Field {
+		/** Vloga zaporedja vozlisc v starsu (npr. {@code pars}). */
+		ROLE("role", Type.STRING),
+		/** Ime definicije ali imena. */
+		NAME("name", Type.STRING),
+		/** Vrsta konstante. */
+		TYPE("type", Type.STRING),
+		/** Vrednost konstante. */
+		VALUE("value", Type.STRING),
+		/** Operator. */
+		OPER("oper", Type.STRING),
+		/** Lokacija: zacetna vrstica in stolpec, koncna vrstica in stolpec. */
+		LOC("loc", Type.INTS),
+		/** Oznaka definicije imena. */
+		DEF("def", Type.INT),
+		/** Ali je izraz l-vrednost. */
+		LVAL("lval", Type.BOOL),
+		/** Staticni nivo funkcije, parametra ali spremenljivke. */
+		DEPTH("depth", Type.INT),
+		/** Velikost parametrov funkcije. */
+		PARS_SIZE("parsSize", Type.INT),
+		/** Velikost lokalnih spremenljivk funkcije. */
+		VARS_SIZE("varsSize", Type.INT),
+		/** Odmik shranjenega elementa prikazovalnika. */
+		DISPLAY("display", Type.INT),
+		/** Stevilo registrov funkcije. */
+		REGS("regs", Type.INT),
+		/** Ali funkcija potrebuje staticno povezavo. */
+		STATIC_LINK("staticLink", Type.BOOL),
+		/** Vrsta dostopa: {@code abs}, {@code rel} ali {@code reg}. */
+		ACCESS("access", Type.STRING),
+		/** Odmik relativnega dostopa. */
+		OFFSET("offset", Type.INT),
+		/** Velikost parametra ali spremenljivke. */
+		SIZE("size", Type.INT),
+		/** Register dostopa v registru. */
+		REG("reg", Type.INT),
+		/** Zacetna vrednost (kot v {@link Mem.Access#inits}). */
+		INITS("inits", Type.INTS);
+
+		/** Kljuc polja v obliki JSON. */
+		public final String key;
+
+		/** Tip vrednosti polja. */
+		public final Type type;
+
+		/**
+		 * Ustvari novo polje zapisa vozlisca.
+		 *
+		 * @param key  Kljuc polja v obliki JSON.
+		 * @param type Tip vrednosti polja.
+		 */
+		Field(final String key, final Type type) {
+			this.key = key;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * Izvozi abstraktno sintaksno drevo z atributi.
+	 *
+	 * @param attrAST Abstraktno sintaksno drevo z atributi.
+	 * @param format  Oblika izvoza.
+	 * @param out     Izhodni tok (ne zapre se).
+	 * @return Stevilo izvozenih vozlisc.
+	 */
+	public static int export(final AST.AttrAST attrAST, final Format format, final OutputStream out) {
+		final Sink sink = switch (format) {
+		case JSON -> new JsonSink(out);
+		case BINARY -> new BinarySink(out);
+		};
+		try {
+			sink.start();
+			final ExportVisitor visitor = new ExportVisitor(attrAST, sink);
+			attrAST.ast.accept(visitor, new Parent(-1, "program"));
+			sink.flush();
+			return visitor.numNodes;
+		} catch (UncheckedIOException exception) {
+			throw new Report.Error("Cannot export: " + exception.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * Stars vozlisca.
+	 *
+	 * @param id   Oznaka starsa (ali -1 pri korenu).
+	 * @param role Vloga zaporedja vozlisc v starsu (ali {@code null}).
+	 */
+	private record Parent(int id, String role) {
+	}
+
+	/**
+	 * Obiskovalec, ki izvozi vozlisca.
+	 */
+	private static class ExportVisitor implements AST.FullVisitor<Object, Parent> {
+
+		/** Abstraktno sintaksno drevo z atributi. */
+		private final AST.AttrAST attrAST;
+
+		/** Ponor zapisov. */
+		private final Sink sink;
+
+		/** Oznake vozlisc. */
+		private final IdentityHashMap<AST.Node, Integer> ids = new IdentityHashMap<AST.Node, Integer>();
+
+		/** Stevilo izvozenih vozlisc. */
+		private int numNodes = 0;
+
+		/**
+		 * Ustvari nov obiskovalec, ki izvozi vozlisca.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z atributi.
+		 * @param sink    Ponor zapisov.
+		 */
+		ExportVisitor(final AST.AttrAST attrAST, final Sink sink) {
+			this.attrAST = attrAST;
+			this.sink = sink;
+		}
+
+		/**
+		 * Vrne oznako vozlisca (in jo doloci ob prvi omembi).
+		 *
+		 * @param node Vozlisce.
+		 * @return Oznaka vozlisca.
+		 */
+		private int id(final AST.Node node) {
+			Integer id = ids.get(node);
+			if (id == null) {
+				id = ids.size();
+				ids.put(node, id);
+			}
+			return id;
+		}
+
+		/**
+		 * Izvozi vozlisce in njegove atribute (zapis ostane odprt za polja, ki so
+		 * odvisna od vrste vozlisca).
+		 *
+		 * @param node   Vozlisce.
+		 * @param parent Stars vozlisca.
+		 * @return Stars za otroke vozlisca.
+		 */
+		private int begin(final AST.Node node, final Parent parent) {
+			final int id = id(node);
+			numNodes++;
+			sink.begin(id, parent.id, node.getClass().getSimpleName());
+			if (parent.role != null && node instanceof AST.Nodes<?>)
+				sink.string(Field.ROLE, parent.role);
+			if (node instanceof AST.Def def)
+				sink.string(Field.NAME, def.name);
+			if (node instanceof AST.NameExpr nameExpr)
+				sink.string(Field.NAME, nameExpr.name);
+			if (attrAST instanceof Abstr.AttrAST abstr) {
+				final Report.Locatable loc = abstr.attrLoc.get(node);
+				if (loc != null) {
+					final Report.Location location = loc.location();
+					sink.ints(Field.LOC, location.begLine(), location.begColumn(), location.endLine(),
+							location.endColumn());
+				}
+			}
+			if (attrAST instanceof SemAn.AttrAST seman) {
+				if (node instanceof AST.NameExpr nameExpr) {
+					final AST.Def def = seman.attrDef.get(nameExpr);
+					if (def != null)
+						sink.integer(Field.DEF, id(def));
+				}
+				if (node instanceof AST.Expr expr && seman.attrLVal.get(expr) instanceof Boolean lval)
+					sink.bool(Field.LVAL, lval);
+			}
+			if (attrAST instanceof Memory.AttrAST memory) {
+				switch (node) {
+				case final AST.FunDef funDef:
+					final Mem.Frame frame = memory.attrFrame.get(funDef);
+					if (frame == null)
+						break;
+					sink.integer(Field.DEPTH, frame.depth);
+					sink.integer(Field.PARS_SIZE, frame.parsSize);
+					sink.integer(Field.VARS_SIZE, frame.varsSize);
+					if (frame.displayOffset != null)
+						sink.integer(Field.DISPLAY, frame.displayOffset);
+					if (frame.numRegs > 0)
+						sink.integer(Field.REGS, frame.numRegs);
+					sink.bool(Field.STATIC_LINK, frame.staticLink);
+					break;
+				case final AST.ParDef parDef:
+					access(memory.attrParAccess.get(parDef));
+					break;
+				case final AST.VarDef varDef:
+					access(memory.attrVarAccess.get(varDef));
+					break;
+				default:
+					break;
+				}
+			}
+			return id;
+		}
+
+		/**
+		 * Izvozi dostop do parametra ali spremenljivke.
+		 *
+		 * @param access Dostop (ali {@code null}).
+		 */
+		private void access(final Mem.Access access) {
+			switch (access) {
+			case null:
+				return;
+			case final Mem.AbsAccess absAccess:
+				sink.string(Field.ACCESS, "abs");
+				break;
+			case final Mem.RelAccess relAccess:
+				sink.string(Field.ACCESS, "rel");
+				sink.integer(Field.OFFSET, relAccess.offset);
+				sink.integer(Field.DEPTH, relAccess.depth);
+				break;
+			case final Mem.RegAccess regAccess:
+				sink.string(Field.ACCESS, "reg");
+				sink.integer(Field.REG, regAccess.index);
+				sink.integer(Field.DEPTH, regAccess.depth);
+				break;
+			default:
+				throw new Report.InternalError();
+			}
+			sink.integer(Field.SIZE, access.size);
+			if (access.inits != null)
+				sink.ints(Field.INITS, access.inits.stream().mapToInt(Integer::intValue).toArray());
+		}
+
+		@Override
+		public Object visit(final AST.Nodes<? extends AST.Node> nodes, final Parent parent) {
+			final int id = begin(nodes, parent);
+			sink.end();
+			for (final AST.Node node : nodes)
+				node.accept(this, new Parent(id, null));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.FunDef funDef, final Parent parent) {
+			final int id = begin(funDef, parent);
+			sink.end();
+			funDef.pars.accept(this, new Parent(id, "pars"));
+			funDef.stmts.accept(this, new Parent(id, "stmts"));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.ParDef parDef, final Parent parent) {
+			begin(parDef, parent);
+			sink.end();
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.VarDef varDef, final Parent parent) {
+			final int id = begin(varDef, parent);
+			sink.end();
+			varDef.inits.accept(this, new Parent(id, "inits"));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.Init init, final Parent parent) {
+			final int id = begin(init, parent);
+			sink.end();
+			init.num.accept(this, new Parent(id, null));
+			init.value.accept(this, new Parent(id, null));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.ExprStmt exprStmt, final Parent parent) {
+			final int id = begin(exprStmt, parent);
+			sink.end();
+			exprStmt.expr.accept(this, new Parent(id, null));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.AssignStmt assignStmt, final Parent parent) {
+			final int id = begin(assignStmt, parent);
+			sink.end();
+			assignStmt.dstExpr.accept(this, new Parent(id, null));
+			assignStmt.srcExpr.accept(this, new Parent(id, null));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.IfStmt ifStmt, final Parent parent) {
+			final int id = begin(ifStmt, parent);
+			sink.end();
+			ifStmt.cond.accept(this, new Parent(id, null));
+			ifStmt.thenStmts.accept(this, new Parent(id, "then"));
+			ifStmt.elseStmts.accept(this, new Parent(id, "else"));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.WhileStmt whileStmt, final Parent parent) {
+			final int id = begin(whileStmt, parent);
+			sink.end();
+			whileStmt.cond.accept(this, new Parent(id, null));
+			whileStmt.stmts.accept(this, new Parent(id, "stmts"));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.LetStmt letStmt, final Parent parent) {
+			final int id = begin(letStmt, parent);
+			sink.end();
+			letStmt.defs.accept(this, new Parent(id, "defs"));
+			letStmt.stmts.accept(this, new Parent(id, "stmts"));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.AtomExpr atomExpr, final Parent parent) {
+			begin(atomExpr, parent);
+			sink.string(Field.TYPE, atomExpr.type.name());
+			sink.string(Field.VALUE, atomExpr.value);
+			sink.end();
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.UnExpr unExpr, final Parent parent) {
+			final int id = begin(unExpr, parent);
+			sink.string(Field.OPER, unExpr.oper.name());
+			sink.end();
+			unExpr.expr.accept(this, new Parent(id, null));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.BinExpr binExpr, final Parent parent) {
+			final int id = begin(binExpr, parent);
+			sink.string(Field.OPER, binExpr.oper.name());
+			sink.end();
+			binExpr.fstExpr.accept(this, new Parent(id, null));
+			binExpr.sndExpr.accept(this, new Parent(id, null));
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.VarExpr varExpr, final Parent parent) {
+			begin(varExpr, parent);
+			sink.end();
+			return null;
+		}
+
+		@Override
+		public Object visit(final AST.CallExpr callExpr, final Parent parent) {
+			final int id = begin(callExpr, parent);
+			sink.end();
+			callExpr.args.accept(this, new Parent(id, "args"));
+			return null;
+		}
+
+	}
+
+	/**
+	 * Ponor zapisov vozlisc.
+	 *
+	 * Napake pri pisanju se sporocijo z {@link UncheckedIOException}.
+	 */
+	private static abstract class Sink {
+
+		/**
+		 * Zapise glavo izvoza.
+		 */
+		abstract void start();
+
+		/**
+		 * Zacne zapis vozlisca.
+		 *
+		 * @param id     Oznaka vozlisca.
+		 * @param parent Oznaka starsa (ali -1 pri korenu).
+		 * @param kind   Vrsta vozlisca.
+		 */
+		abstract void begin(int id, int parent, String kind);
+
+		/**
+		 * Zapise polje z nizom.
+		 *
+		 * @param field Polje.
+		 * @param value Vrednost polja.
+		 */
+		abstract void string(Field field, String value);
+
+		/**
+		 * Zapise polje s celim stevilom.
+		 *
+		 * @param field Polje.
+		 * @param value Vrednost polja.
+		 */
+		abstract void integer(Field field, int value);
+
+		/**
+		 * Zapise polje z logicno vrednostjo.
+		 *
+		 * @param field Polje.
+		 * @param value Vrednost polja.
+		 */
+		abstract void bool(Field field, boolean value);
+
+		/**
+		 * Zapise polje s tabelo celih stevil.
+		 *
+		 * @param field  Polje.
+		 * @param values Vrednost polja.
+		 */
+		abstract void ints(Field field, int... values);
+
+		/**
+		 * Konca zapis vozlisca.
+		 */
+		abstract void end();
+
+		/**
+		 * Prepise zapise v izhodni tok.
+		 */
+		abstract void flush();
+
+	}
+
+	/**
+	 * Ponor zapisov v obliki JSON.
+	 */
+	private static class JsonSink extends Sink {
+
+		/** Izhodni tok. */
+		private final Writer out;
+
+		/** Trenutni zapis. */
+		private final StringBuilder record = new StringBuilder();
+
+		/**
+		 * Ustvari nov ponor zapisov v obliki JSON.
+		 *
+		 * @param out Izhodni tok.
+		 */
+		JsonSink(final OutputStream out) {
+			this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+		}
+
+		@Override
+		void start() {
+		}
+
+		@Override
+		void begin(final int id, final int parent, final String kind) {
+			record.append("{\"id\":").append(id);
+			if (parent >= 0)
+				record.append(",\"parent\":").append(parent);
+			record.append(",\"kind\":\"").append(kind).append('"');
+		}
+
+		@Override
+		void string(final Field field, final String value) {
+			record.append(",\"").append(field.key).append("\":");
+			Json.write(value, record);
+		}
+
+		@Override
+		void integer(final Field field, final int value) {
+			record.append(",\"").append(field.key).append("\":").append(value);
+		}
+
+		@Override
+		void bool(final Field field, final boolean value) {
+			record.append(",\"").append(field.key).append("\":").append(value);
+		}
+
+		@Override
+		void ints(final Field field, final int... values) {
+			record.append(",\"").append(field.key).append("\":[");
+			for (int index = 0; index < values.length; index++)
+				record.append(index > 0 ? "," : "").append(values[index]);
+			record.append(']');
+		}
+
+		@Override
+		void end() {
+			record.append("}\n");
+			try {
+				out.append(record);
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+			record.setLength(0);
+		}
+
+		@Override
+		void flush() {
+			try {
+				out.flush();
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+	}
+
+	/**
+	 * Ponor zapisov v dvojiski obliki.
+	 */
+	private static class BinarySink extends Sink {
+
+		/** Glava dvojiske oblike. */
+		private static final String MAGIC = "PINS'24 AST\n";
+
+		/** Verzija dvojiske oblike. */
+		private static final int VERSION = 1;
+
+		/** Izhodni tok. */
+		private final OutputStream out;
+
+		/** Oznake ze zapisanih nizov (od 1 naprej). */
+		private final HashMap<String, Integer> strings = new HashMap<String, Integer>();
+
+		/**
+		 * Ustvari nov ponor zapisov v dvojiski obliki.
+		 *
+		 * @param out Izhodni tok.
+		 */
+		BinarySink(final OutputStream out) {
+			this.out = new BufferedOutputStream(out, 1 << 16);
+		}
+
+		/**
+		 * Zapise bajt.
+		 *
+		 * @param value Bajt.
+		 */
+		private void write(final int value) {
+			try {
+				out.write(value);
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		/**
+		 * Zapise nenegativno celo stevilo kot LEB128.
+		 *
+		 * @param value Nenegativno celo stevilo.
+		 */
+		private void unsigned(final long value) {
+			long rest = value;
+			while (rest >= 0x80) {
+				write((int) (rest & 0x7F) | 0x80);
+				rest >>>= 7;
+			}
+			write((int) rest);
+		}
+
+		/**
+		 * Zapise celo stevilo z zig-zag kodiranjem.
+		 *
+		 * @param value Celo stevilo.
+		 */
+		private void signed(final int value) {
+			unsigned(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Zapise niz (oziroma njegovo oznako, ce je ze bil zapisan).
+		 *
+		 * @param value Niz.
+		 */
+		private void text(final String value) {
+			final Integer index = strings.get(value);
+			if (index != null) {
+				unsigned(index);
+				return;
+			}
+			strings.put(value, strings.size() + 1);
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			unsigned(0);
+			unsigned(bytes.length);
+			try {
+				out.write(bytes);
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+		@Override
+		void start() {
+			for (final byte b : MAGIC.getBytes(StandardCharsets.US_ASCII))
+				write(b);
+			write(VERSION);
+		}
+
+		@Override
+		void begin(final int id, final int parent, final String kind) {
+			unsigned(id);
+			unsigned(parent + 1);
+			text(kind);
+		}
+
+		@Override
+		void string(final Field field, final String value) {
+			write(field.ordinal() + 1);
+			text(value);
+		}
+
+		@Override
+		void integer(final Field field, final int value) {
+			write(field.ordinal() + 1);
+			signed(value);
+		}
+
+		@Override
+		void bool(final Field field, final boolean value) {
+			write(field.ordinal() + 1);
+			write(value ? 1 : 0);
+		}
+
+		@Override
+		void ints(final Field field, final int... values) {
+			write(field.ordinal() + 1);
+			unsigned(values.length);
+			for (final int value : values)
+				signed(value);
+		}
+
+		@Override
+		void end() {
+			write(0);
+		}
+
+		@Override
+		void flush() {
+			try {
+				out.flush();
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+		}
+
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon izvoza.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--binary] [--phase Abstr|SemAn|Memory] izvorna-datoteka}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.err.println("This is PINS'24 compiler (export):");
+
+		try {
+			Format format = Format.JSON;
+			String phase = "Memory";
+			int arg = 0;
+			while (arg < cmdLineArgs.length && cmdLineArgs[arg].startsWith("--")) {
+				if (cmdLineArgs[arg].equals("--binary"))
+					format = Format.BINARY;
+				else if (cmdLineArgs[arg].equals("--phase") && arg + 1 < cmdLineArgs.length)
+					phase = cmdLineArgs[++arg];
+				else
+					throw new Report.Error("Illegal option '" + cmdLineArgs[arg] + "'.");
+				arg++;
+			}
+			if (!List.of("Abstr", "SemAn", "Memory").contains(phase))
+				throw new Report.Error("Illegal phase '" + phase + "'.");
+			if (arg == cmdLineArgs.length)
+				throw new Report.Error("No source file specified in the command line.");
+			if (cmdLineArgs.length > arg + 1)
+				Report.warning("Unused arguments in the command line.");
+
+			// Obvestila na standardni izhod za napake, da ne pokvarijo izvoza.
+			Report.setOut(System.err);
+			AST.AttrAST attrAST;
+			try (final SynAn synAn = new SynAn(cmdLineArgs[arg])) {
+				attrAST = Abstr.constructAST(synAn);
+			}
+			if (!phase.equals("Abstr"))
+				attrAST = SemAn.analyze((Abstr.AttrAST) attrAST);
+			if (phase.equals("Memory"))
+				attrAST = Memory.organize((SemAn.AttrAST) attrAST);
+			final int numNodes = export(attrAST, format, System.out);
+			System.out.flush();
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			Report.info("Done (" + numNodes + " nodes).");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
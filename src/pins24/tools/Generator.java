@@ -0,0 +1,536 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Generiranje velikih pravilnih programov za merjenje in preizkusanje faz
+ * prevajalnika.
+ *
+ * Program se generira z metodami, ki sledijo produkcijam slovnice v datoteki
+ * {@code grammar.txt} (program, definicija, parametri, stavki, izrazi po
+ * prioritetah in zacetne vrednosti), pri tem pa se uposteva se to, kar
+ * preverja semanticna analiza: imena so definirana in vidna, klici imajo
+ * pravilno stevilo argumentov, levo od prirejanja je spremenljivka ali
+ * parameter, operand prefiksnega {@code ^} je spremenljivka ali parameter,
+ * zadnji stavek funkcije pa je izraz. Vsa imena v programu so razlicna.
+ *
+ * Prva definicija na najvisjem nivoju je funkcija {@code main} brez
+ * parametrov, sledijo ji funkcije in spremenljivke. Katere funkcije na
+ * najvisjem nivoju lahko klice posamezna funkcija, doloca oblika grafa klicev
+ * (glej {@link Calls}); funkcije, definirane v stavku {@code let}, lahko
+ * klicejo vse funkcije, ki so vidne. Generiran program je pri isti nastavitvi
+ * (glej {@link Config}) vedno enak.
+ */
+public class Generator {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Generator() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Oblika grafa klicev med funkcijami na najvisjem nivoju.
+	 */
+	public enum Calls {
+		/** Vsaka funkcija lahko klice katerokoli (tudi samo sebe). */
+		RANDOM,
+		/** Funkcija {@code i} lahko klice le funkcijo {@code i+1}. */
+		CHAIN,
+		/** Funkcija {@code i} lahko klice le funkciji {@code 2i+1} in {@code 2i+2}. */
+		TREE,
+		/** Funkcije na najvisjem nivoju se med seboj ne klicejo. */
+		NONE,
+	}
+
+	/**
+	 * Nastavitve generiranja programa.
+	 *
+	 * @param seed      Seme generatorja nakljucnih stevil.
+	 * @param defs      Stevilo definicij na najvisjem nivoju.
+	 * @param depth     Najvecja gnezdenost stavkov {@code let}, {@code if} in
+	 *                  {@code while}.
+	 * @param exprDepth Najvecja globina izrazov.
+	 * @param stmts     Najvecje stevilo stavkov v zaporedju stavkov.
+	 * @param inits     Najvecje stevilo zacetnih vrednosti spremenljivke in
+	 *                  najvecje stevilo ponovitev zacetne vrednosti.
+	 * @param calls     Oblika grafa klicev.
+	 */
+	public record Config(long seed, int defs, int depth, int exprDepth, int stmts, int inits, Calls calls) {
+
+		/** Privzete nastavitve. */
+		public static final Config DEFAULT = new Config(0, 100, 3, 3, 4, 4, Calls.RANDOM);
+
+	}
+
+	/**
+	 * Zgenerira program.
+	 *
+	 * Program se v izhodni tok zapisuje sproti, po eno definicijo na najvisjem
+	 * nivoju naenkrat.
+	 *
+	 * @param config Nastavitve generiranja programa.
+	 * @param out    Izhodni tok (ne zapre se).
+	 */
+	public static void generate(final Config config, final Writer out) {
+		if (config.defs() < 1 || config.depth() < 0 || config.exprDepth() < 0 || config.stmts() < 1
+				|| config.inits() < 1)
+			throw new Report.Error("Illegal generator configuration " + config + ".");
+		try {
+			new Program(config, out).program();
+			out.flush();
+		} catch (IOException exception) {
+			throw new Report.Error("Cannot write the program: " + exception.getMessage());
+		}
+	}
+
+	/**
+	 * Funkcija, ki jo je mogoce klicati.
+	 *
+	 * @param name    Ime funkcije.
+	 * @param numPars Stevilo parametrov funkcije.
+	 */
+	private record Fun(String name, int numPars) {
+	}
+
+	/**
+	 * Generiranje enega programa.
+	 */
+	private static class Program {
+
+		/** Binarni operatorji. */
+		private static final String[] binOpers = { "||", "&&", "==", "!=", "<", ">", "<=", ">=", "+", "-", "*", "/",
+				"%" };
+
+		/** Prefiksni operatorji (razen {@code ^}). */
+		private static final String[] unOpers = { "!", "-", "+" };
+
+		/** Nastavitve generiranja programa. */
+		private final Config config;
+
+		/** Izhodni tok. */
+		private final Writer out;
+
+		/** Generator nakljucnih stevil. */
+		private final Random random;
+
+		/** Besedilo trenutne definicije na najvisjem nivoju. */
+		private final StringBuilder text = new StringBuilder();
+
+		/** Funkcije na najvisjem nivoju. */
+		private final List<Fun> globalFuns = new ArrayList<Fun>();
+
+		/** Vidne spremenljivke in parametri (kot sklad). */
+		private final List<String> vars = new ArrayList<String>();
+
+		/** Vidne funkcije, definirane v stavkih {@code let} (kot sklad). */
+		private final List<Fun> localFuns = new ArrayList<Fun>();
+
+		/** Indeks trenutne funkcije na najvisjem nivoju. */
+		private int curFun = 0;
+
+		/** Stevec za tvorjenje razlicnih imen. */
+		private int numNames = 0;
+
+		/**
+		 * Pripravi generiranje programa.
+		 *
+		 * @param config Nastavitve generiranja programa.
+		 * @param out    Izhodni tok.
+		 */
+		Program(final Config config, final Writer out) {
+			this.config = config;
+			this.out = out;
+			this.random = new Random(config.seed());
+		}
+
+		/**
+		 * Vrne novo ime.
+		 *
+		 * @param prefix Predpona imena.
+		 * @return Novo ime.
+		 */
+		private String name(final String prefix) {
+			return prefix + (numNames++);
+		}
+
+		/**
+		 * Doda zamik.
+		 *
+		 * @param indent Zamik.
+		 */
+		private void indent(final int indent) {
+			for (int tab = 0; tab < indent; tab++)
+				text.append('\t');
+		}
+
+		/**
+		 * Program: definicije na najvisjem nivoju.
+		 *
+		 * @throws IOException Ce pisanje ni mogoce.
+		 */
+		void program() throws IOException {
+			// Najprej se dolocijo podpisi, da so vse funkcije vidne ze pred definicijo.
+			final boolean[] isFun = new boolean[config.defs()];
+			for (int def = 0; def < config.defs(); def++) {
+				isFun[def] = def == 0 || random.nextInt(5) != 0;
+				if (isFun[def])
+					globalFuns.add(def == 0 ? new Fun("main", 0) : new Fun(name("f"), random.nextInt(4)));
+			}
+			final List<String> globalVars = new ArrayList<String>();
+			for (int def = 0; def < config.defs(); def++)
+				if (!isFun[def])
+					globalVars.add(name("g"));
+			vars.addAll(globalVars);
+
+			int nextVar = 0;
+			for (int def = 0; def < config.defs(); def++) {
+				if (isFun[def])
+					funDef(globalFuns.get(curFun++), 0, config.depth());
+				else
+					varDef(globalVars.get(nextVar++), 0);
+				text.append('\n');
+				out.append(text);
+				text.setLength(0);
+			}
+		}
+
+		/**
+		 * Definicija funkcije.
+		 *
+		 * @param fun    Funkcija.
+		 * @param indent Zamik.
+		 * @param depth  Najvecja gnezdenost stavkov v jedru funkcije.
+		 */
+		private void funDef(final Fun fun, final int indent, final int depth) {
+			indent(indent);
+			text.append("fun ").append(fun.name()).append('(');
+			final int numVars = vars.size();
+			for (int par = 0; par < fun.numPars(); par++) {
+				final String name = name("p");
+				text.append(par > 0 ? ", " : "").append(name);
+				vars.add(name);
+			}
+			text.append(") =\n");
+			statements(indent + 1, depth, true);
+			text.append('\n');
+			vars.subList(numVars, vars.size()).clear();
+		}
+
+		/**
+		 * Definicija spremenljivke.
+		 *
+		 * @param name   Ime spremenljivke.
+		 * @param indent Zamik.
+		 */
+		private void varDef(final String name, final int indent) {
+			indent(indent);
+			text.append("var ").append(name).append(" = ");
+			initializers();
+			text.append('\n');
+		}
+
+		/**
+		 * Zacetne vrednosti spremenljivke.
+		 */
+		private void initializers() {
+			final int numInits = 1 + random.nextInt(config.inits());
+			for (int init = 0; init < numInits; init++) {
+				text.append(init > 0 ? ", " : "");
+				if (random.nextInt(3) == 0)
+					text.append(1 + random.nextInt(config.inits())).append(" * ");
+				switch (random.nextInt(4)) {
+				case 0:
+					text.append('\'').append((char) ('a' + random.nextInt(26))).append('\'');
+					break;
+				case 1:
+					text.append("\"s").append(random.nextInt(1000)).append('"');
+					break;
+				default:
+					text.append(random.nextInt(1000));
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Zaporedje stavkov (locenih z vejicami, brez koncnega znaka za novo vrstico).
+		 *
+		 * @param indent Zamik.
+		 * @param depth  Najvecja gnezdenost stavkov.
+		 * @param value  Ali mora biti zadnji stavek izraz (da zaporedje vrne
+		 *               vrednost).
+		 */
+		private void statements(final int indent, final int depth, final boolean value) {
+			final int numStmts = 1 + random.nextInt(config.stmts());
+			for (int stmt = 0; stmt < numStmts; stmt++) {
+				if (stmt > 0)
+					text.append(",\n");
+				statement(indent, depth, value && stmt == numStmts - 1);
+			}
+		}
+
+		/**
+		 * Stavek.
+		 *
+		 * @param indent Zamik.
+		 * @param depth  Najvecja gnezdenost stavkov.
+		 * @param value  Ali mora stavek vrniti vrednost.
+		 */
+		private void statement(final int indent, final int depth, final boolean value) {
+			final int kind = random.nextInt(depth > 0 ? 6 : 3);
+			if (value) {
+				if (kind >= 4)
+					letStmt(indent, depth, true);
+				else {
+					indent(indent);
+					expression(config.exprDepth());
+				}
+				return;
+			}
+			switch (kind) {
+			case 0: {
+				indent(indent);
+				expression(config.exprDepth());
+				break;
+			}
+			case 1, 2: {
+				indent(indent);
+				if (vars.isEmpty()) {
+					expression(config.exprDepth());
+					break;
+				}
+				final String name = vars.get(random.nextInt(vars.size()));
+				text.append(random.nextInt(4) == 0 ? name + "^" : name).append(" = ");
+				expression(config.exprDepth());
+				break;
+			}
+			case 3: {
+				indent(indent);
+				text.append("if ");
+				expression(config.exprDepth());
+				text.append(" then\n");
+				statements(indent + 1, depth - 1, false);
+				text.append('\n');
+				if (random.nextBoolean()) {
+					indent(indent);
+					text.append("else\n");
+					statements(indent + 1, depth - 1, false);
+					text.append('\n');
+				}
+				indent(indent);
+				text.append("end");
+				break;
+			}
+			case 4: {
+				indent(indent);
+				text.append("while ");
+				expression(config.exprDepth());
+				text.append(" do\n");
+				statements(indent + 1, depth - 1, false);
+				text.append('\n');
+				indent(indent);
+				text.append("end");
+				break;
+			}
+			default:
+				letStmt(indent, depth, false);
+				break;
+			}
+		}
+
+		/**
+		 * Stavek {@code let}.
+		 *
+		 * @param indent Zamik.
+		 * @param depth  Najvecja gnezdenost stavkov.
+		 * @param value  Ali mora stavek vrniti vrednost.
+		 */
+		private void letStmt(final int indent, final int depth, final boolean value) {
+			indent(indent);
+			text.append("let\n");
+			final int numVars = vars.size();
+			final int numFuns = localFuns.size();
+			// Vse definicije so vidne ze v definicijah istega stavka let.
+			final int numDefs = 1 + random.nextInt(3);
+			final List<Object> defs = new ArrayList<Object>();
+			for (int def = 0; def < numDefs; def++)
+				if (depth > 1 && random.nextInt(4) == 0) {
+					final Fun fun = new Fun(name("h"), random.nextInt(3));
+					localFuns.add(fun);
+					defs.add(fun);
+				} else {
+					final String name = name("v");
+					vars.add(name);
+					defs.add(name);
+				}
+			for (final Object def : defs)
+				if (def instanceof Fun fun)
+					funDef(fun, indent + 1, depth - 1);
+				else
+					varDef((String) def, indent + 1);
+			indent(indent);
+			text.append("in\n");
+			statements(indent + 1, depth - 1, value);
+			text.append('\n');
+			indent(indent);
+			text.append("end");
+			vars.subList(numVars, vars.size()).clear();
+			localFuns.subList(numFuns, localFuns.size()).clear();
+		}
+
+		/**
+		 * Funkcije, ki jih je mogoce klicati v trenutni funkciji.
+		 *
+		 * @return Funkcije, ki jih je mogoce klicati.
+		 */
+		private List<Fun> callees() {
+			final List<Fun> callees = new ArrayList<Fun>(localFuns);
+			switch (config.calls()) {
+			case RANDOM:
+				callees.addAll(globalFuns);
+				break;
+			case CHAIN:
+				if (curFun + 1 < globalFuns.size())
+					callees.add(globalFuns.get(curFun + 1));
+				break;
+			case TREE:
+				for (int callee = 2 * curFun + 1; callee <= 2 * curFun + 2 && callee < globalFuns.size(); callee++)
+					callees.add(globalFuns.get(callee));
+				break;
+			case NONE:
+				break;
+			}
+			return callees;
+		}
+
+		/**
+		 * Izraz.
+		 *
+		 * Sestavljeni podizrazi so v oklepajih, zato prioriteta in asociativnost
+		 * operatorjev ne vplivata na pomen.
+		 *
+		 * @param depth Najvecja globina izraza.
+		 */
+		private void expression(final int depth) {
+			if (depth == 0 || random.nextInt(4) == 0) {
+				primaryExpression();
+				return;
+			}
+			switch (random.nextInt(7)) {
+			case 0, 1, 2: {
+				text.append('(');
+				expression(depth - 1);
+				text.append(' ').append(binOpers[random.nextInt(binOpers.length)]).append(' ');
+				expression(depth - 1);
+				text.append(')');
+				break;
+			}
+			case 3: {
+				text.append(unOpers[random.nextInt(unOpers.length)]).append('(');
+				expression(depth - 1);
+				text.append(')');
+				break;
+			}
+			case 4: {
+				if (vars.isEmpty()) {
+					primaryExpression();
+					break;
+				}
+				final String name = vars.get(random.nextInt(vars.size()));
+				text.append(random.nextBoolean() ? "^" + name : name + "^");
+				break;
+			}
+			default: {
+				final List<Fun> callees = callees();
+				if (callees.isEmpty()) {
+					primaryExpression();
+					break;
+				}
+				final Fun fun = callees.get(random.nextInt(callees.size()));
+				text.append(fun.name()).append('(');
+				for (int arg = 0; arg < fun.numPars(); arg++) {
+					text.append(arg > 0 ? ", " : "");
+					expression(depth - 1);
+				}
+				text.append(')');
+				break;
+			}
+			}
+		}
+
+		/**
+		 * Osnovni izraz: konstanta ali ime spremenljivke oziroma parametra.
+		 */
+		private void primaryExpression() {
+			switch (random.nextInt(vars.isEmpty() ? 2 : 4)) {
+			case 0:
+				text.append(random.nextInt(1000));
+				break;
+			case 1:
+				text.append('\'').append((char) ('a' + random.nextInt(26))).append('\'');
+				break;
+			default:
+				text.append(vars.get(random.nextInt(vars.size())));
+				break;
+			}
+		}
+
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon generiranja programa.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--seed n] [--defs n] [--depth n] [--expr-depth n] [--stmts n] [--inits n] [--calls random|chain|tree|none]}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.err.println("This is PINS'24 compiler (generator):");
+
+		try {
+			Config config = Config.DEFAULT;
+			if (cmdLineArgs.length % 2 != 0)
+				throw new Report.Error("Illegal command line.");
+			for (int arg = 0; arg < cmdLineArgs.length; arg += 2) {
+				final String value = cmdLineArgs[arg + 1];
+				try {
+					config = switch (cmdLineArgs[arg]) {
+					case "--seed" -> new Config(Long.parseLong(value), config.defs(), config.depth(),
+							config.exprDepth(), config.stmts(), config.inits(), config.calls());
+					case "--defs" -> new Config(config.seed(), Integer.parseInt(value), config.depth(),
+							config.exprDepth(), config.stmts(), config.inits(), config.calls());
+					case "--depth" -> new Config(config.seed(), config.defs(), Integer.parseInt(value),
+							config.exprDepth(), config.stmts(), config.inits(), config.calls());
+					case "--expr-depth" -> new Config(config.seed(), config.defs(), config.depth(),
+							Integer.parseInt(value), config.stmts(), config.inits(), config.calls());
+					case "--stmts" -> new Config(config.seed(), config.defs(), config.depth(), config.exprDepth(),
+							Integer.parseInt(value), config.inits(), config.calls());
+					case "--inits" -> new Config(config.seed(), config.defs(), config.depth(), config.exprDepth(),
+							config.stmts(), Integer.parseInt(value), config.calls());
+					case "--calls" -> new Config(config.seed(), config.defs(), config.depth(), config.exprDepth(),
+							config.stmts(), config.inits(), Calls.valueOf(value.toUpperCase()));
+					default -> throw new Report.Error("Unknown option '" + cmdLineArgs[arg] + "'.");
+					};
+				} catch (IllegalArgumentException __) {
+					throw new Report.Error("Illegal value '" + value + "' of option '" + cmdLineArgs[arg] + "'.");
+				}
+			}
+
+			final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+			generate(config, out);
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			Report.setOut(System.err);
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
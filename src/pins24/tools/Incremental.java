@@ -0,0 +1,919 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Inkrementalno prevajanje izvornih datotek.
+ *
+ * Izvorna datoteka se razdeli na definicije na najvisjem nivoju: meje med
+ * definicijami so leksikalni simboli {@code fun} in {@code var} zunaj stavkov
+ * {@code if}, {@code while} in {@code let}. Vsaka definicija dobi izvlecek
+ * svojih leksikalnih simbolov (simbol, lekseme, vrstica relativno glede na
+ * prvi simbol in stolpec), zato premik definicije za nekaj vrstic izvlecka ne
+ * spremeni. Izvlecek je le 64-bitna razprsilna vrednost, zato se ob ujemanju
+ * izvleckov leksikalni simboli definicij primerjajo se neposredno.
+ *
+ * Za definicijo, katere leksikalni simboli so enaki simbolom definicije v
+ * prejsnjem uspesnem prevodu iste izvorne datoteke, se znova uporabijo
+ * abstraktno sintaksno drevo (z ustrezno premaknjenimi lokacijami), indeks
+ * vozlisc po lokacijah, atributi semanticne analize in pomnilniska
+ * predstavitev, vendar le, ce se vsa imena, ki se v
+ * definiciji nanasajo na druge definicije na najvisjem nivoju, nanasajo na
+ * definicije enake vrste (in pri funkcijah z enakim stevilom parametrov).
+ * Ostale definicije se razclenijo in analizirajo znova.
+ *
+ * Atributi lokacij, definicij imen, levih izrazov in uporab definicij so
+ * spremembe atributov prejsnjega prevoda, zato se ob spremembi ene definicije
+ * ne prepisujejo v celoti. Uporabe definicij se zberejo po definicijah na
+ * najvisjem nivoju in se znova zdruzijo le za definicije, ki se uporabljajo v
+ * spremenjenih ali odstranjenih definicijah. Cas prevoda kljub temu ni
+ * sorazmeren le s spremembami: razdelitev na definicije pregleda vse leksikalne
+ * simbole, premik definicij za nekaj vrstic premakne lokacije vseh njihovih
+ * vozlisc, pomnilniska predstavitev pa se izracuna z obhodom celega drevesa,
+ * saj so staticne povezave odvisne od klicev med vsemi funkcijami (glej
+ * {@link Memory#organize(SemAn.AttrAST, Memory.AttrAST, Set)}).
+ *
+ * V nacinu preverjanja se vsak inkrementalni prevod primerja s polnim prevodom;
+ * ce se izpisa razlikujeta, se izpise opozorilo in uporabi polni prevod.
+ */
+public class Incremental {
+
+	/** Ali naj se vsak inkrementalni prevod primerja s polnim prevodom. */
+	private final boolean check;
+
+	/** Zadnji uspesni prevodi izvornih datotek. */
+	private final ConcurrentHashMap<String, Build> builds = new ConcurrentHashMap<String, Build>();
+
+	/** Kljucavnice izvornih datotek. */
+	private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * Ustvari nov inkrementalni prevajalnik.
+	 *
+	 * @param check Ali naj se vsak inkrementalni prevod primerja s polnim
+	 *              prevodom.
+	 */
+	public Incremental(final boolean check) {
+		this.check = check;
+	}
+
+	/**
+	 * Definicija na najvisjem nivoju in njeni atributi.
+	 */
+	private static class Chunk {
+
+		/** Izvlecek leksikalnih simbolov definicije. */
+		final long key;
+
+		/** Leksikalni simboli definicije. */
+		final List<Token> tokens;
+
+		/** Vrstica prvega leksikalnega simbola definicije. */
+		final int begLine;
+
+		/** Indeks vozlisc definicije po lokacijah. */
+		final Abstr.SpanIndex spans;
+
+		/** Vrstica prvega leksikalnega simbola definicije ob gradnji indeksa. */
+		final int spansLine;
+
+		/** Definicije (znova je mogoce uporabiti le definicijo, ki je sama). */
+		final List<AST.MainDef> defs;
+
+		/** Atribut: lokacija vozlisca (le vozlisca definicije). */
+		final Map<AST.Node, Report.Locatable> attrLoc;
+
+		/** Atribut: definicija uporabljenega imena (le imena v definiciji). */
+		Map<AST.NameExpr, AST.Def> attrDef = null;
+
+		/** Atribut: ali je izraz levi izraz (le izrazi v definiciji). */
+		Map<AST.Expr, Boolean> attrLVal = null;
+
+		/**
+		 * Atribut: definicija uporabljenega imena (le imena v definiciji, ki se
+		 * nanasajo na druge definicije na najvisjem nivoju).
+		 */
+		Map<AST.NameExpr, AST.Def> externals = null;
+
+		/** Atribut: uporabe definicije (le uporabe v definiciji). */
+		Map<AST.Def, SemAn.Uses> uses = null;
+
+		/**
+		 * Ustvari novo definicijo na najvisjem nivoju.
+		 *
+		 * @param key       Izvlecek leksikalnih simbolov definicije.
+		 * @param tokens    Leksikalni simboli definicije.
+		 * @param begLine   Vrstica prvega leksikalnega simbola definicije.
+		 * @param defs      Definicije.
+		 * @param attrLoc   Atribut: lokacija vozlisca.
+		 * @param spans     Indeks vozlisc definicije po lokacijah.
+		 * @param spansLine Vrstica prvega leksikalnega simbola definicije ob
+		 *                  gradnji indeksa.
+		 */
+		Chunk(final long key, final List<Token> tokens, final int begLine, final List<AST.MainDef> defs,
+				final Map<AST.Node, Report.Locatable> attrLoc, final Abstr.SpanIndex spans, final int spansLine) {
+			this.key = key;
+			this.tokens = tokens;
+			this.begLine = begLine;
+			this.defs = defs;
+			this.attrLoc = attrLoc;
+			this.spans = spans;
+			this.spansLine = spansLine;
+		}
+
+	}
+
+	/**
+	 * Prevod izvorne datoteke.
+	 */
+	public static class Build {
+
+		/** Definicije na najvisjem nivoju. */
+		private final List<Chunk> chunks;
+
+		/** Abstraktno sintaksno drevo z atributi abstraktne sintakse. */
+		public final Abstr.AttrAST abstr;
+
+		/** Abstraktno sintaksno drevo z atributi semanticne analize. */
+		public final SemAn.AttrAST seman;
+
+		/** Abstraktno sintaksno drevo z atributi pomnilniske predstavitve. */
+		public final Memory.AttrAST memory;
+
+		/** Atribut: lokacija vozlisca (ali {@code null} pri polnem prevodu). */
+		private final Map<AST.Node, Report.Locatable> attrLoc;
+
+		/** Atribut: definicija uporabljenega imena (ali {@code null} pri polnem prevodu). */
+		private final Map<AST.NameExpr, AST.Def> attrDef;
+
+		/** Atribut: ali je izraz levi izraz (ali {@code null} pri polnem prevodu). */
+		private final Map<AST.Expr, Boolean> attrLVal;
+
+		/** Atribut: uporabe definicije (ali {@code null} pri polnem prevodu). */
+		private final Map<AST.Def, SemAn.Uses> attrUses;
+
+		/**
+		 * Ustvari nov prevod izvorne datoteke.
+		 *
+		 * @param chunks   Definicije na najvisjem nivoju.
+		 * @param abstr    Abstraktno sintaksno drevo z atributi abstraktne sintakse.
+		 * @param seman    Abstraktno sintaksno drevo z atributi semanticne analize.
+		 * @param memory   Abstraktno sintaksno drevo z atributi pomnilniske
+		 *                 predstavitve.
+		 * @param attrLoc  Atribut: lokacija vozlisca (spremenljiv).
+		 * @param attrDef  Atribut: definicija uporabljenega imena (spremenljiv).
+		 * @param attrLVal Atribut: ali je izraz levi izraz (spremenljiv).
+		 * @param attrUses Atribut: uporabe definicije (spremenljiv).
+		 */
+		private Build(final List<Chunk> chunks, final Abstr.AttrAST abstr, final SemAn.AttrAST seman,
+				final Memory.AttrAST memory, final Map<AST.Node, Report.Locatable> attrLoc,
+				final Map<AST.NameExpr, AST.Def> attrDef, final Map<AST.Expr, Boolean> attrLVal,
+				final Map<AST.Def, SemAn.Uses> attrUses) {
+			this.chunks = chunks;
+			this.abstr = abstr;
+			this.seman = seman;
+			this.memory = memory;
+			this.attrLoc = attrLoc;
+			this.attrDef = attrDef;
+			this.attrLVal = attrLVal;
+			this.attrUses = attrUses;
+		}
+
+	}
+
+	/**
+	 * Prevede izvorno datoteko do vkljucno pomnilniske predstavitve.
+	 *
+	 * Hkrati se ista izvorna datoteka prevaja kvecjemu enkrat. Prevod se shrani
+	 * za naslednje prevajanje le, ce pri prevajanju ni bilo odkritih napak.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Prevod izvorne datoteke.
+	 */
+	public Build compile(final String srcFileName) {
+		return compile(new File(srcFileName).getAbsolutePath(), srcFileName, null);
+	}
+
+	/**
+	 * Prevede ze leksikalno analiziran dokument (npr. odprt v urejevalniku) do
+	 * vkljucno pomnilniske predstavitve.
+	 *
+	 * @param name   Ime dokumenta.
+	 * @param tokens Leksikalni simboli dokumenta (zadnji je simbol za konec
+	 *               datoteke).
+	 * @return Prevod dokumenta.
+	 */
+	public Build compile(final String name, final List<Token> tokens) {
+		return compile(name, name, tokens);
+	}
+
+	/**
+	 * Prevede izvorno datoteko ali dokument do vkljucno pomnilniske
+	 * predstavitve.
+	 *
+	 * @param key         Kljuc prejsnjega prevoda.
+	 * @param srcFileName Ime izvorne datoteke ali dokumenta.
+	 * @param tokens      Leksikalni simboli dokumenta (ali {@code null}, ce se
+	 *                    prebere izvorna datoteka).
+	 * @return Prevod izvorne datoteke ali dokumenta.
+	 */
+	private Build compile(final String key, final String srcFileName, final List<Token> tokens) {
+		synchronized (locks.computeIfAbsent(key, __ -> new Object())) {
+			final Build build = build(srcFileName, tokens, builds.get(key));
+			final Report.Diagnostics diagnostics = Report.diagnostics();
+			if (diagnostics == null || diagnostics.errors().isEmpty())
+				builds.put(key, build);
+			return build;
+		}
+	}
+
+	/**
+	 * Prevede izvorno datoteko, pri cemer znova uporabi nespremenjene definicije
+	 * prejsnjega prevoda, in ga v nacinu preverjanja primerja s polnim prevodom.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param tokens      Leksikalni simboli (ali {@code null}).
+	 * @param previous    Prejsnji prevod (ali {@code null}).
+	 * @return Prevod izvorne datoteke.
+	 */
+	private Build build(final String srcFileName, final List<Token> tokens, final Build previous) {
+		final Build build = Metrics.measure("Incremental", () -> incrementalBuild(srcFileName, tokens, previous));
+		if (!check)
+			return build;
+
+		final Build fullBuild = fullBuild(srcFileName, tokens);
+		if (!log(build.memory).equals(log(fullBuild.memory))) {
+			Metrics.count("Incremental", "mismatches", 1);
+			Report.warning("Incremental build of '" + srcFileName + "' differs from the full build.");
+			return fullBuild;
+		}
+		return build;
+	}
+
+	/**
+	 * Prevede izvorno datoteko v celoti.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param tokens      Leksikalni simboli (ali {@code null}, ce se prebere
+	 *                    izvorna datoteka).
+	 * @return Prevod izvorne datoteke (brez definicij za ponovno uporabo).
+	 */
+	private static Build fullBuild(final String srcFileName, final List<Token> tokens) {
+		final Abstr.AttrAST abstr;
+		try (final SynAn synAn = tokens == null ? new SynAn(srcFileName) : new SynAn(new LexAn(tokens))) {
+			abstr = Abstr.constructAST(synAn);
+		}
+		check();
+		final SemAn.AttrAST seman = SemAn.analyze(abstr);
+		check();
+		return new Build(List.of(), abstr, seman, Memory.organize(seman), null, null, null, null);
+	}
+
+	/**
+	 * Izpise abstraktno sintaksno drevo v niz.
+	 *
+	 * @param attrAST Abstraktno sintaksno drevo z atributi.
+	 * @return Izpis abstraktnega sintaksnega drevesa.
+	 */
+	private static String log(final AST.AttrAST attrAST) {
+		final PrintStream oldOut = Report.out();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8)) {
+			Report.setOut(out);
+			(new AST.Logger(attrAST, true)).log();
+		} finally {
+			Report.setOut(oldOut == System.out ? null : oldOut);
+		}
+		return bytes.toString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Ustavi prevajanje, ce so bile v izvornem programu odkrite napake.
+	 */
+	private static void check() {
+		final Report.Diagnostics diagnostics = Report.diagnostics();
+		if (diagnostics != null)
+			diagnostics.check();
+	}
+
+	/**
+	 * Prevede izvorno datoteko, pri cemer znova uporabi nespremenjene definicije
+	 * prejsnjega prevoda.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param srcTokens   Leksikalni simboli (ali {@code null}, ce se prebere
+	 *                    izvorna datoteka).
+	 * @param previous    Prejsnji prevod (ali {@code null}).
+	 * @return Prevod izvorne datoteke.
+	 */
+	private static Build incrementalBuild(final String srcFileName, final List<Token> srcTokens,
+			final Build previous) {
+		// Leksikalni simboli definicij na najvisjem nivoju.
+		final List<Token> tokens = srcTokens == null ? new ArrayList<Token>() : srcTokens;
+		if (srcTokens == null)
+			try (final LexAn lexAn = new LexAn(srcFileName)) {
+				while (lexAn.peekToken().symbol() != Token.Symbol.EOF)
+					tokens.add(lexAn.takeToken());
+				tokens.add(lexAn.takeToken());
+			} catch (Report.Error __) {
+				// Polni prevod odkrije napake v enakem vrstnem redu kot samostojne faze.
+				return fullBuild(srcFileName, null);
+			}
+		final List<List<Token>> groups = split(tokens);
+
+		// Prejsnje definicije po izvleckih in po prvih leksikalnih simbolih.
+		final HashMap<Long, ArrayDeque<Chunk>> oldChunks = new HashMap<Long, ArrayDeque<Chunk>>();
+		final IdentityHashMap<Token, Chunk> oldFirsts = new IdentityHashMap<Token, Chunk>();
+		if (previous != null)
+			for (final Chunk chunk : previous.chunks)
+				if (chunk.defs.size() == 1) {
+					oldChunks.computeIfAbsent(chunk.key, __ -> new ArrayDeque<Chunk>()).add(chunk);
+					oldFirsts.put(chunk.tokens.get(0), chunk);
+				}
+		final Set<Chunk> matchedChunks = Collections.newSetFromMap(new IdentityHashMap<Chunk, Boolean>());
+
+		// Atributi inkrementalnega prevoda so spremembe atributov prejsnjega
+		// inkrementalnega prevoda.
+		final boolean layered = previous != null && previous.attrLoc != null;
+		final Map<AST.Node, Report.Locatable> attrLoc = layered ? Layered.of(previous.attrLoc)
+				: new HashMap<AST.Node, Report.Locatable>();
+		final Map<AST.NameExpr, AST.Def> attrDef = layered ? Layered.of(previous.attrDef)
+				: new HashMap<AST.NameExpr, AST.Def>();
+		final Map<AST.Expr, Boolean> attrLVal = layered ? Layered.of(previous.attrLVal)
+				: new HashMap<AST.Expr, Boolean>();
+		final Map<AST.Def, SemAn.Uses> attrUses = layered ? Layered.of(previous.attrUses)
+				: new HashMap<AST.Def, SemAn.Uses>();
+
+		// Sintaksna analiza spremenjenih definicij.
+		final List<Chunk> chunks = new ArrayList<Chunk>();
+		final Set<Chunk> reusedChunks = Collections.newSetFromMap(new IdentityHashMap<Chunk, Boolean>());
+		final List<AST.MainDef> defs = new ArrayList<AST.MainDef>();
+		final List<Abstr.SpanIndex> spans = new ArrayList<Abstr.SpanIndex>();
+		final List<Integer> spansShifts = new ArrayList<Integer>();
+		for (int index = 0; index < groups.size(); index++) {
+			final List<Token> group = groups.get(index);
+			final int begLine = group.get(0).location().begLine();
+			// Definicija, ki ima iste leksikalne simbole kot v prejsnjem prevodu (npr.
+			// dokumenta v urejevalniku), se najde brez izracuna izvlecka.
+			Chunk oldChunk = oldFirsts.get(group.get(0));
+			if (oldChunk != null && (matchedChunks.contains(oldChunk) || !identical(group, oldChunk.tokens)))
+				oldChunk = null;
+			final boolean identical = oldChunk != null;
+			final long key = identical ? oldChunk.key : key(group);
+			final ArrayDeque<Chunk> sameChunks = identical ? null : oldChunks.get(key);
+			if (sameChunks != null)
+				for (final Chunk sameChunk : sameChunks)
+					if (!matchedChunks.contains(sameChunk) && same(group, sameChunk.tokens)) {
+						oldChunk = sameChunk;
+						break;
+					}
+			if (oldChunk != null) {
+				matchedChunks.add(oldChunk);
+				final int lines = begLine - oldChunk.begLine;
+				final Chunk chunk = new Chunk(key, identical ? oldChunk.tokens : List.copyOf(group), begLine,
+						oldChunk.defs, shift(oldChunk.attrLoc, lines), oldChunk.spans, oldChunk.spansLine);
+				chunk.attrDef = oldChunk.attrDef;
+				chunk.attrLVal = oldChunk.attrLVal;
+				chunk.externals = oldChunk.externals;
+				chunk.uses = oldChunk.uses;
+				chunks.add(chunk);
+				reusedChunks.add(chunk);
+				defs.addAll(chunk.defs);
+				if (!layered || lines != 0)
+					attrLoc.putAll(chunk.attrLoc);
+				spans.add(chunk.spans);
+				spansShifts.add(begLine - chunk.spansLine);
+				continue;
+			}
+
+			// Definicijo se konca s simbolom za konec datoteke na mestu naslednje
+			// definicije, da so morebitna sporocila o napakah enaka kot pri polnem
+			// prevodu.
+			final Token next = index + 1 < groups.size() ? groups.get(index + 1).get(0) : tokens.getLast();
+			final List<Token> replay = new ArrayList<Token>(group);
+			replay.add(new Token(next.location(), Token.Symbol.EOF, ""));
+			final HashMap<AST.Node, Report.Locatable> chunkAttrLoc = new HashMap<AST.Node, Report.Locatable>();
+			final List<AST.MainDef> groupDefs = new ArrayList<AST.MainDef>();
+			try (final SynAn synAn = new SynAn(new LexAn(replay))) {
+				final AST.Nodes<?> nodes = (AST.Nodes<?>) Metrics.measure("SynAn.parse", () -> synAn.parse(chunkAttrLoc));
+				for (final AST.Node node : nodes)
+					groupDefs.add((AST.MainDef) node);
+			}
+			Metrics.count("Incremental", "reparsed", 1);
+			final Abstr.SpanIndex groupSpans = new Abstr.SpanIndex(
+					groupDefs.size() == 1 ? groupDefs.get(0) : new AST.Nodes<AST.MainDef>(groupDefs), chunkAttrLoc);
+			chunks.add(new Chunk(key, List.copyOf(group), begLine, groupDefs, chunkAttrLoc, groupSpans, begLine));
+			defs.addAll(groupDefs);
+			attrLoc.putAll(chunkAttrLoc);
+			spans.add(groupSpans);
+			spansShifts.add(0);
+		}
+
+		// Vozlisca prejsnjih definicij, ki niso vec del drevesa, nimajo vec
+		// atributov, njihove uporabe definicij pa se izracunajo znova.
+		final IdentityHashMap<AST.Def, Chunk> changedUses = new IdentityHashMap<AST.Def, Chunk>();
+		if (layered)
+			for (final Chunk chunk : previous.chunks) {
+				if (matchedChunks.contains(chunk))
+					continue;
+				for (final AST.Node node : chunk.attrLoc.keySet()) {
+					attrLoc.remove(node);
+					attrDef.remove(node);
+					attrUses.remove(node);
+				}
+				for (final AST.Expr expr : chunk.attrLVal.keySet())
+					attrLVal.remove(expr);
+				for (final AST.Def def : chunk.uses.keySet())
+					changedUses.putIfAbsent(def, null);
+			}
+		final Abstr.AttrAST abstr = new Abstr.AttrAST(new AST.AttrAST(new AST.Nodes<AST.MainDef>(defs)),
+				Collections.unmodifiableMap(attrLoc), new Abstr.SpanIndex(spans, spansShifts));
+		check();
+
+		// Semanticna analiza spremenjenih definicij.
+		final HashMap<String, AST.MainDef> topDefs = new HashMap<String, AST.MainDef>();
+		for (final AST.MainDef def : defs)
+			topDefs.putIfAbsent(def.name, def);
+		final Set<AST.MainDef> reused = Collections.newSetFromMap(new IdentityHashMap<AST.MainDef, Boolean>());
+		for (final Chunk chunk : chunks) {
+			if (!reusedChunks.contains(chunk))
+				continue;
+			final Map<AST.NameExpr, AST.Def> externals = relink(chunk, topDefs);
+			if (externals == null) {
+				// Definicija se analizira znova.
+				for (final AST.NameExpr nameExpr : chunk.attrDef.keySet())
+					attrDef.remove(nameExpr);
+				for (final AST.Expr expr : chunk.attrLVal.keySet())
+					attrLVal.remove(expr);
+				for (final AST.Def def : chunk.uses.keySet())
+					changedUses.putIfAbsent(def, null);
+				chunk.uses = null;
+				reusedChunks.remove(chunk);
+				continue;
+			}
+			if (externals != chunk.externals) {
+				chunk.attrDef = new HashMap<AST.NameExpr, AST.Def>(chunk.attrDef);
+				chunk.attrDef.putAll(externals);
+				chunk.externals = externals;
+				attrDef.putAll(externals);
+				for (final AST.Def def : chunk.uses.keySet())
+					changedUses.putIfAbsent(def, null);
+				chunk.uses = null;
+			}
+			if (!layered) {
+				attrDef.putAll(chunk.attrDef);
+				attrLVal.putAll(chunk.attrLVal);
+			}
+			reused.addAll(chunk.defs);
+		}
+		Metrics.count("Incremental", "reused", reused.size());
+		final SemAn.AttrAST seman = SemAn.analyze(abstr, attrDef, attrLVal, reused,
+				attrAST -> uses(chunks, reusedChunks, attrAST, attrUses, changedUses));
+		check();
+
+		// Pomnilniska predstavitev.
+		final Memory.AttrAST memory = Memory.organize(seman, previous == null ? null : previous.memory, reused);
+		return new Build(chunks, abstr, seman, memory, attrLoc, attrDef, attrLVal, attrUses);
+	}
+
+	/**
+	 * Izracuna uporabe definicij, pri cemer znova uporabi uporabe v
+	 * nespremenjenih definicijah.
+	 *
+	 * Uporabe definicije so uporabe v vseh delih izvorne datoteke v vrstnem redu
+	 * izvorne datoteke. Znova se zdruzijo le uporabe definicij, ki so uporabljene
+	 * v spremenjenih ali odstranjenih definicijah; parametre in lokalne
+	 * spremenljivke je mogoce uporabiti le v definiciji, v kateri so definirani,
+	 * definicije na najvisjem nivoju pa v vseh.
+	 *
+	 * @param chunks       Definicije na najvisjem nivoju.
+	 * @param reusedChunks Nespremenjene definicije na najvisjem nivoju.
+	 * @param attrAST      Abstraktno sintaksno drevo z ostalimi atributi
+	 *                     semanticne analize.
+	 * @param attrUses     Atribut: uporabe definicije (v prejsnjem prevodu).
+	 * @param changedUses  Definicije, katerih uporabe so se spremenile, in
+	 *                     definicije na najvisjem nivoju, v katerih so te uporabe
+	 *                     (ali {@code null}, ce jih ni vec).
+	 * @return Atribut: uporabe definicije (nespremenljiv).
+	 */
+	private static Map<AST.Def, SemAn.Uses> uses(final List<Chunk> chunks, final Set<Chunk> reusedChunks,
+			final SemAn.AttrAST attrAST, final Map<AST.Def, SemAn.Uses> attrUses,
+			final IdentityHashMap<AST.Def, Chunk> changedUses) {
+		final Set<AST.Def> topDefs = Collections.newSetFromMap(new IdentityHashMap<AST.Def, Boolean>());
+		for (final Chunk chunk : chunks) {
+			topDefs.addAll(chunk.defs);
+			if (!reusedChunks.contains(chunk)) {
+				chunk.attrDef = new HashMap<AST.NameExpr, AST.Def>();
+				chunk.attrLVal = new HashMap<AST.Expr, Boolean>();
+				chunk.externals = new HashMap<AST.NameExpr, AST.Def>();
+				for (final AST.Node node : chunk.attrLoc.keySet()) {
+					if (node instanceof AST.NameExpr nameExpr && attrAST.attrDef.get(nameExpr) != null) {
+						final AST.Def def = attrAST.attrDef.get(nameExpr);
+						chunk.attrDef.put(nameExpr, def);
+						if (!chunk.attrLoc.containsKey(def))
+							chunk.externals.put(nameExpr, def);
+					}
+					if (node instanceof AST.Expr expr && attrAST.attrLVal.get(expr) != null)
+						chunk.attrLVal.put(expr, attrAST.attrLVal.get(expr));
+					// Stevilo ponovitev, ki ga doda sintaksni analizator, nima lokacije.
+					if (node instanceof AST.Init init && attrAST.attrLVal.get(init.num) != null)
+						chunk.attrLVal.put(init.num, attrAST.attrLVal.get(init.num));
+				}
+			}
+			if (chunk.uses == null) {
+				chunk.uses = SemAn.uses(chunk.defs.size() == 1 ? chunk.defs.get(0)
+						: new AST.Nodes<AST.MainDef>(chunk.defs), chunk.attrDef, chunk.attrLVal);
+				for (final AST.Def def : chunk.uses.keySet())
+					changedUses.put(def, chunk);
+			}
+		}
+
+		// Uporabe definicij na najvisjem nivoju se zberejo po vseh definicijah.
+		final IdentityHashMap<AST.Def, List<SemAn.Uses>> parts = new IdentityHashMap<AST.Def, List<SemAn.Uses>>();
+		for (final AST.Def def : changedUses.keySet())
+			parts.put(def, new ArrayList<SemAn.Uses>());
+		final List<AST.Def> changedTopDefs = new ArrayList<AST.Def>();
+		for (final AST.Def def : changedUses.keySet())
+			if (topDefs.contains(def))
+				changedTopDefs.add(def);
+		for (final Chunk chunk : chunks)
+			if (chunk.uses.size() < changedTopDefs.size()) {
+				for (final Map.Entry<AST.Def, SemAn.Uses> entry : chunk.uses.entrySet())
+					if (topDefs.contains(entry.getKey()) && parts.containsKey(entry.getKey()))
+						parts.get(entry.getKey()).add(entry.getValue());
+			} else
+				for (final AST.Def def : changedTopDefs)
+					if (chunk.uses.get(def) != null)
+						parts.get(def).add(chunk.uses.get(def));
+		for (final Map.Entry<AST.Def, Chunk> entry : changedUses.entrySet()) {
+			final AST.Def def = entry.getKey();
+			if (!topDefs.contains(def) && entry.getValue() != null)
+				parts.get(def).add(entry.getValue().uses.get(def));
+			if (parts.get(def).isEmpty())
+				attrUses.remove(def);
+			else
+				attrUses.put(def, SemAn.Uses.concat(parts.get(def)));
+		}
+		return Collections.unmodifiableMap(attrUses);
+	}
+
+	/**
+	 * Razdeli leksikalne simbole izvorne datoteke na definicije na najvisjem
+	 * nivoju.
+	 *
+	 * @param tokens Leksikalni simboli izvorne datoteke (zadnji je simbol za konec
+	 *               datoteke).
+	 * @return Leksikalni simboli posameznih definicij.
+	 */
+	private static List<List<Token>> split(final List<Token> tokens) {
+		final List<List<Token>> groups = new ArrayList<List<Token>>();
+		final Splitter splitter = new Splitter();
+		int begIndex = 0;
+		for (int index = 0; index < tokens.size() - 1; index++)
+			if (splitter.split(tokens.get(index), index == begIndex)) {
+				groups.add(tokens.subList(begIndex, index));
+				begIndex = index;
+			}
+		if (begIndex < tokens.size() - 1)
+			groups.add(tokens.subList(begIndex, tokens.size() - 1));
+		return groups;
+	}
+
+	/**
+	 * Iskanje mej med definicijami na najvisjem nivoju.
+	 *
+	 * Meje med definicijami so leksikalni simboli {@code fun} in {@code var} zunaj
+	 * stavkov {@code if}, {@code while} in {@code let}. Leksikalni simboli se
+	 * obdelajo po vrsti; simbol, pred katerim je meja, ne spremeni globine
+	 * gnezdenja, zato ga je mogoce obdelati se enkrat kot prvi simbol naslednje
+	 * definicije.
+	 */
+	static class Splitter {
+
+		/** Globina gnezdenja stavkov {@code if}, {@code while} in {@code let}. */
+		private int depth = 0;
+
+		/** Ustvari novo iskanje mej med definicijami na najvisjem nivoju. */
+		Splitter() {
+		}
+
+		/**
+		 * Obdela naslednji leksikalni simbol.
+		 *
+		 * @param token Leksikalni simbol.
+		 * @param empty Ali trenutna definicija se nima nobenega leksikalnega simbola.
+		 * @return Ali je pred leksikalnim simbolom meja med definicijama.
+		 */
+		boolean split(final Token token, final boolean empty) {
+			switch (token.symbol()) {
+			case FUN, VAR:
+				return depth == 0 && !empty;
+			case IF, WHILE, LET:
+				depth++;
+				return false;
+			case END:
+				depth = Math.max(depth - 1, 0);
+				return false;
+			default:
+				return false;
+			}
+		}
+
+	}
+
+	/**
+	 * Izracuna izvlecek leksikalnih simbolov definicije.
+	 *
+	 * @param group Leksikalni simboli definicije.
+	 * @return Izvlecek leksikalnih simbolov.
+	 */
+	private static long key(final List<Token> group) {
+		final int begLine = group.get(0).location().begLine();
+		long key = group.size();
+		for (final Token token : group) {
+			final Report.Location location = token.location();
+			key = 31 * key + token.symbol().ordinal();
+			key = 31 * key + (location.begLine() - begLine);
+			key = 31 * key + location.begColumn();
+			key = 31 * key + (location.endLine() - begLine);
+			key = 31 * key + location.endColumn();
+			key = 31 * key + token.lexeme().hashCode();
+		}
+		return key;
+	}
+
+	/**
+	 * Preveri, ali sta zaporedji leksikalnih simbolov definicij enaki do premika
+	 * za nekaj vrstic.
+	 *
+	 * @param group     Leksikalni simboli definicije.
+	 * @param oldTokens Leksikalni simboli prejsnje definicije.
+	 * @return Ali sta zaporedji enaki.
+	 */
+	private static boolean same(final List<Token> group, final List<Token> oldTokens) {
+		if (group.size() != oldTokens.size())
+			return false;
+		final int begLine = group.get(0).location().begLine();
+		final int oldBegLine = oldTokens.get(0).location().begLine();
+		for (int index = 0; index < group.size(); index++) {
+			final Token token = group.get(index);
+			final Token oldToken = oldTokens.get(index);
+			final Report.Location location = token.location();
+			final Report.Location oldLocation = oldToken.location();
+			if (token.symbol() != oldToken.symbol() || !token.lexeme().equals(oldToken.lexeme())
+					|| location.begLine() - begLine != oldLocation.begLine() - oldBegLine
+					|| location.begColumn() != oldLocation.begColumn()
+					|| location.endLine() - begLine != oldLocation.endLine() - oldBegLine
+					|| location.endColumn() != oldLocation.endColumn())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Preveri, ali sta zaporedji leksikalnih simbolov definicij sestavljeni iz
+	 * istih leksikalnih simbolov.
+	 *
+	 * @param group     Leksikalni simboli definicije.
+	 * @param oldTokens Leksikalni simboli prejsnje definicije.
+	 * @return Ali sta zaporedji sestavljeni iz istih leksikalnih simbolov.
+	 */
+	private static boolean identical(final List<Token> group, final List<Token> oldTokens) {
+		if (group.size() != oldTokens.size())
+			return false;
+		for (int index = 0; index < group.size(); index++)
+			if (group.get(index) != oldTokens.get(index))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Premakne lokacije vozlisc definicije za dano stevilo vrstic.
+	 *
+	 * @param attrLoc Atribut: lokacija vozlisca.
+	 * @param lines   Stevilo vrstic.
+	 * @return Atribut: premaknjena lokacija vozlisca.
+	 */
+	private static Map<AST.Node, Report.Locatable> shift(final Map<AST.Node, Report.Locatable> attrLoc,
+			final int lines) {
+		if (lines == 0)
+			return attrLoc;
+		final HashMap<AST.Node, Report.Locatable> shifted = new HashMap<AST.Node, Report.Locatable>();
+		for (final Map.Entry<AST.Node, Report.Locatable> entry : attrLoc.entrySet()) {
+			final Report.Location location = entry.getValue().location();
+			// Vozlisca, ki jih ustvari sintaksni analizator sam, nimajo prave lokacije.
+			shifted.put(entry.getKey(), location.begLine() == 0 ? location
+					: new Report.Location(location.begLine() + lines, location.begColumn(),
+							location.endLine() + lines, location.endColumn()));
+		}
+		return shifted;
+	}
+
+	/**
+	 * Poveze imena v nespremenjeni definiciji z definicijami na najvisjem nivoju.
+	 *
+	 * @param chunk   Nespremenjena definicija.
+	 * @param topDefs Definicije na najvisjem nivoju po imenih.
+	 * @return Atribut: definicija uporabljenega imena (le imena, ki se nanasajo na
+	 *         druge definicije na najvisjem nivoju; enak prejsnjemu, ce se vsa
+	 *         imena nanasajo na iste definicije) ali {@code null}, ce se katera od
+	 *         definicij na najvisjem nivoju, na katere se definicija nanasa, ne
+	 *         ujema s prejsnjo.
+	 */
+	private static Map<AST.NameExpr, AST.Def> relink(final Chunk chunk, final Map<String, AST.MainDef> topDefs) {
+		Map<AST.NameExpr, AST.Def> externals = chunk.externals;
+		for (final Map.Entry<AST.NameExpr, AST.Def> entry : chunk.externals.entrySet()) {
+			final AST.Def oldDef = entry.getValue();
+			final AST.MainDef newDef = topDefs.get(oldDef.name);
+			if (newDef == oldDef)
+				continue;
+			if (newDef == null || newDef.getClass() != oldDef.getClass())
+				return null;
+			if (newDef instanceof AST.FunDef newFunDef && oldDef instanceof AST.FunDef oldFunDef
+					&& newFunDef.pars.size() != oldFunDef.pars.size())
+				return null;
+			if (externals == chunk.externals)
+				externals = new HashMap<AST.NameExpr, AST.Def>(chunk.externals);
+			externals.put(entry.getKey(), newDef);
+		}
+		return externals;
+	}
+
+	/**
+	 * Atribut, ki je atribut prejsnjega prevoda z nekaj spremembami.
+	 *
+	 * Spremembe se hranijo loceno od atributa, na katerem temeljijo in ki se ne
+	 * spreminja, zato je izdelava atributa sorazmerna s stevilom sprememb od
+	 * zadnjega zdruzevanja in ne z velikostjo atributa. Ko je sprememb vec kot
+	 * osmina atributa, se atribut ob naslednjem prevodu zdruzi v eno tabelo.
+	 * Vrednosti atributa ne smejo biti {@code null}.
+	 *
+	 * @param <Key>   Tip kljucev.
+	 * @param <Value> Tip vrednosti.
+	 */
+	private static class Layered<Key, Value> extends AbstractMap<Key, Value> {
+
+		/** Atribut, na katerem temeljijo spremembe. */
+		private final Map<Key, Value> base;
+
+		/** Dodane in spremenjene vrednosti. */
+		private final HashMap<Key, Value> added;
+
+		/** Odstranjeni kljuci atributa, na katerem temeljijo spremembe. */
+		private final HashSet<Key> removed;
+
+		/** Stevilo kljucev. */
+		private int size;
+
+		/**
+		 * Ustvari nov atribut s spremembami.
+		 *
+		 * @param base    Atribut, na katerem temeljijo spremembe.
+		 * @param added   Dodane in spremenjene vrednosti.
+		 * @param removed Odstranjeni kljuci atributa, na katerem temeljijo
+		 *                spremembe.
+		 * @param size    Stevilo kljucev.
+		 */
+		private Layered(final Map<Key, Value> base, final HashMap<Key, Value> added, final HashSet<Key> removed,
+				final int size) {
+			this.base = base;
+			this.added = added;
+			this.removed = removed;
+			this.size = size;
+		}
+
+		/**
+		 * Ustvari nov atribut, ki je (se) enak atributu prejsnjega prevoda.
+		 *
+		 * @param <Key>    Tip kljucev.
+		 * @param <Value>  Tip vrednosti.
+		 * @param previous Atribut prejsnjega prevoda (se ne spremeni).
+		 * @return Atribut.
+		 */
+		static <Key, Value> Layered<Key, Value> of(final Map<Key, Value> previous) {
+			if (!(previous instanceof Layered<Key, Value> layered))
+				return new Layered<Key, Value>(previous, new HashMap<Key, Value>(), new HashSet<Key>(),
+						previous.size());
+			if (8 * (layered.added.size() + layered.removed.size()) > layered.base.size())
+				return new Layered<Key, Value>(new HashMap<Key, Value>(layered), new HashMap<Key, Value>(),
+						new HashSet<Key>(), layered.size);
+			return new Layered<Key, Value>(layered.base, new HashMap<Key, Value>(layered.added),
+					new HashSet<Key>(layered.removed), layered.size);
+		}
+
+		@Override
+		public Value get(final Object key) {
+			final Value value = added.get(key);
+			if (value != null)
+				return value;
+			return removed.contains(key) ? null : base.get(key);
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Value put(final Key key, final Value value) {
+			final Value oldValue = get(key);
+			added.put(key, value);
+			if (oldValue == null)
+				size++;
+			return oldValue;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Value remove(final Object key) {
+			final Value oldValue = get(key);
+			if (oldValue == null)
+				return null;
+			added.remove(key);
+			if (base.containsKey(key))
+				removed.add((Key) key);
+			size--;
+			return oldValue;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Set<Map.Entry<Key, Value>> entrySet() {
+			return new AbstractSet<Map.Entry<Key, Value>>() {
+
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public Iterator<Map.Entry<Key, Value>> iterator() {
+					return new LayeredIterator();
+				}
+
+			};
+		}
+
+		/**
+		 * Iterator (brez operacije brisanja) preko dodanih in spremenjenih, nato pa
+		 * se preko nespremenjenih vrednosti.
+		 */
+		private final class LayeredIterator implements Iterator<Map.Entry<Key, Value>> {
+
+			/** Iterator preko dodanih in spremenjenih vrednosti. */
+			private final Iterator<Map.Entry<Key, Value>> addedEntries = added.entrySet().iterator();
+
+			/** Iterator preko vrednosti atributa, na katerem temeljijo spremembe. */
+			private final Iterator<Map.Entry<Key, Value>> baseEntries = base.entrySet().iterator();
+
+			/** Vrednost, ki bo vrnjena ob naslednjem klicu (ali {@code null}). */
+			private Map.Entry<Key, Value> next = advance();
+
+			/** Ustvari nov iterator. */
+			private LayeredIterator() {
+			}
+
+			/**
+			 * Poisce naslednjo vrednost.
+			 *
+			 * @return Naslednja vrednost (ali {@code null}, ce je ni).
+			 */
+			private Map.Entry<Key, Value> advance() {
+				if (addedEntries.hasNext())
+					return new AbstractMap.SimpleImmutableEntry<Key, Value>(addedEntries.next());
+				while (baseEntries.hasNext()) {
+					final Map.Entry<Key, Value> entry = baseEntries.next();
+					if (!added.containsKey(entry.getKey()) && !removed.contains(entry.getKey()))
+						return new AbstractMap.SimpleImmutableEntry<Key, Value>(entry);
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Map.Entry<Key, Value> next() throws NoSuchElementException {
+				if (next == null)
+					throw new NoSuchElementException("");
+				final Map.Entry<Key, Value> entry = next;
+				next = advance();
+				return entry;
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,312 @@
+package pins24.tools;
+
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Branje in pisanje besedil v obliki JSON.
+ *
+ * Objekti so predstavljeni s {@link Map} (kljuci v vrstnem redu), tabele s
+ * {@link List}, nizi s {@link String}, cela stevila z {@link Long}, ostala
+ * stevila z {@link Double}, logicne vrednosti z {@link Boolean}, vrednost
+ * {@code null} pa z {@code null}.
+ */
+public class Json {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Json() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Prebere vrednost iz besedila v obliki JSON.
+	 *
+	 * @param text Besedilo v obliki JSON.
+	 * @return Vrednost.
+	 */
+	public static Object parse(final String text) {
+		final Parser parser = new Parser(text);
+		final Object value = parser.value();
+		parser.skipSpace();
+		if (parser.index != text.length())
+			throw new Report.Error("Illegal JSON: unexpected text at offset " + parser.index + ".");
+		return value;
+	}
+
+	/**
+	 * Zapise vrednost v obliki JSON.
+	 *
+	 * @param value Vrednost.
+	 * @return Besedilo v obliki JSON.
+	 */
+	public static String write(final Object value) {
+		final StringBuilder json = new StringBuilder();
+		write(value, json);
+		return json.toString();
+	}
+
+	/**
+	 * Zapise vrednost v obliki JSON.
+	 *
+	 * @param value Vrednost.
+	 * @param json  Besedilo v obliki JSON, ki se mu doda vrednost.
+	 */
+	public static void write(final Object value, final StringBuilder json) {
+		switch (value) {
+		case null:
+			json.append("null");
+			break;
+		case final String string:
+			json.append(Metrics.quote(string));
+			break;
+		case final Number number:
+			json.append(number);
+			break;
+		case final Boolean bool:
+			json.append(bool);
+			break;
+		case final Map<?, ?> map: {
+			json.append('{');
+			boolean first = true;
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				json.append(first ? "" : ",");
+				first = false;
+				json.append(Metrics.quote(entry.getKey().toString())).append(':');
+				write(entry.getValue(), json);
+			}
+			json.append('}');
+			break;
+		}
+		case final List<?> list: {
+			json.append('[');
+			boolean first = true;
+			for (final Object element : list) {
+				json.append(first ? "" : ",");
+				first = false;
+				write(element, json);
+			}
+			json.append(']');
+			break;
+		}
+		default:
+			throw new Report.InternalError();
+		}
+	}
+
+	/**
+	 * Ustvari objekt iz zaporedja kljucev in vrednosti.
+	 *
+	 * @param keysAndValues Izmenicno kljuci in vrednosti.
+	 * @return Objekt.
+	 */
+	public static Map<String, Object> object(final Object... keysAndValues) {
+		final LinkedHashMap<String, Object> object = new LinkedHashMap<String, Object>();
+		for (int index = 0; index < keysAndValues.length; index += 2)
+			object.put((String) keysAndValues[index], keysAndValues[index + 1]);
+		return object;
+	}
+
+	/**
+	 * Vrne vrednost na dani poti skozi gnezdene objekte.
+	 *
+	 * @param value Vrednost.
+	 * @param keys  Kljuci na poti.
+	 * @return Vrednost na koncu poti (ali {@code null}, ce je ni).
+	 */
+	public static Object get(final Object value, final String... keys) {
+		Object current = value;
+		for (final String key : keys) {
+			if (!(current instanceof Map<?, ?> map))
+				return null;
+			current = map.get(key);
+		}
+		return current;
+	}
+
+	/**
+	 * Bralnik besedila v obliki JSON.
+	 */
+	private static class Parser {
+
+		/** Besedilo. */
+		private final String text;
+
+		/** Indeks trenutnega znaka. */
+		private int index = 0;
+
+		/**
+		 * Ustvari nov bralnik.
+		 *
+		 * @param text Besedilo.
+		 */
+		Parser(final String text) {
+			this.text = text;
+		}
+
+		/** Preskoci bele znake. */
+		void skipSpace() {
+			while (index < text.length() && Character.isWhitespace(text.charAt(index)))
+				index++;
+		}
+
+		/**
+		 * Preveri in preskoci dani znak.
+		 *
+		 * @param c Znak.
+		 */
+		void expect(final char c) {
+			skipSpace();
+			if (index >= text.length() || text.charAt(index) != c)
+				throw new Report.Error("Illegal JSON: '" + c + "' expected at offset " + index + ".");
+			index++;
+		}
+
+		/**
+		 * Prebere vrednost.
+		 *
+		 * @return Vrednost.
+		 */
+		Object value() {
+			skipSpace();
+			if (index >= text.length())
+				throw new Report.Error("Illegal JSON: unexpected end of text.");
+			final char c = text.charAt(index);
+			switch (c) {
+			case '{': {
+				index++;
+				final LinkedHashMap<String, Object> object = new LinkedHashMap<String, Object>();
+				skipSpace();
+				if (index < text.length() && text.charAt(index) == '}') {
+					index++;
+					return object;
+				}
+				while (true) {
+					skipSpace();
+					final String key = string();
+					expect(':');
+					object.put(key, value());
+					skipSpace();
+					if (index < text.length() && text.charAt(index) == ',') {
+						index++;
+						continue;
+					}
+					expect('}');
+					return object;
+				}
+			}
+			case '[': {
+				index++;
+				final ArrayList<Object> array = new ArrayList<Object>();
+				skipSpace();
+				if (index < text.length() && text.charAt(index) == ']') {
+					index++;
+					return array;
+				}
+				while (true) {
+					array.add(value());
+					skipSpace();
+					if (index < text.length() && text.charAt(index) == ',') {
+						index++;
+						continue;
+					}
+					expect(']');
+					return array;
+				}
+			}
+			case '"':
+				return string();
+			default:
+				if (text.startsWith("true", index)) {
+					index += 4;
+					return true;
+				}
+				if (text.startsWith("false", index)) {
+					index += 5;
+					return false;
+				}
+				if (text.startsWith("null", index)) {
+					index += 4;
+					return null;
+				}
+				return number();
+			}
+		}
+
+		/**
+		 * Prebere niz.
+		 *
+		 * @return Niz.
+		 */
+		String string() {
+			if (index >= text.length() || text.charAt(index) != '"')
+				throw new Report.Error("Illegal JSON: string expected at offset " + index + ".");
+			index++;
+			final StringBuilder string = new StringBuilder();
+			while (true) {
+				if (index >= text.length())
+					throw new Report.Error("Illegal JSON: unterminated string.");
+				final char c = text.charAt(index++);
+				if (c == '"')
+					return string.toString();
+				if (c != '\\') {
+					string.append(c);
+					continue;
+				}
+				if (index >= text.length())
+					throw new Report.Error("Illegal JSON: unterminated string.");
+				final char escape = text.charAt(index++);
+				switch (escape) {
+				case 'b':
+					string.append('\b');
+					break;
+				case 'f':
+					string.append('\f');
+					break;
+				case 'n':
+					string.append('\n');
+					break;
+				case 'r':
+					string.append('\r');
+					break;
+				case 't':
+					string.append('\t');
+					break;
+				case 'u':
+					if (index + 4 > text.length())
+						throw new Report.Error("Illegal JSON: unterminated string.");
+					try {
+						string.append((char) Integer.parseInt(text.substring(index, index + 4), 16));
+					} catch (NumberFormatException __) {
+						throw new Report.Error("Illegal JSON: illegal escape at offset " + index + ".");
+					}
+					index += 4;
+					break;
+				default:
+					string.append(escape);
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Prebere stevilo.
+		 *
+		 * @return Stevilo.
+		 */
+		Number number() {
+			final int begIndex = index;
+			while (index < text.length() && "+-0123456789.eE".indexOf(text.charAt(index)) >= 0)
+				index++;
+			final String number = text.substring(begIndex, index);
+			try {
+				if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0)
+					return Long.parseLong(number);
+				return Double.parseDouble(number);
+			} catch (NumberFormatException __) {
+				throw new Report.Error("Illegal JSON: illegal value at offset " + begIndex + ".");
+			}
+		}
+
+	}
+
+}
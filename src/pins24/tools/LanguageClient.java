@@ -0,0 +1,213 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import pins24.common.*;
+
+/**
+ * Odjemalec jezikovnega streznika, ki izvede skripto.
+ *
+ * Odjemalec zazene jezikovni streznik (glej {@link LanguageServer}) v istem
+ * programu in z njim komunicira preko cevi, zato ne potrebuje omrezja. Skripta
+ * vsebuje po eno sporocilo v obliki JSON v vsaki vrstici (prazne vrstice in
+ * vrstice, ki se zacnejo z {@code #}, se preskocijo). Po vsaki zahtevi (ki ima
+ * {@code id}) odjemalec pocaka na odgovor. Ce sporocilo {@code didOpen} nima
+ * besedila dokumenta, se besedilo prebere iz datoteke, ki jo doloca naslov
+ * {@code file:} (relativno ime datoteke je relativno glede na imenik skripte).
+ * Na koncu skripte odjemalec zahteva zaustavitev in izhod.
+ *
+ * Odjemalec izpise vsa prejeta sporocila (po eno v vrstici), cas od poslane
+ * zahteve do odgovora pa na standardni izhod za napake. Izpis prejetih sporocil
+ * je pricakovani izpis testa skripte (glej {@link Tests}).
+ */
+public class LanguageClient {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private LanguageClient() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Poslje sporocilo.
+	 *
+	 * @param out     Izhodni tok sporocil.
+	 * @param message Sporocilo.
+	 * @throws IOException Ce posiljanje ni mogoce.
+	 */
+	private static void send(final OutputStream out, final Object message) throws IOException {
+		final byte[] content = Json.write(message).getBytes(StandardCharsets.UTF_8);
+		out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.write(content);
+		out.flush();
+	}
+
+	/**
+	 * Prebere sporocilo.
+	 *
+	 * @param in Vhodni tok sporocil.
+	 * @return Sporocilo (ali {@code null} ob koncu vhodnega toka).
+	 * @throws IOException Ce branje ni mogoce.
+	 */
+	private static Object receive(final InputStream in) throws IOException {
+		int length = -1;
+		final StringBuilder header = new StringBuilder();
+		while (true) {
+			final int c = in.read();
+			if (c == -1)
+				return null;
+			if (c == '\r')
+				continue;
+			if (c != '\n') {
+				header.append((char) c);
+				continue;
+			}
+			if (header.isEmpty())
+				break;
+			if (header.toString().toLowerCase().startsWith("content-length:"))
+				length = Integer.parseInt(header.substring(15).trim());
+			header.setLength(0);
+		}
+		final byte[] content = in.readNBytes(length);
+		return content.length < length ? null : Json.parse(new String(content, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Izvede skripto.
+	 *
+	 * @param script   Vrstice skripte.
+	 * @param dir      Imenik, glede na katerega so relativna imena datotek v
+	 *                 naslovih {@code file:}.
+	 * @param debounce Cas (v milisekundah), ko se mora dokument umiriti pred
+	 *                 prevodom.
+	 * @param output   Izhodni tok za prejeta sporocila.
+	 * @param log      Izhodni tok za case odgovorov in obvestila streznika.
+	 * @return Izhodna koda jezikovnega streznika.
+	 * @throws IOException          Ce komunikacija s streznikom ni mogoca.
+	 * @throws InterruptedException Ce je izvajanje prekinjeno.
+	 */
+	public static int run(final List<String> script, final Path dir, final long debounce, final PrintStream output,
+			final PrintStream log) throws IOException, InterruptedException {
+		final PipedOutputStream toServer = new PipedOutputStream();
+		final PipedInputStream serverIn = new PipedInputStream(toServer, 1 << 16);
+		final PipedOutputStream serverOut = new PipedOutputStream();
+		final PipedInputStream fromServer = new PipedInputStream(serverOut, 1 << 16);
+
+		final int[] exitCode = { 1 };
+		final Thread server = new Thread(() -> {
+			Report.setOut(log);
+			exitCode[0] = new LanguageServer(serverIn, serverOut, debounce).run();
+			try {
+				serverOut.close();
+			} catch (IOException __) {
+			}
+		});
+		server.start();
+
+		final LinkedBlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+		final Thread reader = new Thread(() -> {
+			try {
+				Object message;
+				while ((message = receive(fromServer)) != null)
+					received.put(message);
+			} catch (IOException | InterruptedException __) {
+			}
+			received.offer(Json.object());
+		});
+		reader.start();
+
+		final List<String> lines = new ArrayList<String>(script);
+		lines.add("{\"jsonrpc\":\"2.0\",\"id\":\"shutdown\",\"method\":\"shutdown\"}");
+		lines.add("{\"jsonrpc\":\"2.0\",\"method\":\"exit\"}");
+		for (final String line : lines) {
+			if (line.isBlank() || line.startsWith("#"))
+				continue;
+			@SuppressWarnings("unchecked")
+			final Map<String, Object> message = (Map<String, Object>) Json.parse(line);
+			message.putIfAbsent("jsonrpc", "2.0");
+			if ("textDocument/didOpen".equals(message.get("method"))
+					&& Json.get(message, "params", "textDocument") instanceof Map<?, ?> document
+					&& document.get("text") == null && document.get("uri") instanceof String uri
+					&& uri.startsWith("file:")) {
+				@SuppressWarnings("unchecked")
+				final Map<String, Object> textDocument = (Map<String, Object>) document;
+				textDocument.put("text", Files.readString(dir.resolve(uri.substring(5))));
+			}
+			final long begNanos = System.nanoTime();
+			send(toServer, message);
+			final Object id = message.get("id");
+			if (id == null)
+				continue;
+			while (true) {
+				final Object reply = received.take();
+				if (reply instanceof Map<?, ?> map && map.isEmpty())
+					break;
+				output.println(Json.write(reply));
+				if (id.equals(Json.get(reply, "id"))) {
+					log.println("[" + id + "] " + message.get("method") + ": "
+							+ (System.nanoTime() - begNanos) / 1000 + " us");
+					break;
+				}
+			}
+		}
+		server.join();
+		toServer.close();
+		reader.join();
+		for (final Object reply : received)
+			if (!(reply instanceof Map<?, ?> map && map.isEmpty()))
+				output.println(Json.write(reply));
+		return exitCode[0];
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon odjemalca jezikovnega streznika.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--debounce ms] skripta}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.err.println("This is PINS'24 compiler (language client):");
+
+		try {
+			long debounce = LanguageServer.DEFAULT_DEBOUNCE;
+			int arg = 0;
+			if (arg + 1 < cmdLineArgs.length && cmdLineArgs[arg].equals("--debounce"))
+				try {
+					debounce = Long.parseLong(cmdLineArgs[arg + 1]);
+					arg += 2;
+				} catch (NumberFormatException __) {
+					throw new Report.Error("Illegal debounce time '" + cmdLineArgs[arg + 1] + "'.");
+				}
+			if (arg == cmdLineArgs.length)
+				throw new Report.Error("No script specified in the command line.");
+			if (cmdLineArgs.length > arg + 1)
+				Report.warning("Unused arguments in the command line.");
+
+			final List<String> script;
+			try {
+				script = Files.readAllLines(Path.of(cmdLineArgs[arg]));
+			} catch (IOException __) {
+				throw new Report.Error("Script '" + cmdLineArgs[arg] + "' not found.");
+			}
+			final int exitCode;
+			try {
+				exitCode = run(script, Path.of(cmdLineArgs[arg]).toAbsolutePath().getParent(), debounce, System.out,
+						System.err);
+			} catch (IOException | InterruptedException exception) {
+				throw new Report.Error("Cannot run the language server: " + exception.getMessage());
+			}
+			Report.setOut(System.err);
+			Report.info("Done.");
+			System.exit(exitCode);
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
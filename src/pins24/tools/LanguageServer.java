@@ -0,0 +1,607 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Jezikovni streznik (Language Server Protocol) za PINS'24.
+ *
+ * Streznik komunicira preko standardnega vhoda in izhoda (sporocila JSON-RPC z
+ * glavo {@code Content-Length}), zato ne potrebuje omrezja. Odprte dokumente
+ * hrani v pomnilniku: spremembe dokumenta se leksikalno analizirajo le v
+ * spremenjenih vrsticah (glej {@link LexAn#relex}), dokument pa se nato prevede
+ * inkrementalno (glej {@link Incremental}). Dokument se prevede sele, ko se
+ * dolocen cas ne spremeni, ali pa takoj, ko streznik prejme zahtevo, ki se
+ * nanasa nanj.
+ *
+ * Streznik podpira diagnostiko (vse odkrite napake), skok na definicijo
+ * (atribut {@link SemAn.AttrAST#attrDef}), prikaz pomnilniske predstavitve
+ * definicije (klicni zapis oziroma dostop) in iskanje vseh uporab definicije
+ * (atribut {@link SemAn.AttrAST#attrUses}). Za iskanje vozlisca na danem mestu
+ * se uporablja indeks {@link Abstr.SpanIndex}.
+ *
+ * Vse, kar bi sicer slo na standardni izhod (obvestila, opozorila), gre na
+ * standardni izhod za napake. Notranja napaka pri prevodu dokumenta se sporoci
+ * kot diagnostika, napaka pri obdelavi obvestila (npr. sprememba z neveljavnim
+ * obsegom, ki se ne uporabi) pa s sporocilom {@code window/showMessage}; v
+ * obeh primerih streznik nadaljuje z delom.
+ */
+public class LanguageServer {
+
+	/** Privzeti cas (v milisekundah), ko se mora dokument umiriti pred prevodom. */
+	public static final long DEFAULT_DEBOUNCE = 100;
+
+	/** Vhodni tok sporocil. */
+	private final InputStream in;
+
+	/** Izhodni tok sporocil. */
+	private final OutputStream out;
+
+	/** Cas (v milisekundah), ko se mora dokument umiriti pred prevodom. */
+	private final long debounce;
+
+	/** Inkrementalni prevajalnik. */
+	private final Incremental incremental = new Incremental(false);
+
+	/** Prejeta, se neobdelana sporocila. */
+	private final LinkedBlockingQueue<Object> messages = new LinkedBlockingQueue<Object>();
+
+	/** Oznaka konca vhodnega toka v vrsti sporocil. */
+	private static final Object EOF = new Object();
+
+	/** Odprti dokumenti. */
+	private final LinkedHashMap<String, Document> documents = new LinkedHashMap<String, Document>();
+
+	/** Ali je odjemalec zahteval zaustavitev. */
+	private boolean shutdown = false;
+
+	/**
+	 * Ustvari nov jezikovni streznik.
+	 *
+	 * @param in       Vhodni tok sporocil.
+	 * @param out      Izhodni tok sporocil.
+	 * @param debounce Cas (v milisekundah), ko se mora dokument umiriti pred
+	 *                 prevodom.
+	 */
+	public LanguageServer(final InputStream in, final OutputStream out, final long debounce) {
+		this.in = in;
+		this.out = out;
+		this.debounce = debounce;
+	}
+
+	/**
+	 * Odprt dokument.
+	 */
+	private static class Document {
+
+		/** Naslov dokumenta. */
+		final String uri;
+
+		/** Vrstice dokumenta (brez znakov za konec vrstice). */
+		List<String> lines;
+
+		/** Leksikalni simboli dokumenta (ali {@code null} ob leksikalni napaki). */
+		List<Token> tokens = null;
+
+		/** Leksikalna napaka (ali {@code null}). */
+		Report.Error lexError = null;
+
+		/** Zadnji uspesni prevod dokumenta (ali {@code null}). */
+		Incremental.Build build = null;
+
+		/** Cas, ko je treba dokument prevesti (ali -1, ce je ze preveden). */
+		long deadline = -1;
+
+		/**
+		 * Ustvari nov odprt dokument.
+		 *
+		 * @param uri  Naslov dokumenta.
+		 * @param text Besedilo dokumenta.
+		 */
+		Document(final String uri, final String text) {
+			this.uri = uri;
+			this.lines = new ArrayList<String>(Arrays.asList(text.split("\n", -1)));
+			lex();
+		}
+
+		/** Izvede leksikalno analizo celega dokumenta. */
+		void lex() {
+			try {
+				tokens = LexAn.lex(String.join("\n", lines));
+				lexError = null;
+			} catch (Report.Error error) {
+				tokens = null;
+				lexError = error;
+			}
+		}
+
+		/**
+		 * Spremeni del dokumenta in ustrezno popravi leksikalne simbole.
+		 *
+		 * Ce obsega spremembe ni mogoce uporabiti, se dokument ne spremeni. Ce
+		 * popravljanje leksikalnih simbolov ne uspe zaradi cesa drugega kot
+		 * leksikalne napake, se znova leksikalno analizira cel dokument, da se
+		 * leksikalni simboli ujemajo z vrsticami.
+		 *
+		 * @param begLine Zacetna vrstica (od 0 naprej).
+		 * @param begChar Zacetni znak v vrstici (od 0 naprej).
+		 * @param endLine Koncna vrstica (od 0 naprej).
+		 * @param endChar Koncni znak v vrstici (izkljucno).
+		 * @param text    Novo besedilo.
+		 */
+		void change(final int begLine, final int begChar, final int endLine, final int endChar, final String text) {
+			if (text == null || begLine < 0 || begLine >= lines.size() || begChar < 0 || endLine < begLine
+					|| endChar < 0 || (endLine == begLine && endChar < begChar))
+				throw new Report.Error("Illegal range " + begLine + ":" + begChar + ".." + endLine + ":" + endChar
+						+ " of a change of '" + uri + "'.");
+			final int lastLine = Math.min(endLine, lines.size() - 1);
+			final String beg = lines.get(begLine);
+			final String end = lastLine < endLine ? "" : lines.get(lastLine);
+			final String changed = beg.substring(0, Math.min(begChar, beg.length())) + text
+					+ end.substring(Math.min(lastLine < endLine ? 0 : endChar, end.length()));
+			final List<String> newLines = Arrays.asList(changed.split("\n", -1));
+			final boolean last = lastLine == lines.size() - 1;
+			lines.subList(begLine, lastLine + 1).clear();
+			lines.addAll(begLine, newLines);
+			if (tokens == null) {
+				lex();
+				return;
+			}
+			try {
+				tokens = LexAn.relex(tokens, begLine + 1, lastLine + 2, changed + (last ? "" : "\n")).apply(tokens);
+			} catch (Report.InternalError | RuntimeException __) {
+				lex();
+			} catch (Report.Error error) {
+				tokens = null;
+				lexError = error;
+			}
+		}
+
+		/**
+		 * Izracuna stolpec (kot ga doloci leksikalni analizator) za znak v vrstici.
+		 *
+		 * @param line      Vrstica (od 0 naprej).
+		 * @param character Znak v vrstici (od 0 naprej).
+		 * @return Stolpec (od 1 naprej).
+		 */
+		int column(final int line, final int character) {
+			final String text = line < lines.size() ? lines.get(line) : "";
+			int column = 1;
+			for (int index = 0; index < character; index++) {
+				if (index < text.length() && text.charAt(index) == '\t')
+					while (column % 8 != 0)
+						column++;
+				column++;
+			}
+			return column;
+		}
+
+		/**
+		 * Izracuna znak v vrstici za stolpec (kot ga doloci leksikalni analizator).
+		 *
+		 * @param line   Vrstica (od 1 naprej).
+		 * @param column Stolpec (od 1 naprej).
+		 * @return Znak v vrstici (od 0 naprej).
+		 */
+		int character(final int line, final int column) {
+			final String text = line >= 1 && line <= lines.size() ? lines.get(line - 1) : "";
+			int col = 1;
+			int index = 0;
+			while (col < column) {
+				if (index < text.length() && text.charAt(index) == '\t')
+					while (col % 8 != 0)
+						col++;
+				col++;
+				index++;
+			}
+			return index;
+		}
+
+		/**
+		 * Pretvori lokacijo v obseg v obliki LSP.
+		 *
+		 * @param location Lokacija.
+		 * @return Obseg.
+		 */
+		Map<String, Object> range(final Report.Location location) {
+			final int begLine = Math.max(location.begLine(), 1);
+			final int endLine = Math.max(location.endLine(), 1);
+			return Json.object("start",
+					Json.object("line", begLine - 1, "character", character(begLine, location.begColumn())), "end",
+					Json.object("line", endLine - 1, "character", character(endLine, location.endColumn()) + 1));
+		}
+
+	}
+
+	/**
+	 * Obdeluje sporocila, dokler odjemalec ne zahteva izhoda ali dokler se
+	 * vhodni tok ne konca.
+	 *
+	 * @return Izhodna koda: 0, ce je odjemalec pred izhodom zahteval zaustavitev,
+	 *         sicer 1.
+	 */
+	public int run() {
+		final Thread reader = Thread.ofVirtual().start(this::read);
+		try {
+			while (true) {
+				final long now = System.nanoTime() / 1000000;
+				long wait = Long.MAX_VALUE;
+				for (final Document document : documents.values())
+					if (document.deadline >= 0)
+						wait = Math.min(wait, Math.max(document.deadline - now, 0));
+				final Object message = wait == Long.MAX_VALUE ? messages.take()
+						: messages.poll(wait, TimeUnit.MILLISECONDS);
+				if (message == EOF)
+					return 1;
+				if (message == null) {
+					final long time = System.nanoTime() / 1000000;
+					for (final Document document : documents.values())
+						if (document.deadline >= 0 && document.deadline <= time)
+							analyze(document);
+					continue;
+				}
+				if (Json.get(message, "method") instanceof String method && method.equals("exit"))
+					return shutdown ? 0 : 1;
+				handle(message);
+			}
+		} catch (InterruptedException __) {
+			return 1;
+		} finally {
+			reader.interrupt();
+		}
+	}
+
+	/**
+	 * Bere sporocila iz vhodnega toka in jih postavlja v vrsto sporocil.
+	 */
+	private void read() {
+		try {
+			while (true) {
+				int length = -1;
+				while (true) {
+					final String header = readHeader();
+					if (header == null) {
+						messages.put(EOF);
+						return;
+					}
+					if (header.isEmpty())
+						break;
+					if (header.toLowerCase().startsWith("content-length:"))
+						length = Integer.parseInt(header.substring(15).trim());
+				}
+				if (length < 0)
+					continue;
+				final byte[] content = in.readNBytes(length);
+				if (content.length < length) {
+					messages.put(EOF);
+					return;
+				}
+				try {
+					messages.put(Json.parse(new String(content, StandardCharsets.UTF_8)));
+				} catch (Report.Error error) {
+					send(Json.object("jsonrpc", "2.0", "id", null, "error",
+							Json.object("code", -32700, "message", error.getMessage())));
+				}
+			}
+		} catch (IOException | NumberFormatException | InterruptedException __) {
+			messages.offer(EOF);
+		}
+	}
+
+	/**
+	 * Prebere vrstico glave sporocila.
+	 *
+	 * @return Vrstica glave (brez CR LF) ali {@code null} ob koncu vhodnega toka.
+	 * @throws IOException Ce branje ni mogoce.
+	 */
+	private String readHeader() throws IOException {
+		final StringBuilder header = new StringBuilder();
+		while (true) {
+			final int c = in.read();
+			if (c == -1)
+				return null;
+			if (c == '\n')
+				break;
+			if (c != '\r')
+				header.append((char) c);
+		}
+		return header.toString();
+	}
+
+	/**
+	 * Poslje sporocilo odjemalcu.
+	 *
+	 * @param message Sporocilo.
+	 */
+	private synchronized void send(final Map<String, Object> message) {
+		final byte[] content = Json.write(message).getBytes(StandardCharsets.UTF_8);
+		try {
+			out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.write(content);
+			out.flush();
+		} catch (IOException __) {
+			// Odjemalec je prekinil povezavo.
+		}
+	}
+
+	/**
+	 * Obdela sporocilo.
+	 *
+	 * @param message Sporocilo.
+	 */
+	private void handle(final Object message) {
+		final Object id = Json.get(message, "id");
+		final String method = Json.get(message, "method") instanceof String string ? string : "";
+		final Object params = Json.get(message, "params");
+		try {
+			final Object result;
+			switch (method) {
+			case "initialize":
+				result = Json.object("capabilities", Json.object("textDocumentSync",
+						Json.object("openClose", true, "change", 2), "definitionProvider", true, "hoverProvider",
+						true, "referencesProvider", true), "serverInfo", Json.object("name", "PINS'24"));
+				break;
+			case "shutdown":
+				for (final Document document : documents.values())
+					if (document.deadline >= 0)
+						analyze(document);
+				shutdown = true;
+				result = null;
+				break;
+			case "textDocument/didOpen": {
+				final String uri = (String) Json.get(params, "textDocument", "uri");
+				final Document document = new Document(uri, (String) Json.get(params, "textDocument", "text"));
+				documents.put(uri, document);
+				analyze(document);
+				return;
+			}
+			case "textDocument/didChange": {
+				final Document document = documents.get((String) Json.get(params, "textDocument", "uri"));
+				if (document == null)
+					return;
+				// Spremembe, ki so bile ze uporabljene, se prevedejo tudi, ce katere od
+				// naslednjih ni mogoce uporabiti.
+				document.deadline = System.nanoTime() / 1000000 + debounce;
+				for (final Object change : (List<?>) Json.get(params, "contentChanges")) {
+					final String text = (String) Json.get(change, "text");
+					if (Json.get(change, "range") == null) {
+						document.lines = new ArrayList<String>(Arrays.asList(text.split("\n", -1)));
+						document.lex();
+					} else
+						document.change(integer(change, "range", "start", "line"),
+								integer(change, "range", "start", "character"), integer(change, "range", "end", "line"),
+								integer(change, "range", "end", "character"), text);
+				}
+				return;
+			}
+			case "textDocument/didClose": {
+				final String uri = (String) Json.get(params, "textDocument", "uri");
+				documents.remove(uri);
+				send(Json.object("jsonrpc", "2.0", "method", "textDocument/publishDiagnostics", "params",
+						Json.object("uri", uri, "diagnostics", List.of())));
+				return;
+			}
+			case "textDocument/definition":
+				result = definition(params);
+				break;
+			case "textDocument/hover":
+				result = hover(params);
+				break;
+			case "textDocument/references":
+				result = references(params);
+				break;
+			default:
+				if (id != null)
+					send(Json.object("jsonrpc", "2.0", "id", id, "error",
+							Json.object("code", -32601, "message", "Unknown method '" + method + "'.")));
+				return;
+			}
+			if (id != null)
+				send(Json.object("jsonrpc", "2.0", "id", id, "result", result));
+		} catch (ClassCastException | NullPointerException | IndexOutOfBoundsException __) {
+			error(id, -32602, "Illegal parameters of '" + method + "'.");
+		} catch (Report.InternalError | RuntimeException | StackOverflowError error) {
+			error(id, -32603, "Internal error in '" + method + "': " + error + ".");
+		} catch (Report.Error error) {
+			error(id, -32602, error.getMessage());
+		}
+	}
+
+	/**
+	 * Sporoci napako pri obdelavi sporocila: odgovor z napako, ce je sporocilo
+	 * zahteva, sicer pa obvestilo, ki ga odjemalec prikaze uporabniku.
+	 *
+	 * @param id      Oznaka zahteve (ali {@code null} pri obvestilu).
+	 * @param code    Koda napake JSON-RPC.
+	 * @param message Opis napake.
+	 */
+	private void error(final Object id, final int code, final String message) {
+		if (id != null)
+			send(Json.object("jsonrpc", "2.0", "id", id, "error", Json.object("code", code, "message", message)));
+		else
+			send(Json.object("jsonrpc", "2.0", "method", "window/showMessage", "params",
+					Json.object("type", 1, "message", message)));
+	}
+
+	/**
+	 * Vrne celo stevilo na dani poti skozi gnezdene objekte.
+	 *
+	 * @param value Vrednost.
+	 * @param keys  Kljuci na poti.
+	 * @return Celo stevilo.
+	 */
+	private static int integer(final Object value, final String... keys) {
+		return ((Number) Json.get(value, keys)).intValue();
+	}
+
+	/**
+	 * Prevede dokument in odjemalcu poslje diagnostiko.
+	 *
+	 * @param document Dokument.
+	 */
+	private void analyze(final Document document) {
+		document.deadline = -1;
+		final Report.Diagnostics diagnostics = new Report.Diagnostics();
+		final PrintStream oldOut = Report.out();
+		Report.setOut(System.err);
+		Report.setDiagnostics(diagnostics);
+		try {
+			if (document.lexError != null)
+				diagnostics.add(document.lexError);
+			else {
+				final Incremental.Build build = incremental.compile(document.uri, document.tokens);
+				if (diagnostics.errors().isEmpty())
+					document.build = build;
+			}
+		} catch (Report.InternalError | RuntimeException | StackOverflowError error) {
+			// Napaka v prevajalniku ne sme ustaviti streznika.
+			diagnostics.add(new Report.Error("Internal error: " + error + "."));
+		} catch (Report.Error error) {
+			diagnostics.add(error);
+		} finally {
+			Report.setDiagnostics(null);
+			Report.setOut(oldOut == System.out ? null : oldOut);
+		}
+
+		final List<Object> items = new ArrayList<Object>();
+		for (final Report.Error error : diagnostics.errors()) {
+			String text = error.getMessage().startsWith(":-( ") ? error.getMessage().substring(4)
+					: error.getMessage();
+			if (error.location != null && text.startsWith("[" + error.location + "] "))
+				text = text.substring(error.location.toString().length() + 3);
+			items.add(Json.object("range",
+					document.range(error.location == null ? new Report.Location(1, 1) : error.location), "severity",
+					1, "source", "pins24", "message", text));
+		}
+		send(Json.object("jsonrpc", "2.0", "method", "textDocument/publishDiagnostics", "params",
+				Json.object("uri", document.uri, "diagnostics", items)));
+	}
+
+	/**
+	 * Poisce dokument in definicijo na mestu, na katero se nanasa zahteva.
+	 *
+	 * @param params Parametri zahteve.
+	 * @return Dokument in definicija (ali {@code null}, ce na tem mestu ni imena
+	 *         ali definicije).
+	 */
+	private Map.Entry<Document, AST.Def> defAt(final Object params) {
+		final Document document = documents.get((String) Json.get(params, "textDocument", "uri"));
+		if (document == null)
+			return null;
+		if (document.deadline >= 0)
+			analyze(document);
+		if (document.build == null)
+			return null;
+		final int line = integer(params, "position", "line");
+		final AST.Node node = document.build.memory.spans.at(line + 1,
+				document.column(line, integer(params, "position", "character")));
+		final AST.Def def = switch (node) {
+		case final AST.NameExpr nameExpr -> document.build.memory.attrDef.get(nameExpr);
+		case final AST.Def nodeDef -> nodeDef;
+		case null, default -> null;
+		};
+		return def == null ? null : Map.entry(document, def);
+	}
+
+	/**
+	 * Odgovori na zahtevo za skok na definicijo.
+	 *
+	 * @param params Parametri zahteve.
+	 * @return Lokacija definicije (ali {@code null}).
+	 */
+	private Object definition(final Object params) {
+		final Map.Entry<Document, AST.Def> def = defAt(params);
+		if (def == null)
+			return null;
+		final Report.Locatable loc = def.getKey().build.memory.attrLoc.get(def.getValue());
+		return loc == null ? null
+				: Json.object("uri", def.getKey().uri, "range", def.getKey().range(loc.location()));
+	}
+
+	/**
+	 * Odgovori na zahtevo za opis imena.
+	 *
+	 * @param params Parametri zahteve.
+	 * @return Opis definicije s pomnilnisko predstavitvijo (ali {@code null}).
+	 */
+	private Object hover(final Object params) {
+		final Map.Entry<Document, AST.Def> def = defAt(params);
+		if (def == null)
+			return null;
+		final Memory.AttrAST memory = def.getKey().build.memory;
+		final String kind = switch (def.getValue()) {
+		case final AST.FunDef funDef -> "fun";
+		case final AST.ParDef parDef -> "par";
+		case final AST.VarDef varDef -> "var";
+		default -> "def";
+		};
+		return Json.object("contents", Json.object("kind", "plaintext", "value",
+				kind + " " + def.getValue().name + memory.head(def.getValue(), false)));
+	}
+
+	/**
+	 * Odgovori na zahtevo za vse uporabe definicije.
+	 *
+	 * @param params Parametri zahteve.
+	 * @return Lokacije uporab (in morda definicije).
+	 */
+	private Object references(final Object params) {
+		final Map.Entry<Document, AST.Def> def = defAt(params);
+		final List<Object> locations = new ArrayList<Object>();
+		if (def == null)
+			return locations;
+		final Document document = def.getKey();
+		final Memory.AttrAST memory = document.build.memory;
+		if (Boolean.TRUE.equals(Json.get(params, "context", "includeDeclaration"))) {
+			final Report.Locatable loc = memory.attrLoc.get(def.getValue());
+			if (loc != null)
+				locations.add(Json.object("uri", document.uri, "range", document.range(loc.location())));
+		}
+		final SemAn.Uses uses = memory.attrUses.get(def.getValue());
+		for (int index = 0; uses != null && index < uses.size(); index++) {
+			final Report.Locatable loc = memory.attrLoc.get(uses.expr(index));
+			if (loc != null)
+				locations.add(Json.object("uri", document.uri, "range", document.range(loc.location())));
+		}
+		return locations;
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon jezikovnega streznika.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici: {@code [--debounce ms]}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.err.println("This is PINS'24 compiler (language server):");
+
+		try {
+			long debounce = DEFAULT_DEBOUNCE;
+			int arg = 0;
+			if (arg + 1 < cmdLineArgs.length && cmdLineArgs[arg].equals("--debounce"))
+				try {
+					debounce = Long.parseLong(cmdLineArgs[arg + 1]);
+					arg += 2;
+				} catch (NumberFormatException __) {
+					throw new Report.Error("Illegal debounce time '" + cmdLineArgs[arg + 1] + "'.");
+				}
+			Report.setOut(System.err);
+			if (cmdLineArgs.length > arg)
+				Report.warning("Unused arguments in the command line.");
+
+			final int exitCode = new LanguageServer(System.in, System.out, debounce).run();
+			Report.info("Done.");
+			System.exit(exitCode);
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
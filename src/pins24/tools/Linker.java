@@ -0,0 +1,177 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Povezovanje objektnih datotek (glej {@link ObjectFile}) v program.
+ *
+ * Povezovalnik preveri, da vsak simbol izvaza natanko ena enota, da vsak
+ * uvozeni simbol izvaza neka enota in da se uvozeni simbol po vrsti in
+ * velikosti ujema z izvozenim ter da program vsebuje funkcijo {@code main}.
+ * Nato globalne spremenljivke vseh enot razporedi v skupno staticno podatkovno
+ * obmocje (v vrstnem redu enot); prikazovalnik je skupen vsem enotam in je
+ * tako velik kot najvecji prikazovalnik posamezne enote.
+ */
+public class Linker {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Linker() {
+		throw new Report.InternalError();
+	}
+
+	/** Ime oznake prikazovalnika (glej {@link pins24.phase.Memory.AttrAST#display}). */
+	private static final String DISPLAY = "display";
+
+	/**
+	 * Povezan program.
+	 */
+	public static class Program {
+
+		/** Objektne datoteke enot. */
+		public final List<ObjectFile> objects;
+
+		/** Enota, ki izvaza simbol, po imenih simbolov. */
+		public final Map<String, ObjectFile> owners;
+
+		/** Odmiki globalnih spremenljivk v staticnem podatkovnem obmocju. */
+		public final Map<String, Integer> offsets;
+
+		/** Velikosti globalnih spremenljivk. */
+		public final Map<String, Integer> sizes;
+
+		/** Velikost staticnega podatkovnega obmocja. */
+		public final int dataSize;
+
+		/**
+		 * Ustvari nov povezan program.
+		 *
+		 * @param objects  Objektne datoteke enot.
+		 * @param owners   Enota, ki izvaza simbol, po imenih simbolov.
+		 * @param offsets  Odmiki globalnih spremenljivk.
+		 * @param sizes    Velikosti globalnih spremenljivk.
+		 * @param dataSize Velikost staticnega podatkovnega obmocja.
+		 */
+		private Program(final List<ObjectFile> objects, final Map<String, ObjectFile> owners,
+				final Map<String, Integer> offsets, final Map<String, Integer> sizes, final int dataSize) {
+			this.objects = objects;
+			this.owners = owners;
+			this.offsets = offsets;
+			this.sizes = sizes;
+			this.dataSize = dataSize;
+		}
+
+		/**
+		 * Izpise povezan program.
+		 *
+		 * @param out Izhodni tok.
+		 */
+		public void print(final PrintStream out) {
+			out.println("Functions:");
+			for (final ObjectFile object : objects)
+				for (final ObjectFile.Symbol symbol : object.exports)
+					if (symbol.kind() == ObjectFile.Kind.FUN)
+						out.println("  " + symbol.name() + "/" + symbol.size() + " @" + object.unit);
+			out.println("Data:");
+			for (final Map.Entry<String, Integer> offset : offsets.entrySet()) {
+				final ObjectFile owner = owners.get(offset.getKey());
+				out.println("  " + offset.getValue() + " " + offset.getKey() + " size=" + sizes.get(offset.getKey())
+						+ (owner == null ? "" : " @" + owner.unit));
+			}
+			out.println("Data size: " + dataSize);
+			for (final ObjectFile object : objects) {
+				out.println("==> " + object.unit + " <==");
+				for (final String line : object.listing)
+					out.println(line);
+			}
+		}
+
+	}
+
+	/**
+	 * Poveze objektne datoteke v program.
+	 *
+	 * @param objects Objektne datoteke enot.
+	 * @return Povezan program.
+	 */
+	public static Program link(final List<ObjectFile> objects) {
+		// Izvozeni simboli.
+		final LinkedHashMap<String, ObjectFile> owners = new LinkedHashMap<String, ObjectFile>();
+		final HashMap<String, ObjectFile.Symbol> symbols = new HashMap<String, ObjectFile.Symbol>();
+		for (final ObjectFile object : objects)
+			for (final ObjectFile.Symbol symbol : object.exports) {
+				final ObjectFile owner = owners.putIfAbsent(symbol.name(), object);
+				if (owner != null)
+					throw new Report.Error("Name '" + symbol.name() + "' is defined in units '" + owner.unit + "' and '"
+							+ object.unit + "'.");
+				symbols.put(symbol.name(), symbol);
+			}
+
+		// Uvozeni simboli.
+		for (final ObjectFile object : objects)
+			for (final ObjectFile.Symbol symbol : object.imports) {
+				final ObjectFile.Symbol export = symbols.get(symbol.name());
+				if (export == null)
+					throw new Report.Error("Undefined name '" + symbol.name() + "' in unit '" + object.unit + "'.");
+				if (!export.equals(symbol))
+					throw new Report.Error("Unit '" + object.unit + "' expects " + symbol + ", but unit '"
+							+ owners.get(symbol.name()).unit + "' defines " + export + ".");
+			}
+		final ObjectFile.Symbol main = symbols.get("main");
+		if (main == null || main.kind() != ObjectFile.Kind.FUN)
+			throw new Report.Error("No function 'main' in the program.");
+
+		// Staticno podatkovno obmocje.
+		final LinkedHashMap<String, Integer> offsets = new LinkedHashMap<String, Integer>();
+		final HashMap<String, Integer> sizes = new HashMap<String, Integer>();
+		int dataSize = 0;
+		int displaySize = 0;
+		for (final ObjectFile object : objects) {
+			for (final ObjectFile.Symbol symbol : object.exports)
+				if (symbol.kind() == ObjectFile.Kind.VAR) {
+					offsets.put(symbol.name(), dataSize);
+					sizes.put(symbol.name(), symbol.size());
+					dataSize += symbol.size();
+				}
+			displaySize = Math.max(displaySize, object.display);
+		}
+		if (displaySize > 0) {
+			if (owners.containsKey(DISPLAY))
+				throw new Report.Error("Name '" + DISPLAY + "' is reserved for the display.");
+			offsets.put(DISPLAY, dataSize);
+			sizes.put(DISPLAY, displaySize);
+			dataSize += displaySize;
+		}
+		return new Program(objects, owners, offsets, sizes, dataSize);
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon povezovalnika.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici: objektne datoteke.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (linker):");
+
+		try {
+			if (cmdLineArgs.length == 0)
+				throw new Report.Error("No object file specified in the command line.");
+			final List<ObjectFile> objects = new ArrayList<ObjectFile>();
+			for (final String objFileName : cmdLineArgs)
+				objects.add(ObjectFile.read(Path.of(objFileName)));
+			link(objects).print(System.out);
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
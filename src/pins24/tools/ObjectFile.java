@@ -0,0 +1,223 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Objektna datoteka enote pri locenem prevajanju.
+ *
+ * Objektna datoteka je besedilna datoteka, ki vsebuje ime izvorne datoteke
+ * enote, izvlecek njene vsebine, simbole, ki jih enota izvaza (funkcije na
+ * najvisjem nivoju s stevilom parametrov in globalne spremenljivke z
+ * velikostjo), simbole, ki jih enota uvaza iz drugih enot (s pricakovanim
+ * stevilom parametrov oziroma velikostjo), velikost prikazovalnika in izpis
+ * pomnilniske predstavitve enote:
+ *
+ * <pre>
+ * PINS'24 object file
+ * unit ime-izvorne-datoteke
+ * source izvlecek
+ * export fun ime stevilo-parametrov
+ * export var ime velikost
+ * import fun ime stevilo-parametrov
+ * import var ime velikost
+ * display velikost
+ * listing
+ * ...
+ * </pre>
+ */
+public class ObjectFile {
+
+	/** Prva vrstica objektne datoteke. */
+	private static final String MAGIC = "PINS'24 object file";
+
+	/** Koncnica imena objektne datoteke. */
+	public static final String SUFFIX = ".pobj";
+
+	/**
+	 * Vrsta simbola.
+	 */
+	public enum Kind {
+		/** Funkcija. */
+		FUN,
+		/** Spremenljivka. */
+		VAR,
+	}
+
+	/**
+	 * Simbol, ki ga enota izvaza ali uvaza.
+	 *
+	 * @param kind Vrsta simbola.
+	 * @param name Ime simbola.
+	 * @param size Stevilo parametrov funkcije oziroma velikost spremenljivke.
+	 */
+	public record Symbol(Kind kind, String name, int size) {
+
+		@Override
+		public String toString() {
+			return switch (kind) {
+			case FUN -> "function '" + name + "' with " + size + " parameter(s)";
+			case VAR -> "variable '" + name + "' of size " + size;
+			};
+		}
+
+	}
+
+	/** Ime izvorne datoteke enote. */
+	public final String unit;
+
+	/** Izvlecek vsebine izvorne datoteke enote. */
+	public final String source;
+
+	/** Simboli, ki jih enota izvaza. */
+	public final List<Symbol> exports;
+
+	/** Simboli, ki jih enota uvaza. */
+	public final List<Symbol> imports;
+
+	/** Velikost prikazovalnika enote (0, ce ga enota ne potrebuje). */
+	public final int display;
+
+	/** Izpis pomnilniske predstavitve enote. */
+	public final List<String> listing;
+
+	/**
+	 * Ustvari novo objektno datoteko.
+	 *
+	 * @param unit    Ime izvorne datoteke enote.
+	 * @param source  Izvlecek vsebine izvorne datoteke enote.
+	 * @param exports Simboli, ki jih enota izvaza.
+	 * @param imports Simboli, ki jih enota uvaza.
+	 * @param display Velikost prikazovalnika enote.
+	 * @param listing Izpis pomnilniske predstavitve enote.
+	 */
+	public ObjectFile(final String unit, final String source, final List<Symbol> exports,
+			final List<Symbol> imports, final int display, final List<String> listing) {
+		this.unit = unit;
+		this.source = source;
+		this.exports = Collections.unmodifiableList(exports);
+		this.imports = Collections.unmodifiableList(imports);
+		this.display = display;
+		this.listing = Collections.unmodifiableList(listing);
+	}
+
+	/**
+	 * Vrne ime objektne datoteke izvorne datoteke.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param objDirName  Imenik objektnih datotek (ali {@code null}, ce je
+	 *                    objektna datoteka v istem imeniku kot izvorna).
+	 * @return Ime objektne datoteke.
+	 */
+	public static Path path(final String srcFileName, final String objDirName) {
+		final Path srcPath = Path.of(srcFileName);
+		final String baseName = srcPath.getFileName().toString().replaceFirst("\\.pins24$", "") + SUFFIX;
+		if (objDirName != null)
+			return Path.of(objDirName, baseName);
+		return srcPath.resolveSibling(baseName);
+	}
+
+	/**
+	 * Zapise objektno datoteko.
+	 *
+	 * @param path Ime objektne datoteke.
+	 */
+	public void write(final Path path) {
+		final StringBuilder text = new StringBuilder();
+		text.append(MAGIC).append('\n');
+		text.append("unit ").append(unit).append('\n');
+		text.append("source ").append(source).append('\n');
+		for (final Symbol symbol : exports)
+			text.append("export ").append(symbol.kind().name().toLowerCase()).append(' ').append(symbol.name())
+					.append(' ').append(symbol.size()).append('\n');
+		for (final Symbol symbol : imports)
+			text.append("import ").append(symbol.kind().name().toLowerCase()).append(' ').append(symbol.name())
+					.append(' ').append(symbol.size()).append('\n');
+		text.append("display ").append(display).append('\n');
+		text.append("listing\n");
+		for (final String line : listing)
+			text.append(line).append('\n');
+		try {
+			if (path.getParent() != null)
+				Files.createDirectories(path.getParent());
+			// Najprej v zacasno datoteko, da vzporedni bralci ne vidijo pol zapisane.
+			final Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+			Files.writeString(tmpPath, text, StandardCharsets.UTF_8);
+			Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write object file '" + path + "'.");
+		}
+	}
+
+	/**
+	 * Prebere objektno datoteko.
+	 *
+	 * @param path Ime objektne datoteke.
+	 * @return Objektna datoteka.
+	 */
+	public static ObjectFile read(final Path path) {
+		final List<String> lines;
+		try {
+			lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		} catch (IOException __) {
+			throw new Report.Error("Cannot read object file '" + path + "'.");
+		}
+		if (lines.isEmpty() || !lines.get(0).equals(MAGIC))
+			throw new Report.Error("Illegal object file '" + path + "'.");
+		String unit = null;
+		String source = null;
+		final List<Symbol> exports = new ArrayList<Symbol>();
+		final List<Symbol> imports = new ArrayList<Symbol>();
+		int display = 0;
+		int index = 1;
+		try {
+			for (; index < lines.size(); index++) {
+				final String[] fields = lines.get(index).split(" ", 2);
+				switch (fields[0]) {
+				case "unit":
+					unit = fields[1];
+					break;
+				case "source":
+					source = fields[1];
+					break;
+				case "export":
+					exports.add(symbol(fields[1]));
+					break;
+				case "import":
+					imports.add(symbol(fields[1]));
+					break;
+				case "display":
+					display = Integer.parseInt(fields[1]);
+					break;
+				case "listing":
+					if (unit == null || source == null)
+						throw new Report.Error("Illegal object file '" + path + "'.");
+					return new ObjectFile(unit, source, exports, imports, display,
+							lines.subList(index + 1, lines.size()));
+				default:
+					throw new Report.Error("Illegal object file '" + path + "'.");
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException __) {
+			throw new Report.Error("Illegal object file '" + path + "' (line " + (index + 1) + ").");
+		}
+		throw new Report.Error("Illegal object file '" + path + "'.");
+	}
+
+	/**
+	 * Prebere simbol.
+	 *
+	 * @param text Besedilo simbola: vrsta, ime in velikost.
+	 * @return Simbol.
+	 */
+	private static Symbol symbol(final String text) {
+		final String[] fields = text.split(" ");
+		if (fields.length != 3)
+			throw new IllegalArgumentException();
+		return new Symbol(Kind.valueOf(fields[0].toUpperCase()), fields[1], Integer.parseInt(fields[2]));
+	}
+
+}
@@ -0,0 +1,201 @@
+package pins24.tools;
+
+import java.io.*;
+import java.util.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Prevajanje ene izvorne datoteke znotraj ze tekocega programa.
+ *
+ * Prevajanje poteka enako kot pri zagonu posamezne faze kot samostojnega
+ * programa (izpis je enak), le da se izpis in opis napake zapiseta v podana
+ * izhodna tokova in da se program ob napaki ne konca.
+ *
+ * Ce se zahteva izpis vseh napak, se med prevajanjem napake zbirajo (glej
+ * {@link Report.Diagnostics}): sintaksna in semanticna analiza se po napaki
+ * nadaljujeta, prevajanje pa se ustavi po prvi od obeh faz, v kateri so bile
+ * odkrite napake, in izpise vse odkrite napake.
+ *
+ * Ce se zahteva uporaba predpomnilnika, se abstraktno sintaksno drevo prebere
+ * iz predpomnilnika (glej {@link ASTCache}), kadar je to mogoce.
+ *
+ * Ce je podan inkrementalni prevajalnik (glej {@link Incremental}), se izvorna
+ * datoteka do vkljucno pomnilniske predstavitve prevaja inkrementalno.
+ */
+public class Pipeline {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Pipeline() {
+		throw new Report.InternalError();
+	}
+
+	/** Faze prevajalnika, do katerih je mogoce prevajati, in njihovi opisi. */
+	public static final Map<String, String> phases;
+
+	static {
+		final LinkedHashMap<String, String> descs = new LinkedHashMap<String, String>();
+		descs.put("LexAn", "lexical analysis");
+		descs.put("SynAn", "syntax analysis");
+		descs.put("Abstr", "abstract syntax");
+		descs.put("SemAn", "semantic analysis");
+		descs.put("Optim", "optimization");
+		descs.put("Memory", "memory");
+		descs.put("Jumps", "conditions");
+		phases = Collections.unmodifiableMap(descs);
+	}
+
+	/**
+	 * Nastavitve prevajanja.
+	 *
+	 * @param allErrors   Ali naj se izpisejo vse napake in ne le prva.
+	 * @param cache       Ali naj se uporablja predpomnilnik abstraktnih
+	 *                    sintaksnih dreves.
+	 * @param incremental Inkrementalni prevajalnik (ali {@code null}).
+	 */
+	public record Options(boolean allErrors, boolean cache, Incremental incremental) {
+
+		/** Privzete nastavitve (enako kot pri zagonu posamezne faze). */
+		public static final Options DEFAULT = new Options(false, false, null);
+
+	}
+
+	/**
+	 * Prevede izvorno datoteko do vkljucno dane faze.
+	 *
+	 * @param phase       Ime faze (kot ime razreda faze).
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param out         Izhodni tok za izpis faze.
+	 * @param err         Izhodni tok za opis napake.
+	 * @return Izhodna koda: 0, ce je prevajanje uspelo, sicer 1.
+	 */
+	public static int compile(final String phase, final String srcFileName, final PrintStream out,
+			final PrintStream err) {
+		return compile(phase, srcFileName, out, err, Options.DEFAULT);
+	}
+
+	/**
+	 * Prevede izvorno datoteko do vkljucno dane faze.
+	 *
+	 * @param phase       Ime faze (kot ime razreda faze).
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param out         Izhodni tok za izpis faze.
+	 * @param err         Izhodni tok za opis napak.
+	 * @param options     Nastavitve prevajanja.
+	 * @return Izhodna koda: 0, ce je prevajanje uspelo, sicer 1.
+	 */
+	public static int compile(final String phase, final String srcFileName, final PrintStream out,
+			final PrintStream err, final Options options) {
+		if (!phases.containsKey(phase)) {
+			err.println(":-( Unknown phase '" + phase + "'.");
+			return 1;
+		}
+
+		final PrintStream oldOut = Report.out();
+		Report.setOut(out);
+		final Report.Diagnostics diagnostics = options.allErrors() ? new Report.Diagnostics() : null;
+		Report.setDiagnostics(diagnostics);
+		try {
+			out.println("This is PINS'24 compiler (" + phases.get(phase) + "):");
+			try {
+				if (srcFileName == null)
+					throw new Report.Error("No source file specified in the command line.");
+
+				if (phase.equals("LexAn"))
+					try (final LexAn lexAn = new LexAn(srcFileName)) {
+						lexAn.log();
+					}
+				else if (phase.equals("SynAn"))
+					try (final SynAn synAn = new SynAn(srcFileName)) {
+						synAn.parse(new HashMap<>());
+						check();
+					}
+				else
+					analyze(phase, srcFileName, options);
+
+				// Upajmo, da kdaj pridemo to te tocke.
+				Report.info("Done.");
+				return 0;
+			} catch (Report.Error error) {
+				// Izpis opisa napake (oziroma vseh napak).
+				if (diagnostics == null)
+					err.println(error.getMessage());
+				else {
+					diagnostics.add(error);
+					for (final Report.Error diagnostic : diagnostics.errors())
+						err.println(diagnostic.getMessage());
+				}
+				return 1;
+			}
+		} finally {
+			out.flush();
+			err.flush();
+			Report.setDiagnostics(null);
+			Report.setOut(oldOut == System.out ? null : oldOut);
+			Events.setSrcFileName(null);
+		}
+	}
+
+	/**
+	 * Ustavi prevajanje, ce so bile v izvornem programu odkrite napake.
+	 */
+	private static void check() {
+		final Report.Diagnostics diagnostics = Report.diagnostics();
+		if (diagnostics != null)
+			diagnostics.check();
+	}
+
+	/**
+	 * Zgradi abstraktno sintaksno drevo, ga obdela s fazami do vkljucno dane faze
+	 * in ga izpise.
+	 *
+	 * @param phase       Ime faze.
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param options     Nastavitve prevajanja.
+	 */
+	private static void analyze(final String phase, final String srcFileName, final Options options) {
+		// inkrementalni prevod (do vkljucno pomnilniske predstavitve):
+		final Incremental.Build build = options.incremental() == null ? null
+				: options.incremental().compile(srcFileName);
+		// abstraktna sintaksa:
+		final Abstr.AttrAST abstrAttrAST;
+		if (build != null)
+			abstrAttrAST = build.abstr;
+		else if (options.cache())
+			abstrAttrAST = ASTCache.constructAST(srcFileName);
+		else
+			try (final SynAn synAn = new SynAn(srcFileName)) {
+				abstrAttrAST = Abstr.constructAST(synAn);
+			}
+		check();
+		if (phase.equals("Abstr")) {
+			(new AST.Logger(abstrAttrAST)).log();
+			return;
+		}
+		// semanticna analiza:
+		final SemAn.AttrAST semanAttrAST = build != null ? build.seman : SemAn.analyze(abstrAttrAST);
+		check();
+		if (phase.equals("SemAn")) {
+			(new AST.Logger(semanAttrAST)).log();
+			return;
+		}
+		// optimizacija (le za fazi, ki jo vkljucujeta):
+		final SemAn.AttrAST optimAttrAST = phase.equals("Memory") ? semanAttrAST : Optim.optimize(semanAttrAST);
+		// pomnilniska predstavitev:
+		final Memory.AttrAST memoryAttrAST = build != null && optimAttrAST == semanAttrAST ? build.memory
+				: Memory.organize(optimAttrAST);
+		switch (phase) {
+		case "Memory":
+			(new AST.Logger(memoryAttrAST)).log();
+			break;
+		case "Optim":
+			Optim.log(semanAttrAST, memoryAttrAST);
+			break;
+		default:
+			// prevajanje pogojev:
+			(new AST.Logger(Jumps.lower(memoryAttrAST))).log();
+			break;
+		}
+	}
+
+}
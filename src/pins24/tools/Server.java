@@ -0,0 +1,239 @@
+package pins24.tools;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import pins24.common.*;
+
+/**
+ * Prevajalni streznik.
+ *
+ * Streznik tece ves cas in prevaja izvorne datoteke na zahtevo odjemalcev, zato
+ * se navidezni stroj ob vsakem prevajanju ne zaganja znova in prevedena
+ * (ogreta) koda prevajalnika ostane na voljo. Streznik poslusa na lokalnem
+ * naslovu, vsako povezavo pa obdela v svoji (navidezni) niti.
+ *
+ * Protokol (UTF-8, po vrsticah): odjemalec poslje vrstico
+ * {@code <faza> TAB <ime izvorne datoteke>}, streznik pa odgovori z vrsticami
+ * {@code O <vrstica izpisa>} in {@code E <vrstica opisa napake>}, ki jim sledi
+ * vrstica {@code X <izhodna koda>}. Poszevnica in znak CR sta v vrsticah
+ * odgovora zapisana kot {@code \\} in {@code \r}. Po isti povezavi je mogoce
+ * poslati vec zahtev. Streznik prevaja le izvorne datoteke v korenskem imeniku
+ * (privzeto v trenutnem imeniku, sicer v imeniku, podanem z izbiro
+ * {@code --root}) in njegovih podimenikih. Ce se streznik zazene z izbiro
+ * {@code --stop-token}, ga vrstica {@code STOP <zeton>} z istim zetonom
+ * ustavi, sicer ga odjemalec ne more ustaviti.
+ *
+ * Ce se med prevajanjem zgodi notranja napaka prevajalnika (vkljucno s
+ * prekoracitvijo sklada), streznik odgovori z izhodno kodo 1 in nadaljuje z
+ * delom.
+ *
+ * Ce se streznik zazene z izbiro {@code --incremental}, izvorne datoteke
+ * prevaja inkrementalno (glej {@link Incremental}); z dodatno izbiro
+ * {@code --check} se vsak inkrementalni prevod primerja s polnim prevodom.
+ */
+public class Server {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Server() {
+		throw new Report.InternalError();
+	}
+
+	/** Privzeta vrata streznika. */
+	public static final int DEFAULT_PORT = 2424;
+
+	/**
+	 * Nastavitve streznika.
+	 *
+	 * @param options   Nastavitve prevajanja.
+	 * @param root      Korenski imenik izvornih datotek (absolutna pot).
+	 * @param stopToken Zeton za ustavitev streznika (ali {@code null}, ce
+	 *                  ustavitev ni dovoljena).
+	 */
+	private record Settings(Pipeline.Options options, Path root, String stopToken) {
+	}
+
+	/**
+	 * Obdela zahteve ene povezave.
+	 *
+	 * @param socket    Povezava z odjemalcem.
+	 * @param listening Vticnica, na kateri streznik poslusa.
+	 * @param settings  Nastavitve streznika.
+	 */
+	private static void serve(final Socket socket, final ServerSocket listening, final Settings settings) {
+		try (socket;
+				final BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				final PrintWriter reply = new PrintWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+			String request;
+			while ((request = in.readLine()) != null) {
+				if (settings.stopToken() != null && request.equals("STOP " + settings.stopToken())) {
+					listening.close();
+					break;
+				}
+				final int tab = request.indexOf('\t');
+				final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+				final ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+				int exitCode;
+				try (final PrintStream out = new PrintStream(outBytes, false, StandardCharsets.UTF_8);
+						final PrintStream err = new PrintStream(errBytes, false, StandardCharsets.UTF_8)) {
+					if (tab < 0) {
+						err.println(":-( Malformed request.");
+						exitCode = 1;
+					} else if (!isAllowed(request.substring(tab + 1), settings.root())) {
+						err.println(":-( Source file '" + request.substring(tab + 1) + "' is not in directory '"
+								+ settings.root() + "'.");
+						exitCode = 1;
+					} else
+						exitCode = Pipeline.compile(request.substring(0, tab), request.substring(tab + 1), out, err,
+								settings.options());
+				} catch (Report.InternalError | RuntimeException | StackOverflowError error) {
+					// Notranja napaka prevajalnika ne ustavi streznika.
+					errBytes.writeBytes((":-( Internal error: " + error + "\n").getBytes(StandardCharsets.UTF_8));
+					exitCode = 1;
+				}
+				reply(reply, 'O', outBytes.toString(StandardCharsets.UTF_8));
+				reply(reply, 'E', errBytes.toString(StandardCharsets.UTF_8));
+				reply.println("X " + exitCode);
+				reply.flush();
+			}
+		} catch (IOException __) {
+			// Odjemalec je prekinil povezavo.
+		}
+	}
+
+	/**
+	 * Vrne, ali je izvorna datoteka v korenskem imeniku ali njegovih podimenikih.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param root        Korenski imenik izvornih datotek (absolutna pot).
+	 * @return Ali je izvorna datoteka v korenskem imeniku.
+	 */
+	private static boolean isAllowed(final String srcFileName, final Path root) {
+		try {
+			final Path path = Path.of(srcFileName).toAbsolutePath().normalize();
+			// simbolne povezave vodijo lahko iz korenskega imenika:
+			return (Files.exists(path) ? path.toRealPath() : path).startsWith(root);
+		} catch (InvalidPathException | IOException __) {
+			return false;
+		}
+	}
+
+	/**
+	 * Poslje izpis odjemalcu.
+	 *
+	 * @param reply Izhodni tok povezave z odjemalcem.
+	 * @param kind  Vrsta izpisa ({@code O} ali {@code E}).
+	 * @param text  Izpis.
+	 */
+	private static void reply(final PrintWriter reply, final char kind, final String text) {
+		if (text.isEmpty())
+			return;
+		final String[] lines = (text.endsWith("\n") ? text.substring(0, text.length() - 1) : text).split("\n", -1);
+		for (final String line : lines)
+			reply.println(kind + " " + line.replace("\\", "\\\\").replace("\r", "\\r"));
+	}
+
+	/**
+	 * Razveljavi zapis poszevnice in znaka CR v vrstici odgovora.
+	 *
+	 * @param line Vrstica odgovora.
+	 * @return Vrstica izpisa.
+	 */
+	public static String unescape(final String line) {
+		final StringBuilder text = new StringBuilder();
+		for (int index = 0; index < line.length(); index++) {
+			final char c = line.charAt(index);
+			if (c == '\\' && index + 1 < line.length()) {
+				final char next = line.charAt(++index);
+				text.append(next == 'r' ? '\r' : next);
+			} else
+				text.append(c);
+		}
+		return text.toString();
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon prevajalnega streznika.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--incremental [--check]] [--root imenik] [--stop-token zeton] [vrata]}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (server):");
+
+		try {
+			boolean incremental = false;
+			boolean check = false;
+			String root = ".";
+			String stopToken = null;
+			int arg = 0;
+			for (; arg < cmdLineArgs.length && cmdLineArgs[arg].startsWith("--"); arg++) {
+				switch (cmdLineArgs[arg]) {
+				case "--incremental":
+					incremental = true;
+					break;
+				case "--check":
+					check = true;
+					break;
+				case "--root":
+				case "--stop-token":
+					if (arg + 1 == cmdLineArgs.length)
+						throw new Report.Error("Missing value of option '" + cmdLineArgs[arg] + "'.");
+					if (cmdLineArgs[arg].equals("--root"))
+						root = cmdLineArgs[++arg];
+					else
+						stopToken = cmdLineArgs[++arg];
+					break;
+				default:
+					throw new Report.Error("Unknown option '" + cmdLineArgs[arg] + "'.");
+				}
+			}
+			if (check && !incremental)
+				Report.warning("Option '--check' has no effect without '--incremental'.");
+			final int port;
+			try {
+				port = arg == cmdLineArgs.length ? DEFAULT_PORT : Integer.parseInt(cmdLineArgs[arg]);
+			} catch (NumberFormatException __) {
+				throw new Report.Error("Illegal port '" + cmdLineArgs[arg] + "'.");
+			}
+			if (cmdLineArgs.length > arg + 1)
+				Report.warning("Unused arguments in the command line.");
+			final Pipeline.Options options = new Pipeline.Options(false, false,
+					incremental ? new Incremental(check) : null);
+			final Settings settings;
+			try {
+				settings = new Settings(options, Path.of(root).toRealPath(), stopToken);
+			} catch (InvalidPathException | IOException __) {
+				throw new Report.Error("Illegal root directory '" + root + "'.");
+			}
+
+			try (final ServerSocket listening = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+				Report.info("Listening on port " + listening.getLocalPort() + ".");
+				while (true) {
+					final Socket socket;
+					try {
+						socket = listening.accept();
+					} catch (SocketException __) {
+						// Vticnica je bila zaprta z zahtevo STOP.
+						break;
+					}
+					Thread.ofVirtual().start(() -> serve(socket, listening, settings));
+				}
+			} catch (IOException exception) {
+				throw new Report.Error("Cannot listen on port " + port + ": " + exception.getMessage());
+			}
+
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
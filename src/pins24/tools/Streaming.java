@@ -0,0 +1,216 @@
+package pins24.tools;
+
+import java.util.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Pretocno prevajanje izvorne datoteke z omejeno porabo pomnilnika.
+ *
+ * Izvorna datoteka se razdeli na definicije na najvisjem nivoju enako kot pri
+ * inkrementalnem prevajanju (glej {@link Incremental}). V prvem prehodu skozi
+ * leksikalne simbole se zberejo le podpisi definicij, torej to, kar potrebuje
+ * prvi prelet razresevanja imen: ime in stevilo parametrov funkcije oziroma
+ * ime in velikost globalne spremenljivke. V drugem prehodu se vsaka definicija
+ * posebej razcleni, semanticno analizira, se ji izracuna pomnilniska
+ * predstavitev in se izpise, nato pa se njeno abstraktno sintaksno drevo in
+ * atributi zavrzejo. Imena drugih definicij na najvisjem nivoju se nanasajo
+ * na podpise tako kot pri locenem prevajanju (glej {@link Units}), zato
+ * funkcije na najvisjem nivoju ohranijo staticno povezavo.
+ *
+ * Poraba pomnilnika je tako sorazmerna z velikostjo najvecje definicije (in
+ * s stevilom definicij na najvisjem nivoju), ne pa z velikostjo programa.
+ * Napake se odkrivajo po definicijah v vrstnem redu izvorne datoteke.
+ */
+public class Streaming {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Streaming() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Bralnik definicij na najvisjem nivoju.
+	 */
+	private static class Reader implements AutoCloseable {
+
+		/** Leksikalni analizator. */
+		private final LexAn lexAn;
+
+		/** Iskanje mej med definicijami na najvisjem nivoju. */
+		private final Incremental.Splitter splitter = new Incremental.Splitter();
+
+		/** Ali je bila prebrana ze vsaj ena definicija. */
+		private boolean started = false;
+
+		/**
+		 * Ustvari nov bralnik definicij na najvisjem nivoju.
+		 *
+		 * @param srcFileName Ime izvorne datoteke.
+		 */
+		Reader(final String srcFileName) {
+			this.lexAn = new LexAn(srcFileName);
+		}
+
+		/**
+		 * Prebere leksikalne simbole naslednje definicije na najvisjem nivoju.
+		 *
+		 * Zadnji leksikalni simbol je simbol za konec datoteke na mestu prvega
+		 * simbola naslednje definicije, da so morebitna sporocila o napakah enaka
+		 * kot pri polnem prevodu. Prazna izvorna datoteka vsebuje eno prazno
+		 * definicijo (da sintaksni analizator sporoci napako).
+		 *
+		 * @return Leksikalni simboli definicije (ali {@code null} na koncu
+		 *         datoteke).
+		 */
+		List<Token> next() {
+			if (started && lexAn.peekToken().symbol() == Token.Symbol.EOF)
+				return null;
+			started = true;
+			final List<Token> tokens = new ArrayList<Token>();
+			while (true) {
+				final Token token = lexAn.peekToken();
+				if (token.symbol() == Token.Symbol.EOF || splitter.split(token, tokens.isEmpty())) {
+					tokens.add(new Token(token.location(), Token.Symbol.EOF, ""));
+					return tokens;
+				}
+				tokens.add(lexAn.takeToken());
+			}
+		}
+
+		@Override
+		public void close() {
+			lexAn.close();
+		}
+
+	}
+
+	/**
+	 * Razcleni definicije na najvisjem nivoju.
+	 *
+	 * @param tokens Leksikalni simboli definicij.
+	 * @return Abstraktno sintaksno drevo definicij.
+	 */
+	private static Abstr.AttrAST parse(final List<Token> tokens) {
+		try (final SynAn synAn = new SynAn(new LexAn(tokens))) {
+			return Abstr.constructAST(synAn);
+		}
+	}
+
+	/**
+	 * Podpisi in lokacije definicij na najvisjem nivoju.
+	 *
+	 * @param symbols   Podpisi definicij po imenih.
+	 * @param locations Lokacije definicij po imenih.
+	 */
+	private record Signatures(Map<String, ObjectFile.Symbol> symbols, Map<String, Report.Location> locations) {
+	}
+
+	/**
+	 * Zbere podpise definicij na najvisjem nivoju.
+	 *
+	 * Stevilo parametrov funkcije se presteje kar med leksikalnimi simboli, le
+	 * definicije spremenljivk se razclenijo, da se izracuna njihova velikost.
+	 * Nepravilno zapisane glave funkcij odkrije sele drugi prehod.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Podpisi in lokacije definicij na najvisjem nivoju.
+	 */
+	private static Signatures signatures(final String srcFileName) {
+		final HashMap<String, ObjectFile.Symbol> symbols = new HashMap<String, ObjectFile.Symbol>();
+		final HashMap<String, Report.Location> locations = new HashMap<String, Report.Location>();
+		try (final Reader reader = new Reader(srcFileName)) {
+			List<Token> tokens;
+			while ((tokens = reader.next()) != null) {
+				if (tokens.size() < 2 || tokens.get(1).symbol() != Token.Symbol.IDENTIFIER)
+					continue;
+				final String name = tokens.get(1).lexeme();
+				final ObjectFile.Symbol symbol;
+				switch (tokens.get(0).symbol()) {
+				case FUN: {
+					int numPars = 0;
+					for (int index = 3; index < tokens.size() && tokens.get(index).symbol() != Token.Symbol.RPAREN; index++)
+						if (tokens.get(index).symbol() == Token.Symbol.IDENTIFIER)
+							numPars++;
+					symbol = new ObjectFile.Symbol(ObjectFile.Kind.FUN, name, numPars);
+					break;
+				}
+				case VAR: {
+					final Abstr.AttrAST abstr = parse(tokens);
+					final AST.VarDef varDef = (AST.VarDef) ((AST.Nodes<?>) abstr.ast).getAll().get(0);
+					symbol = new ObjectFile.Symbol(ObjectFile.Kind.VAR, name,
+							Memory.globalAccess(varDef, abstr.attrLoc).size);
+					break;
+				}
+				default:
+					continue;
+				}
+				final Report.Location location = new Report.Location(tokens.getFirst(), tokens.get(tokens.size() - 2));
+				if (symbols.putIfAbsent(name, symbol) != null)
+					throw new Report.Error(location, "Illegal definition of "
+							+ (symbol.kind() == ObjectFile.Kind.FUN ? "function" : "variable") + " '" + name + "'.");
+				locations.put(name, location);
+			}
+		}
+		return new Signatures(symbols, locations);
+	}
+
+	/**
+	 * Pretocno prevede izvorno datoteko do vkljucno pomnilniske predstavitve in
+	 * sproti izpisuje definicije na najvisjem nivoju.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param plain       Ali naj bo izpis brez ubeznih zaporedij ANSI za
+	 *                    poudarjanje.
+	 * @return Stevilo definicij na najvisjem nivoju.
+	 */
+	public static int compile(final String srcFileName, final boolean plain) {
+		final Signatures signatures = Metrics.measure("Streaming.signatures", () -> signatures(srcFileName));
+		int numDefs = 0;
+		AST.Logger.logProgram(plain);
+		try (final Reader reader = new Reader(srcFileName)) {
+			List<Token> tokens;
+			while ((tokens = reader.next()) != null) {
+				final Units.Analysis analysis = Units.analyze(parse(tokens), signatures.symbols(),
+						signatures.locations());
+				final AST.Logger logger = new AST.Logger(analysis.listing(), plain);
+				for (final AST.Node def : (AST.Nodes<?>) analysis.listing().ast) {
+					logger.log(def, 2);
+					numDefs++;
+				}
+			}
+		}
+		Metrics.count("Streaming", "defs", numDefs);
+		return numDefs;
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon pretocnega prevajanja.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici: {@code [--plain] datoteka}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (streaming):");
+
+		try {
+			final boolean plain = cmdLineArgs.length > 0 && cmdLineArgs[0].equals("--plain");
+			final int arg = plain ? 1 : 0;
+			if (cmdLineArgs.length == arg)
+				throw new Report.Error("No source file specified in the command line.");
+			if (cmdLineArgs.length > arg + 1)
+				Report.warning("Unused arguments in the command line.");
+
+			compile(cmdLineArgs[arg], plain);
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
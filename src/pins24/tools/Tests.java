@@ -0,0 +1,337 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import java.util.stream.*;
+import pins24.common.*;
+
+/**
+ * Izvajanje testov s pricakovanimi izpisi v enem programu.
+ *
+ * Test je izvorna datoteka {@code ime.pins24}, ki ima poleg sebe datoteko s
+ * pricakovanim izpisom {@code ime_out.pins24} (tako kot pri skripti
+ * {@code tests/run_tests.sh}). Faza, do katere se izvorna datoteka prevede, je
+ * dolocena z imenom imenika, v katerem je test (npr. {@code lexan},
+ * {@code lexan_profesor} in {@code synan}; imenik {@code ast} pomeni fazo
+ * {@code Abstr}), ali z zastavico {@code --phase}. Testi se izvajajo hkrati v
+ * toliko platformnih nitih, kolikor je jeder (ali kot doloca zastavica
+ * {@code --jobs}), vsak s svojim izhodnim tokom (glej {@link Report#setOut}),
+ * v katerega gresta izpis faze in opis napake v istem vrstnem redu kot pri
+ * zagonu faze z {@code 2>&1}. Ubezna zaporedja ANSI za poudarjanje se pred
+ * primerjavo odstranijo, saj jih pricakovani izpisi ne vsebujejo.
+ *
+ * Ce ima izvorna datoteka tudi datoteko {@code ime_all_out.pins24}, se izvede
+ * se en test, pri katerem se izpisejo vse odkrite napake in ne le prva (glej
+ * {@link Pipeline.Options#allErrors}). Skripta {@code tests/run_tests.sh} teh
+ * datotek ne uporablja.
+ *
+ * Test je tudi skripta seje jezikovnega streznika {@code ime.jsonl}, ki ima
+ * poleg sebe datoteko s pricakovanimi sporocili streznika {@code ime_out.jsonl}
+ * (glej {@link LanguageClient}; casi odgovorov se ne primerjajo).
+ *
+ * Za vsak test se izpise, ali je uspel, in cas izvajanja, za neuspele teste pa
+ * se prva vrstica, v kateri se izpisa razlikujeta.
+ */
+public class Tests {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Tests() {
+		throw new Report.InternalError();
+	}
+
+	/** Koncnica imena datoteke s pricakovanim izpisom. */
+	private static final String OUT_SUFFIX = "_out.pins24";
+
+	/** Koncnica imena datoteke s pricakovanim izpisom vseh napak. */
+	private static final String ALL_OUT_SUFFIX = "_all_out.pins24";
+
+	/** Koncnica imena skripte seje jezikovnega streznika. */
+	private static final String SCRIPT_SUFFIX = ".jsonl";
+
+	/** Koncnica imena datoteke s pricakovanimi sporocili jezikovnega streznika. */
+	private static final String SCRIPT_OUT_SUFFIX = "_out.jsonl";
+
+	/** Ime faze pri testih skript sej jezikovnega streznika. */
+	private static final String SCRIPT_PHASE = "LanguageServer";
+
+	/** Imena imenikov, ki se ne ujemajo z imeni faz. */
+	private static final Map<String, String> aliases = Map.of("ast", "Abstr");
+
+	/** Ubezna zaporedja ANSI za poudarjanje. */
+	private static final Pattern ansi = Pattern.compile("\033\\[[0-9;]*m");
+
+	/**
+	 * Test.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param outFileName Ime datoteke s pricakovanim izpisom.
+	 * @param phase       Ime faze.
+	 * @param allErrors   Ali naj se izpisejo vse napake in ne le prva.
+	 */
+	public record Test(String srcFileName, String outFileName, String phase, boolean allErrors) {
+	}
+
+	/**
+	 * Rezultat testa.
+	 *
+	 * @param test   Test.
+	 * @param passed Ali je test uspel.
+	 * @param nanos  Cas izvajanja testa (v nanosekundah).
+	 * @param diff   Opis prve razlike med izpisoma (ali {@code null}).
+	 */
+	public record Result(Test test, boolean passed, long nanos, String diff) {
+	}
+
+	/**
+	 * Doloci fazo iz imena imenika testa.
+	 *
+	 * @param dirName Ime imenika testa.
+	 * @return Ime faze (ali {@code null}, ce je ni mogoce dolociti).
+	 */
+	private static String phase(final String dirName) {
+		final String prefix = dirName.replaceFirst("_.*$", "");
+		if (aliases.containsKey(prefix))
+			return aliases.get(prefix);
+		for (final String phase : Pipeline.phases.keySet())
+			if (phase.equalsIgnoreCase(prefix))
+				return phase;
+		return null;
+	}
+
+	/**
+	 * Poisce teste: izvorne datoteke (glej {@link Batch#sources}), ki imajo
+	 * datoteko s pricakovanim izpisom, in skripte sej jezikovnega streznika, ki
+	 * imajo datoteko s pricakovanimi sporocili.
+	 *
+	 * @param names Imena datotek in imenikov.
+	 * @param phase Ime faze (ali {@code null}, ce jo doloca imenik testa).
+	 * @return Testi.
+	 */
+	public static List<Test> discover(final List<String> names, final String phase) {
+		final List<Test> tests = new ArrayList<Test>();
+		for (final String srcFileName : Batch.sources(names)) {
+			if (srcFileName.endsWith(SCRIPT_SUFFIX))
+				continue;
+			final Path srcPath = Path.of(srcFileName);
+			final String outFileName = srcFileName.replaceFirst("\\.pins24$", OUT_SUFFIX);
+			final String allOutFileName = srcFileName.replaceFirst("\\.pins24$", ALL_OUT_SUFFIX);
+			if (!Files.isRegularFile(Path.of(outFileName)) && !Files.isRegularFile(Path.of(allOutFileName)))
+				continue;
+			final Path dir = srcPath.toAbsolutePath().getParent();
+			final String testPhase = phase != null ? phase
+					: dir == null || dir.getFileName() == null ? null : phase(dir.getFileName().toString());
+			if (testPhase == null)
+				throw new Report.Error("Cannot determine the phase of test '" + srcFileName + "'.");
+			if (Files.isRegularFile(Path.of(outFileName)))
+				tests.add(new Test(srcFileName, outFileName, testPhase, false));
+			if (Files.isRegularFile(Path.of(allOutFileName)))
+				tests.add(new Test(srcFileName, allOutFileName, testPhase, true));
+		}
+		for (final String scriptFileName : scripts(names)) {
+			final String outFileName = scriptFileName.replaceFirst("\\.jsonl$", SCRIPT_OUT_SUFFIX);
+			if (Files.isRegularFile(Path.of(outFileName)))
+				tests.add(new Test(scriptFileName, outFileName, SCRIPT_PHASE, false));
+		}
+		return tests;
+	}
+
+	/**
+	 * Poisce skripte sej jezikovnega streznika: datoteka s koncnico
+	 * {@code .jsonl} je skripta, imenik pa vsebuje vse datoteke s koncnico
+	 * {@code .jsonl} (razen datotek s pricakovanimi sporocili s koncnico
+	 * {@code _out.jsonl}).
+	 *
+	 * @param names Imena datotek in imenikov.
+	 * @return Imena skript.
+	 */
+	private static List<String> scripts(final List<String> names) {
+		final List<String> scriptFileNames = new ArrayList<String>();
+		for (final String name : names) {
+			final Path path = Path.of(name);
+			if (!Files.isDirectory(path)) {
+				if (name.endsWith(SCRIPT_SUFFIX))
+					scriptFileNames.add(name);
+				continue;
+			}
+			try (final Stream<Path> paths = Files.walk(path)) {
+				paths.map(Path::toString)
+						.filter(fileName -> fileName.endsWith(SCRIPT_SUFFIX) && !fileName.endsWith(SCRIPT_OUT_SUFFIX))
+						.sorted().forEach(scriptFileNames::add);
+			} catch (IOException | UncheckedIOException __) {
+				throw new Report.Error("Cannot read directory '" + name + "'.");
+			}
+		}
+		return scriptFileNames;
+	}
+
+	/**
+	 * Hkrati izvede teste.
+	 *
+	 * @param tests Testi.
+	 * @param jobs  Stevilo niti.
+	 * @return Rezultati testov v vrstnem redu testov.
+	 */
+	public static List<Result> run(final List<Test> tests, final int jobs) {
+		final ExecutorService executor = Executors.newFixedThreadPool(jobs);
+		try {
+			final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final Test test : tests)
+				futures.add(executor.submit(() -> run(test)));
+			final List<Result> results = new ArrayList<Result>();
+			for (int index = 0; index < futures.size(); index++) {
+				try {
+					results.add(futures.get(index).get());
+				} catch (ExecutionException | InterruptedException exception) {
+					results.add(new Result(tests.get(index), false, 0, "internal error: " + exception.getCause()));
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Izvede test.
+	 *
+	 * @param test Test.
+	 * @return Rezultat testa.
+	 */
+	private static Result run(final Test test) {
+		final String expected;
+		try {
+			expected = Files.readString(Path.of(test.outFileName()), StandardCharsets.UTF_8);
+		} catch (IOException __) {
+			return new Result(test, false, 0, "cannot read '" + test.outFileName() + "'");
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final long begNanos = System.nanoTime();
+		try (final PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8)) {
+			if (test.phase().equals(SCRIPT_PHASE))
+				script(test.srcFileName(), out);
+			else
+				Pipeline.compile(test.phase(), test.srcFileName(), out, out,
+						new Pipeline.Options(test.allErrors(), false, null));
+		} catch (Report.InternalError error) {
+			return new Result(test, false, System.nanoTime() - begNanos, "internal error");
+		} catch (Report.Error error) {
+			return new Result(test, false, System.nanoTime() - begNanos, error.getMessage());
+		}
+		final long nanos = System.nanoTime() - begNanos;
+		final String actual = ansi.matcher(bytes.toString(StandardCharsets.UTF_8)).replaceAll("");
+		return new Result(test, actual.equals(expected), nanos, actual.equals(expected) ? null : diff(actual, expected));
+	}
+
+	/**
+	 * Izvede skripto seje jezikovnega streznika in izpise prejeta sporocila (casi
+	 * odgovorov in obvestila streznika se zavrzejo).
+	 *
+	 * @param scriptFileName Ime skripte.
+	 * @param out            Izhodni tok za prejeta sporocila.
+	 */
+	private static void script(final String scriptFileName, final PrintStream out) {
+		final Path scriptPath = Path.of(scriptFileName);
+		try (final PrintStream log = new PrintStream(OutputStream.nullOutputStream())) {
+			LanguageClient.run(Files.readAllLines(scriptPath, StandardCharsets.UTF_8),
+					scriptPath.toAbsolutePath().getParent(), LanguageServer.DEFAULT_DEBOUNCE, out, log);
+		} catch (IOException | InterruptedException exception) {
+			throw new Report.Error("Cannot run script '" + scriptFileName + "': " + exception.getMessage());
+		}
+	}
+
+	/**
+	 * Opise prvo razliko med izpisoma.
+	 *
+	 * @param actual   Dejanski izpis.
+	 * @param expected Pricakovani izpis.
+	 * @return Opis prve razlike.
+	 */
+	private static String diff(final String actual, final String expected) {
+		final List<String> actualLines = actual.lines().toList();
+		final List<String> expectedLines = expected.lines().toList();
+		int line = 0;
+		while (line < actualLines.size() && line < expectedLines.size()
+				&& actualLines.get(line).equals(expectedLines.get(line)))
+			line++;
+		if (line == actualLines.size() && line == expectedLines.size())
+			return "line endings differ";
+		return "line " + (line + 1) + ":\n      actual:   "
+				+ (line < actualLines.size() ? actualLines.get(line) : "<end of output>") + "\n      expected: "
+				+ (line < expectedLines.size() ? expectedLines.get(line) : "<end of output>");
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon testov.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--phase faza] [--jobs n] [datoteka-ali-imenik ...]}
+	 *                    (privzeto imenik {@code tests}).
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (tests):");
+
+		try {
+			String phase = null;
+			int jobs = Runtime.getRuntime().availableProcessors();
+			int arg = 0;
+			while (arg + 1 < cmdLineArgs.length && cmdLineArgs[arg].startsWith("--")) {
+				switch (cmdLineArgs[arg]) {
+				case "--phase":
+					phase = cmdLineArgs[arg + 1];
+					if (!Pipeline.phases.containsKey(phase))
+						throw new Report.Error("Unknown phase '" + phase + "'.");
+					break;
+				case "--jobs":
+					try {
+						jobs = Integer.parseInt(cmdLineArgs[arg + 1]);
+					} catch (NumberFormatException __) {
+						jobs = 0;
+					}
+					if (jobs <= 0)
+						throw new Report.Error("Illegal number of jobs '" + cmdLineArgs[arg + 1] + "'.");
+					break;
+				default:
+					throw new Report.Error("Unknown option '" + cmdLineArgs[arg] + "'.");
+				}
+				arg += 2;
+			}
+			final List<String> names = arg == cmdLineArgs.length ? List.of("tests")
+					: Arrays.asList(cmdLineArgs).subList(arg, cmdLineArgs.length);
+			final List<Test> tests = discover(names, phase);
+			if (tests.isEmpty())
+				throw new Report.Error("No tests found.");
+
+			final long begNanos = System.nanoTime();
+			final List<Result> results = run(tests, jobs);
+			final long nanos = System.nanoTime() - begNanos;
+			int numFailed = 0;
+			long totalNanos = 0;
+			for (final Result result : results) {
+				System.out.printf("%s %s (%s%s, %.1f ms)\n", result.passed() ? "  PASS" : "  FAIL",
+						result.test().srcFileName(), result.test().phase(), result.test().allErrors() ? ", all errors" : "",
+						result.nanos() / 1e6);
+				if (!result.passed()) {
+					System.out.println("    " + result.diff());
+					numFailed++;
+				}
+				totalNanos += result.nanos();
+			}
+
+			Report.info(String.format("Ran %d test(s), %d failed, in %.1f ms (%.1f ms in tests, %d job(s)).",
+					results.size(), numFailed, nanos / 1e6, totalNanos / 1e6, jobs));
+			if (numFailed > 0)
+				System.exit(1);
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
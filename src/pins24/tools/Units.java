@@ -0,0 +1,437 @@
+package pins24.tools;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Loceno prevajanje programa, sestavljenega iz vec izvornih datotek (enot).
+ *
+ * Vsaka enota se prevede do vkljucno pomnilniske predstavitve v svojo objektno
+ * datoteko (glej {@link ObjectFile}), neodvisno od ostalih enot: imena, ki jih
+ * enota ne definira sama, se nanasajo na simbole, ki jih izvazajo ostale enote
+ * (funkcije na najvisjem nivoju s stevilom parametrov in globalne spremenljivke
+ * z velikostjo). Za vsak tak simbol se v enoto doda definicija brez telesa
+ * oziroma brez zacetne vrednosti, ki ji se pri izracunu pomnilniske
+ * predstavitve doloci absolutni dostop z izvozeno velikostjo. Funkcije na
+ * najvisjem nivoju pri locenem prevajanju vedno ohranijo staticno povezavo, da
+ * se klicni dogovor ujema v vseh enotah.
+ *
+ * Prevajanje poteka v dveh korakih, v vsakem se enote obdelajo hkrati (vsaka v
+ * svoji navidezni niti): najprej se za vsako enoto dolocijo simboli, ki jih
+ * izvaza (iz objektne datoteke, ce se izvlecek vsebine izvorne datoteke ujema,
+ * sicer iz abstraktnega sintaksnega drevesa), nato se znova prevedejo le enote,
+ * katerih izvorna datoteka se je spremenila ali katerih uvozeni simboli se ne
+ * ujemajo vec z izvozenimi. Ce isto ime izvaza vec enot, se nobena od njih ne
+ * prevede, prav tako ne enote, katerih prevod se zaradi uporabe tega imena ne
+ * posreci; za vse se sporoci podvojena definicija. Na koncu se objektne
+ * datoteke povezejo (glej {@link Linker}).
+ */
+public class Units {
+
+	@SuppressWarnings({ "doclint:missing" })
+	private Units() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Rezultat locenega prevajanja ene enote.
+	 *
+	 * @param srcFileName Ime izvorne datoteke enote.
+	 * @param object      Objektna datoteka enote (ali {@code null}, ce prevajanje
+	 *                    ni uspelo).
+	 * @param compiled    Ali je bila enota prevedena znova.
+	 * @param err         Opis napake (ali {@code null}).
+	 */
+	public record Result(String srcFileName, ObjectFile object, boolean compiled, String err) {
+	}
+
+	/**
+	 * Enota med locenim prevajanjem.
+	 */
+	private static class Unit {
+
+		/** Ime izvorne datoteke enote. */
+		final String srcFileName;
+
+		/** Ime objektne datoteke enote. */
+		final Path objPath;
+
+		/** Izvlecek vsebine izvorne datoteke enote. */
+		String source = null;
+
+		/** Prejsnja objektna datoteka enote (ali {@code null}, ce ni veljavna). */
+		ObjectFile object = null;
+
+		/** Abstraktno sintaksno drevo enote (ali {@code null}, ce se ni zgrajeno). */
+		Abstr.AttrAST abstr = null;
+
+		/** Simboli, ki jih enota izvaza. */
+		List<ObjectFile.Symbol> exports = null;
+
+		/** Ali je bila enota prevedena znova. */
+		boolean compiled = false;
+
+		/** Opis napake (ali {@code null}). */
+		String err = null;
+
+		/**
+		 * Ustvari novo enoto.
+		 *
+		 * @param srcFileName Ime izvorne datoteke enote.
+		 * @param objPath     Ime objektne datoteke enote.
+		 */
+		Unit(final String srcFileName, final Path objPath) {
+			this.srcFileName = srcFileName;
+			this.objPath = objPath;
+		}
+
+	}
+
+	/**
+	 * Loceno prevede enote.
+	 *
+	 * @param srcFileNames Imena izvornih datotek enot.
+	 * @param objDirName   Imenik objektnih datotek (ali {@code null}, ce so
+	 *                     objektne datoteke v istih imenikih kot izvorne).
+	 * @return Rezultati prevajanja v vrstnem redu enot.
+	 */
+	public static List<Result> compile(final List<String> srcFileNames, final String objDirName) {
+		final List<Unit> units = new ArrayList<Unit>();
+		for (final String srcFileName : srcFileNames)
+			units.add(new Unit(srcFileName, ObjectFile.path(srcFileName, objDirName)));
+
+		// Simboli, ki jih izvazajo enote.
+		forEach(units, Units::exports);
+		final HashMap<String, Unit> owners = new HashMap<String, Unit>();
+		final HashMap<String, String> duplicates = new HashMap<String, String>();
+		for (final Unit unit : units)
+			if (unit.exports != null)
+				for (final ObjectFile.Symbol symbol : unit.exports) {
+					final Unit owner = owners.putIfAbsent(symbol.name(), unit);
+					if (owner != null && !duplicates.containsKey(symbol.name()))
+						duplicates.put(symbol.name(), "Name '" + symbol.name() + "' is defined in units '"
+								+ owner.srcFileName + "' and '" + unit.srcFileName + "'.");
+				}
+		// Enote, ki izvazajo isto ime, se ne prevedejo, ime pa se ne izvaza.
+		final LinkedHashMap<String, ObjectFile.Symbol> symbols = new LinkedHashMap<String, ObjectFile.Symbol>();
+		for (final Unit unit : units)
+			if (unit.exports != null)
+				for (final ObjectFile.Symbol symbol : unit.exports)
+					if (duplicates.containsKey(symbol.name())) {
+						if (unit.err == null)
+							unit.err = (new Report.Error(duplicates.get(symbol.name()))).getMessage();
+					} else
+						symbols.put(symbol.name(), symbol);
+
+		// Prevajanje spremenjenih enot.
+		forEach(units, unit -> {
+			if (unit.err != null)
+				return;
+			if (unit.object != null) {
+				boolean stale = false;
+				for (final ObjectFile.Symbol symbol : unit.object.imports)
+					stale |= !symbol.equals(symbols.get(symbol.name()));
+				if (!stale)
+					return;
+				unit.abstr = parse(unit.srcFileName);
+			}
+			try {
+				unit.object = compile(unit, symbols);
+			} catch (Report.Error error) {
+				// Enota, ki uporablja ime, ki ga izvaza vec enot, se ne prevede zaradi
+				// podvojene definicije.
+				for (final String name : usedNames(unit.abstr))
+					if (duplicates.containsKey(name))
+						throw new Report.Error(duplicates.get(name));
+				throw error;
+			}
+			unit.object.write(unit.objPath);
+			unit.compiled = true;
+		});
+
+		final List<Result> results = new ArrayList<Result>();
+		for (final Unit unit : units)
+			results.add(new Result(unit.srcFileName, unit.err == null ? unit.object : null, unit.compiled, unit.err));
+		return results;
+	}
+
+	/**
+	 * Hkrati obdela vse enote (vsako v svoji navidezni niti).
+	 *
+	 * @param units  Enote.
+	 * @param action Obdelava ene enote.
+	 */
+	private static void forEach(final List<Unit> units, final java.util.function.Consumer<Unit> action) {
+		try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			final List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Unit unit : units)
+				futures.add(executor.submit(() -> {
+					try {
+						action.accept(unit);
+					} catch (Report.Error error) {
+						unit.err = error.getMessage();
+					}
+				}));
+			for (int index = 0; index < futures.size(); index++)
+				try {
+					futures.get(index).get();
+				} catch (ExecutionException | InterruptedException exception) {
+					units.get(index).err = ":-( Internal error.";
+				}
+		}
+	}
+
+	/**
+	 * Doloci simbole, ki jih enota izvaza.
+	 *
+	 * Ce se izvlecek vsebine izvorne datoteke ujema z izvleckom v objektni
+	 * datoteki, se simboli preberejo iz objektne datoteke, sicer se zgradi
+	 * abstraktno sintaksno drevo enote.
+	 *
+	 * @param unit Enota.
+	 */
+	private static void exports(final Unit unit) {
+		try {
+			unit.source = HexFormat.of().formatHex(
+					MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(Path.of(unit.srcFileName))));
+		} catch (IOException __) {
+			throw new Report.Error("Source file '" + unit.srcFileName + "' not found.");
+		} catch (NoSuchAlgorithmException __) {
+			throw new Report.InternalError();
+		}
+		if (Files.exists(unit.objPath))
+			try {
+				final ObjectFile object = ObjectFile.read(unit.objPath);
+				if (object.unit.equals(unit.srcFileName) && object.source.equals(unit.source)) {
+					unit.object = object;
+					unit.exports = object.exports;
+					return;
+				}
+			} catch (Report.Error __) {
+				// Neveljavna objektna datoteka se prepise.
+			}
+		unit.abstr = parse(unit.srcFileName);
+		unit.exports = new ArrayList<ObjectFile.Symbol>();
+		for (final AST.Node node : (AST.Nodes<?>) unit.abstr.ast)
+			switch (node) {
+			case final AST.FunDef funDef:
+				unit.exports.add(new ObjectFile.Symbol(ObjectFile.Kind.FUN, funDef.name, funDef.pars.size()));
+				break;
+			case final AST.VarDef varDef:
+				unit.exports.add(new ObjectFile.Symbol(ObjectFile.Kind.VAR, varDef.name,
+						Memory.globalAccess(varDef, unit.abstr.attrLoc).size));
+				break;
+			default:
+				throw new Report.InternalError();
+			}
+	}
+
+	/**
+	 * Zgradi abstraktno sintaksno drevo enote.
+	 *
+	 * @param srcFileName Ime izvorne datoteke enote.
+	 * @return Abstraktno sintaksno drevo enote.
+	 */
+	private static Abstr.AttrAST parse(final String srcFileName) {
+		try (final SynAn synAn = new SynAn(srcFileName)) {
+			return Abstr.constructAST(synAn);
+		}
+	}
+
+	/**
+	 * Doloci imena, ki se pojavijo v izrazih enote.
+	 *
+	 * @param abstr Abstraktno sintaksno drevo enote.
+	 * @return Imena spremenljivk in funkcij, ki se uporabljajo v enoti.
+	 */
+	private static TreeSet<String> usedNames(final Abstr.AttrAST abstr) {
+		final TreeSet<String> usedNames = new TreeSet<String>();
+		abstr.ast.accept(new AST.FullVisitor<Object, Object>() {
+			@Override
+			public Object visit(final AST.VarExpr varExpr, final Object arg) {
+				usedNames.add(varExpr.name);
+				return null;
+			}
+
+			@Override
+			public Object visit(final AST.CallExpr callExpr, final Object arg) {
+				usedNames.add(callExpr.name);
+				return AST.FullVisitor.super.visit(callExpr, arg);
+			}
+		}, null);
+		return usedNames;
+	}
+
+	/**
+	 * Prevede enoto do vkljucno pomnilniske predstavitve.
+	 *
+	 * @param unit    Enota z abstraktnim sintaksnim drevesom.
+	 * @param symbols Simboli, ki jih izvazajo enote, po imenih.
+	 * @return Objektna datoteka enote.
+	 */
+	private static ObjectFile compile(final Unit unit, final Map<String, ObjectFile.Symbol> symbols) {
+		final Analysis analysis = analyze(unit.abstr, symbols, Map.of());
+		final PrintStream oldOut = Report.out();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8)) {
+			Report.setOut(out);
+			(new AST.Logger(analysis.listing())).log();
+		} finally {
+			Report.setOut(oldOut == System.out ? null : oldOut);
+		}
+		final Mem.AbsAccess display = analysis.listing().display;
+		return new ObjectFile(unit.srcFileName, unit.source, unit.exports, analysis.imports(),
+				display == null ? 0 : display.size, bytes.toString(StandardCharsets.UTF_8).lines().toList());
+	}
+
+	/**
+	 * Definicije po semanticni analizi in izracunu pomnilniske predstavitve.
+	 *
+	 * @param listing Abstraktno sintaksno drevo definicij z atributi pomnilniske
+	 *                predstavitve (brez definicij uvozenih simbolov).
+	 * @param imports Uvozeni simboli (urejeni po imenih).
+	 */
+	record Analysis(Memory.AttrAST listing, List<ObjectFile.Symbol> imports) {
+	}
+
+	/**
+	 * Opravi semanticno analizo in izracun pomnilniske predstavitve definicij na
+	 * najvisjem nivoju, pri cemer se imena, ki jih definicije ne definirajo same,
+	 * nanasajo na dane simbole.
+	 *
+	 * @param abstr     Abstraktno sintaksno drevo definicij na najvisjem nivoju.
+	 * @param symbols   Simboli, na katere se lahko nanasajo imena, po imenih.
+	 * @param locations Lokacije definicij simbolov (le tistih, ki jih je
+	 *                  smiselno izpisati).
+	 * @return Definicije po semanticni analizi in izracunu pomnilniske
+	 *         predstavitve.
+	 */
+	static Analysis analyze(final Abstr.AttrAST abstr, final Map<String, ObjectFile.Symbol> symbols,
+			final Map<String, Report.Location> locations) {
+		final List<AST.MainDef> defs = new ArrayList<AST.MainDef>();
+		final HashSet<String> names = new HashSet<String>();
+		for (final AST.Node node : (AST.Nodes<?>) abstr.ast) {
+			defs.add((AST.MainDef) node);
+			names.add(((AST.MainDef) node).name);
+		}
+
+		// Definicije uvozenih simbolov (le tistih, katerih imena se v enoti pojavijo).
+		final TreeSet<String> usedNames = usedNames(abstr);
+		final List<AST.MainDef> allDefs = new ArrayList<AST.MainDef>(defs);
+		final IdentityHashMap<AST.MainDef, ObjectFile.Symbol> externs = new IdentityHashMap<AST.MainDef, ObjectFile.Symbol>();
+		final HashMap<AST.VarDef, Mem.Access> externAccess = new HashMap<AST.VarDef, Mem.Access>();
+		final HashMap<AST.Def, Boolean> externEscape = new HashMap<AST.Def, Boolean>();
+		final HashMap<AST.Node, Report.Locatable> attrLoc = new HashMap<AST.Node, Report.Locatable>();
+		for (final String name : usedNames) {
+			final ObjectFile.Symbol symbol = symbols.get(name);
+			if (symbol == null || names.contains(name))
+				continue;
+			final AST.MainDef extern = switch (symbol.kind()) {
+			case FUN -> {
+				final List<AST.ParDef> pars = new ArrayList<AST.ParDef>();
+				for (int par = 0; par < symbol.size(); par++)
+					pars.add(new AST.ParDef("par" + par));
+				yield new AST.FunDef(name, pars, List.of());
+			}
+			case VAR -> {
+				final AST.VarDef varDef = new AST.VarDef(name, List.of());
+				externAccess.put(varDef, new Mem.AbsAccess(name, symbol.size(), null));
+				externEscape.put(varDef, true);
+				yield varDef;
+			}
+			};
+			allDefs.add(extern);
+			externs.put(extern, symbol);
+			if (locations.get(name) != null)
+				attrLoc.put(extern, locations.get(name));
+		}
+		if (!attrLoc.isEmpty())
+			attrLoc.putAll(abstr.attrLoc);
+
+		// Semanticna analiza in pomnilniska predstavitev.
+		final SemAn.AttrAST seman = SemAn.analyze(new Abstr.AttrAST(
+				new AST.AttrAST(new AST.Nodes<AST.MainDef>(allDefs)), attrLoc.isEmpty() ? abstr.attrLoc : attrLoc,
+				abstr.spans));
+		final Memory.AttrAST memory = Memory.organize(seman,
+				new Memory.AttrAST(seman, new HashMap<AST.FunDef, Mem.Frame>(),
+						new HashMap<AST.ParDef, Mem.RelAccess>(), externAccess, externEscape, null),
+				new HashSet<AST.MainDef>(externAccess.keySet()), true);
+
+		final List<ObjectFile.Symbol> imports = new ArrayList<ObjectFile.Symbol>();
+		for (final AST.MainDef extern : allDefs.subList(defs.size(), allDefs.size()))
+			if (memory.attrUses.containsKey(extern))
+				imports.add(externs.get(extern));
+		imports.sort(Comparator.comparing(ObjectFile.Symbol::name));
+
+		return new Analysis(new Memory.AttrAST(
+				new SemAn.AttrAST(new Abstr.AttrAST(new AST.AttrAST(new AST.Nodes<AST.MainDef>(defs)),
+						memory.attrLoc, memory.spans), memory.attrDef, memory.attrLVal, memory.attrUses),
+				memory.attrFrame, memory.attrParAccess, memory.attrVarAccess, memory.attrEscape, memory.display),
+				imports);
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon locenega prevajanja.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici:
+	 *                    {@code [--objdir imenik] datoteka-ali-imenik ...}.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (units):");
+
+		try {
+			String objDirName = null;
+			int arg = 0;
+			while (arg + 1 < cmdLineArgs.length && cmdLineArgs[arg].startsWith("--")) {
+				switch (cmdLineArgs[arg]) {
+				case "--objdir":
+					objDirName = cmdLineArgs[arg + 1];
+					arg += 2;
+					break;
+				default:
+					throw new Report.Error("Unknown option '" + cmdLineArgs[arg] + "'.");
+				}
+			}
+			final List<String> srcFileNames = Batch.sources(Arrays.asList(cmdLineArgs).subList(arg, cmdLineArgs.length));
+			if (srcFileNames.isEmpty())
+				throw new Report.Error("No source file specified in the command line.");
+
+			final List<Result> results = compile(srcFileNames, objDirName);
+			final List<ObjectFile> objects = new ArrayList<ObjectFile>();
+			int numCompiled = 0;
+			int numFailed = 0;
+			for (final Result result : results) {
+				if (result.err() != null) {
+					System.err.println(result.srcFileName() + ": " + result.err());
+					numFailed++;
+					continue;
+				}
+				objects.add(result.object());
+				if (result.compiled())
+					numCompiled++;
+			}
+			System.err.flush();
+			Report.info("Compiled " + numCompiled + " of " + results.size() + " unit(s), " + numFailed + " failed.");
+			if (numFailed > 0)
+				System.exit(1);
+
+			Linker.link(objects).print(System.out);
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
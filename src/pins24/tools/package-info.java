@@ -0,0 +1,4 @@
+/**
+ * Orodja, ki uporabljajo faze prevajalnika.
+ */
+package pins24.tools;
@@ -15,6 +15,10 @@
 # ./run_tests.sh LexAn lexan
 # Warning: you have to run the script from the tests/ directory and tests/ directory should be in the root of the project
 # Warning 2: in output files, make sure to add a newline at the end of the file
+#
+# To run all tests in a single JVM (in parallel, with timings), run from the project root:
+# java -p out/production/pins24 -m pins24/pins24.tools.Tests [--jobs n] [tests/<dir> ...]
+# (this also runs the language server sessions tests/lsp/*.jsonl against their *_out.jsonl files).
 
 
 function run_test {